@@ -0,0 +1,977 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.util.IntList;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * This class is a {@link SnapshotType} that stores nodes as parallel
+ * primitive buffers instead of objects:
+ * - Links (parent, first child, siblings, subtree end) are int buffers.
+ * - Tag names, attribute names and attribute values are codes into a
+ *   per-snapshot string table, and attributes of all nodes share one
+ *   offset-indexed pair of buffers.
+ * - Boolean attributes named by {@link PlatformType} (enabled, clickable,
+ *   editable and focused) are stored as two bitsets per attribute name,
+ *   one for true and one for false, rather than as attribute values.
+ *   They can also be read as one mask per node with {@link #flagMask(int)}.
+ *
+ * The buffers may be allocated off-heap, in which case only the string
+ * table stays on the Java heap. Snapshots of a session can share one
+ * {@link StringDictionary}, so that each distinct string is stored once
+ * per session, and exact comparisons of tag names and attribute values
+ * become int comparisons.
+ */
+public final class CompactSnapshot implements SnapshotType {
+    /**
+     * Parse a page source into a {@link CompactSnapshot} on the heap.
+     * @param pageSource {@link String} value.
+     * @param platform {@link PlatformType} instance.
+     * @return {@link CompactSnapshot} instance.
+     * @see #parse(Reader, PlatformType, boolean)
+     */
+    @NotNull
+    public static CompactSnapshot parse(@NotNull String pageSource,
+                                        @NotNull PlatformType platform) {
+        return parse(new StringReader(pageSource), platform, false);
+    }
+
+    /**
+     * Parse a page source into a {@link CompactSnapshot}.
+     * @param source {@link Reader} instance. This is not closed.
+     * @param platform {@link PlatformType} instance, which names the
+     *                 boolean attributes to be stored as flags.
+     * @param offHeap {@link Boolean} value. If true, node data is stored in
+     *                direct buffers.
+     * @return {@link CompactSnapshot} instance.
+     * @see #flagNames(PlatformType)
+     */
+    @NotNull
+    public static CompactSnapshot parse(@NotNull Reader source,
+                                        @NotNull PlatformType platform,
+                                        boolean offHeap) {
+        return parse(source, platform, offHeap, new StringDictionary());
+    }
+
+    /**
+     * Same as above, but uses a shared {@link StringDictionary}.
+     * @param source {@link Reader} instance. This is not closed.
+     * @param platform {@link PlatformType} instance.
+     * @param offHeap {@link Boolean} value.
+     * @param dictionary {@link StringDictionary} instance, usually one per
+     *                   session.
+     * @return {@link CompactSnapshot} instance.
+     * @see #flagNames(PlatformType)
+     */
+    @NotNull
+    public static CompactSnapshot parse(@NotNull Reader source,
+                                        @NotNull PlatformType platform,
+                                        boolean offHeap,
+                                        @NotNull StringDictionary dictionary) {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader reader = null;
+
+        try {
+            reader = factory.createXMLStreamReader(source);
+            NodeWriter nodes = new NodeWriter(flagNames(platform), dictionary);
+            return new CompactSnapshot(read(reader, nodes), offHeap);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Get the names of boolean attributes for a {@link PlatformType}.
+     * @param platform {@link PlatformType} instance.
+     * @return {@link List} of {@link String}.
+     * @see PlatformType#enabledAttribute()
+     * @see PlatformType#clickableAttribute()
+     * @see PlatformType#editableAttribute()
+     * @see PlatformType#focusedAttribute()
+     */
+    @NotNull
+    static List<String> flagNames(@NotNull PlatformType platform) {
+        Set<String> names = new LinkedHashSet<>();
+        names.addAll(platform.enabledAttribute());
+        names.addAll(platform.clickableAttribute());
+        names.addAll(platform.editableAttribute());
+        names.addAll(platform.focusedAttribute());
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Allocate an {@link IntBuffer} with some values.
+     * @param values {@link Integer} array.
+     * @param offHeap {@link Boolean} value.
+     * @return {@link IntBuffer} instance.
+     */
+    @NotNull
+    static IntBuffer intBuffer(@NotNull int[] values, boolean offHeap) {
+        IntBuffer buffer;
+
+        if (offHeap) {
+            buffer = ByteBuffer
+                .allocateDirect(values.length * Integer.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+
+            buffer.put(values).flip();
+        } else {
+            buffer = IntBuffer.wrap(values);
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Allocate a {@link LongBuffer} with some values.
+     * @param values {@link Long} array.
+     * @param offHeap {@link Boolean} value.
+     * @return {@link LongBuffer} instance.
+     */
+    @NotNull
+    static LongBuffer longBuffer(@NotNull long[] values, boolean offHeap) {
+        LongBuffer buffer;
+
+        if (offHeap) {
+            buffer = ByteBuffer
+                .allocateDirect(values.length * Long.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asLongBuffer();
+
+            buffer.put(values).flip();
+        } else {
+            buffer = LongBuffer.wrap(values);
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Byte order of encoded records, which may be read on other machines.
+     */
+    @NotNull static final ByteOrder ENCODED_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * The number of flags that fit in a {@link #flagMask(int)}.
+     */
+    public static final int MASK_FLAGS = 32;
+
+    private final int SIZE;
+    private final boolean OFF_HEAP;
+    @NotNull private final StringDictionary DICTIONARY;
+    @NotNull private final IntBuffer PARENT;
+    @NotNull private final IntBuffer FIRST_CHILD;
+    @NotNull private final IntBuffer NEXT_SIBLING;
+    @NotNull private final IntBuffer PREVIOUS_SIBLING;
+    @NotNull private final IntBuffer SUBTREE_END;
+    @NotNull private final IntBuffer TAG;
+
+    /**
+     * The attributes of node i are at [ATTRIBUTE_START[i],
+     * ATTRIBUTE_START[i + 1]) of {@link #ATTRIBUTE_NAME} and
+     * {@link #ATTRIBUTE_VALUE}.
+     */
+    @NotNull private final IntBuffer ATTRIBUTE_START;
+    @NotNull private final IntBuffer ATTRIBUTE_NAME;
+    @NotNull private final IntBuffer ATTRIBUTE_VALUE;
+
+    /**
+     * Flag names, in flag index order.
+     */
+    @NotNull private final List<String> FLAG_NAMES;
+    @NotNull private final Map<String, Integer> FLAG_INDEXES;
+
+    /**
+     * Bit node of word flag * {@link #FLAG_WORDS} + node / 64 is set if
+     * that node has the flag attribute with value true (or false, for
+     * {@link #FALSE_FLAGS}).
+     */
+    @NotNull private final LongBuffer TRUE_FLAGS;
+    @NotNull private final LongBuffer FALSE_FLAGS;
+    private final int FLAG_WORDS;
+    @NotNull private final LongBuffer NODE_HASH;
+    @NotNull private final LongBuffer SUBTREE_HASH;
+    @Nullable private volatile SnapshotIndexes indexes;
+
+    /**
+     * Per-node flag masks, built from {@link #TRUE_FLAGS} and
+     * {@link #FALSE_FLAGS} on first use, so that decoding a record stays
+     * free of copies.
+     */
+    @Nullable private volatile long[] flagMasks;
+
+    /**
+     * Build a {@link CompactSnapshot} from the nodes of a
+     * {@link NodeWriter}, which must not be used afterwards.
+     * @param nodes {@link NodeWriter} instance.
+     * @param offHeap {@link Boolean} value.
+     * @see NodeWriter#finish()
+     */
+    CompactSnapshot(@NotNull NodeWriter nodes, boolean offHeap) {
+        nodes.finish();
+        IntList parents = nodes.PARENTS;
+        IntList tags = nodes.TAGS;
+        IntList attributeStart = nodes.ATTRIBUTE_START;
+        IntList attributeNames = nodes.ATTRIBUTE_NAMES;
+        IntList attributeValues = nodes.ATTRIBUTE_VALUES;
+        IntList trueFlags = nodes.TRUE_FLAGS;
+        IntList falseFlags = nodes.FALSE_FLAGS;
+        List<String> flagNames = nodes.FLAG_NAMES;
+        StringDictionary dictionary = nodes.DICTIONARY;
+        SnapshotLinks links = new SnapshotLinks(parents.toArray());
+        SIZE = tags.size();
+        OFF_HEAP = offHeap;
+        DICTIONARY = dictionary;
+        PARENT = intBuffer(links.PARENT, offHeap);
+        FIRST_CHILD = intBuffer(links.FIRST_CHILD, offHeap);
+        NEXT_SIBLING = intBuffer(links.NEXT_SIBLING, offHeap);
+        PREVIOUS_SIBLING = intBuffer(links.PREVIOUS_SIBLING, offHeap);
+        SUBTREE_END = intBuffer(links.SUBTREE_END, offHeap);
+        TAG = intBuffer(tags.toArray(), offHeap);
+        ATTRIBUTE_START = intBuffer(attributeStart.toArray(), offHeap);
+        ATTRIBUTE_NAME = intBuffer(attributeNames.toArray(), offHeap);
+        ATTRIBUTE_VALUE = intBuffer(attributeValues.toArray(), offHeap);
+        FLAG_NAMES = Collections.unmodifiableList(new ArrayList<>(flagNames));
+        FLAG_INDEXES = nodes.FLAG_INDEXES;
+        FLAG_WORDS = (SIZE + Long.SIZE - 1) / Long.SIZE;
+        TRUE_FLAGS = longBuffer(flagBits(trueFlags), offHeap);
+        FALSE_FLAGS = longBuffer(flagBits(falseFlags), offHeap);
+
+        /* Hashes are computed from the buffers above, so they come last */
+        SnapshotHashes hashes = new SnapshotHashes(this);
+        NODE_HASH = longBuffer(hashes.NODE, offHeap);
+        SUBTREE_HASH = longBuffer(hashes.SUBTREE, offHeap);
+    }
+
+    /**
+     * Decode a {@link CompactSnapshot} written by {@link #encode()}. Node
+     * data is not copied: the buffers are views of the record.
+     * @param record {@link ByteBuffer} instance, positioned at the start
+     *               of the record.
+     * @see #encode()
+     */
+    CompactSnapshot(@NotNull ByteBuffer record) {
+        ByteBuffer in = record.slice().order(ENCODED_ORDER);
+        SIZE = in.getInt();
+        int attributeCount = in.getInt();
+        int stringCount = in.getInt();
+        int flagCount = in.getInt();
+        FLAG_WORDS = in.getInt();
+        OFF_HEAP = record.isDirect();
+        IntBuffer flagCodes = ints(in, flagCount);
+        PARENT = ints(in, SIZE);
+        FIRST_CHILD = ints(in, SIZE);
+        NEXT_SIBLING = ints(in, SIZE);
+        PREVIOUS_SIBLING = ints(in, SIZE);
+        SUBTREE_END = ints(in, SIZE);
+        TAG = ints(in, SIZE);
+        ATTRIBUTE_START = ints(in, SIZE + 1);
+        ATTRIBUTE_NAME = ints(in, attributeCount);
+        ATTRIBUTE_VALUE = ints(in, attributeCount);
+        IntBuffer stringLengths = ints(in, stringCount);
+        in.position(align(in.position()));
+        TRUE_FLAGS = longs(in, flagCount * FLAG_WORDS);
+        FALSE_FLAGS = longs(in, flagCount * FLAG_WORDS);
+        NODE_HASH = longs(in, SIZE);
+        SUBTREE_HASH = longs(in, SIZE);
+
+        /* Strings are small compared to node data, so they are decoded
+         * eagerly to allow lookups by value */
+        DICTIONARY = new StringDictionary();
+
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[stringLengths.get(i)];
+            in.get(bytes);
+            DICTIONARY.code(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        List<String> flagNames = new ArrayList<>();
+        FLAG_INDEXES = new HashMap<>();
+
+        for (int i = 0; i < flagCount; i++) {
+            flagNames.add(DICTIONARY.get(flagCodes.get(i)));
+            FLAG_INDEXES.put(flagNames.get(i), i);
+        }
+
+        FLAG_NAMES = Collections.unmodifiableList(flagNames);
+    }
+
+    /**
+     * Encode this snapshot into a self-contained record, which can be
+     * decoded with {@link #CompactSnapshot(ByteBuffer)}. Int and long data
+     * is laid out so that it can be viewed without copying. Only the
+     * strings used by this snapshot are written, with local codes, so a
+     * shared {@link StringDictionary} is not needed to decode it.
+     * @return {@link ByteBuffer} instance, positioned at 0.
+     */
+    @NotNull
+    ByteBuffer encode() {
+        int[] local = new int[DICTIONARY.size()];
+        IntList used = new IntList();
+        Arrays.fill(local, StringDictionary.NO_CODE);
+
+        for (String name : FLAG_NAMES) {
+            localCode(DICTIONARY.indexOf(name), local, used);
+        }
+
+        for (IntBuffer buffer : Arrays.asList(TAG, ATTRIBUTE_NAME, ATTRIBUTE_VALUE)) {
+            for (int i = 0, count = buffer.capacity(); i < count; i++) {
+                localCode(buffer.get(i), local, used);
+            }
+        }
+
+        int stringCount = used.size();
+        byte[][] strings = new byte[stringCount][];
+        int stringBytes = 0;
+
+        for (int i = 0; i < stringCount; i++) {
+            strings[i] = DICTIONARY.get(used.get(i)).getBytes(StandardCharsets.UTF_8);
+            stringBytes += strings[i].length;
+        }
+
+        int ints = 5
+            + FLAG_NAMES.size()
+            + SIZE * 6
+            + ATTRIBUTE_START.capacity()
+            + ATTRIBUTE_NAME.capacity() * 2
+            + stringCount;
+
+        int longs = TRUE_FLAGS.capacity() * 2 + SIZE * 2;
+        int size = align(ints * Integer.BYTES) + longs * Long.BYTES + stringBytes;
+        ByteBuffer out = ByteBuffer.allocate(size).order(ENCODED_ORDER);
+        out.putInt(SIZE);
+        out.putInt(ATTRIBUTE_NAME.capacity());
+        out.putInt(stringCount);
+        out.putInt(FLAG_NAMES.size());
+        out.putInt(FLAG_WORDS);
+
+        for (String name : FLAG_NAMES) {
+            out.putInt(local[DICTIONARY.indexOf(name)]);
+        }
+
+        for (IntBuffer buffer : Arrays.asList(
+            PARENT, FIRST_CHILD, NEXT_SIBLING, PREVIOUS_SIBLING, SUBTREE_END
+        )) {
+            for (int i = 0, count = buffer.capacity(); i < count; i++) {
+                out.putInt(buffer.get(i));
+            }
+        }
+
+        for (int i = 0; i < SIZE; i++) {
+            out.putInt(local[TAG.get(i)]);
+        }
+
+        for (int i = 0, count = ATTRIBUTE_START.capacity(); i < count; i++) {
+            out.putInt(ATTRIBUTE_START.get(i));
+        }
+
+        for (IntBuffer buffer : Arrays.asList(ATTRIBUTE_NAME, ATTRIBUTE_VALUE)) {
+            for (int i = 0, count = buffer.capacity(); i < count; i++) {
+                out.putInt(local[buffer.get(i)]);
+            }
+        }
+
+        for (byte[] bytes : strings) {
+            out.putInt(bytes.length);
+        }
+
+        out.position(align(out.position()));
+
+        for (LongBuffer buffer : Arrays.asList(
+            TRUE_FLAGS, FALSE_FLAGS, NODE_HASH, SUBTREE_HASH
+        )) {
+            for (int i = 0, count = buffer.capacity(); i < count; i++) {
+                out.putLong(buffer.get(i));
+            }
+        }
+
+        for (byte[] bytes : strings) {
+            out.put(bytes);
+        }
+
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Assign a local code to a dictionary code, if it has none yet.
+     * @param code {@link Integer} value.
+     * @param local {@link Integer} array of local codes by dictionary code.
+     * @param used {@link IntList} of dictionary codes by local code.
+     */
+    private static void localCode(int code, @NotNull int[] local, @NotNull IntList used) {
+        if (local[code] == StringDictionary.NO_CODE) {
+            local[code] = used.size();
+            used.add(code);
+        }
+    }
+
+    /**
+     * Round a byte offset up to a multiple of 8.
+     * @param offset {@link Integer} value.
+     * @return {@link Integer} value.
+     */
+    private static int align(int offset) {
+        return (offset + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    /**
+     * Take a view of ints from a buffer and advance past them.
+     * @param in {@link ByteBuffer} instance.
+     * @param count {@link Integer} value.
+     * @return {@link IntBuffer} instance.
+     */
+    @NotNull
+    private static IntBuffer ints(@NotNull ByteBuffer in, int count) {
+        ByteBuffer view = in.slice().order(ENCODED_ORDER);
+        view.limit(count * Integer.BYTES);
+        in.position(in.position() + count * Integer.BYTES);
+        return view.asIntBuffer();
+    }
+
+    /**
+     * Take a view of longs from a buffer and advance past them.
+     * @param in {@link ByteBuffer} instance.
+     * @param count {@link Integer} value.
+     * @return {@link LongBuffer} instance.
+     */
+    @NotNull
+    private static LongBuffer longs(@NotNull ByteBuffer in, int count) {
+        ByteBuffer view = in.slice().order(ENCODED_ORDER);
+        view.limit(count * Long.BYTES);
+        in.position(in.position() + count * Long.BYTES);
+        return view.asLongBuffer();
+    }
+
+    /**
+     * Read the elements of an XML stream into a {@link NodeWriter}.
+     * @param reader {@link XMLStreamReader} instance.
+     * @param nodes {@link NodeWriter} instance.
+     * @return {@link NodeWriter} instance.
+     * @throws XMLStreamException If the stream cannot be read.
+     * @see #qualifiedName(String, String)
+     */
+    @NotNull
+    private static NodeWriter read(@NotNull XMLStreamReader reader,
+                                   @NotNull NodeWriter nodes) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                nodes.startNode(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+
+                for (int i = 0, count = reader.getAttributeCount(); i < count; i++) {
+                    String name = qualifiedName(
+                        reader.getAttributePrefix(i),
+                        reader.getAttributeLocalName(i));
+
+                    nodes.attribute(name, reader.getAttributeValue(i));
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                nodes.endNode();
+            }
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Convert (flag, node) pairs into flag bitsets.
+     * @param pairs {@link IntList} instance.
+     * @return {@link Long} array.
+     * @see #FLAG_WORDS
+     */
+    @NotNull
+    private long[] flagBits(@NotNull IntList pairs) {
+        long[] bits = new long[FLAG_NAMES.size() * FLAG_WORDS];
+
+        for (int i = 0, count = pairs.size(); i < count; i += 2) {
+            int flag = pairs.get(i);
+            int node = pairs.get(i + 1);
+            bits[flag * FLAG_WORDS + (node >>> 6)] |= 1L << (node & 63);
+        }
+
+        return bits;
+    }
+
+    /**
+     * Get a qualified name from a prefix and a local name.
+     * @param prefix {@link String} value.
+     * @param localName {@link String} value.
+     * @return {@link String} value.
+     */
+    @NotNull
+    private static String qualifiedName(@Nullable String prefix, @NotNull String localName) {
+        if (prefix == null || prefix.isEmpty()) {
+            return localName;
+        } else {
+            return prefix + ":" + localName;
+        }
+    }
+
+    /**
+     * Check if the node buffers are off-heap.
+     * @return {@link Boolean} value.
+     * @see #OFF_HEAP
+     */
+    public boolean isOffHeap() {
+        return OFF_HEAP;
+    }
+
+    /**
+     * Get the names of the attributes stored as flags.
+     * @return {@link List} of {@link String}.
+     * @see #FLAG_NAMES
+     */
+    @NotNull
+    public List<String> flagNames() {
+        return FLAG_NAMES;
+    }
+
+    /**
+     * Get the index of a flag attribute.
+     * @param name {@link String} value.
+     * @return {@link Integer} value, or -1 if the attribute is not a flag.
+     * @see #FLAG_INDEXES
+     */
+    public int flagIndex(@NotNull String name) {
+        Integer flag = FLAG_INDEXES.get(name);
+        return flag != null ? flag : -1;
+    }
+
+    /**
+     * Get the flags of a node as one mask: bit flag is set if the flag is
+     * true, and bit flag + {@link #MASK_FLAGS} if it is false. Only the
+     * first {@link #MASK_FLAGS} flags are included.
+     * @param node {@link Integer} value.
+     * @return {@link Long} value.
+     * @see #flagMasks()
+     */
+    public long flagMask(int node) {
+        return flagMasks()[node];
+    }
+
+    /**
+     * Get the flag masks of all nodes, building them on first use. Each
+     * set bit of the flag bitsets is visited once.
+     * @return {@link Long} array. Do not modify.
+     * @see #flagMasks
+     */
+    @NotNull
+    private long[] flagMasks() {
+        long[] masks = flagMasks;
+
+        if (masks == null) {
+            synchronized (this) {
+                masks = flagMasks;
+
+                if (masks == null) {
+                    masks = new long[SIZE];
+
+                    for (int flag = 0, count = Math.min(FLAG_NAMES.size(), MASK_FLAGS); flag < count; flag++) {
+                        for (int word = 0; word < FLAG_WORDS; word++) {
+                            addFlagBits(masks, TRUE_FLAGS.get(flag * FLAG_WORDS + word), word, 1L << flag);
+                            addFlagBits(masks, FALSE_FLAGS.get(flag * FLAG_WORDS + word), word, 1L << (flag + MASK_FLAGS));
+                        }
+                    }
+
+                    flagMasks = masks;
+                }
+            }
+        }
+
+        return masks;
+    }
+
+    /**
+     * Set a bit in the masks of the nodes in one word of a flag bitset.
+     * @param masks {@link Long} array.
+     * @param bits {@link Long} value.
+     * @param word {@link Integer} value.
+     * @param bit {@link Long} value.
+     */
+    private static void addFlagBits(@NotNull long[] masks, long bits, int word, long bit) {
+        while (bits != 0) {
+            masks[(word << 6) + Long.numberOfTrailingZeros(bits)] |= bit;
+            bits &= bits - 1;
+        }
+    }
+
+    /**
+     * Get {@link #DICTIONARY}. Codes returned by {@link #tagCode(int)} and
+     * {@link #attributeCode(int, int)} are codes of this dictionary.
+     * @return {@link StringDictionary} instance.
+     * @see #DICTIONARY
+     */
+    @NotNull
+    public StringDictionary dictionary() {
+        return DICTIONARY;
+    }
+
+    /**
+     * Get the dictionary code of a node's tag name.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value.
+     * @see #TAG
+     */
+    public int tagCode(int node) {
+        return TAG.get(node);
+    }
+
+    /**
+     * Get the dictionary code of an attribute value. Flag attributes are
+     * not stored as values and are not found here.
+     * @param node {@link Integer} value.
+     * @param nameCode {@link Integer} value. The code of the attribute name.
+     * @return {@link Integer} value, or {@link StringDictionary#NO_CODE}.
+     * @see #ATTRIBUTE_NAME
+     * @see #ATTRIBUTE_VALUE
+     */
+    public int attributeCode(int node, int nameCode) {
+        for (int i = ATTRIBUTE_START.get(node), end = ATTRIBUTE_START.get(node + 1); i < end; i++) {
+            if (ATTRIBUTE_NAME.get(i) == nameCode) {
+                return ATTRIBUTE_VALUE.get(i);
+            }
+        }
+
+        return StringDictionary.NO_CODE;
+    }
+
+    /**
+     * Get the value of a flag attribute.
+     * @param node {@link Integer} value.
+     * @param flag {@link Integer} value. The index of the flag.
+     * @return {@link Boolean} value, or null if the attribute is absent or
+     * its value is neither true nor false.
+     * @see #FALSE_FLAGS
+     * @see #TRUE_FLAGS
+     */
+    @Nullable
+    public Boolean flag(int node, int flag) {
+        int word = flag * FLAG_WORDS + (node >>> 6);
+        long mask = 1L << (node & 63);
+
+        if ((TRUE_FLAGS.get(word) & mask) != 0) {
+            return Boolean.TRUE;
+        } else if ((FALSE_FLAGS.get(word) & mask) != 0) {
+            return Boolean.FALSE;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Estimate the memory held by this snapshot, including any off-heap
+     * buffers. The {@link StringDictionary} is not included, since it may
+     * be shared.
+     * @return {@link Long} value, in bytes.
+     */
+    public long estimatedBytes() {
+        long ints = (long)SIZE * 6
+            + ATTRIBUTE_START.capacity()
+            + ATTRIBUTE_NAME.capacity()
+            + ATTRIBUTE_VALUE.capacity();
+
+        long longs = TRUE_FLAGS.capacity()
+            + FALSE_FLAGS.capacity()
+            + NODE_HASH.capacity()
+            + SUBTREE_HASH.capacity()
+            + (flagMasks != null ? SIZE : 0);
+
+        return ints * Integer.BYTES + longs * Long.BYTES;
+    }
+
+    //region SnapshotType
+    @Override
+    public int size() {
+        return SIZE;
+    }
+
+    @Override
+    public int parent(int node) {
+        return PARENT.get(node);
+    }
+
+    @Override
+    public int firstChild(int node) {
+        return FIRST_CHILD.get(node);
+    }
+
+    @Override
+    public int nextSibling(int node) {
+        return NEXT_SIBLING.get(node);
+    }
+
+    @Override
+    public int previousSibling(int node) {
+        return PREVIOUS_SIBLING.get(node);
+    }
+
+    @Override
+    public int subtreeEnd(int node) {
+        return SUBTREE_END.get(node);
+    }
+
+    @NotNull
+    @Override
+    public String tagName(int node) {
+        return DICTIONARY.get(TAG.get(node));
+    }
+
+    @Nullable
+    @Override
+    public String attribute(int node, @NotNull String name) {
+        int flag = flagIndex(name);
+
+        if (flag >= 0) {
+            Boolean value = flag(node, flag);
+
+            if (value != null) {
+                return value.toString();
+            }
+        }
+
+        int code = DICTIONARY.indexOf(name);
+        int value = code != StringDictionary.NO_CODE ? attributeCode(node, code) : code;
+        return value != StringDictionary.NO_CODE ? DICTIONARY.get(value) : null;
+    }
+
+    @Override
+    public boolean tagEquals(int node, @NotNull String tagName) {
+        return TAG.get(node) == DICTIONARY.indexOf(tagName);
+    }
+
+    @Override
+    public boolean attributeEquals(int node, @NotNull String name, @NotNull String value) {
+        int flag = flagIndex(name);
+
+        if (flag >= 0) {
+            Boolean bit = flag(node, flag);
+
+            if (bit != null) {
+                return bit.toString().equals(value);
+            }
+        }
+
+        /* Values never seen in this session cannot be equal */
+        int nameCode = DICTIONARY.indexOf(name);
+        int valueCode = DICTIONARY.indexOf(value);
+
+        return nameCode != StringDictionary.NO_CODE
+            && valueCode != StringDictionary.NO_CODE
+            && attributeCode(node, nameCode) == valueCode;
+    }
+
+    @Override
+    public long nodeHash(int node) {
+        return NODE_HASH.get(node);
+    }
+
+    @Override
+    public long subtreeHash(int node) {
+        return SUBTREE_HASH.get(node);
+    }
+
+    @NotNull
+    @Override
+    public SnapshotIndexes indexes() {
+        SnapshotIndexes indexes = this.indexes;
+
+        if (indexes == null) {
+            synchronized (this) {
+                indexes = this.indexes;
+
+                if (indexes == null) {
+                    indexes = SnapshotIndexes.of(this);
+                    this.indexes = indexes;
+                }
+            }
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Flag attributes are not stored in document order, and come after the
+     * other attributes.
+     */
+    @NotNull
+    @Override
+    public Map<String, String> attributes(int node) {
+        Map<String, String> result = new LinkedHashMap<>();
+
+        for (int i = ATTRIBUTE_START.get(node), end = ATTRIBUTE_START.get(node + 1); i < end; i++) {
+            String name = DICTIONARY.get(ATTRIBUTE_NAME.get(i));
+            result.put(name, DICTIONARY.get(ATTRIBUTE_VALUE.get(i)));
+        }
+
+        for (int flag = 0, count = FLAG_NAMES.size(); flag < count; flag++) {
+            Boolean value = flag(node, flag);
+
+            if (value != null) {
+                result.put(FLAG_NAMES.get(flag), value.toString());
+            }
+        }
+
+        return result;
+    }
+    //endregion
+
+    /**
+     * This class collects the nodes of a {@link CompactSnapshot} in
+     * document order, so that snapshots can be built from sources other
+     * than XML, such as {@link SnapshotHistory} deltas. Nodes are opened
+     * with {@link #startNode(String)}, take attributes until their first
+     * child is opened, and are closed with {@link #endNode()}.
+     */
+    static final class NodeWriter {
+        @NotNull final List<String> FLAG_NAMES;
+        @NotNull final Map<String, Integer> FLAG_INDEXES;
+        @NotNull final StringDictionary DICTIONARY;
+        @NotNull final IntList PARENTS;
+        @NotNull final IntList TAGS;
+        @NotNull final IntList ATTRIBUTE_START;
+        @NotNull final IntList ATTRIBUTE_NAMES;
+        @NotNull final IntList ATTRIBUTE_VALUES;
+        @NotNull final IntList TRUE_FLAGS;
+        @NotNull final IntList FALSE_FLAGS;
+        @NotNull private final IntList OPEN;
+
+        NodeWriter(@NotNull List<String> flagNames, @NotNull StringDictionary dictionary) {
+            FLAG_NAMES = flagNames;
+            FLAG_INDEXES = new HashMap<>();
+            DICTIONARY = dictionary;
+            PARENTS = new IntList();
+            TAGS = new IntList();
+            ATTRIBUTE_START = new IntList();
+            ATTRIBUTE_NAMES = new IntList();
+            ATTRIBUTE_VALUES = new IntList();
+            TRUE_FLAGS = new IntList();
+            FALSE_FLAGS = new IntList();
+            OPEN = new IntList();
+
+            for (int i = 0; i < flagNames.size(); i++) {
+                FLAG_INDEXES.put(flagNames.get(i), i);
+                dictionary.code(flagNames.get(i));
+            }
+        }
+
+        /**
+         * Get the number of open nodes.
+         * @return {@link Integer} value.
+         * @see #OPEN
+         */
+        int depth() {
+            return OPEN.size();
+        }
+
+        /**
+         * Open a node as the next child of the innermost open node.
+         * @param tagName {@link String} value.
+         * @see #OPEN
+         */
+        void startNode(@NotNull String tagName) {
+            int node = TAGS.size();
+            PARENTS.add(OPEN.isEmpty() ? NO_NODE : OPEN.last());
+            TAGS.add(DICTIONARY.code(tagName));
+            ATTRIBUTE_START.add(ATTRIBUTE_NAMES.size());
+            OPEN.add(node);
+        }
+
+        /**
+         * Add an attribute to the last opened node.
+         * @param name {@link String} value.
+         * @param value {@link String} value.
+         * @see #FLAG_INDEXES
+         */
+        void attribute(@NotNull String name, @NotNull String value) {
+            int node = TAGS.size() - 1;
+            Integer flag = FLAG_INDEXES.get(name);
+
+            /* Flags are kept as (flag, node) pairs, which flagBits turns
+             * into bit node & 63 of word flag * FLAG_WORDS + node / 64 once
+             * the number of nodes is known */
+            if (flag != null && "true".equals(value)) {
+                TRUE_FLAGS.add(flag);
+                TRUE_FLAGS.add(node);
+            } else if (flag != null && "false".equals(value)) {
+                FALSE_FLAGS.add(flag);
+                FALSE_FLAGS.add(node);
+            } else {
+                ATTRIBUTE_NAMES.add(DICTIONARY.code(name));
+                ATTRIBUTE_VALUES.add(DICTIONARY.code(value));
+            }
+        }
+
+        /**
+         * Open a copy of a node of another {@link CompactSnapshot} with the
+         * same {@link StringDictionary} and flag names, copying codes
+         * instead of looking up strings.
+         * @param source {@link CompactSnapshot} instance.
+         * @param node {@link Integer} value.
+         * @see #startNode(String)
+         */
+        void copy(@NotNull CompactSnapshot source, int node) {
+            int copy = TAGS.size();
+            PARENTS.add(OPEN.isEmpty() ? NO_NODE : OPEN.last());
+            TAGS.add(source.TAG.get(node));
+            ATTRIBUTE_START.add(ATTRIBUTE_NAMES.size());
+            OPEN.add(copy);
+
+            for (int i = source.ATTRIBUTE_START.get(node), end = source.ATTRIBUTE_START.get(node + 1); i < end; i++) {
+                ATTRIBUTE_NAMES.add(source.ATTRIBUTE_NAME.get(i));
+                ATTRIBUTE_VALUES.add(source.ATTRIBUTE_VALUE.get(i));
+            }
+
+            for (int flag = 0, count = FLAG_NAMES.size(); flag < count; flag++) {
+                Boolean value = source.flag(node, flag);
+
+                if (value != null) {
+                    IntList flags = value ? TRUE_FLAGS : FALSE_FLAGS;
+                    flags.add(flag);
+                    flags.add(copy);
+                }
+            }
+        }
+
+        /**
+         * Close the innermost open node.
+         * @see #OPEN
+         */
+        void endNode() {
+            OPEN.removeLast();
+        }
+
+        /**
+         * Close all open nodes and end the attribute offsets.
+         * @see #ATTRIBUTE_START
+         */
+        void finish() {
+            OPEN.clear();
+            ATTRIBUTE_START.add(ATTRIBUTE_NAMES.size());
+        }
+    }
+}
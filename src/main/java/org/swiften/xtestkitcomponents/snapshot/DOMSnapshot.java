@@ -0,0 +1,252 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.util.IntList;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.StringReader;
+import java.util.*;
+
+/**
+ * This class is a {@link SnapshotType} backed by a W3C {@link Document}.
+ */
+public final class DOMSnapshot implements SnapshotType {
+    private static final String DEFER_NODE_EXPANSION =
+        "http://apache.org/xml/features/dom/defer-node-expansion";
+
+    /**
+     * Parse a page source into a {@link DOMSnapshot}.
+     * @param pageSource {@link String} value.
+     * @return {@link DOMSnapshot} instance.
+     * @see #of(Document)
+     */
+    @NotNull
+    public static DOMSnapshot parse(@NotNull String pageSource) {
+        return parse(new InputSource(new StringReader(pageSource)));
+    }
+
+    /**
+     * Same as above, but uses an {@link InputSource}.
+     * @param source {@link InputSource} instance.
+     * @return {@link DOMSnapshot} instance.
+     * @see #of(Document)
+     */
+    @NotNull
+    public static DOMSnapshot parse(@NotNull InputSource source) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setExpandEntityReferences(false);
+
+            try {
+                /* Deferred nodes are expanded lazily on read, which is not
+                 * safe when a snapshot is read from several threads */
+                factory.setFeature(DEFER_NODE_EXPANSION, false);
+            } catch (ParserConfigurationException e) {
+                /* Other implementations build the full tree anyway */
+            }
+
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            return of(builder.parse(source));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get a {@link DOMSnapshot} from a {@link Document}.
+     * @param document {@link Document} instance.
+     * @return {@link DOMSnapshot} instance.
+     */
+    @NotNull
+    public static DOMSnapshot of(@NotNull Document document) {
+        return new DOMSnapshot(document);
+    }
+
+    @NotNull private final Document DOCUMENT;
+    @NotNull private final Element[] ELEMENTS;
+    @NotNull private final Map<Element, Integer> IDS;
+    @NotNull private final SnapshotLinks LINKS;
+    @NotNull private final SnapshotHashes HASHES;
+    @Nullable private volatile SnapshotIndexes indexes;
+
+    private DOMSnapshot(@NotNull Document document) {
+        List<Element> elements = new ArrayList<>();
+        IntList parents = new IntList();
+        Deque<Element> pending = new ArrayDeque<>();
+        Deque<Integer> pendingParents = new ArrayDeque<>();
+        Element root = document.getDocumentElement();
+
+        if (root != null) {
+            pending.push(root);
+            pendingParents.push(NO_NODE);
+        }
+
+        /* Pre-order traversal, pushing children in reverse so that they
+         * are popped in document order */
+        while (!pending.isEmpty()) {
+            Element element = pending.pop();
+            int id = elements.size();
+            elements.add(element);
+            parents.add(pendingParents.pop());
+            List<Element> children = new ArrayList<>();
+
+            for (Node n = element.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (n instanceof Element) {
+                    children.add((Element)n);
+                }
+            }
+
+            for (int i = children.size() - 1; i >= 0; i--) {
+                pending.push(children.get(i));
+                pendingParents.push(id);
+            }
+        }
+
+        DOCUMENT = document;
+        ELEMENTS = elements.toArray(new Element[elements.size()]);
+        LINKS = new SnapshotLinks(parents.toArray());
+        IDS = new IdentityHashMap<>();
+
+        for (int i = 0; i < ELEMENTS.length; i++) {
+            IDS.put(ELEMENTS[i], i);
+        }
+
+        HASHES = new SnapshotHashes(this);
+    }
+
+    /**
+     * Get {@link #DOCUMENT}.
+     * @return {@link Document} instance.
+     * @see #DOCUMENT
+     */
+    @NotNull
+    public Document document() {
+        return DOCUMENT;
+    }
+
+    /**
+     * Get the {@link Element} of a node.
+     * @param node {@link Integer} value.
+     * @return {@link Element} instance.
+     * @see #ELEMENTS
+     */
+    @NotNull
+    public Element element(int node) {
+        return ELEMENTS[node];
+    }
+
+    /**
+     * Get the node id of an {@link Element}.
+     * @param element {@link Element} instance.
+     * @return {@link Integer} value, or {@link #NO_NODE} if the
+     * {@link Element} does not belong to {@link #DOCUMENT}.
+     * @see #IDS
+     */
+    public int indexOf(@NotNull Element element) {
+        Integer id = IDS.get(element);
+        return id != null ? id : NO_NODE;
+    }
+
+    //region SnapshotType
+    @Override
+    public int size() {
+        return ELEMENTS.length;
+    }
+
+    @Override
+    public int parent(int node) {
+        return LINKS.PARENT[node];
+    }
+
+    @Override
+    public int firstChild(int node) {
+        return LINKS.FIRST_CHILD[node];
+    }
+
+    @Override
+    public int nextSibling(int node) {
+        return LINKS.NEXT_SIBLING[node];
+    }
+
+    @Override
+    public int previousSibling(int node) {
+        return LINKS.PREVIOUS_SIBLING[node];
+    }
+
+    @Override
+    public int subtreeEnd(int node) {
+        return LINKS.SUBTREE_END[node];
+    }
+
+    @NotNull
+    @Override
+    public String tagName(int node) {
+        return ELEMENTS[node].getTagName();
+    }
+
+    @Nullable
+    @Override
+    public String attribute(int node, @NotNull String name) {
+        Element element = ELEMENTS[node];
+
+        if (element.hasAttribute(name)) {
+            return element.getAttribute(name);
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public long nodeHash(int node) {
+        return HASHES.NODE[node];
+    }
+
+    @Override
+    public long subtreeHash(int node) {
+        return HASHES.SUBTREE[node];
+    }
+
+    @NotNull
+    @Override
+    public SnapshotIndexes indexes() {
+        SnapshotIndexes indexes = this.indexes;
+
+        if (indexes == null) {
+            synchronized (this) {
+                indexes = this.indexes;
+
+                if (indexes == null) {
+                    indexes = SnapshotIndexes.of(this);
+                    this.indexes = indexes;
+                }
+            }
+        }
+
+        return indexes;
+    }
+
+    @NotNull
+    @Override
+    public Map<String, String> attributes(int node) {
+        NamedNodeMap attributes = ELEMENTS[node].getAttributes();
+        Map<String, String> result = new LinkedHashMap<>();
+
+        for (int i = 0, length = attributes.getLength(); i < length; i++) {
+            Node attribute = attributes.item(i);
+            result.put(attribute.getNodeName(), attribute.getNodeValue());
+        }
+
+        return result;
+    }
+    //endregion
+}
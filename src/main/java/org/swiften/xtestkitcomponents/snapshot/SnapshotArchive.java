@@ -0,0 +1,217 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class is an append-only file of encoded {@link CompactSnapshot}
+ * records, so that every snapshot of a test run can be kept off the Java
+ * heap and replayed later.
+ *
+ * The archive consists of two files:
+ * - The data file starts with a header, followed by 8-byte aligned
+ *   records.
+ * - The index file, at the same path with {@link #INDEX_SUFFIX} appended,
+ *   holds one (offset, length) pair of longs per record.
+ *
+ * A record is only visible once its index entry has been written, so
+ * readers in other threads or processes never see partial records.
+ * Opening a snapshot maps its record and views the node data in place;
+ * only its string table is decoded. There must be at most one writer per
+ * archive.
+ */
+public final class SnapshotArchive implements Closeable, SnapshotErrorType {
+    @NotNull static final String INDEX_SUFFIX = ".idx";
+    static final int MAGIC = 0x584B5341;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int INDEX_ENTRY_BYTES = 16;
+
+    /**
+     * Open an archive for appending and reading, creating it if needed.
+     * @param path {@link Path} of the data file.
+     * @return {@link SnapshotArchive} instance.
+     * @throws IOException If the files cannot be opened.
+     */
+    @NotNull
+    public static SnapshotArchive open(@NotNull Path path) throws IOException {
+        return new SnapshotArchive(path, true);
+    }
+
+    /**
+     * Open an existing archive for reading only.
+     * @param path {@link Path} of the data file.
+     * @return {@link SnapshotArchive} instance.
+     * @throws IOException If the files cannot be opened.
+     */
+    @NotNull
+    public static SnapshotArchive openReadOnly(@NotNull Path path) throws IOException {
+        return new SnapshotArchive(path, false);
+    }
+
+    @NotNull private final FileChannel DATA;
+    @NotNull private final FileChannel INDEX;
+    private final boolean WRITABLE;
+
+    private SnapshotArchive(@NotNull Path path, boolean writable) throws IOException {
+        Path indexPath = Paths.get(path.toString() + INDEX_SUFFIX);
+        WRITABLE = writable;
+
+        if (writable) {
+            DATA = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        } else {
+            DATA = FileChannel.open(path, StandardOpenOption.READ);
+        }
+
+        /* The index is only opened once the header is valid, so that DATA
+         * is the only channel to close if anything fails */
+        try {
+            if (writable && DATA.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(CompactSnapshot.ENCODED_ORDER);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(DATA, header, 0);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(CompactSnapshot.ENCODED_ORDER);
+            readFully(DATA, header, 0);
+
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(ARCHIVE_FORMAT);
+            }
+
+            if (writable) {
+                INDEX = FileChannel.open(indexPath,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            } else {
+                INDEX = FileChannel.open(indexPath, StandardOpenOption.READ);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                DATA.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Get the number of snapshots that are visible to readers.
+     * @return {@link Integer} value.
+     * @throws IOException If the index cannot be read.
+     */
+    public int size() throws IOException {
+        return (int)(INDEX.size() / INDEX_ENTRY_BYTES);
+    }
+
+    /**
+     * Append a snapshot.
+     * @param snapshot {@link CompactSnapshot} instance.
+     * @return {@link Integer} value. The id of the snapshot.
+     * @throws IOException If the snapshot cannot be written.
+     * @see CompactSnapshot#encode()
+     * @see #READ_ONLY_ARCHIVE
+     */
+    public synchronized int append(@NotNull CompactSnapshot snapshot) throws IOException {
+        if (!WRITABLE) {
+            throw new IOException(READ_ONLY_ARCHIVE);
+        }
+
+        int id = size();
+        ByteBuffer record = snapshot.encode();
+        long length = record.remaining();
+
+        /* Records that were written without an index entry, e.g. after a
+         * crash, are left behind and skipped */
+        long offset = (DATA.size() + Long.BYTES - 1) & -Long.BYTES;
+        writeFully(DATA, record, offset);
+        DATA.force(false);
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).order(CompactSnapshot.ENCODED_ORDER);
+        entry.putLong(offset).putLong(length).flip();
+        writeFully(INDEX, entry, (long)id * INDEX_ENTRY_BYTES);
+        INDEX.force(false);
+        return id;
+    }
+
+    /**
+     * Open a snapshot by id. The returned snapshot views the mapped file
+     * and stays valid after this archive is closed.
+     * @param id {@link Integer} value.
+     * @return {@link CompactSnapshot} instance.
+     * @throws IOException If the snapshot cannot be read.
+     * @see #NO_SUCH_SNAPSHOT
+     */
+    @NotNull
+    public CompactSnapshot read(int id) throws IOException {
+        if (id < 0 || id >= size()) {
+            throw new IOException(NO_SUCH_SNAPSHOT);
+        }
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).order(CompactSnapshot.ENCODED_ORDER);
+        readFully(INDEX, entry, (long)id * INDEX_ENTRY_BYTES);
+        long offset = entry.getLong(0);
+        long length = entry.getLong(8);
+        MappedByteBuffer record = DATA.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        return new CompactSnapshot(record);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            DATA.close();
+        } finally {
+            INDEX.close();
+        }
+    }
+
+    /**
+     * Write a whole buffer at a position.
+     * @param channel {@link FileChannel} instance.
+     * @param buffer {@link ByteBuffer} instance.
+     * @param position {@link Long} value.
+     * @throws IOException If the write fails.
+     */
+    private static void writeFully(@NotNull FileChannel channel,
+                                   @NotNull ByteBuffer buffer,
+                                   long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Fill a buffer from a position.
+     * @param channel {@link FileChannel} instance.
+     * @param buffer {@link ByteBuffer} instance.
+     * @param position {@link Long} value.
+     * @throws IOException If the read fails or reaches the end of file.
+     */
+    private static void readFully(@NotNull FileChannel channel,
+                                  @NotNull ByteBuffer buffer,
+                                  long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+
+            if (read < 0) {
+                throw new IOException(ARCHIVE_FORMAT);
+            }
+
+            position += read;
+        }
+    }
+}
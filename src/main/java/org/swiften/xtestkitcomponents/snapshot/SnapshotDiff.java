@@ -0,0 +1,480 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.util.IntList;
+
+import java.util.*;
+
+/**
+ * This class finds the changed subtrees between two {@link SnapshotType}.
+ * It walks both trees from the root and only descends into subtrees whose
+ * Merkle hashes differ, so the work done is proportional to the size of
+ * the change (and the number of children around it), not of the snapshots.
+ *
+ * Unchanged subtrees, including those that moved among their siblings, are
+ * recorded as id mappings between the two snapshots.
+ */
+public final class SnapshotDiff {
+    /**
+     * Diff two {@link SnapshotType}.
+     * @param before {@link SnapshotType} instance.
+     * @param after {@link SnapshotType} instance.
+     * @return {@link SnapshotDiff} instance.
+     */
+    @NotNull
+    public static SnapshotDiff between(@NotNull SnapshotType before,
+                                       @NotNull SnapshotType after) {
+        return new SnapshotDiff(before, after);
+    }
+
+    @NotNull private final SnapshotType BEFORE;
+    @NotNull private final SnapshotType AFTER;
+    @NotNull private final List<Change> CHANGES;
+
+    /**
+     * Mapped ranges, as [before start, after start, length] triples sorted
+     * by before start in {@link #BY_BEFORE} and by after start in
+     * {@link #BY_AFTER}.
+     */
+    @NotNull private final int[] BY_BEFORE;
+    @NotNull private final int[] BY_AFTER;
+    private int comparisons;
+
+    private SnapshotDiff(@NotNull SnapshotType before, @NotNull SnapshotType after) {
+        BEFORE = before;
+        AFTER = after;
+        CHANGES = new ArrayList<>();
+        IntList ranges = new IntList();
+
+        if (before.size() > 0 && after.size() > 0) {
+            diffSubtree(0, 0, ranges);
+        } else if (before.size() > 0) {
+            CHANGES.add(new Change(Kind.REMOVED, 0, SnapshotType.NO_NODE));
+        } else if (after.size() > 0) {
+            CHANGES.add(new Change(Kind.INSERTED, SnapshotType.NO_NODE, 0));
+        }
+
+        BY_BEFORE = sortRanges(ranges.toArray(), 0);
+        BY_AFTER = sortRanges(ranges.toArray(), 1);
+    }
+
+    /**
+     * Get {@link #BEFORE}.
+     * @return {@link SnapshotType} instance.
+     * @see #BEFORE
+     */
+    @NotNull
+    public SnapshotType before() {
+        return BEFORE;
+    }
+
+    /**
+     * Get {@link #AFTER}.
+     * @return {@link SnapshotType} instance.
+     * @see #AFTER
+     */
+    @NotNull
+    public SnapshotType after() {
+        return AFTER;
+    }
+
+    /**
+     * Check if the two snapshots are the same.
+     * @return {@link Boolean} value.
+     * @see #CHANGES
+     */
+    public boolean isUnchanged() {
+        return CHANGES.isEmpty();
+    }
+
+    /**
+     * Get the changes, with parents before children.
+     * @return {@link List} of {@link Change}.
+     * @see #CHANGES
+     */
+    @NotNull
+    public List<Change> changes() {
+        return Collections.unmodifiableList(CHANGES);
+    }
+
+    /**
+     * Get the number of node pairs that were compared. This is a measure of
+     * the work done by the diff.
+     * @return {@link Integer} value.
+     * @see #comparisons
+     */
+    public int comparisons() {
+        return comparisons;
+    }
+
+    /**
+     * Get the node in {@link #AFTER} that corresponds to a node in
+     * {@link #BEFORE}.
+     * @param beforeNode {@link Integer} value.
+     * @return {@link Integer} value, or {@link SnapshotType#NO_NODE} if the
+     * node was removed or replaced.
+     * @see #map(int[], int, int)
+     */
+    public int afterNode(int beforeNode) {
+        return map(BY_BEFORE, 0, beforeNode);
+    }
+
+    /**
+     * Get the node in {@link #BEFORE} that corresponds to a node in
+     * {@link #AFTER}.
+     * @param afterNode {@link Integer} value.
+     * @return {@link Integer} value, or {@link SnapshotType#NO_NODE} if the
+     * node was inserted or replaced.
+     * @see #map(int[], int, int)
+     */
+    public int beforeNode(int afterNode) {
+        return map(BY_AFTER, 1, afterNode);
+    }
+
+    /**
+     * Get the [before start, after start, length] triples of mapped ranges,
+     * sorted by before start. Nodes within a range keep their offsets.
+     * @return {@link Integer} array.
+     * @see #BY_BEFORE
+     */
+    @NotNull
+    public int[] mappedRanges() {
+        return BY_BEFORE.clone();
+    }
+
+    /**
+     * Map sorted nodes in {@link #BEFORE} to nodes in {@link #AFTER},
+     * dropping those that have no counterpart.
+     * @param beforeNodes {@link Integer} array, sorted.
+     * @return {@link Integer} array, sorted.
+     * @see #BY_BEFORE
+     */
+    @NotNull
+    public int[] afterNodes(@NotNull int[] beforeNodes) {
+        int[] ranges = BY_BEFORE;
+        int[] result = new int[beforeNodes.length];
+        boolean sorted = true;
+        int count = 0, range = 0;
+
+        /* Both the nodes and the ranges are sorted, so a single pass over
+         * each is enough */
+        for (int node : beforeNodes) {
+            while (range < ranges.length && node >= ranges[range] + ranges[range + 2]) {
+                range += 3;
+            }
+
+            if (range < ranges.length && node >= ranges[range]) {
+                int mapped = ranges[range + 1] + node - ranges[range];
+                sorted &= count == 0 || mapped > result[count - 1];
+                result[count++] = mapped;
+            }
+        }
+
+        result = Arrays.copyOf(result, count);
+
+        /* Moved subtrees may break the order */
+        if (!sorted) {
+            Arrays.sort(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the nodes in {@link #AFTER} whose content may differ from
+     * {@link #BEFORE}: modified nodes and nodes of inserted subtrees.
+     * @return {@link Integer} array, sorted.
+     * @see #CHANGES
+     */
+    @NotNull
+    public int[] changedAfterNodes() {
+        IntList nodes = new IntList();
+
+        for (Change change : CHANGES) {
+            int node = change.afterNode();
+
+            if (change.kind() == Kind.MODIFIED) {
+                nodes.add(node);
+            } else if (change.kind() == Kind.INSERTED) {
+                for (int end = AFTER.subtreeEnd(node); node < end; node++) {
+                    nodes.add(node);
+                }
+            }
+        }
+
+        return nodes.toSortedSet();
+    }
+
+    /**
+     * Look up a node in sorted ranges.
+     * @param ranges {@link Integer} array of triples.
+     * @param side {@link Integer} value. 0 for before, 1 for after.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value.
+     */
+    private int map(@NotNull int[] ranges, int side, int node) {
+        int low = 0, high = ranges.length / 3 - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int start = ranges[middle * 3 + side];
+
+            if (node < start) {
+                high = middle - 1;
+            } else if (node >= start + ranges[middle * 3 + 2]) {
+                low = middle + 1;
+            } else {
+                int other = ranges[middle * 3 + 1 - side];
+                return other + node - start;
+            }
+        }
+
+        return SnapshotType.NO_NODE;
+    }
+
+    /**
+     * Sort range triples by one side.
+     * @param ranges {@link Integer} array of triples.
+     * @param side {@link Integer} value.
+     * @return {@link Integer} array.
+     */
+    @NotNull
+    private static int[] sortRanges(@NotNull int[] ranges, int side) {
+        int count = ranges.length / 3;
+        Integer[] order = new Integer[count];
+
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, Comparator.comparingInt(i -> ranges[i * 3 + side]));
+        int[] sorted = new int[ranges.length];
+
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(ranges, order[i] * 3, sorted, i * 3, 3);
+        }
+
+        return sorted;
+    }
+
+    /**
+     * Diff two subtrees whose roots are being matched.
+     * @param before {@link Integer} value.
+     * @param after {@link Integer} value.
+     * @param ranges {@link IntList} of mapped range triples.
+     * @see #diffChildren(int, int, IntList)
+     */
+    private void diffSubtree(int before, int after, @NotNull IntList ranges) {
+        comparisons++;
+
+        if (BEFORE.subtreeHash(before) == AFTER.subtreeHash(after)) {
+            addRange(before, after, BEFORE.subtreeEnd(before) - before, ranges);
+        } else if (!BEFORE.tagName(before).equals(AFTER.tagName(after))) {
+            CHANGES.add(new Change(Kind.REMOVED, before, after));
+            CHANGES.add(new Change(Kind.INSERTED, before, after));
+        } else {
+            if (BEFORE.nodeHash(before) != AFTER.nodeHash(after)) {
+                CHANGES.add(new Change(Kind.MODIFIED, before, after));
+            }
+
+            addRange(before, after, 1, ranges);
+            diffChildren(before, after, ranges);
+        }
+    }
+
+    /**
+     * Diff the children of two matched nodes. Common leading and trailing
+     * children are skipped, moved children are found by subtree hash, and
+     * the rest are paired by tag name in order.
+     * @param before {@link Integer} value.
+     * @param after {@link Integer} value.
+     * @param ranges {@link IntList} of mapped range triples.
+     * @see #diffSubtree(int, int, IntList)
+     */
+    private void diffChildren(int before, int after, @NotNull IntList ranges) {
+        int[] a = children(BEFORE, before);
+        int[] b = children(AFTER, after);
+        int start = 0, endA = a.length, endB = b.length;
+
+        while (start < endA && start < endB && sameSubtree(a[start], b[start])) {
+            addRange(a[start], b[start], BEFORE.subtreeEnd(a[start]) - a[start], ranges);
+            start++;
+        }
+
+        while (endA > start && endB > start && sameSubtree(a[endA - 1], b[endB - 1])) {
+            endA--;
+            endB--;
+            addRange(a[endA], b[endB], BEFORE.subtreeEnd(a[endA]) - a[endA], ranges);
+        }
+
+        Map<Long, Deque<Integer>> moved = new HashMap<>();
+        boolean[] used = new boolean[b.length];
+
+        for (int j = start; j < endB; j++) {
+            moved.computeIfAbsent(AFTER.subtreeHash(b[j]), k -> new ArrayDeque<>()).add(j);
+        }
+
+        IntList unmatched = new IntList();
+
+        for (int i = start; i < endA; i++) {
+            Deque<Integer> candidates = moved.get(BEFORE.subtreeHash(a[i]));
+            comparisons++;
+
+            if (candidates != null && !candidates.isEmpty()) {
+                int j = candidates.poll();
+                used[j] = true;
+                addRange(a[i], b[j], BEFORE.subtreeEnd(a[i]) - a[i], ranges);
+            } else {
+                unmatched.add(a[i]);
+            }
+        }
+
+        int j = start;
+
+        for (int i = 0, count = unmatched.size(); i < count; i++) {
+            int child = unmatched.get(i);
+            String tag = BEFORE.tagName(child);
+            int match = j;
+
+            while (match < endB && (used[match] || !AFTER.tagName(b[match]).equals(tag))) {
+                match++;
+            }
+
+            if (match < endB) {
+                for (; j < match; j++) {
+                    if (!used[j]) {
+                        used[j] = true;
+                        CHANGES.add(new Change(Kind.INSERTED, SnapshotType.NO_NODE, b[j]));
+                    }
+                }
+
+                used[match] = true;
+                diffSubtree(child, b[match], ranges);
+                j = match + 1;
+            } else {
+                CHANGES.add(new Change(Kind.REMOVED, child, SnapshotType.NO_NODE));
+            }
+        }
+
+        for (; j < endB; j++) {
+            if (!used[j]) {
+                CHANGES.add(new Change(Kind.INSERTED, SnapshotType.NO_NODE, b[j]));
+            }
+        }
+    }
+
+    /**
+     * Check if two children have the same subtree.
+     * @param before {@link Integer} value.
+     * @param after {@link Integer} value.
+     * @return {@link Boolean} value.
+     */
+    private boolean sameSubtree(int before, int after) {
+        comparisons++;
+        return BEFORE.subtreeHash(before) == AFTER.subtreeHash(after);
+    }
+
+    /**
+     * Record a mapped range.
+     * @param before {@link Integer} value.
+     * @param after {@link Integer} value.
+     * @param length {@link Integer} value.
+     * @param ranges {@link IntList} instance.
+     */
+    private static void addRange(int before, int after, int length, @NotNull IntList ranges) {
+        ranges.add(before);
+        ranges.add(after);
+        ranges.add(length);
+    }
+
+    /**
+     * Get the children of a node.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} array.
+     */
+    @NotNull
+    private static int[] children(@NotNull SnapshotType snapshot, int node) {
+        IntList children = new IntList();
+
+        for (int child = snapshot.firstChild(node);
+             child != SnapshotType.NO_NODE;
+             child = snapshot.nextSibling(child)) {
+            children.add(child);
+        }
+
+        return children.toArray();
+    }
+
+    /**
+     * Represents the kind of a {@link Change}.
+     */
+    public enum Kind {
+        /**
+         * The attributes of a node changed. Its children are diffed
+         * separately.
+         */
+        MODIFIED,
+
+        /**
+         * A subtree only exists in the after snapshot.
+         */
+        INSERTED,
+
+        /**
+         * A subtree only exists in the before snapshot.
+         */
+        REMOVED
+    }
+
+    /**
+     * Represents a changed subtree.
+     */
+    public static final class Change {
+        @NotNull private final Kind KIND;
+        private final int BEFORE_NODE;
+        private final int AFTER_NODE;
+
+        Change(@NotNull Kind kind, int beforeNode, int afterNode) {
+            KIND = kind;
+            BEFORE_NODE = kind == Kind.INSERTED ? SnapshotType.NO_NODE : beforeNode;
+            AFTER_NODE = kind == Kind.REMOVED ? SnapshotType.NO_NODE : afterNode;
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return String.format("%s(%d -> %d)", KIND, BEFORE_NODE, AFTER_NODE);
+        }
+
+        /**
+         * Get {@link #KIND}.
+         * @return {@link Kind} instance.
+         * @see #KIND
+         */
+        @NotNull
+        public Kind kind() {
+            return KIND;
+        }
+
+        /**
+         * Get {@link #BEFORE_NODE}.
+         * @return {@link Integer} value, or {@link SnapshotType#NO_NODE} for
+         * {@link Kind#INSERTED}.
+         * @see #BEFORE_NODE
+         */
+        public int beforeNode() {
+            return BEFORE_NODE;
+        }
+
+        /**
+         * Get {@link #AFTER_NODE}.
+         * @return {@link Integer} value, or {@link SnapshotType#NO_NODE} for
+         * {@link Kind#REMOVED}.
+         * @see #AFTER_NODE
+         */
+        public int afterNode() {
+            return AFTER_NODE;
+        }
+    }
+}
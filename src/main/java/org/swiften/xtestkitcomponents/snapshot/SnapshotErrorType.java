@@ -0,0 +1,12 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+/**
+ * This interface provides error messages for snapshots.
+ */
+public interface SnapshotErrorType {
+    String DIFF_TARGET_MISMATCH = "The diff does not lead to this snapshot";
+    String ARCHIVE_FORMAT = "The file is not a snapshot archive";
+    String READ_ONLY_ARCHIVE = "The archive was opened for reading only";
+    String NO_SUCH_SNAPSHOT = "The archive has no snapshot with this id";
+    String NO_SUCH_HISTORY_ENTRY = "The history has no snapshot with this id";
+}
@@ -0,0 +1,84 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class computes 64-bit Merkle hashes for the nodes of a
+ * {@link SnapshotType}. The node hash covers the tag name and attributes
+ * of a node (in name order, so storage order does not matter), and the
+ * subtree hash also covers the subtree hashes of its children, in order.
+ *
+ * Two subtrees with equal subtree hashes are treated as identical; with
+ * 64-bit hashes, collisions are unlikely enough to be ignored.
+ */
+final class SnapshotHashes {
+    /**
+     * Hash a {@link String} with 64-bit FNV-1a.
+     * @param value {@link String} value.
+     * @return {@link Long} value.
+     */
+    static long hash(@NotNull String value) {
+        long hash = 0xCBF29CE484222325L;
+
+        for (int i = 0, length = value.length(); i < length; i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Mix a value into a hash, using the MurmurHash3 finalizer.
+     * @param hash {@link Long} value.
+     * @param value {@link Long} value.
+     * @return {@link Long} value.
+     */
+    static long mix(long hash, long value) {
+        long h = hash * 31 + value;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @NotNull final long[] NODE;
+    @NotNull final long[] SUBTREE;
+
+    SnapshotHashes(@NotNull SnapshotType snapshot) {
+        int size = snapshot.size();
+        NODE = new long[size];
+        SUBTREE = new long[size];
+
+        for (int node = 0; node < size; node++) {
+            long hash = hash(snapshot.tagName(node));
+            Map<String, String> attributes = new TreeMap<>(snapshot.attributes(node));
+
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                hash = mix(hash, hash(entry.getKey()));
+                hash = mix(hash, hash(entry.getValue()));
+            }
+
+            NODE[node] = hash;
+        }
+
+        /* Children always come after their parents, so a reverse pass sees
+         * every child before its parent */
+        for (int node = size - 1; node >= 0; node--) {
+            long hash = NODE[node];
+
+            for (int child = snapshot.firstChild(node);
+                 child != SnapshotType.NO_NODE;
+                 child = snapshot.nextSibling(child)) {
+                hash = mix(hash, SUBTREE[child]);
+            }
+
+            SUBTREE[node] = mix(hash, snapshot.subtreeEnd(node) - node);
+        }
+    }
+}
@@ -0,0 +1,603 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.util.IntList;
+
+import java.util.*;
+
+/**
+ * This class keeps a sequence of {@link CompactSnapshot}, such as those
+ * taken while polling for a condition, as keyframes and deltas. A delta
+ * is computed with {@link SnapshotDiff} against the previous snapshot and
+ * holds:
+ * - Runs of unchanged nodes, as ranges of the previous snapshot.
+ * - Attribute edits of modified nodes.
+ * - Inserted nodes in full.
+ *
+ * A keyframe is stored every {@link #keyframeInterval} snapshots, when
+ * the flag names change, and when a delta would not be much smaller than
+ * the snapshot itself. A snapshot is reconstructed by replaying deltas
+ * from the closest keyframe, or from the last reconstructed snapshot if
+ * that is closer, so sequential reads apply one delta each.
+ */
+public final class SnapshotHistory implements SnapshotErrorType {
+    /**
+     * Default {@link #keyframeInterval}.
+     */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 32;
+
+    /**
+     * Default {@link #maxDeltaRatio}.
+     */
+    public static final double DEFAULT_MAX_DELTA_RATIO = 0.5;
+
+    /**
+     * Get {@link Builder} instance.
+     * @return {@link Builder} instance.
+     */
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @NotNull private final List<CompactSnapshot> KEYFRAMES;
+    @NotNull private final List<Delta> DELTAS;
+
+    /**
+     * For each snapshot, its index in {@link #KEYFRAMES} if it is a
+     * keyframe, or -1 - its index in {@link #DELTAS}.
+     */
+    @NotNull private final IntList FRAMES;
+    private int keyframeInterval;
+    private double maxDeltaRatio;
+    private long rawBytes;
+    private long deltaBytes;
+    private int sinceKeyframe;
+    @Nullable private CompactSnapshot last;
+    @Nullable private CompactSnapshot cached;
+    private int cachedId;
+
+    SnapshotHistory() {
+        KEYFRAMES = new ArrayList<>();
+        DELTAS = new ArrayList<>();
+        FRAMES = new IntList();
+        keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+        maxDeltaRatio = DEFAULT_MAX_DELTA_RATIO;
+        cachedId = -1;
+    }
+
+    /**
+     * Get the number of snapshots.
+     * @return {@link Integer} value.
+     * @see #FRAMES
+     */
+    public synchronized int size() {
+        return FRAMES.size();
+    }
+
+    /**
+     * Get the number of keyframes.
+     * @return {@link Integer} value.
+     * @see #KEYFRAMES
+     */
+    public synchronized int keyframeCount() {
+        return KEYFRAMES.size();
+    }
+
+    /**
+     * Check if a snapshot is stored as a keyframe.
+     * @param id {@link Integer} value.
+     * @return {@link Boolean} value.
+     * @see #FRAMES
+     */
+    public synchronized boolean isKeyframe(int id) {
+        return FRAMES.get(id) >= 0;
+    }
+
+    /**
+     * Get the memory that the appended snapshots would take if each were
+     * kept in full.
+     * @return {@link Long} value, in bytes.
+     * @see CompactSnapshot#estimatedBytes()
+     */
+    public synchronized long rawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * Get the memory taken by keyframes and deltas.
+     * @return {@link Long} value, in bytes.
+     * @see CompactSnapshot#estimatedBytes()
+     * @see Delta#estimatedBytes()
+     */
+    public synchronized long storedBytes() {
+        long bytes = deltaBytes;
+
+        for (CompactSnapshot keyframe : KEYFRAMES) {
+            bytes += keyframe.estimatedBytes();
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Get the ratio of {@link #rawBytes()} to {@link #storedBytes()}.
+     * @return {@link Double} value, 1 if the history is empty.
+     */
+    public synchronized double compressionRatio() {
+        long stored = storedBytes();
+        return stored == 0 ? 1 : (double)rawBytes / stored;
+    }
+
+    /**
+     * Append a snapshot, as a keyframe or as a delta against the previous
+     * snapshot.
+     * @param snapshot {@link CompactSnapshot} instance.
+     * @return {@link Integer} value, the id of the snapshot.
+     * @see Delta#of(SnapshotDiff)
+     * @see #keyframeInterval
+     * @see #maxDeltaRatio
+     */
+    public synchronized int append(@NotNull CompactSnapshot snapshot) {
+        CompactSnapshot last = this.last;
+        long bytes = snapshot.estimatedBytes();
+        Delta delta = null;
+
+        if (last != null
+            && sinceKeyframe + 1 < keyframeInterval
+            && last.flagNames().equals(snapshot.flagNames())) {
+            delta = Delta.of(SnapshotDiff.between(last, snapshot));
+
+            if (delta.estimatedBytes() > bytes * maxDeltaRatio) {
+                delta = null;
+            }
+        }
+
+        if (delta != null) {
+            FRAMES.add(-1 - DELTAS.size());
+            DELTAS.add(delta);
+            deltaBytes += delta.estimatedBytes();
+            sinceKeyframe++;
+        } else {
+            FRAMES.add(KEYFRAMES.size());
+            KEYFRAMES.add(snapshot);
+            sinceKeyframe = 0;
+        }
+
+        rawBytes += bytes;
+        this.last = snapshot;
+        return FRAMES.size() - 1;
+    }
+
+    /**
+     * Reconstruct a snapshot. Its nodes, attributes and hashes are the
+     * same as those of the appended snapshot.
+     * @param id {@link Integer} value.
+     * @return {@link CompactSnapshot} instance.
+     * @see Delta#apply(CompactSnapshot)
+     * @see #NO_SUCH_HISTORY_ENTRY
+     */
+    @NotNull
+    public synchronized CompactSnapshot get(int id) {
+        if (id < 0 || id >= FRAMES.size()) {
+            throw new RuntimeException(NO_SUCH_HISTORY_ENTRY);
+        }
+
+        if (id == cachedId && cached != null) {
+            return cached;
+        }
+
+        int start = id;
+
+        while (FRAMES.get(start) < 0 && start != cachedId) {
+            start--;
+        }
+
+        CompactSnapshot snapshot = start == cachedId && cached != null
+            ? cached
+            : KEYFRAMES.get(FRAMES.get(start));
+
+        for (int frame = start + 1; frame <= id; frame++) {
+            snapshot = DELTAS.get(-1 - FRAMES.get(frame)).apply(snapshot);
+        }
+
+        cached = snapshot;
+        cachedId = id;
+        return snapshot;
+    }
+
+    /**
+     * Builder class for {@link SnapshotHistory}.
+     */
+    public static final class Builder {
+        @NotNull private final SnapshotHistory HISTORY;
+
+        Builder() {
+            HISTORY = new SnapshotHistory();
+        }
+
+        /**
+         * Set the {@link #keyframeInterval} value.
+         * @param interval {@link Integer} value, at least 1. At 1, every
+         *                 snapshot is a keyframe.
+         * @return {@link Builder} instance.
+         * @see #keyframeInterval
+         */
+        @NotNull
+        public Builder withKeyframeInterval(int interval) {
+            HISTORY.keyframeInterval = Math.max(1, interval);
+            return this;
+        }
+
+        /**
+         * Set the {@link #maxDeltaRatio} value. A delta whose size exceeds
+         * this fraction of its snapshot's is stored as a keyframe instead.
+         * @param ratio {@link Double} value.
+         * @return {@link Builder} instance.
+         * @see #maxDeltaRatio
+         */
+        @NotNull
+        public Builder withMaxDeltaRatio(double ratio) {
+            HISTORY.maxDeltaRatio = ratio;
+            return this;
+        }
+
+        /**
+         * Get {@link #HISTORY}.
+         * @return {@link SnapshotHistory} instance.
+         * @see #HISTORY
+         */
+        @NotNull
+        public SnapshotHistory build() {
+            return HISTORY;
+        }
+    }
+
+    /**
+     * This class holds the changes from one snapshot to the next, as a
+     * sequence of operations that write the next snapshot in document
+     * order. Strings are stored once per delta in {@link #STRINGS}, and
+     * operations refer to them by index.
+     */
+    static final class Delta {
+        /**
+         * [COPY, start, length, depth shift]: copy a run of nodes of the
+         * previous snapshot, whose depths change by the shift.
+         */
+        static final int COPY = 0;
+
+        /**
+         * [EDIT, node, depth, set count, (name, value) * set count,
+         * removed count, name * removed count]: copy a node of the
+         * previous snapshot with attribute edits.
+         */
+        static final int EDIT = 1;
+
+        /**
+         * [INSERT, depth, tag, count, (name, value) * count]: write a new
+         * node.
+         */
+        static final int INSERT = 2;
+
+        /**
+         * Compute a {@link Delta} from a {@link SnapshotDiff}. Mapped
+         * ranges are visited in after order, and the gaps between them
+         * are the inserted nodes, so only the changed parts of the after
+         * snapshot are read.
+         * @param diff {@link SnapshotDiff} instance.
+         * @return {@link Delta} instance.
+         * @see SnapshotDiff#mappedRanges()
+         */
+        @NotNull
+        static Delta of(@NotNull SnapshotDiff diff) {
+            SnapshotType before = diff.before();
+            SnapshotType after = diff.after();
+            Set<Integer> modified = new HashSet<>();
+
+            for (SnapshotDiff.Change change : diff.changes()) {
+                if (change.kind() == SnapshotDiff.Kind.MODIFIED) {
+                    modified.add(change.afterNode());
+                }
+            }
+
+            int[] ranges = diff.mappedRanges();
+            Integer[] order = new Integer[ranges.length / 3];
+
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i * 3;
+            }
+
+            Arrays.sort(order, Comparator.comparingInt(i -> ranges[i + 1]));
+            Delta delta = new Delta();
+            int next = 0;
+
+            for (int i : order) {
+                int start = ranges[i], afterStart = ranges[i + 1], length = ranges[i + 2];
+
+                for (; next < afterStart; next++) {
+                    delta.insert(after, next);
+                }
+
+                if (modified.contains(afterStart)) {
+                    delta.edit(before, after, start, afterStart);
+                } else {
+                    delta.copy(start, length, depth(after, afterStart) - depth(before, start));
+                }
+
+                next = afterStart + length;
+            }
+
+            for (int size = after.size(); next < size; next++) {
+                delta.insert(after, next);
+            }
+
+            return delta;
+        }
+
+        /**
+         * Get the depth of a node, 0 for the root.
+         * @param snapshot {@link SnapshotType} instance.
+         * @param node {@link Integer} value.
+         * @return {@link Integer} value.
+         */
+        static int depth(@NotNull SnapshotType snapshot, int node) {
+            int depth = 0;
+
+            for (int parent = snapshot.parent(node);
+                 parent != SnapshotType.NO_NODE;
+                 parent = snapshot.parent(parent)) {
+                depth++;
+            }
+
+            return depth;
+        }
+
+        @NotNull private final IntList OPS;
+        @NotNull private final List<String> STRINGS;
+        @NotNull private final Map<String, Integer> STRING_INDEXES;
+        private int lastCopy;
+
+        private Delta() {
+            OPS = new IntList();
+            STRINGS = new ArrayList<>();
+            STRING_INDEXES = new HashMap<>();
+            lastCopy = -1;
+        }
+
+        /**
+         * Estimate the memory held by this delta.
+         * @return {@link Long} value, in bytes.
+         */
+        long estimatedBytes() {
+            long bytes = (long)OPS.size() * Integer.BYTES;
+
+            for (String string : STRINGS) {
+                bytes += 16 + string.length() * 2;
+            }
+
+            return bytes;
+        }
+
+        /**
+         * Get the number of operations of a kind.
+         * @param kind {@link Integer} value.
+         * @return {@link Integer} value.
+         * @see #COPY
+         * @see #EDIT
+         * @see #INSERT
+         */
+        int count(int kind) {
+            int count = 0;
+
+            for (int i = 0, size = OPS.size(); i < size; i = skip(i)) {
+                if (OPS.get(i) == kind) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+
+        /**
+         * Rebuild the next snapshot from the previous one. Copied nodes
+         * are written by code, since both share a {@link StringDictionary}.
+         * @param previous {@link CompactSnapshot} instance.
+         * @return {@link CompactSnapshot} instance.
+         * @see CompactSnapshot.NodeWriter
+         */
+        @NotNull
+        CompactSnapshot apply(@NotNull CompactSnapshot previous) {
+            CompactSnapshot.NodeWriter nodes = new CompactSnapshot.NodeWriter(
+                previous.flagNames(), previous.dictionary());
+
+            int[] depths = new int[previous.size()];
+
+            for (int node = 1; node < depths.length; node++) {
+                depths[node] = depths[previous.parent(node)] + 1;
+            }
+
+            for (int i = 0, size = OPS.size(); i < size; i = skip(i)) {
+                switch (OPS.get(i)) {
+                    case COPY:
+                        int shift = OPS.get(i + 3);
+
+                        for (int node = OPS.get(i + 1), end = node + OPS.get(i + 2); node < end; node++) {
+                            close(nodes, depths[node] + shift);
+                            nodes.copy(previous, node);
+                        }
+
+                        break;
+
+                    case EDIT:
+                        int node = OPS.get(i + 1);
+                        Map<String, String> attributes = previous.attributes(node);
+                        int j = i + 4;
+
+                        for (int k = 0, count = OPS.get(i + 3); k < count; k++, j += 2) {
+                            attributes.put(STRINGS.get(OPS.get(j)), STRINGS.get(OPS.get(j + 1)));
+                        }
+
+                        for (int k = 0, count = OPS.get(j++); k < count; k++) {
+                            attributes.remove(STRINGS.get(OPS.get(j++)));
+                        }
+
+                        close(nodes, OPS.get(i + 2));
+                        nodes.startNode(previous.tagName(node));
+
+                        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                            nodes.attribute(entry.getKey(), entry.getValue());
+                        }
+
+                        break;
+
+                    case INSERT:
+                    default:
+                        close(nodes, OPS.get(i + 1));
+                        nodes.startNode(STRINGS.get(OPS.get(i + 2)));
+
+                        for (int k = 0, count = OPS.get(i + 3); k < count; k++) {
+                            int name = OPS.get(i + 4 + k * 2);
+                            nodes.attribute(STRINGS.get(name), STRINGS.get(OPS.get(i + 5 + k * 2)));
+                        }
+
+                        break;
+                }
+            }
+
+            return new CompactSnapshot(nodes, false);
+        }
+
+        /**
+         * Close open nodes until a node at some depth can be opened.
+         * @param nodes {@link CompactSnapshot.NodeWriter} instance.
+         * @param depth {@link Integer} value.
+         */
+        private static void close(@NotNull CompactSnapshot.NodeWriter nodes, int depth) {
+            while (nodes.depth() > depth) {
+                nodes.endNode();
+            }
+        }
+
+        /**
+         * Get the index of the operation after the one at an index.
+         * @param i {@link Integer} value.
+         * @return {@link Integer} value.
+         */
+        private int skip(int i) {
+            switch (OPS.get(i)) {
+                case COPY:
+                    return i + 4;
+
+                case EDIT:
+                    int removed = i + 4 + OPS.get(i + 3) * 2;
+                    return removed + 1 + OPS.get(removed);
+
+                case INSERT:
+                default:
+                    return i + 4 + OPS.get(i + 3) * 2;
+            }
+        }
+
+        /**
+         * Add a {@link #COPY}, extending the last one if it ends where
+         * this one starts with the same depth shift.
+         * @param start {@link Integer} value.
+         * @param length {@link Integer} value.
+         * @param shift {@link Integer} value.
+         * @see #lastCopy
+         */
+        private void copy(int start, int length, int shift) {
+            int last = lastCopy;
+
+            if (last >= 0
+                && last == OPS.size() - 4
+                && OPS.get(last + 1) + OPS.get(last + 2) == start
+                && OPS.get(last + 3) == shift) {
+                OPS.set(last + 2, OPS.get(last + 2) + length);
+                return;
+            }
+
+            lastCopy = OPS.size();
+            OPS.add(COPY);
+            OPS.add(start);
+            OPS.add(length);
+            OPS.add(shift);
+        }
+
+        /**
+         * Add an {@link #EDIT} for a modified node.
+         * @param before {@link SnapshotType} instance.
+         * @param after {@link SnapshotType} instance.
+         * @param beforeNode {@link Integer} value.
+         * @param afterNode {@link Integer} value.
+         */
+        private void edit(@NotNull SnapshotType before,
+                          @NotNull SnapshotType after,
+                          int beforeNode,
+                          int afterNode) {
+            Map<String, String> previous = before.attributes(beforeNode);
+            Map<String, String> next = after.attributes(afterNode);
+            IntList sets = new IntList();
+            IntList removed = new IntList();
+
+            for (Map.Entry<String, String> entry : next.entrySet()) {
+                if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                    sets.add(string(entry.getKey()));
+                    sets.add(string(entry.getValue()));
+                }
+            }
+
+            for (String name : previous.keySet()) {
+                if (!next.containsKey(name)) {
+                    removed.add(string(name));
+                }
+            }
+
+            OPS.add(EDIT);
+            OPS.add(beforeNode);
+            OPS.add(depth(after, afterNode));
+            OPS.add(sets.size() / 2);
+            OPS.addAll(sets.toArray());
+            OPS.add(removed.size());
+            OPS.addAll(removed.toArray());
+        }
+
+        /**
+         * Add an {@link #INSERT} for a node of the after snapshot.
+         * @param after {@link SnapshotType} instance.
+         * @param node {@link Integer} value.
+         */
+        private void insert(@NotNull SnapshotType after, int node) {
+            Map<String, String> attributes = after.attributes(node);
+            OPS.add(INSERT);
+            OPS.add(depth(after, node));
+            OPS.add(string(after.tagName(node)));
+            OPS.add(attributes.size());
+
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                OPS.add(string(entry.getKey()));
+                OPS.add(string(entry.getValue()));
+            }
+        }
+
+        /**
+         * Get the index of a string in {@link #STRINGS}, adding it if
+         * necessary.
+         * @param value {@link String} value.
+         * @return {@link Integer} value.
+         * @see #STRING_INDEXES
+         */
+        private int string(@NotNull String value) {
+            Integer index = STRING_INDEXES.get(value);
+
+            if (index == null) {
+                index = STRINGS.size();
+                STRINGS.add(value);
+                STRING_INDEXES.put(value, index);
+            }
+
+            return index;
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.util.IntList;
+import org.swiften.xtestkitcomponents.util.IntSets;
+import org.swiften.xtestkitcomponents.view.ViewTypeTable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class holds hash indexes from exact tag names and attribute values
+ * to node ids for a {@link SnapshotType}. Each index is built on first use,
+ * with one pass over the snapshot, and then answers lookups in constant
+ * time.
+ *
+ * Substring lookups use a separate trigram index per attribute, over
+ * values with ASCII letters folded to lower case. It only narrows down
+ * candidates, which must then be verified.
+ *
+ * When a new snapshot is diffed against the previous one, built indexes
+ * can be carried over with {@link #inherit(SnapshotDiff)}, so that only
+ * the changed nodes are read again.
+ *
+ * {@link SubtreeFilters} are also built on first use, but are not carried
+ * over, since every changed node affects the filters of its ancestors.
+ * The same goes for the {@link SpatialIndex}, whose tree is packed for
+ * one set of bounds, and for {@link ViewKinds}, which are cheap to
+ * classify again since each class name is cached by its table.
+ */
+public final class SnapshotIndexes implements SnapshotErrorType {
+    @NotNull private static final int[] EMPTY = new int[0];
+
+    /**
+     * Key for the tag name index in {@link #INDEXES}. Attribute names
+     * cannot contain spaces, so this cannot clash.
+     */
+    @NotNull private static final String TAG_NAME = " tag";
+
+    /**
+     * Get {@link SnapshotIndexes} for a {@link SnapshotType}. This is used
+     * by {@link SnapshotType} implementations, which should keep the
+     * instance for their lifetime.
+     * @param snapshot {@link SnapshotType} instance.
+     * @return {@link SnapshotIndexes} instance.
+     */
+    @NotNull
+    public static SnapshotIndexes of(@NotNull SnapshotType snapshot) {
+        return new SnapshotIndexes(snapshot);
+    }
+
+    @NotNull private final SnapshotType SNAPSHOT;
+    @NotNull private final Map<String, Map<String, int[]>> INDEXES;
+    @NotNull private final Map<String, Map<Long, int[]>> TRIGRAMS;
+    @NotNull private final Map<ViewTypeTable, ViewKinds> VIEW_KINDS;
+    @Nullable private volatile SubtreeFilters subtreeFilters;
+    @Nullable private volatile SpatialIndex spatialIndex;
+
+    private SnapshotIndexes(@NotNull SnapshotType snapshot) {
+        SNAPSHOT = snapshot;
+        INDEXES = new ConcurrentHashMap<>();
+        TRIGRAMS = new ConcurrentHashMap<>();
+        VIEW_KINDS = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the ids of nodes with a tag name.
+     * @param tagName {@link String} value.
+     * @return {@link Integer} array, sorted. Do not modify.
+     * @see #TAG_NAME
+     */
+    @NotNull
+    public int[] tagged(@NotNull String tagName) {
+        return lookup(TAG_NAME, tagName);
+    }
+
+    /**
+     * Get the ids of nodes whose attribute has some exact value.
+     * @param name {@link String} value.
+     * @param value {@link String} value.
+     * @return {@link Integer} array, sorted. Do not modify.
+     */
+    @NotNull
+    public int[] withAttribute(@NotNull String name, @NotNull String value) {
+        return lookup(name, value);
+    }
+
+    /**
+     * Get the ids of nodes whose attribute may contain a substring. All
+     * such nodes are included, but some returned nodes may not contain it.
+     * @param name {@link String} value.
+     * @param substring {@link String} value.
+     * @param ignoreCase {@link Boolean} value. If true, matching follows
+     *                   {@link org.swiften.xtestkitcomponents.xpath.Comparison#CONTAINS_IGNORE_CASE}.
+     * @return {@link Integer} array, sorted, or null if the substring is
+     * too short for trigrams, or contains non-ASCII characters while
+     * ignoring case. Do not modify.
+     * @see #buildTrigrams(String)
+     */
+    @Nullable
+    public int[] containing(@NotNull String name,
+                            @NotNull String substring,
+                            boolean ignoreCase) {
+        if (substring.length() < 3 || (ignoreCase && !isASCII(substring))) {
+            return null;
+        }
+
+        Map<Long, int[]> index = TRIGRAMS.computeIfAbsent(name, this::buildTrigrams);
+        String folded = fold(substring);
+        List<int[]> postings = new ArrayList<>();
+
+        for (int i = 0, count = folded.length() - 2; i < count; i++) {
+            int[] ids = index.get(trigram(folded, i));
+
+            if (ids == null) {
+                return EMPTY;
+            }
+
+            postings.add(ids);
+        }
+
+        /* Start with the rarest trigram so that intersections stay small */
+        postings.sort(Comparator.comparingInt(ids -> ids.length));
+        int[] result = postings.get(0);
+
+        for (int i = 1; i < postings.size() && result.length > 0; i++) {
+            if (postings.get(i) != result) {
+                result = IntSets.intersect(result, postings.get(i));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the {@link SubtreeFilters} of the snapshot, building them on
+     * first use.
+     * @return {@link SubtreeFilters} instance.
+     * @see SubtreeFilters#of(SnapshotType)
+     */
+    @NotNull
+    public SubtreeFilters subtreeFilters() {
+        SubtreeFilters filters = subtreeFilters;
+
+        if (filters == null) {
+            synchronized (this) {
+                filters = subtreeFilters;
+
+                if (filters == null) {
+                    filters = SubtreeFilters.of(SNAPSHOT);
+                    subtreeFilters = filters;
+                }
+            }
+        }
+
+        return filters;
+    }
+
+    /**
+     * Get the {@link SpatialIndex} of the snapshot, building it on first
+     * use.
+     * @return {@link SpatialIndex} instance.
+     * @see SpatialIndex#of(SnapshotType)
+     */
+    @NotNull
+    public SpatialIndex spatialIndex() {
+        SpatialIndex index = spatialIndex;
+
+        if (index == null) {
+            synchronized (this) {
+                index = spatialIndex;
+
+                if (index == null) {
+                    index = SpatialIndex.of(SNAPSHOT);
+                    spatialIndex = index;
+                }
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Get the {@link ViewKinds} of the snapshot for a
+     * {@link ViewTypeTable}, classifying its nodes on first use.
+     * @param table {@link ViewTypeTable} instance.
+     * @return {@link ViewKinds} instance.
+     * @see ViewKinds#of(SnapshotType, ViewTypeTable)
+     */
+    @NotNull
+    public ViewKinds viewKinds(@NotNull ViewTypeTable table) {
+        return VIEW_KINDS.computeIfAbsent(table, t -> ViewKinds.of(SNAPSHOT, t));
+    }
+
+    /**
+     * Check if the index for an attribute has been built.
+     * @param name {@link String} value.
+     * @return {@link Boolean} value.
+     */
+    public boolean isBuilt(@NotNull String name) {
+        return INDEXES.containsKey(name);
+    }
+
+    /**
+     * Check if the trigram index for an attribute has been built.
+     * @param name {@link String} value.
+     * @return {@link Boolean} value.
+     */
+    public boolean isTrigramBuilt(@NotNull String name) {
+        return TRIGRAMS.containsKey(name);
+    }
+
+    /**
+     * Look up a value, building the index for a key if necessary.
+     * @param key {@link String} value.
+     * @param value {@link String} value.
+     * @return {@link Integer} array.
+     * @see #build(String)
+     */
+    @NotNull
+    private int[] lookup(@NotNull String key, @NotNull String value) {
+        int[] ids = INDEXES.computeIfAbsent(key, this::build).get(value);
+        return ids != null ? ids : EMPTY;
+    }
+
+    /**
+     * Build the index for a key.
+     * @param key {@link String} value.
+     * @return {@link Map} of {@link String} and {@link Integer} array.
+     * @see #value(String, int)
+     */
+    @NotNull
+    private Map<String, int[]> build(@NotNull String key) {
+        Map<String, IntList> lists = new HashMap<>();
+
+        for (int node = 0, size = SNAPSHOT.size(); node < size; node++) {
+            String value = value(key, node);
+
+            if (value != null) {
+                lists.computeIfAbsent(value, k -> new IntList()).add(node);
+            }
+        }
+
+        /* Nodes are visited in order, so every list is already sorted */
+        return toArrays(lists);
+    }
+
+    /**
+     * Build the trigram index for an attribute.
+     * @param name {@link String} value.
+     * @return {@link Map} of {@link Long} and {@link Integer} array.
+     * @see #addTrigrams(Map, int, String)
+     */
+    @NotNull
+    private Map<Long, int[]> buildTrigrams(@NotNull String name) {
+        Map<Long, IntList> lists = new HashMap<>();
+
+        for (int node = 0, size = SNAPSHOT.size(); node < size; node++) {
+            addTrigrams(lists, node, SNAPSHOT.attribute(node, name));
+        }
+
+        return toArrays(lists);
+    }
+
+    /**
+     * Carry over the indexes built for the previous snapshot of a
+     * {@link SnapshotDiff}, instead of building them again on first use.
+     * Ids in unchanged subtrees are remapped without reading attributes,
+     * and only modified and inserted nodes are read. Indexes that are
+     * already built here are kept.
+     * @param diff {@link SnapshotDiff} whose after snapshot owns this
+     *             instance.
+     * @see SnapshotDiff#afterNodes(int[])
+     * @see SnapshotDiff#changedAfterNodes()
+     * @see #DIFF_TARGET_MISMATCH
+     */
+    public void inherit(@NotNull SnapshotDiff diff) {
+        if (diff.after() != SNAPSHOT) {
+            throw new RuntimeException(DIFF_TARGET_MISMATCH);
+        }
+
+        SnapshotIndexes previous = diff.before().indexes();
+        int[] changed = diff.changedAfterNodes();
+        BitSet stale = new BitSet(SNAPSHOT.size());
+
+        for (int node : changed) {
+            stale.set(node);
+        }
+
+        for (Map.Entry<String, Map<String, int[]>> entry : previous.INDEXES.entrySet()) {
+            String key = entry.getKey();
+
+            INDEXES.computeIfAbsent(key, k -> {
+                Map<String, IntList> additions = new HashMap<>();
+
+                for (int node : changed) {
+                    String value = value(key, node);
+
+                    if (value != null) {
+                        additions.computeIfAbsent(value, v -> new IntList()).add(node);
+                    }
+                }
+
+                return remap(entry.getValue(), additions, diff, stale);
+            });
+        }
+
+        for (Map.Entry<String, Map<Long, int[]>> entry : previous.TRIGRAMS.entrySet()) {
+            String name = entry.getKey();
+
+            TRIGRAMS.computeIfAbsent(name, k -> {
+                Map<Long, IntList> additions = new HashMap<>();
+
+                for (int node : changed) {
+                    addTrigrams(additions, node, SNAPSHOT.attribute(node, name));
+                }
+
+                return remap(entry.getValue(), additions, diff, stale);
+            });
+        }
+    }
+
+    /**
+     * Remap the posting lists of a previous index and merge in the
+     * postings of changed nodes.
+     * @param previous {@link Map} of posting lists for the before snapshot.
+     * @param additions {@link Map} of sorted postings for changed nodes.
+     * @param diff {@link SnapshotDiff} instance.
+     * @param stale {@link BitSet} of changed nodes, whose mapped postings
+     *              may be out of date.
+     * @param <K> Generics parameter.
+     * @return {@link Map} of posting lists for the after snapshot.
+     */
+    @NotNull
+    private static <K> Map<K, int[]> remap(@NotNull Map<K, int[]> previous,
+                                           @NotNull Map<K, IntList> additions,
+                                           @NotNull SnapshotDiff diff,
+                                           @NotNull BitSet stale) {
+        Map<K, int[]> index = new HashMap<>();
+
+        for (Map.Entry<K, int[]> entry : previous.entrySet()) {
+            int[] mapped = diff.afterNodes(entry.getValue());
+            int count = 0;
+
+            for (int node : mapped) {
+                if (!stale.get(node)) {
+                    mapped[count++] = node;
+                }
+            }
+
+            int[] ids = Arrays.copyOf(mapped, count);
+            IntList added = additions.remove(entry.getKey());
+
+            if (added != null) {
+                ids = IntSets.union(ids, added.toArray());
+            }
+
+            if (ids.length > 0) {
+                index.put(entry.getKey(), ids);
+            }
+        }
+
+        index.putAll(toArrays(additions));
+        return index;
+    }
+
+    /**
+     * Get the indexed value of a node for a key.
+     * @param key {@link String} value.
+     * @param node {@link Integer} value.
+     * @return {@link String} value, or null if absent.
+     * @see #TAG_NAME
+     */
+    @Nullable
+    private String value(@NotNull String key, int node) {
+        if (key.equals(TAG_NAME)) {
+            return SNAPSHOT.tagName(node);
+        } else {
+            return SNAPSHOT.attribute(node, key);
+        }
+    }
+
+    /**
+     * Add the trigrams of a node's value to posting lists. Nodes must be
+     * added in increasing order.
+     * @param lists {@link Map} of {@link Long} and {@link IntList}.
+     * @param node {@link Integer} value.
+     * @param value {@link String} value.
+     * @see #trigram(String, int)
+     */
+    private static void addTrigrams(@NotNull Map<Long, IntList> lists,
+                                    int node,
+                                    @Nullable String value) {
+        if (value == null || value.length() < 3) {
+            return;
+        }
+
+        String folded = fold(value);
+
+        for (int i = 0, count = folded.length() - 2; i < count; i++) {
+            IntList ids = lists.computeIfAbsent(trigram(folded, i), k -> new IntList());
+
+            /* A trigram may repeat within one value */
+            if (ids.isEmpty() || ids.last() != node) {
+                ids.add(node);
+            }
+        }
+    }
+
+    /**
+     * Convert sorted posting lists to arrays.
+     * @param lists {@link Map} of {@link IntList}.
+     * @param <K> Generics parameter.
+     * @return {@link Map} of {@link Integer} array.
+     */
+    @NotNull
+    private static <K> Map<K, int[]> toArrays(@NotNull Map<K, IntList> lists) {
+        Map<K, int[]> index = new HashMap<>();
+
+        for (Map.Entry<K, IntList> entry : lists.entrySet()) {
+            index.put(entry.getKey(), entry.getValue().toArray());
+        }
+
+        return index;
+    }
+
+    /**
+     * Pack three characters into a key.
+     * @param value {@link String} value.
+     * @param start {@link Integer} value.
+     * @return {@link Long} value.
+     */
+    private static long trigram(@NotNull String value, int start) {
+        return ((long)value.charAt(start) << 32)
+            | ((long)value.charAt(start + 1) << 16)
+            | (long)value.charAt(start + 2);
+    }
+
+    /**
+     * Fold ASCII letters to lower case. This is applied to both sides of a
+     * lookup, so for an ASCII substring a case-insensitive match is also a
+     * match of the folded values.
+     * @param value {@link String} value.
+     * @return {@link String} value.
+     */
+    @NotNull
+    private static String fold(@NotNull String value) {
+        char[] chars = value.toCharArray();
+
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] += 'a' - 'A';
+            }
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Check if a value only has ASCII characters.
+     * @param value {@link String} value.
+     * @return {@link Boolean} value.
+     */
+    private static boolean isASCII(@NotNull String value) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            if (value.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * This class computes child, sibling and subtree links from the parent of
+ * each node, given that nodes are numbered in document order.
+ */
+final class SnapshotLinks {
+    @NotNull final int[] PARENT;
+    @NotNull final int[] FIRST_CHILD;
+    @NotNull final int[] NEXT_SIBLING;
+    @NotNull final int[] PREVIOUS_SIBLING;
+    @NotNull final int[] SUBTREE_END;
+
+    SnapshotLinks(@NotNull int[] parents) {
+        int size = parents.length;
+        int[] lastChild = new int[size];
+        PARENT = parents;
+        FIRST_CHILD = new int[size];
+        NEXT_SIBLING = new int[size];
+        PREVIOUS_SIBLING = new int[size];
+        SUBTREE_END = new int[size];
+        Arrays.fill(lastChild, SnapshotType.NO_NODE);
+        Arrays.fill(FIRST_CHILD, SnapshotType.NO_NODE);
+        Arrays.fill(NEXT_SIBLING, SnapshotType.NO_NODE);
+        Arrays.fill(PREVIOUS_SIBLING, SnapshotType.NO_NODE);
+
+        for (int node = 0; node < size; node++) {
+            int parent = parents[node];
+            SUBTREE_END[node] = node + 1;
+
+            if (parent != SnapshotType.NO_NODE) {
+                int previous = lastChild[parent];
+
+                if (previous == SnapshotType.NO_NODE) {
+                    FIRST_CHILD[parent] = node;
+                } else {
+                    NEXT_SIBLING[previous] = node;
+                    PREVIOUS_SIBLING[node] = previous;
+                }
+
+                lastChild[parent] = node;
+            }
+        }
+
+        /* Children always come after their parents, so a reverse pass
+         * propagates subtree ends upwards */
+        for (int node = size - 1; node > 0; node--) {
+            int parent = parents[node];
+
+            if (parent != SnapshotType.NO_NODE) {
+                SUBTREE_END[parent] = Math.max(SUBTREE_END[parent], SUBTREE_END[node]);
+            }
+        }
+    }
+}
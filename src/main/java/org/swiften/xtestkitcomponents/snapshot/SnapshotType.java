@@ -0,0 +1,133 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * This interface represents a captured page source. Element nodes are
+ * identified by their position in document order, starting from 0 for the
+ * root element, so every subtree occupies a contiguous range of ids.
+ *
+ * Snapshots are read-only, and implementations must allow reads from
+ * several threads at once.
+ */
+public interface SnapshotType {
+    /**
+     * Returned by navigation methods when there is no such node.
+     */
+    int NO_NODE = -1;
+
+    /**
+     * Get the number of element nodes.
+     * @return {@link Integer} value.
+     */
+    int size();
+
+    /**
+     * Get the parent of a node.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value, or {@link #NO_NODE} for the root.
+     */
+    int parent(int node);
+
+    /**
+     * Get the first child of a node.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value, or {@link #NO_NODE} for a leaf.
+     */
+    int firstChild(int node);
+
+    /**
+     * Get the next sibling of a node.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value, or {@link #NO_NODE}.
+     */
+    int nextSibling(int node);
+
+    /**
+     * Get the previous sibling of a node.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value, or {@link #NO_NODE}.
+     */
+    int previousSibling(int node);
+
+    /**
+     * Get the exclusive end of a node's subtree. The descendants of a node
+     * are all nodes between node + 1 and this value.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value.
+     */
+    int subtreeEnd(int node);
+
+    /**
+     * Get the tag name of a node. For Appium page sources, this is usually
+     * the view class name.
+     * @param node {@link Integer} value.
+     * @return {@link String} value.
+     */
+    @NotNull String tagName(int node);
+
+    /**
+     * Get the value of an attribute.
+     * @param node {@link Integer} value.
+     * @param name {@link String} value.
+     * @return {@link String} value, or null if the attribute is absent.
+     */
+    @Nullable String attribute(int node, @NotNull String name);
+
+    /**
+     * Check if a node has some tag name.
+     * @param node {@link Integer} value.
+     * @param tagName {@link String} value.
+     * @return {@link Boolean} value.
+     * @see #tagName(int)
+     */
+    default boolean tagEquals(int node, @NotNull String tagName) {
+        return tagName.equals(tagName(node));
+    }
+
+    /**
+     * Check if an attribute has some exact value. Implementations that
+     * encode values may compare codes instead of {@link String}.
+     * @param node {@link Integer} value.
+     * @param name {@link String} value.
+     * @param value {@link String} value.
+     * @return {@link Boolean} value.
+     * @see #attribute(int, String)
+     */
+    default boolean attributeEquals(int node, @NotNull String name, @NotNull String value) {
+        return value.equals(attribute(node, name));
+    }
+
+    /**
+     * Get all attributes of a node. Implementations should keep document
+     * order where they store it.
+     * @param node {@link Integer} value.
+     * @return {@link Map} of {@link String} and {@link String}.
+     */
+    @NotNull Map<String, String> attributes(int node);
+
+    /**
+     * Get the hash of a node's tag name and attributes.
+     * @param node {@link Integer} value.
+     * @return {@link Long} value.
+     */
+    long nodeHash(int node);
+
+    /**
+     * Get the Merkle hash of a node's subtree. Equal subtree hashes mean
+     * that two subtrees have the same shape, tag names and attributes.
+     * @param node {@link Integer} value.
+     * @return {@link Long} value.
+     */
+    long subtreeHash(int node);
+
+    /**
+     * Get the {@link SnapshotIndexes} of this snapshot. Implementations
+     * should create it lazily and return the same instance afterwards.
+     * @return {@link SnapshotIndexes} instance.
+     */
+    @NotNull SnapshotIndexes indexes();
+}
@@ -0,0 +1,658 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.coordinate.RLPositionType;
+import org.swiften.xtestkitcomponents.util.IntList;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * This class holds a packed R-tree over the bounds of the nodes in a
+ * {@link SnapshotType}, so that point, region and nearest-neighbour
+ * queries only visit the branches that can contain results.
+ *
+ * Bounds are read from the Android "bounds" attribute, e.g.
+ * [0,63][1080,1794], or the iOS "x", "y", "width" and "height"
+ * attributes. Nodes without bounds are not indexed. Bounds are half-open,
+ * i.e. a node contains the points from its left/top edge up to, but not
+ * including, its right/bottom edge.
+ *
+ * The tree is bulk-loaded with Sort-Tile-Recursive: each level is sorted
+ * into vertical slices by x, each slice is sorted by y, and runs of
+ * {@link #NODE_CAPACITY} entries become the nodes of the level above.
+ * Since the tree never changes, it is stored in flat arrays.
+ */
+public final class SpatialIndex {
+    /**
+     * The maximum number of entries per tree node.
+     */
+    public static final int NODE_CAPACITY = 16;
+
+    /**
+     * Get the bounds of a node.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} array of left, top, right and bottom, or
+     * null if the node has no valid bounds.
+     * @see #parseAndroid(String)
+     * @see #parseIOS(String, String, String, String)
+     */
+    @Nullable
+    public static int[] bounds(@NotNull SnapshotType snapshot, int node) {
+        String bounds = snapshot.attribute(node, "bounds");
+
+        if (bounds != null) {
+            return parseAndroid(bounds);
+        }
+
+        return parseIOS(
+            snapshot.attribute(node, "x"),
+            snapshot.attribute(node, "y"),
+            snapshot.attribute(node, "width"),
+            snapshot.attribute(node, "height"));
+    }
+
+    /**
+     * Parse Android bounds, e.g. [0,63][1080,1794].
+     * @param bounds {@link String} value.
+     * @return {@link Integer} array, or null if the value is malformed.
+     */
+    @Nullable
+    static int[] parseAndroid(@NotNull String bounds) {
+        int[] result = new int[4];
+        int length = bounds.length();
+        int position = 0;
+
+        for (int i = 0; i < 4; i++) {
+            while (position < length && !isNumberStart(bounds.charAt(position))) {
+                position += 1;
+            }
+
+            int start = position;
+
+            while (position < length && isNumberStart(bounds.charAt(position))) {
+                position += 1;
+            }
+
+            if (start == position) {
+                return null;
+            }
+
+            try {
+                result[i] = Integer.parseInt(bounds.substring(start, position));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        return result[2] >= result[0] && result[3] >= result[1] ? result : null;
+    }
+
+    /**
+     * Parse iOS bounds. Values may have fractions, which are rounded.
+     * @param x {@link String} value.
+     * @param y {@link String} value.
+     * @param width {@link String} value.
+     * @param height {@link String} value.
+     * @return {@link Integer} array, or null if a value is absent or
+     * malformed.
+     */
+    @Nullable
+    static int[] parseIOS(@Nullable String x,
+                          @Nullable String y,
+                          @Nullable String width,
+                          @Nullable String height) {
+        if (x == null || y == null || width == null || height == null) {
+            return null;
+        }
+
+        try {
+            int left = (int)Math.round(Double.parseDouble(x));
+            int top = (int)Math.round(Double.parseDouble(y));
+            int right = left + (int)Math.round(Double.parseDouble(width));
+            int bottom = top + (int)Math.round(Double.parseDouble(height));
+            return right >= left && bottom >= top ? new int[] { left, top, right, bottom } : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check if a character can be part of an integer.
+     * @param c {@link Character} value.
+     * @return {@link Boolean} value.
+     */
+    private static boolean isNumberStart(char c) {
+        return (c >= '0' && c <= '9') || c == '-';
+    }
+
+    /**
+     * Get {@link SpatialIndex} for a {@link SnapshotType}. This is used by
+     * {@link SnapshotIndexes}, which builds it on first use.
+     * @param snapshot {@link SnapshotType} instance.
+     * @return {@link SpatialIndex} instance.
+     */
+    @NotNull
+    static SpatialIndex of(@NotNull SnapshotType snapshot) {
+        return new SpatialIndex(snapshot);
+    }
+
+    /**
+     * Left, top, right and bottom of every node, by node id.
+     */
+    @NotNull private final int[] BOUNDS;
+    @NotNull private final BitSet INDEXED;
+
+    /**
+     * Indexed node ids, in leaf order.
+     */
+    @NotNull private final int[] ITEMS;
+
+    /**
+     * Boxes of tree nodes, four values each, from the leaves upwards.
+     */
+    @NotNull private final int[][] BOXES;
+
+    /**
+     * Child ranges of tree nodes, a start and end each, into the level
+     * below or {@link #ITEMS} for the leaves.
+     */
+    @NotNull private final int[][] CHILDREN;
+
+    private SpatialIndex(@NotNull SnapshotType snapshot) {
+        int size = snapshot.size();
+        IntList items = new IntList();
+        BOUNDS = new int[size * 4];
+        INDEXED = new BitSet(size);
+
+        for (int node = 0; node < size; node++) {
+            int[] bounds = bounds(snapshot, node);
+
+            if (bounds != null) {
+                System.arraycopy(bounds, 0, BOUNDS, node * 4, 4);
+                INDEXED.set(node);
+                items.add(node);
+            }
+        }
+
+        int count = items.size();
+        int[] boxes = new int[count * 4];
+        int[] order = items.toArray();
+
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(BOUNDS, order[i] * 4, boxes, i * 4, 4);
+        }
+
+        int[] permutation = tile(boxes, count);
+        ITEMS = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            ITEMS[i] = order[permutation[i]];
+        }
+
+        boxes = permute(boxes, permutation, 4);
+        int[] children = null;
+        List<int[]> levelBoxes = new ArrayList<>();
+        List<int[]> levelChildren = new ArrayList<>();
+
+        while (count > 0) {
+            if (children != null) {
+                permutation = tile(boxes, count);
+                boxes = permute(boxes, permutation, 4);
+                children = permute(children, permutation, 2);
+                levelBoxes.set(levelBoxes.size() - 1, boxes);
+                levelChildren.set(levelChildren.size() - 1, children);
+            }
+
+            int parents = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            int[] parentBoxes = new int[parents * 4];
+            int[] parentChildren = new int[parents * 2];
+
+            for (int p = 0; p < parents; p++) {
+                int start = p * NODE_CAPACITY;
+                int end = Math.min(count, start + NODE_CAPACITY);
+                parentChildren[p * 2] = start;
+                parentChildren[p * 2 + 1] = end;
+                parentBoxes[p * 4] = Integer.MAX_VALUE;
+                parentBoxes[p * 4 + 1] = Integer.MAX_VALUE;
+                parentBoxes[p * 4 + 2] = Integer.MIN_VALUE;
+                parentBoxes[p * 4 + 3] = Integer.MIN_VALUE;
+
+                for (int c = start; c < end; c++) {
+                    parentBoxes[p * 4] = Math.min(parentBoxes[p * 4], boxes[c * 4]);
+                    parentBoxes[p * 4 + 1] = Math.min(parentBoxes[p * 4 + 1], boxes[c * 4 + 1]);
+                    parentBoxes[p * 4 + 2] = Math.max(parentBoxes[p * 4 + 2], boxes[c * 4 + 2]);
+                    parentBoxes[p * 4 + 3] = Math.max(parentBoxes[p * 4 + 3], boxes[c * 4 + 3]);
+                }
+            }
+
+            levelBoxes.add(parentBoxes);
+            levelChildren.add(parentChildren);
+            boxes = parentBoxes;
+            children = parentChildren;
+
+            if (parents == 1) {
+                break;
+            }
+
+            count = parents;
+        }
+
+        BOXES = levelBoxes.toArray(new int[0][]);
+        CHILDREN = levelChildren.toArray(new int[0][]);
+    }
+
+    /**
+     * Get the Sort-Tile-Recursive order of some boxes.
+     * @param boxes {@link Integer} array, four values per box.
+     * @param count {@link Integer} value.
+     * @return {@link Integer} array, the box indexes in tile order.
+     * @see #sortByCenter(int[], int[], int, int, int)
+     */
+    @NotNull
+    private static int[] tile(@NotNull int[] boxes, int count) {
+        int[] order = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+
+        int nodes = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slices = (int)Math.ceil(Math.sqrt(nodes));
+        int sliceSize = slices * NODE_CAPACITY;
+        sortByCenter(boxes, order, 0, count, 0);
+
+        for (int start = 0; start < count; start += sliceSize) {
+            sortByCenter(boxes, order, start, Math.min(count, start + sliceSize), 1);
+        }
+
+        return order;
+    }
+
+    /**
+     * Sort part of an order by the center of each box on one axis. The
+     * center is doubled to stay an integer, and packed with the index so
+     * that primitive sorting can be used.
+     * @param boxes {@link Integer} array, four values per box.
+     * @param order {@link Integer} array of box indexes.
+     * @param start {@link Integer} value, inclusive.
+     * @param end {@link Integer} value, exclusive.
+     * @param axis {@link Integer} value, 0 for x and 1 for y.
+     */
+    private static void sortByCenter(@NotNull int[] boxes,
+                                     @NotNull int[] order,
+                                     int start,
+                                     int end,
+                                     int axis) {
+        long[] keys = new long[end - start];
+
+        for (int i = start; i < end; i++) {
+            int box = order[i];
+            long center = (long)boxes[box * 4 + axis] + boxes[box * 4 + axis + 2];
+            keys[i - start] = (center << 32) | box;
+        }
+
+        Arrays.sort(keys);
+
+        for (int i = start; i < end; i++) {
+            order[i] = (int)keys[i - start];
+        }
+    }
+
+    /**
+     * Reorder groups of values.
+     * @param values {@link Integer} array.
+     * @param order {@link Integer} array of group indexes.
+     * @param width {@link Integer} value, the number of values per group.
+     * @return {@link Integer} array.
+     */
+    @NotNull
+    private static int[] permute(@NotNull int[] values, @NotNull int[] order, int width) {
+        int[] result = new int[values.length];
+
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(values, order[i] * width, result, i * width, width);
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the number of indexed nodes.
+     * @return {@link Integer} value.
+     * @see #ITEMS
+     */
+    public int size() {
+        return ITEMS.length;
+    }
+
+    /**
+     * Get the number of tree levels above the indexed nodes.
+     * @return {@link Integer} value.
+     * @see #BOXES
+     */
+    public int height() {
+        return BOXES.length;
+    }
+
+    /**
+     * Check if a node has bounds.
+     * @param node {@link Integer} value.
+     * @return {@link Boolean} value.
+     * @see #INDEXED
+     */
+    public boolean hasBounds(int node) {
+        return INDEXED.get(node);
+    }
+
+    /**
+     * Get the left edge of a node.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value.
+     * @see #BOUNDS
+     */
+    public int left(int node) {
+        return BOUNDS[node * 4];
+    }
+
+    /**
+     * Get the top edge of a node.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value.
+     * @see #BOUNDS
+     */
+    public int top(int node) {
+        return BOUNDS[node * 4 + 1];
+    }
+
+    /**
+     * Get the right edge of a node, exclusive.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value.
+     * @see #BOUNDS
+     */
+    public int right(int node) {
+        return BOUNDS[node * 4 + 2];
+    }
+
+    /**
+     * Get the bottom edge of a node, exclusive.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value.
+     * @see #BOUNDS
+     */
+    public int bottom(int node) {
+        return BOUNDS[node * 4 + 3];
+    }
+
+    /**
+     * Get an x coordinate within a node, the same way gestures offset
+     * from an element's location.
+     * @param node {@link Integer} value.
+     * @param position {@link RLPositionType} instance.
+     * @return {@link Integer} value.
+     * @see RLPositionType#dimensionRatio()
+     */
+    public int x(int node, @NotNull RLPositionType position) {
+        return left(node) + (int)((right(node) - left(node)) * position.dimensionRatio());
+    }
+
+    /**
+     * Get a y coordinate within a node, the same way gestures offset
+     * from an element's location.
+     * @param node {@link Integer} value.
+     * @param position {@link RLPositionType} instance.
+     * @return {@link Integer} value.
+     * @see RLPositionType#dimensionRatio()
+     */
+    public int y(int node, @NotNull RLPositionType position) {
+        return top(node) + (int)((bottom(node) - top(node)) * position.dimensionRatio());
+    }
+
+    /**
+     * Get the nodes that contain a point.
+     * @param x {@link Integer} value.
+     * @param y {@link Integer} value.
+     * @return {@link Integer} array, in document order.
+     * @see #search(int, int, int, int, boolean)
+     */
+    @NotNull
+    public int[] containing(int x, int y) {
+        return search(x, y, x + 1, y + 1, false);
+    }
+
+    /**
+     * Get the element at a point, which is the last node in document order
+     * that contains it, since that is drawn on top.
+     * @param x {@link Integer} value.
+     * @param y {@link Integer} value.
+     * @return {@link Integer} value, or {@link SnapshotType#NO_NODE}.
+     * @see #containing(int, int)
+     */
+    public int elementAt(int x, int y) {
+        int[] nodes = containing(x, y);
+        return nodes.length > 0 ? nodes[nodes.length - 1] : SnapshotType.NO_NODE;
+    }
+
+    /**
+     * Get the nodes that overlap a region.
+     * @param left {@link Integer} value.
+     * @param top {@link Integer} value.
+     * @param right {@link Integer} value, exclusive.
+     * @param bottom {@link Integer} value, exclusive.
+     * @return {@link Integer} array, in document order.
+     * @see #search(int, int, int, int, boolean)
+     */
+    @NotNull
+    public int[] intersecting(int left, int top, int right, int bottom) {
+        return search(left, top, right, bottom, false);
+    }
+
+    /**
+     * Get the nodes that lie entirely inside a region.
+     * @param left {@link Integer} value.
+     * @param top {@link Integer} value.
+     * @param right {@link Integer} value, exclusive.
+     * @param bottom {@link Integer} value, exclusive.
+     * @return {@link Integer} array, in document order.
+     * @see #search(int, int, int, int, boolean)
+     */
+    @NotNull
+    public int[] within(int left, int top, int right, int bottom) {
+        return search(left, top, right, bottom, true);
+    }
+
+    /**
+     * Get the node nearest to a point.
+     * @param x {@link Integer} value.
+     * @param y {@link Integer} value.
+     * @return {@link Integer} value, or {@link SnapshotType#NO_NODE}.
+     * @see #nearest(int, int, IntPredicate)
+     */
+    public int nearest(int x, int y) {
+        return nearest(x, y, node -> true);
+    }
+
+    /**
+     * Get the node nearest to a point that passes a filter.
+     * @param x {@link Integer} value.
+     * @param y {@link Integer} value.
+     * @param filter {@link IntPredicate} instance.
+     * @return {@link Integer} value, or {@link SnapshotType#NO_NODE}.
+     * @see #nearest(int, int, int[], IntPredicate)
+     */
+    public int nearest(int x, int y, @NotNull IntPredicate filter) {
+        return nearest(x, y, null, filter);
+    }
+
+    /**
+     * Get the node nearest to a point that overlaps a region and passes a
+     * filter. Distance is measured from the point to the closest edge, so
+     * it is zero for every node containing the point; ties go to the last
+     * node in document order. Branches are visited in order of their
+     * distance, and skipped if they miss the region, so the search stops
+     * as soon as no closer node can remain.
+     * @param x {@link Integer} value.
+     * @param y {@link Integer} value.
+     * @param region {@link Integer} array of left, top, right and bottom,
+     *               or null to search everywhere.
+     * @param filter {@link IntPredicate} instance.
+     * @return {@link Integer} value, or {@link SnapshotType#NO_NODE}.
+     * @see #distance(int[], int, int, int)
+     * @see #overlaps(int[], int, int[])
+     */
+    public int nearest(int x, int y, @Nullable int[] region, @NotNull IntPredicate filter) {
+        if (BOXES.length == 0) {
+            return SnapshotType.NO_NODE;
+        }
+
+        PriorityQueue<long[]> queue = new PriorityQueue<>(Comparator.comparingLong(e -> e[0]));
+        int top = BOXES.length - 1;
+        queue.add(new long[] { distance(BOXES[top], 0, x, y), top, 0 });
+        int best = SnapshotType.NO_NODE;
+        long bestDistance = Long.MAX_VALUE;
+
+        while (!queue.isEmpty() && queue.peek()[0] <= bestDistance) {
+            long[] entry = queue.poll();
+            int level = (int)entry[1];
+            int index = (int)entry[2];
+
+            if (level < 0) {
+                if (entry[0] < bestDistance || index > best) {
+                    best = index;
+                    bestDistance = entry[0];
+                }
+
+                continue;
+            }
+
+            int[] children = CHILDREN[level];
+
+            for (int c = children[index * 2], end = children[index * 2 + 1]; c < end; c++) {
+                if (level == 0) {
+                    int node = ITEMS[c];
+
+                    if ((region == null || overlaps(BOUNDS, node, region)) && filter.test(node)) {
+                        queue.add(new long[] { distance(BOUNDS, node, x, y), -1, node });
+                    }
+                } else if (region == null || overlaps(BOXES[level - 1], c, region)) {
+                    queue.add(new long[] { distance(BOXES[level - 1], c, x, y), level - 1, c });
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Get the approximate memory used by the index.
+     * @return {@link Long} value, in bytes.
+     */
+    public long estimatedBytes() {
+        long bytes = 16L + 4L * BOUNDS.length + 16L + 4L * ITEMS.length + INDEXED.size() / 8;
+
+        for (int i = 0; i < BOXES.length; i++) {
+            bytes += 32L + 4L * BOXES[i].length + 4L * CHILDREN[i].length;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Get the nodes whose bounds overlap, or lie within, a region.
+     * @param left {@link Integer} value.
+     * @param top {@link Integer} value.
+     * @param right {@link Integer} value, exclusive.
+     * @param bottom {@link Integer} value, exclusive.
+     * @param within {@link Boolean} value. If this is true, nodes must lie
+     *               entirely within the region.
+     * @return {@link Integer} array, in document order.
+     */
+    @NotNull
+    private int[] search(int left, int top, int right, int bottom, boolean within) {
+        IntList result = new IntList();
+
+        if (BOXES.length > 0) {
+            search(BOXES.length - 1, 0, new int[] { left, top, right, bottom }, within, result);
+        }
+
+        return result.toSortedSet();
+    }
+
+    /**
+     * Search the subtree of a tree node. Tree nodes are entered if they
+     * overlap the region, since a node within the region may lie in any
+     * overlapping branch.
+     * @param level {@link Integer} value.
+     * @param index {@link Integer} value.
+     * @param region {@link Integer} array of left, top, right and bottom.
+     * @param within {@link Boolean} value.
+     * @param result {@link IntList} instance.
+     * @see #overlaps(int[], int, int[])
+     * @see #contains(int[], int[], int)
+     */
+    private void search(int level,
+                        int index,
+                        @NotNull int[] region,
+                        boolean within,
+                        @NotNull IntList result) {
+        int[] children = CHILDREN[level];
+
+        for (int c = children[index * 2], end = children[index * 2 + 1]; c < end; c++) {
+            if (level == 0) {
+                int node = ITEMS[c];
+
+                if (within ? contains(region, BOUNDS, node) : overlaps(BOUNDS, node, region)) {
+                    result.add(node);
+                }
+            } else if (overlaps(BOXES[level - 1], c, region)) {
+                search(level - 1, c, region, within, result);
+            }
+        }
+    }
+
+    /**
+     * Check if a box overlaps a region. Empty boxes overlap nothing.
+     * @param boxes {@link Integer} array, four values per box.
+     * @param box {@link Integer} value.
+     * @param region {@link Integer} array.
+     * @return {@link Boolean} value.
+     */
+    private static boolean overlaps(@NotNull int[] boxes, int box, @NotNull int[] region) {
+        return boxes[box * 4] < region[2]
+            && region[0] < boxes[box * 4 + 2]
+            && boxes[box * 4 + 1] < region[3]
+            && region[1] < boxes[box * 4 + 3];
+    }
+
+    /**
+     * Check if a region contains a box.
+     * @param region {@link Integer} array.
+     * @param boxes {@link Integer} array, four values per box.
+     * @param box {@link Integer} value.
+     * @return {@link Boolean} value.
+     */
+    private static boolean contains(@NotNull int[] region, @NotNull int[] boxes, int box) {
+        return region[0] <= boxes[box * 4]
+            && region[1] <= boxes[box * 4 + 1]
+            && boxes[box * 4 + 2] <= region[2]
+            && boxes[box * 4 + 3] <= region[3];
+    }
+
+    /**
+     * Get the squared distance from a point to the nearest point of a
+     * box, which is zero if the box contains the point.
+     * @param boxes {@link Integer} array, four values per box.
+     * @param box {@link Integer} value.
+     * @param x {@link Integer} value.
+     * @param y {@link Integer} value.
+     * @return {@link Long} value.
+     */
+    private static long distance(@NotNull int[] boxes, int box, int x, int y) {
+        long dx = Math.max(0, Math.max((long)boxes[box * 4] - x, (long)x - (boxes[box * 4 + 2] - 1)));
+        long dy = Math.max(0, Math.max((long)boxes[box * 4 + 1] - y, (long)y - (boxes[box * 4 + 3] - 1)));
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,103 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class assigns dense int codes to distinct {@link String} values, so
+ * that repeated class names, attribute names and values are stored once
+ * and can be compared as ints. One instance can be shared by all
+ * {@link CompactSnapshot} of a session, in which case codes stay the same
+ * across snapshots. This class is thread-safe.
+ */
+public final class StringDictionary {
+    /**
+     * Returned by {@link #indexOf(String)} for unknown values.
+     */
+    public static final int NO_CODE = -1;
+
+    @NotNull private final Map<String, Integer> CODES;
+    @NotNull private volatile String[] strings;
+    private volatile int size;
+    private long bytes;
+
+    public StringDictionary() {
+        CODES = new ConcurrentHashMap<>();
+        strings = new String[64];
+    }
+
+    /**
+     * Get the code of a value, adding it if necessary.
+     * @param value {@link String} value.
+     * @return {@link Integer} value.
+     * @see #CODES
+     */
+    public int code(@NotNull String value) {
+        Integer code = CODES.get(value);
+
+        if (code != null) {
+            return code;
+        }
+
+        synchronized (this) {
+            code = CODES.get(value);
+
+            if (code == null) {
+                if (size == strings.length) {
+                    strings = Arrays.copyOf(strings, size * 2);
+                }
+
+                code = size;
+                strings[code] = value;
+                bytes += 64 + 2L * value.length();
+                size = code + 1;
+                CODES.put(value, code);
+            }
+
+            return code;
+        }
+    }
+
+    /**
+     * Get the code of a value without adding it.
+     * @param value {@link String} value.
+     * @return {@link Integer} value, or {@link #NO_CODE}.
+     * @see #CODES
+     */
+    public int indexOf(@Nullable String value) {
+        Integer code = value != null ? CODES.get(value) : null;
+        return code != null ? code : NO_CODE;
+    }
+
+    /**
+     * Get the value of a code.
+     * @param code {@link Integer} value.
+     * @return {@link String} value.
+     */
+    @NotNull
+    public String get(int code) {
+        return strings[code];
+    }
+
+    /**
+     * Get the number of distinct values.
+     * @return {@link Integer} value.
+     * @see #size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Estimate the heap footprint of the stored values.
+     * @return {@link Long} value, in bytes.
+     * @see #bytes
+     */
+    public synchronized long estimatedBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,248 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * This class holds a Bloom filter of the tag names and exact attribute
+ * values found in every subtree with at least {@link #MIN_SUBTREE_SIZE}
+ * nodes. A negative answer means that no node in the subtree can match,
+ * so descendant searches may skip it entirely. Smaller subtrees have no
+ * filter, since scanning them is cheap anyway.
+ *
+ * All filters are built in one pass, in which each node adds its keys to
+ * every filtered ancestor-or-self. Filters are sized by subtree, so deep
+ * subtrees stay selective even if the root filter saturates.
+ */
+public final class SubtreeFilters {
+    /**
+     * Subtrees smaller than this do not get a filter.
+     */
+    public static final int MIN_SUBTREE_SIZE = 32;
+
+    /**
+     * Filters have at least this many bits.
+     */
+    static final int MIN_BITS = 512;
+
+    /**
+     * Filters have at most this many bits.
+     */
+    static final int MAX_BITS = 1 << 16;
+
+    /**
+     * Filter bits per subtree node, before rounding to a power of two.
+     */
+    static final int BITS_PER_NODE = 16;
+
+    /**
+     * The number of bits set per key.
+     */
+    static final int HASH_COUNT = 3;
+
+    /**
+     * Get the key of a tag name.
+     * @param tagName {@link String} value.
+     * @return {@link Long} value.
+     * @see #hash(String, String)
+     */
+    public static long tagKey(@NotNull String tagName) {
+        return hash(" tag", tagName);
+    }
+
+    /**
+     * Get the key of an exact attribute value.
+     * @param name {@link String} value.
+     * @param value {@link String} value.
+     * @return {@link Long} value.
+     * @see #hash(String, String)
+     */
+    public static long attributeKey(@NotNull String name, @NotNull String value) {
+        return hash(name, value);
+    }
+
+    /**
+     * Get {@link SubtreeFilters} for a {@link SnapshotType}. This is used by
+     * {@link SnapshotIndexes}, which builds it on first use.
+     * @param snapshot {@link SnapshotType} instance.
+     * @return {@link SubtreeFilters} instance.
+     */
+    @NotNull
+    static SubtreeFilters of(@NotNull SnapshotType snapshot) {
+        return new SubtreeFilters(snapshot);
+    }
+
+    /**
+     * Hash a name and value pair with FNV-1a, then spread the bits.
+     * @param name {@link String} value.
+     * @param value {@link String} value.
+     * @return {@link Long} value.
+     */
+    private static long hash(@NotNull String name, @NotNull String value) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0, length = name.length(); i < length; i++) {
+            hash = (hash ^ name.charAt(i)) * 0x100000001b3L;
+        }
+
+        /* Separate the name from the value so that pairs cannot collide by
+         * moving characters across */
+        hash = (hash ^ 0xffff) * 0x100000001b3L;
+
+        for (int i = 0, length = value.length(); i < length; i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        return hash ^ (hash >>> 33);
+    }
+
+    @NotNull private final long[][] FILTERS;
+    private final int filterCount;
+
+    private SubtreeFilters(@NotNull SnapshotType snapshot) {
+        int size = snapshot.size();
+        int[] owners = new int[size];
+        int count = 0;
+        FILTERS = new long[size][];
+
+        for (int node = 0; node < size; node++) {
+            int subtree = snapshot.subtreeEnd(node) - node;
+            int parent = snapshot.parent(node);
+
+            if (subtree >= MIN_SUBTREE_SIZE) {
+                long bits = Long.highestOneBit((long)subtree * BITS_PER_NODE - 1) << 1;
+                bits = Math.max(MIN_BITS, Math.min(MAX_BITS, bits));
+                FILTERS[node] = new long[(int)(bits / Long.SIZE)];
+                owners[node] = node;
+                count += 1;
+            } else {
+                owners[node] = parent != SnapshotType.NO_NODE ? owners[parent] : SnapshotType.NO_NODE;
+            }
+
+            if (owners[node] == SnapshotType.NO_NODE) {
+                continue;
+            }
+
+            Map<String, String> attributes = snapshot.attributes(node);
+            long[] keys = new long[attributes.size() + 1];
+            int k = 0;
+            keys[k++] = tagKey(snapshot.tagName(node));
+
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                keys[k++] = attributeKey(entry.getKey(), entry.getValue());
+            }
+
+            /* Filters have different sizes, so they cannot be merged by
+             * or-ing words. Keys are added to every filtered ancestor */
+            for (int owner = owners[node]; owner != SnapshotType.NO_NODE; ) {
+                for (long key : keys) {
+                    add(FILTERS[owner], key);
+                }
+
+                int above = snapshot.parent(owner);
+                owner = above != SnapshotType.NO_NODE ? owners[above] : SnapshotType.NO_NODE;
+            }
+        }
+
+        filterCount = count;
+    }
+
+    /**
+     * Check if a node's subtree has a filter.
+     * @param node {@link Integer} value.
+     * @return {@link Boolean} value.
+     * @see #FILTERS
+     */
+    public boolean hasFilter(int node) {
+        return FILTERS[node] != null;
+    }
+
+    /**
+     * Get the number of filters.
+     * @return {@link Integer} value.
+     * @see #filterCount
+     */
+    public int filterCount() {
+        return filterCount;
+    }
+
+    /**
+     * Check if a node's subtree may contain every key. This is always true
+     * for subtrees without a filter.
+     * @param node {@link Integer} value.
+     * @param keys {@link Long} array, from {@link #tagKey(String)} and
+     *             {@link #attributeKey(String, String)}. Keys need not be
+     *             on the same node.
+     * @return {@link Boolean} value.
+     * @see #contains(long[], long)
+     */
+    public boolean mightContain(int node, @NotNull long[] keys) {
+        long[] filter = FILTERS[node];
+
+        if (filter != null) {
+            for (long key : keys) {
+                if (!contains(filter, key)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the approximate memory used by all filters.
+     * @return {@link Long} value, in bytes.
+     */
+    public long estimatedBytes() {
+        long bytes = 16L + 8L * FILTERS.length;
+
+        for (long[] filter : FILTERS) {
+            if (filter != null) {
+                bytes += 16L + 8L * filter.length;
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Add a key to a filter, using double hashing to derive each bit.
+     * @param filter {@link Long} array.
+     * @param key {@link Long} value.
+     */
+    private static void add(@NotNull long[] filter, long key) {
+        int mask = filter.length * Long.SIZE - 1;
+        int first = (int)key;
+        int second = (int)(key >>> 32) | 1;
+
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (first + i * second) & mask;
+            filter[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Check if a filter may contain a key.
+     * @param filter {@link Long} array.
+     * @param key {@link Long} value.
+     * @return {@link Boolean} value.
+     */
+    private static boolean contains(@NotNull long[] filter, long key) {
+        int mask = filter.length * Long.SIZE - 1;
+        int first = (int)key;
+        int second = (int)(key >>> 32) | 1;
+
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (first + i * second) & mask;
+
+            if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
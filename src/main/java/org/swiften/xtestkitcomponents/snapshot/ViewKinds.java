@@ -0,0 +1,169 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.util.IntList;
+import org.swiften.xtestkitcomponents.view.ViewType;
+import org.swiften.xtestkitcomponents.view.ViewTypeTable;
+
+/**
+ * This class tags every node of a {@link SnapshotType} with the kind code
+ * and capability bits from a {@link ViewTypeTable}, so that checks such as
+ * whether a node is editable are array reads instead of class name
+ * comparisons. Nodes are classified by tag name, which is the class name
+ * in Appium page sources, and otherwise by their class attribute, as in
+ * uiautomator dumps.
+ */
+public final class ViewKinds {
+    /**
+     * The attribute that holds the class name when the tag does not.
+     */
+    @NotNull public static final String CLASS = "class";
+
+    /**
+     * Classify the nodes of a {@link SnapshotType}. Each distinct class
+     * name is only resolved once, by {@link ViewTypeTable#kind(String)}.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param table {@link ViewTypeTable} instance.
+     * @return {@link ViewKinds} instance.
+     * @see #CLASS
+     */
+    @NotNull
+    static ViewKinds of(@NotNull SnapshotType snapshot, @NotNull ViewTypeTable table) {
+        int size = snapshot.size();
+        int[] kinds = new int[size];
+        byte[] capabilities = new byte[size];
+
+        for (int node = 0; node < size; node++) {
+            int kind = table.kind(snapshot.tagName(node));
+
+            if (kind == ViewTypeTable.UNKNOWN) {
+                String className = snapshot.attribute(node, CLASS);
+
+                if (className != null) {
+                    kind = table.kind(className);
+                }
+            }
+
+            kinds[node] = kind;
+            capabilities[node] = (byte)table.capabilities(kind);
+        }
+
+        return new ViewKinds(table, kinds, capabilities);
+    }
+
+    @NotNull private final ViewTypeTable TABLE;
+    @NotNull private final int[] KINDS;
+    @NotNull private final byte[] CAPABILITIES;
+
+    private ViewKinds(@NotNull ViewTypeTable table,
+                      @NotNull int[] kinds,
+                      @NotNull byte[] capabilities) {
+        TABLE = table;
+        KINDS = kinds;
+        CAPABILITIES = capabilities;
+    }
+
+    /**
+     * Get {@link #TABLE}.
+     * @return {@link ViewTypeTable} instance.
+     * @see #TABLE
+     */
+    @NotNull
+    public ViewTypeTable table() {
+        return TABLE;
+    }
+
+    /**
+     * Get the kind code of a node.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value, or {@link ViewTypeTable#UNKNOWN}.
+     * @see #KINDS
+     */
+    public int kind(int node) {
+        return KINDS[node];
+    }
+
+    /**
+     * Get the {@link ViewType} of a node.
+     * @param node {@link Integer} value.
+     * @return {@link ViewType} instance, or null if unknown.
+     * @see ViewTypeTable#viewType(int)
+     */
+    @Nullable
+    public ViewType viewType(int node) {
+        return TABLE.viewType(KINDS[node]);
+    }
+
+    /**
+     * Get the capability bits of a node.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} value.
+     * @see #CAPABILITIES
+     */
+    public int capabilities(int node) {
+        return CAPABILITIES[node];
+    }
+
+    /**
+     * Check if a node has all of some capability bits.
+     * @param node {@link Integer} value.
+     * @param mask {@link Integer} value.
+     * @return {@link Boolean} value.
+     * @see ViewTypeTable#CLICKABLE
+     * @see ViewTypeTable#EDITABLE
+     * @see ViewTypeTable#HAS_TEXT
+     */
+    public boolean has(int node, int mask) {
+        return (CAPABILITIES[node] & mask) == mask;
+    }
+
+    /**
+     * Check if a node can display text.
+     * @param node {@link Integer} value.
+     * @return {@link Boolean} value.
+     * @see ViewType#hasText()
+     */
+    public boolean hasText(int node) {
+        return has(node, ViewTypeTable.HAS_TEXT);
+    }
+
+    /**
+     * Check if a node is clickable.
+     * @param node {@link Integer} value.
+     * @return {@link Boolean} value.
+     * @see ViewType#isClickable()
+     */
+    public boolean isClickable(int node) {
+        return has(node, ViewTypeTable.CLICKABLE);
+    }
+
+    /**
+     * Check if a node is editable.
+     * @param node {@link Integer} value.
+     * @return {@link Boolean} value.
+     * @see ViewType#isEditable()
+     */
+    public boolean isEditable(int node) {
+        return has(node, ViewTypeTable.EDITABLE);
+    }
+
+    /**
+     * Get the ids of nodes that have all of some capability bits.
+     * @param mask {@link Integer} value.
+     * @return {@link Integer} array, sorted.
+     * @see #has(int, int)
+     */
+    @NotNull
+    public int[] nodes(int mask) {
+        IntList nodes = new IntList();
+
+        for (int node = 0; node < CAPABILITIES.length; node++) {
+            if (has(node, mask)) {
+                nodes.add(node);
+            }
+        }
+
+        return nodes.toArray();
+    }
+}
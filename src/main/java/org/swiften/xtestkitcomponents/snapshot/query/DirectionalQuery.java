@@ -0,0 +1,259 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.direction.Direction;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+import org.swiften.xtestkitcomponents.snapshot.SpatialIndex;
+import org.swiften.xtestkitcomponents.util.IntSets;
+import org.swiften.xtestkitcomponents.xpath.XPath;
+
+import java.util.function.IntPredicate;
+
+/**
+ * This class finds the closest node that matches a locator in a
+ * {@link Direction} from an anchor node, following the swipe it names:
+ * {@link Direction#UP_DOWN} looks below the anchor,
+ * {@link Direction#DOWN_UP} above it, {@link Direction#LEFT_RIGHT} to its
+ * right and {@link Direction#RIGHT_LEFT} to its left.
+ *
+ * Candidates must lie entirely past the anchor's leading edge, which is a
+ * half-plane that prunes whole branches of the {@link SpatialIndex}, and
+ * within a cone around the direction, measured from the middle of that
+ * edge. Distance is measured from the same point.
+ */
+public final class DirectionalQuery implements LocatorEvaluatorErrorType {
+    /**
+     * Default {@link #coneAngle}, in degrees from the direction.
+     */
+    public static final double DEFAULT_CONE_ANGLE = 45;
+
+    /**
+     * Get {@link Builder} instance.
+     * @return {@link Builder} instance.
+     */
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @NotNull private LocatorEvaluator evaluator;
+    private double coneAngle;
+    private double coneSlope;
+
+    DirectionalQuery() {
+        evaluator = LocatorEvaluator.builder().build();
+        coneAngle = DEFAULT_CONE_ANGLE;
+        coneSlope = Math.tan(Math.toRadians(DEFAULT_CONE_ANGLE));
+    }
+
+    /**
+     * Get {@link #evaluator}.
+     * @return {@link LocatorEvaluator} instance.
+     * @see #evaluator
+     */
+    @NotNull
+    public LocatorEvaluator evaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Get {@link #coneAngle}, the largest angle between the direction and
+     * a candidate. At 90 degrees, only the half-plane applies.
+     * @return {@link Double} value, in degrees.
+     * @see #coneAngle
+     */
+    public double coneAngle() {
+        return coneAngle;
+    }
+
+    /**
+     * Get the closest node in a {@link Direction} from an anchor that
+     * matches an {@link XPath}.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param anchor {@link Integer} value.
+     * @param direction {@link Direction} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Integer} value, or {@link SnapshotType#NO_NODE} if
+     * there is no match, or the anchor has no bounds.
+     * @see LocatorEvaluator#select(SnapshotType, XPath)
+     * @see #nearest(SnapshotType, int, Direction, int[])
+     */
+    public int nearest(@NotNull SnapshotType snapshot,
+                       int anchor,
+                       @NotNull Direction direction,
+                       @NotNull XPath xpath) {
+        return nearest(snapshot, anchor, direction, evaluator.select(snapshot, xpath));
+    }
+
+    /**
+     * Same as above, but uses nodes that were already selected.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param anchor {@link Integer} value.
+     * @param direction {@link Direction} instance.
+     * @param candidates {@link Integer} array, sorted.
+     * @return {@link Integer} value, or {@link SnapshotType#NO_NODE}.
+     * @see SpatialIndex#nearest(int, int, int[], IntPredicate)
+     * @see #NO_DIRECTION
+     */
+    public int nearest(@NotNull SnapshotType snapshot,
+                       int anchor,
+                       @NotNull Direction direction,
+                       @NotNull int[] candidates) {
+        if (!direction.isVertical() && !direction.isHorizontal()) {
+            throw new RuntimeException(NO_DIRECTION);
+        }
+
+        SpatialIndex index = snapshot.indexes().spatialIndex();
+
+        if (candidates.length == 0 || !index.hasBounds(anchor)) {
+            return SnapshotType.NO_NODE;
+        }
+
+        int left = index.left(anchor);
+        int top = index.top(anchor);
+        int right = index.right(anchor);
+        int bottom = index.bottom(anchor);
+        final int X;
+        final int Y;
+        int[] region;
+
+        switch (direction) {
+            case UP_DOWN:
+                X = (left + right) / 2;
+                Y = bottom;
+                region = new int[] { Integer.MIN_VALUE, bottom, Integer.MAX_VALUE, Integer.MAX_VALUE };
+                break;
+
+            case DOWN_UP:
+                X = (left + right) / 2;
+                Y = top;
+                region = new int[] { Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, top };
+                break;
+
+            case LEFT_RIGHT:
+                X = right;
+                Y = (top + bottom) / 2;
+                region = new int[] { right, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE };
+                break;
+
+            case RIGHT_LEFT:
+            default:
+                X = left;
+                Y = (top + bottom) / 2;
+                region = new int[] { Integer.MIN_VALUE, Integer.MIN_VALUE, left, Integer.MAX_VALUE };
+                break;
+        }
+
+        return index.nearest(X, Y, region, node ->
+            node != anchor
+                && IntSets.contains(candidates, node)
+                && isPast(index, node, direction, X, Y)
+                && inCone(index, node, direction, X, Y));
+    }
+
+    /**
+     * Check if a node lies entirely past a point in a {@link Direction}.
+     * The half-plane region only ensures overlap, so this finishes the
+     * check for each candidate.
+     * @param index {@link SpatialIndex} instance.
+     * @param node {@link Integer} value.
+     * @param direction {@link Direction} instance.
+     * @param x {@link Integer} value.
+     * @param y {@link Integer} value.
+     * @return {@link Boolean} value.
+     */
+    private boolean isPast(@NotNull SpatialIndex index,
+                           int node,
+                           @NotNull Direction direction,
+                           int x,
+                           int y) {
+        switch (direction) {
+            case UP_DOWN:
+                return index.top(node) >= y;
+
+            case DOWN_UP:
+                return index.bottom(node) <= y;
+
+            case LEFT_RIGHT:
+                return index.left(node) >= x;
+
+            case RIGHT_LEFT:
+            default:
+                return index.right(node) <= x;
+        }
+    }
+
+    /**
+     * Check if the closest point of a node lies within the cone around a
+     * {@link Direction}.
+     * @param index {@link SpatialIndex} instance.
+     * @param node {@link Integer} value.
+     * @param direction {@link Direction} instance.
+     * @param x {@link Integer} value.
+     * @param y {@link Integer} value.
+     * @return {@link Boolean} value.
+     * @see #coneSlope
+     */
+    private boolean inCone(@NotNull SpatialIndex index,
+                           int node,
+                           @NotNull Direction direction,
+                           int x,
+                           int y) {
+        if (coneAngle >= 90) {
+            return true;
+        }
+
+        long px = Math.max(index.left(node), Math.min(x, index.right(node) - 1));
+        long py = Math.max(index.top(node), Math.min(y, index.bottom(node) - 1));
+        long along = direction.isVertical() ? Math.abs(py - y) : Math.abs(px - x);
+        long across = direction.isVertical() ? Math.abs(px - x) : Math.abs(py - y);
+        return across <= along * coneSlope;
+    }
+
+    /**
+     * Builder class for {@link DirectionalQuery}.
+     */
+    public static final class Builder {
+        @NotNull private final DirectionalQuery QUERY;
+
+        Builder() {
+            QUERY = new DirectionalQuery();
+        }
+
+        /**
+         * Set the {@link #evaluator} instance.
+         * @param evaluator {@link LocatorEvaluator} instance.
+         * @return {@link Builder} instance.
+         * @see #evaluator
+         */
+        @NotNull
+        public Builder withEvaluator(@NotNull LocatorEvaluator evaluator) {
+            QUERY.evaluator = evaluator;
+            return this;
+        }
+
+        /**
+         * Set the {@link #coneAngle} value.
+         * @param degrees {@link Double} value, clamped to between 0 and 90.
+         * @return {@link Builder} instance.
+         * @see #coneAngle
+         * @see #coneSlope
+         */
+        @NotNull
+        public Builder withConeAngle(double degrees) {
+            QUERY.coneAngle = Math.max(0, Math.min(90, degrees));
+            QUERY.coneSlope = Math.tan(Math.toRadians(QUERY.coneAngle));
+            return this;
+        }
+
+        /**
+         * Get {@link #QUERY}.
+         * @return {@link DirectionalQuery} instance.
+         * @see #QUERY
+         */
+        @NotNull
+        public DirectionalQuery build() {
+            return QUERY;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+import org.swiften.xtestkitcomponents.xpath.AttributeType;
+import org.swiften.xtestkitcomponents.xpath.XPath;
+
+import java.util.*;
+
+/**
+ * This class is a {@link LocatorEvaluator} that records a
+ * {@link StepProfile} for every step it applies. Predicates are compiled
+ * one by one and wrapped so that each can be counted and timed, and
+ * nested locators are evaluated by the same instance, so their steps are
+ * recorded under the predicate that tested them.
+ *
+ * Counters are not synchronized, so an instance must only be used for
+ * one {@link #profile(SnapshotType, XPath)} on one thread.
+ */
+final class ExplainingEvaluator extends LocatorEvaluator {
+    @NotNull private final Map<LocatorPlan.Step, StepProfile> STEPS;
+    @NotNull private final Deque<StepProfile> ACTIVE_STEPS;
+    @NotNull private final Deque<PredicateProfile> ACTIVE_PREDICATES;
+
+    ExplainingEvaluator(@NotNull LocatorEvaluator options) {
+        super(options);
+        STEPS = new LinkedHashMap<>();
+        ACTIVE_STEPS = new ArrayDeque<>();
+        ACTIVE_PREDICATES = new ArrayDeque<>();
+    }
+
+    /**
+     * Select the nodes that match an {@link XPath} and collect the
+     * profiles of all steps.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link LocatorExplanation} instance.
+     * @see #select(SnapshotType, LocatorPlan, int, int)
+     */
+    @NotNull
+    LocatorExplanation profile(@NotNull SnapshotType snapshot, @NotNull XPath xpath) {
+        LocatorPlan plan = LocatorPlan.of(xpath);
+        long start = System.nanoTime();
+        int[] nodes = select(snapshot, plan, DOCUMENT, Integer.MAX_VALUE);
+        long nanos = System.nanoTime() - start;
+        return new LocatorExplanation(xpath.renderAttribute(), nodes, new ArrayList<>(STEPS.values()), nanos);
+    }
+
+    @NotNull
+    @Override
+    int[] applyStep(@NotNull SnapshotType snapshot,
+                    @NotNull LocatorPlan plan,
+                    @NotNull LocatorPlan.Step step,
+                    @NotNull int[] context,
+                    int limit) {
+        PredicateProfile owner = ACTIVE_PREDICATES.peek();
+
+        StepProfile profile = owner != null
+            ? owner.nested(step)
+            : STEPS.computeIfAbsent(step, StepProfile::new);
+
+        profile.calls += 1;
+        profile.contextNodes += context.length;
+        ACTIVE_STEPS.push(profile);
+        long start = System.nanoTime();
+
+        try {
+            int[] result = super.applyStep(snapshot, plan, step, context, limit);
+            profile.kept += result.length;
+            return result;
+        } finally {
+            profile.nanos += System.nanoTime() - start;
+            ACTIVE_STEPS.pop();
+        }
+    }
+
+    @NotNull
+    @Override
+    int[] prune(@NotNull SnapshotType snapshot,
+                @NotNull LocatorPlan.Step step,
+                @NotNull int[] context) {
+        int[] pruned = super.prune(snapshot, step, context);
+        StepProfile profile = ACTIVE_STEPS.peek();
+
+        if (profile != null) {
+            profile.prunedContexts += context.length - pruned.length;
+        }
+
+        return pruned;
+    }
+
+    @Nullable
+    @Override
+    int[] candidates(@NotNull SnapshotType snapshot, @NotNull LocatorPlan.Step step) {
+        int[] candidates = super.candidates(snapshot, step);
+        StepProfile profile = ACTIVE_STEPS.peek();
+
+        if (profile != null && candidates != null) {
+            profile.indexedCalls += 1;
+            profile.indexCandidates += candidates.length;
+        }
+
+        return candidates;
+    }
+
+    @Override
+    boolean matchesName(@NotNull SnapshotType snapshot,
+                        @NotNull LocatorPlan.Step step,
+                        int node) {
+        StepProfile profile = ACTIVE_STEPS.peek();
+
+        if (profile != null) {
+            profile.visited += 1;
+        }
+
+        return super.matchesName(snapshot, step, node);
+    }
+
+    /**
+     * Same as the super method, but the name test is counted as a visit,
+     * and each predicate is traced.
+     * @param plan {@link LocatorPlan} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @return {@link NodePredicate} instance.
+     * @see #predicate(LocatorPlan, Collection)
+     */
+    @NotNull
+    @Override
+    NodePredicate predicate(@NotNull LocatorPlan plan, @NotNull LocatorPlan.Step step) {
+        List<AttributeType> predicates = new ArrayList<>();
+
+        for (LocatorPlan.Segment segment : step.segments()) {
+            predicates.addAll(segment.predicates());
+        }
+
+        final StepProfile PROFILE = Objects.requireNonNull(ACTIVE_STEPS.peek());
+        final NodePredicate FILTER = predicate(plan, predicates);
+        final boolean ANY_NAME = step.matchesAnyName();
+        final String NAME = step.nameTest();
+
+        return (snapshot, node) -> {
+            PROFILE.visited += 1;
+
+            return (ANY_NAME || snapshot.tagEquals(node, NAME))
+                && FILTER.test(snapshot, node);
+        };
+    }
+
+    /**
+     * Same as the super method, but each predicate is traced.
+     * @param plan {@link LocatorPlan} instance.
+     * @param predicates {@link Collection} of {@link AttributeType}.
+     * @return {@link NodePredicate} instance.
+     * @see PredicateCompiler#compile(LocatorPlan, AttributeType)
+     * @see PredicateCompiler#join(NodePredicate[], boolean)
+     * @see #trace(PredicateProfile, NodePredicate)
+     */
+    @NotNull
+    @Override
+    NodePredicate predicate(@NotNull LocatorPlan plan,
+                            @NotNull Collection<AttributeType> predicates) {
+        StepProfile profile = Objects.requireNonNull(ACTIVE_STEPS.peek());
+        NodePredicate[] traced = new NodePredicate[predicates.size()];
+        int i = 0;
+
+        for (AttributeType predicate : predicates) {
+            NodePredicate compiled = compiler().compile(plan, predicate);
+            traced[i++] = trace(profile.predicate(predicate), compiled);
+        }
+
+        return PredicateCompiler.join(traced, true);
+    }
+
+    /**
+     * Count and time every test of a predicate. While it is being tested,
+     * steps applied by nested locators are recorded under it.
+     * @param profile {@link PredicateProfile} instance.
+     * @param predicate {@link NodePredicate} instance.
+     * @return {@link NodePredicate} instance.
+     * @see #ACTIVE_PREDICATES
+     */
+    @NotNull
+    private NodePredicate trace(@NotNull final PredicateProfile profile,
+                                @NotNull final NodePredicate predicate) {
+        return (snapshot, node) -> {
+            ACTIVE_PREDICATES.push(profile);
+            long start = System.nanoTime();
+
+            try {
+                boolean passed = predicate.test(snapshot, node);
+                profile.passed += passed ? 1 : 0;
+                return passed;
+            } finally {
+                profile.tested += 1;
+                profile.nanos += System.nanoTime() - start;
+                ACTIVE_PREDICATES.pop();
+            }
+        };
+    }
+}
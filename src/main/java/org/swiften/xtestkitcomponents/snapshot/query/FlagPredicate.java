@@ -0,0 +1,251 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.snapshot.CompactSnapshot;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+import org.swiften.xtestkitcomponents.util.IntList;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is a {@link NodePredicate} that compares boolean attributes,
+ * such as those of {@link org.swiften.xtestkitcomponents.xpath.Attributes#isEnabled(boolean)},
+ * against true or false. On a {@link CompactSnapshot} that stores them as
+ * flags, the literals are resolved once per snapshot into one mask, and
+ * each node is tested with {@link CompactSnapshot#flagMask(int)}: all
+ * bits must be set for an and, any bit for an or. Other snapshots, or
+ * attributes that are not flags, use the string comparisons in
+ * {@link #FALLBACK}.
+ */
+final class FlagPredicate implements NodePredicate {
+    /**
+     * Check if an expected value can be compared against flags.
+     * @param expected {@link String} value.
+     * @return {@link Boolean} value.
+     */
+    static boolean isFlagValue(@NotNull String expected) {
+        return "true".equals(expected) || "false".equals(expected);
+    }
+
+    /**
+     * Merge {@link FlagPredicate} that are joined with and/or into one
+     * {@link FlagPredicate}. This works if none is negated, and each has
+     * either one literal or the same joiner.
+     * @param predicates {@link NodePredicate} array.
+     * @param and {@link Boolean} value.
+     * @return {@link FlagPredicate} instance, or null if they cannot be
+     * merged.
+     * @see PredicateCompiler#join(NodePredicate[], boolean)
+     */
+    @Nullable
+    static FlagPredicate merge(@NotNull NodePredicate[] predicates, boolean and) {
+        if (predicates.length < 2) {
+            return null;
+        }
+
+        int count = 0;
+
+        for (NodePredicate predicate : predicates) {
+            if (!(predicate instanceof FlagPredicate)) {
+                return null;
+            }
+
+            FlagPredicate flag = (FlagPredicate)predicate;
+
+            if (flag.NEGATED || (flag.NAMES.length > 1 && flag.AND != and)) {
+                return null;
+            }
+
+            count += flag.NAMES.length;
+        }
+
+        String[] names = new String[count];
+        boolean[] values = new boolean[count];
+        NodePredicate[] fallbacks = new NodePredicate[predicates.length];
+        int i = 0;
+
+        for (int j = 0; j < predicates.length; j++) {
+            FlagPredicate flag = (FlagPredicate)predicates[j];
+            System.arraycopy(flag.NAMES, 0, names, i, flag.NAMES.length);
+            System.arraycopy(flag.VALUES, 0, values, i, flag.VALUES.length);
+            fallbacks[j] = flag.FALLBACK;
+            i += flag.NAMES.length;
+        }
+
+        NodePredicate fallback = PredicateCompiler.join(fallbacks, and);
+        return new FlagPredicate(names, values, and, false, fallback);
+    }
+
+    @NotNull private final String[] NAMES;
+    @NotNull private final boolean[] VALUES;
+    private final boolean AND;
+    private final boolean NEGATED;
+    @NotNull private final NodePredicate FALLBACK;
+    @Nullable private volatile Resolution resolution;
+
+    /**
+     * Create a {@link FlagPredicate} for one {@link org.swiften.xtestkitcomponents.xpath.Attribute}.
+     * @param names {@link List} of attribute names.
+     * @param value {@link Boolean} value expected for every name.
+     * @param and {@link Boolean} value.
+     * @param negated {@link Boolean} value.
+     * @param fallback {@link NodePredicate} with the same result.
+     */
+    FlagPredicate(@NotNull List<String> names,
+                  boolean value,
+                  boolean and,
+                  boolean negated,
+                  @NotNull NodePredicate fallback) {
+        this(names.toArray(new String[names.size()]), new boolean[names.size()], and, negated, fallback);
+        Arrays.fill(VALUES, value);
+    }
+
+    private FlagPredicate(@NotNull String[] names,
+                          @NotNull boolean[] values,
+                          boolean and,
+                          boolean negated,
+                          @NotNull NodePredicate fallback) {
+        NAMES = names;
+        VALUES = values;
+        AND = and;
+        NEGATED = negated;
+        FALLBACK = fallback;
+    }
+
+    /**
+     * Get the number of literals.
+     * @return {@link Integer} value.
+     * @see #NAMES
+     */
+    int size() {
+        return NAMES.length;
+    }
+
+    @Override
+    public boolean test(@NotNull SnapshotType snapshot, int node) {
+        if (snapshot instanceof CompactSnapshot) {
+            CompactSnapshot compact = (CompactSnapshot)snapshot;
+            long mask = mask(compact);
+
+            if (mask != 0) {
+                return matches(compact.flagMask(node), mask);
+            }
+        }
+
+        return FALLBACK.test(snapshot, node);
+    }
+
+    /**
+     * Add every node in a range that passes, in the same way as
+     * {@link LocatorEvaluator#scan(SnapshotType, NodePredicate, int[], int, int, IntList, int)},
+     * but resolving the mask once for the whole range.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param candidates {@link Integer} array, sorted, or null to visit
+     *                   every node in the range.
+     * @param start {@link Integer} value, inclusive.
+     * @param end {@link Integer} value, exclusive.
+     * @param result {@link IntList} instance.
+     * @param limit {@link Integer} value.
+     * @return {@link Boolean} value, false if the mask cannot be used and
+     * nothing was added.
+     * @see #matches(long, long)
+     */
+    boolean scan(@NotNull SnapshotType snapshot,
+                 @Nullable int[] candidates,
+                 int start,
+                 int end,
+                 @NotNull IntList result,
+                 int limit) {
+        if (!(snapshot instanceof CompactSnapshot)) {
+            return false;
+        }
+
+        CompactSnapshot compact = (CompactSnapshot)snapshot;
+        long mask = mask(compact);
+
+        if (mask == 0) {
+            return false;
+        }
+
+        if (candidates == null) {
+            for (int node = start; node < end && result.size() < limit; node++) {
+                if (matches(compact.flagMask(node), mask)) {
+                    result.add(node);
+                }
+            }
+
+            return true;
+        }
+
+        int i = Arrays.binarySearch(candidates, start);
+
+        for (i = i >= 0 ? i : -i - 1;
+             i < candidates.length && candidates[i] < end && result.size() < limit;
+             i++) {
+            if (matches(compact.flagMask(candidates[i]), mask)) {
+                result.add(candidates[i]);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if the flag mask of a node passes.
+     * @param flags {@link Long} value.
+     * @param mask {@link Long} value.
+     * @return {@link Boolean} value.
+     */
+    private boolean matches(long flags, long mask) {
+        return (AND ? (flags & mask) == mask : (flags & mask) != 0) != NEGATED;
+    }
+
+    /**
+     * Get the mask of the literals for a {@link CompactSnapshot}. Snapshots
+     * of one session are tested one after another, so only the last
+     * resolution is kept.
+     * @param snapshot {@link CompactSnapshot} instance.
+     * @return {@link Long} value, or 0 if some attribute is not a flag.
+     * @see #resolution
+     */
+    private long mask(@NotNull CompactSnapshot snapshot) {
+        List<String> flagNames = snapshot.flagNames();
+        Resolution resolution = this.resolution;
+
+        if (resolution == null || resolution.FLAG_NAMES != flagNames) {
+            long mask = 0;
+
+            for (int i = 0; i < NAMES.length; i++) {
+                int flag = snapshot.flagIndex(NAMES[i]);
+
+                if (flag < 0 || flag >= CompactSnapshot.MASK_FLAGS) {
+                    mask = 0;
+                    break;
+                }
+
+                mask |= 1L << (VALUES[i] ? flag : flag + CompactSnapshot.MASK_FLAGS);
+            }
+
+            resolution = new Resolution(flagNames, mask);
+            this.resolution = resolution;
+        }
+
+        return resolution.MASK;
+    }
+
+    /**
+     * This class holds the mask of the literals for one list of flag
+     * names.
+     */
+    private static final class Resolution {
+        @NotNull final List<String> FLAG_NAMES;
+        final long MASK;
+
+        Resolution(@NotNull List<String> flagNames, long mask) {
+            FLAG_NAMES = flagNames;
+            MASK = mask;
+        }
+    }
+}
@@ -0,0 +1,1077 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotIndexes;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+import org.swiften.xtestkitcomponents.snapshot.SubtreeFilters;
+import org.swiften.xtestkitcomponents.util.IntList;
+import org.swiften.xtestkitcomponents.util.IntSets;
+import org.swiften.xtestkitcomponents.xpath.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * This class evaluates {@link XPath} and {@link CompoundAttribute} locators
+ * against a {@link SnapshotType} inside the JVM, with the same semantics as
+ * the rendered query. Results are node ids in document order.
+ *
+ * Exact tag names and exact-match predicates are first answered with
+ * {@link SnapshotIndexes}, so that only their candidates are walked. If
+ * enabled, substring predicates also narrow down candidates using trigram
+ * indexes, which cost memory for every attribute they are used with.
+ * Descendant searches can also skip subtrees whose {@link SubtreeFilters}
+ * show that they lack a required tag name or exact value.
+ *
+ * Predicates are compiled into {@link NodePredicate} once per step, and
+ * cached for as long as the {@link LocatorEvaluator} is kept. Steps that
+ * are applied often can optionally be promoted to generated bytecode.
+ */
+public class LocatorEvaluator implements LocatorEvaluatorErrorType {
+    /**
+     * Pseudo node id for the document node, which is the parent of the
+     * root element.
+     */
+    static final int DOCUMENT = -2;
+
+    /**
+     * Descendant scans over fewer nodes than this are not split.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+
+    /**
+     * Get {@link Builder} instance.
+     * @return {@link Builder} instance.
+     */
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @NotNull private final PredicateCompiler COMPILER;
+    @Nullable private ForkJoinPool pool;
+    @Nullable private QueryCache cache;
+    private boolean substringIndex;
+    private boolean subtreeFilters;
+    private int bytecodeThreshold;
+    private int parallelThreshold;
+
+    LocatorEvaluator() {
+        COMPILER = new PredicateCompiler(this);
+        bytecodeThreshold = -1;
+        parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    }
+
+    /**
+     * Copy the options that decide how candidates are found, but not those
+     * that change how work is scheduled or reused.
+     * @param options {@link LocatorEvaluator} instance.
+     */
+    LocatorEvaluator(@NotNull LocatorEvaluator options) {
+        this();
+        substringIndex = options.substringIndex;
+        subtreeFilters = options.subtreeFilters;
+    }
+
+    /**
+     * Get {@link #COMPILER}.
+     * @return {@link PredicateCompiler} instance.
+     * @see #COMPILER
+     */
+    @NotNull
+    PredicateCompiler compiler() {
+        return COMPILER;
+    }
+
+    /**
+     * Check if substring predicates use trigram indexes.
+     * @return {@link Boolean} value.
+     * @see #substringIndex
+     */
+    public boolean usesSubstringIndex() {
+        return substringIndex;
+    }
+
+    /**
+     * Check if descendant searches skip subtrees using
+     * {@link SubtreeFilters}.
+     * @return {@link Boolean} value.
+     * @see #subtreeFilters
+     */
+    public boolean usesSubtreeFilters() {
+        return subtreeFilters;
+    }
+
+    /**
+     * Get the {@link ForkJoinPool} used for large descendant scans.
+     * @return {@link ForkJoinPool} instance, or null if scans are
+     * sequential.
+     * @see #pool
+     */
+    @Nullable
+    public ForkJoinPool pool() {
+        return pool;
+    }
+
+    /**
+     * Get the {@link QueryCache} used to memoize {@link XPath} results.
+     * @return {@link QueryCache} instance, or null if results are not
+     * memoized.
+     * @see #cache
+     */
+    @Nullable
+    public QueryCache cache() {
+        return cache;
+    }
+
+    /**
+     * Get the number of nodes above which descendant scans are split
+     * into parallel tasks, and below which a task is not split further.
+     * @return {@link Integer} value.
+     * @see #parallelThreshold
+     */
+    public int parallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Get the number of times a {@link LocatorPlan.Step} is applied before
+     * its predicates are compiled to bytecode.
+     * @return {@link Integer} value, negative if bytecode is disabled.
+     * @see #bytecodeThreshold
+     */
+    public int bytecodeThreshold() {
+        return bytecodeThreshold;
+    }
+
+    /**
+     * Select the ids of all nodes that match an {@link XPath}. If
+     * {@link #cache} is set, a copy of the memoized result is returned, so
+     * that callers cannot corrupt later hits.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Integer} array, in document order.
+     * @see #selectShared(SnapshotType, XPath)
+     */
+    @NotNull
+    public int[] select(@NotNull SnapshotType snapshot, @NotNull XPath xpath) {
+        int[] nodes = selectShared(snapshot, xpath);
+        return cache != null ? nodes.clone() : nodes;
+    }
+
+    /**
+     * Same as {@link #select(SnapshotType, XPath)}, but returns the
+     * memoized result itself. This is used by callers that only read it.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Integer} array, in document order. Do not modify.
+     * @see LocatorPlan#of(XPath)
+     * @see QueryCache#select(LocatorEvaluator, SnapshotType, XPath)
+     * @see #select(SnapshotType, LocatorPlan)
+     */
+    @NotNull
+    private int[] selectShared(@NotNull SnapshotType snapshot, @NotNull XPath xpath) {
+        QueryCache cache = this.cache;
+
+        if (cache != null) {
+            return cache.select(this, snapshot, xpath);
+        } else {
+            return select(snapshot, LocatorPlan.of(xpath));
+        }
+    }
+
+    /**
+     * Same as above, but uses a {@link LocatorPlan}.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param plan {@link LocatorPlan} instance.
+     * @return {@link Integer} array, in document order.
+     * @see #select(SnapshotType, LocatorPlan, int, int)
+     */
+    @NotNull
+    public int[] select(@NotNull SnapshotType snapshot, @NotNull LocatorPlan plan) {
+        return select(snapshot, plan, DOCUMENT, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get {@link NodeDescriptor} for all nodes that match an {@link XPath}.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link List} of {@link NodeDescriptor}, in document order.
+     * @see #selectShared(SnapshotType, XPath)
+     */
+    @NotNull
+    public List<NodeDescriptor> evaluate(@NotNull SnapshotType snapshot,
+                                         @NotNull XPath xpath) {
+        List<NodeDescriptor> descriptors = new ArrayList<>();
+
+        for (int node : selectShared(snapshot, xpath)) {
+            descriptors.add(new NodeDescriptor(snapshot, node));
+        }
+
+        return descriptors;
+    }
+
+    /**
+     * Check if any node matches an {@link XPath}. This stops at the first
+     * match where possible, and uses a memoized result if there is one.
+     * Partial results are not memoized.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Boolean} value.
+     * @see LocatorPlan#of(XPath)
+     * @see QueryCache#get(SnapshotType, XPath)
+     * @see #select(SnapshotType, LocatorPlan, int, int)
+     */
+    public boolean exists(@NotNull SnapshotType snapshot, @NotNull XPath xpath) {
+        QueryCache cache = this.cache;
+        int[] cached = cache != null ? cache.get(snapshot, xpath) : null;
+
+        if (cached != null) {
+            return cached.length > 0;
+        }
+
+        LocatorPlan plan = LocatorPlan.of(xpath);
+        return select(snapshot, plan, DOCUMENT, 1).length > 0;
+    }
+
+    /**
+     * Count the nodes that match an {@link XPath}.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Integer} value.
+     * @see #selectShared(SnapshotType, XPath)
+     */
+    public int count(@NotNull SnapshotType snapshot, @NotNull XPath xpath) {
+        return selectShared(snapshot, xpath).length;
+    }
+
+    /**
+     * Select the nodes that match an {@link XPath}, and record for every
+     * step and predicate how many nodes were visited and kept, whether
+     * an index was used and how long it took. This runs sequentially,
+     * without {@link #cache} or bytecode, so it is slower than
+     * {@link #select(SnapshotType, XPath)}.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link LocatorExplanation} instance.
+     * @see ExplainingEvaluator#profile(SnapshotType, XPath)
+     */
+    @NotNull
+    public LocatorExplanation explain(@NotNull SnapshotType snapshot, @NotNull XPath xpath) {
+        return new ExplainingEvaluator(this).profile(snapshot, xpath);
+    }
+
+    /**
+     * Select the nodes that match every locator in a {@link LocatorTrie}.
+     * Each shared prefix is evaluated once, and branches whose prefix
+     * matches nothing are skipped for all of their locators.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param trie {@link LocatorTrie} instance.
+     * @return {@link LocatorMatches} instance.
+     * @see #select(SnapshotType, LocatorTrie.Node, int[], int[][])
+     */
+    @NotNull
+    public LocatorMatches select(@NotNull SnapshotType snapshot, @NotNull LocatorTrie trie) {
+        int[][] matches = new int[trie.size()][];
+        Arrays.fill(matches, new int[0]);
+
+        if (snapshot.size() > 0) {
+            select(snapshot, trie.root(), new int[] { DOCUMENT }, matches);
+        }
+
+        return new LocatorMatches(snapshot.size(), matches);
+    }
+
+    /**
+     * Apply the {@link LocatorPlan.Step} of every child of a
+     * {@link LocatorTrie.Node} to the nodes selected by its prefix.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param node {@link LocatorTrie.Node} instance.
+     * @param context {@link Integer} array, in document order.
+     * @param matches {@link Integer} array of arrays, by locator index.
+     * @see #applyStep(SnapshotType, LocatorPlan, LocatorPlan.Step, int[], int)
+     */
+    void select(@NotNull SnapshotType snapshot,
+                @NotNull LocatorTrie.Node node,
+                @NotNull int[] context,
+                @NotNull int[][] matches) {
+        for (int i = 0, count = node.ACCEPTS.size(); i < count; i++) {
+            matches[node.ACCEPTS.get(i)] = context;
+        }
+
+        for (LocatorTrie.Node child : node.CHILDREN.values()) {
+            int[] result = applyStep(snapshot, child.PLAN, child.STEP, context, Integer.MAX_VALUE);
+
+            if (result.length > 0) {
+                select(snapshot, child, result, matches);
+            }
+        }
+    }
+
+    /**
+     * Select the ids of all nodes that match a {@link LocatorPlan},
+     * starting from a context node.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param plan {@link LocatorPlan} instance.
+     * @param context {@link Integer} value. The context node for relative
+     *                plans, or {@link #DOCUMENT}.
+     * @param limit {@link Integer} value. The maximum number of results
+     *              required from the last step.
+     * @return {@link Integer} array, in document order.
+     * @see LocatorPlan#isAbsolute()
+     * @see LocatorPlan#steps()
+     * @see #applyStep(SnapshotType, LocatorPlan, LocatorPlan.Step, int[], int)
+     */
+    @NotNull
+    int[] select(@NotNull SnapshotType snapshot,
+                 @NotNull LocatorPlan plan,
+                 int context,
+                 int limit) {
+        List<LocatorPlan.Step> steps = plan.steps();
+        int[] current = new int[] { plan.isAbsolute() ? DOCUMENT : context };
+
+        if (snapshot.size() == 0 || steps.isEmpty()) {
+            return new int[0];
+        }
+
+        for (int i = 0, count = steps.size(); i < count && current.length > 0; i++) {
+            int stepLimit = i == count - 1 ? limit : Integer.MAX_VALUE;
+            current = applyStep(snapshot, plan, steps.get(i), current, stepLimit);
+        }
+
+        return current;
+    }
+
+    /**
+     * Apply a {@link LocatorPlan.Step} to a set of context nodes.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param plan {@link LocatorPlan} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @param context {@link Integer} array, in document order.
+     * @param limit {@link Integer} value.
+     * @return {@link Integer} array, in document order.
+     * @see LocatorPlan.Step#isPositional()
+     * @see #applyPositional(SnapshotType, LocatorPlan, LocatorPlan.Step, int[], int)
+     * @see #applyDescendants(SnapshotType, LocatorPlan, LocatorPlan.Step, int[], int)
+     * @see #applyOther(SnapshotType, LocatorPlan, LocatorPlan.Step, int[], int)
+     */
+    @NotNull
+    int[] applyStep(@NotNull SnapshotType snapshot,
+                    @NotNull LocatorPlan plan,
+                    @NotNull LocatorPlan.Step step,
+                    @NotNull int[] context,
+                    int limit) {
+        Axis axis = step.axis();
+
+        if (step.isPositional()) {
+            return applyPositional(snapshot, plan, step, context, limit);
+        } else if (axis == Axis.DESCENDANT || (axis == Axis.CHILD && step.isAnyPath())) {
+            /* descendant-or-self::node()/child::x and descendant::x both
+             * select the descendants of the context nodes */
+            return applyDescendants(snapshot, plan, step, context, limit);
+        } else {
+            return applyOther(snapshot, plan, step, context, limit);
+        }
+    }
+
+    /**
+     * Select matching descendants of the context nodes. Because subtrees
+     * are contiguous id ranges, this is a scan over merged ranges. If a
+     * {@link ForkJoinPool} is set and the ranges hold more than
+     * {@link #parallelThreshold} nodes, they are scanned in parallel.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param plan {@link LocatorPlan} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @param context {@link Integer} array, in document order.
+     * @param limit {@link Integer} value.
+     * @return {@link Integer} array, in document order.
+     * @see #prune(SnapshotType, LocatorPlan.Step, int[])
+     * @see #scan(SnapshotType, NodePredicate, int[], int, int, IntList, int)
+     * @see RangeScanTask
+     */
+    @NotNull
+    int[] applyDescendants(@NotNull SnapshotType snapshot,
+                           @NotNull LocatorPlan plan,
+                           @NotNull LocatorPlan.Step step,
+                           @NotNull int[] context,
+                           int limit) {
+        if (subtreeFilters) {
+            context = prune(snapshot, step, context);
+
+            if (context.length == 0) {
+                return context;
+            }
+        }
+
+        IntList ranges = new IntList();
+        int covered = 0;
+        long total = 0;
+
+        for (int node : context) {
+            int start = node == DOCUMENT ? 0 : node + 1;
+            int end = node == DOCUMENT ? snapshot.size() : snapshot.subtreeEnd(node);
+            start = Math.max(start, covered);
+
+            if (start < end) {
+                ranges.add(start);
+                ranges.add(end);
+                total += end - start;
+                covered = end;
+            }
+        }
+
+        NodePredicate predicate = predicate(plan, step);
+        int[] candidates = candidates(snapshot, step);
+        ForkJoinPool pool = this.pool;
+
+        /* A limit means that the first matches are wanted, which only a
+         * sequential scan finds without extra work */
+        if (pool != null && limit == Integer.MAX_VALUE && total > parallelThreshold) {
+            RangeScanTask task = RangeScanTask.of(
+                this, snapshot, predicate, candidates, ranges, parallelThreshold);
+
+            return pool.invoke(task);
+        }
+
+        IntList result = new IntList();
+
+        for (int i = 0, count = ranges.size(); i < count && result.size() < limit; i += 2) {
+            scan(snapshot, predicate, candidates, ranges.get(i), ranges.get(i + 1), result, limit);
+        }
+
+        return result.toArray();
+    }
+
+    /**
+     * Remove context nodes whose subtrees cannot contain a node that passes
+     * a {@link LocatorPlan.Step}. This is checked before any index is
+     * read, which matters most for nested predicates that search the
+     * descendants of every candidate.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @param context {@link Integer} array, in document order.
+     * @return {@link Integer} array, in document order.
+     * @see LocatorPlan.Step#requiredKeys()
+     * @see SubtreeFilters#mightContain(int, long[])
+     */
+    @NotNull
+    int[] prune(@NotNull SnapshotType snapshot,
+                @NotNull LocatorPlan.Step step,
+                @NotNull int[] context) {
+        long[] keys = step.requiredKeys();
+
+        if (keys.length == 0) {
+            return context;
+        }
+
+        SubtreeFilters filters = snapshot.indexes().subtreeFilters();
+        IntList pruned = new IntList(context.length);
+
+        for (int node : context) {
+            /* The root's filter covers the whole document */
+            if (filters.mightContain(node == DOCUMENT ? 0 : node, keys)) {
+                pruned.add(node);
+            }
+        }
+
+        return pruned.size() == context.length ? context : pruned.toArray();
+    }
+
+    /**
+     * Add every node in a range that passes a compiled
+     * {@link LocatorPlan.Step}, visiting only indexed candidates if there
+     * are any.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param predicate {@link NodePredicate} instance.
+     * @param candidates {@link Integer} array, sorted, or null to visit
+     *                   every node in the range.
+     * @param start {@link Integer} value, inclusive.
+     * @param end {@link Integer} value, exclusive.
+     * @param result {@link IntList} instance.
+     * @param limit {@link Integer} value.
+     * @see FlagPredicate#scan(SnapshotType, int[], int, int, IntList, int)
+     * @see #predicate(LocatorPlan, LocatorPlan.Step)
+     */
+    void scan(@NotNull SnapshotType snapshot,
+              @NotNull NodePredicate predicate,
+              @Nullable int[] candidates,
+              int start,
+              int end,
+              @NotNull IntList result,
+              int limit) {
+        if (predicate instanceof FlagPredicate
+            && ((FlagPredicate)predicate).scan(snapshot, candidates, start, end, result, limit)) {
+            return;
+        }
+
+        if (candidates == null) {
+            for (int node = start; node < end && result.size() < limit; node++) {
+                if (predicate.test(snapshot, node)) {
+                    result.add(node);
+                }
+            }
+
+            return;
+        }
+
+        int i = Arrays.binarySearch(candidates, start);
+
+        for (i = i >= 0 ? i : -i - 1;
+             i < candidates.length && candidates[i] < end && result.size() < limit;
+             i++) {
+            if (predicate.test(snapshot, candidates[i])) {
+                result.add(candidates[i]);
+            }
+        }
+    }
+
+    /**
+     * Compile the name test and all predicates of a non-positional
+     * {@link LocatorPlan.Step}.
+     * @param plan {@link LocatorPlan} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @return {@link NodePredicate} instance.
+     * @see PredicateCompiler#compile(LocatorPlan, LocatorPlan.Step)
+     */
+    @NotNull
+    NodePredicate predicate(@NotNull LocatorPlan plan, @NotNull LocatorPlan.Step step) {
+        return COMPILER.compile(plan, step);
+    }
+
+    /**
+     * Compile predicates that must all pass.
+     * @param plan {@link LocatorPlan} instance.
+     * @param predicates {@link Collection} of {@link AttributeType}.
+     * @return {@link NodePredicate} instance.
+     * @see PredicateCompiler#compile(LocatorPlan, Collection)
+     */
+    @NotNull
+    NodePredicate predicate(@NotNull LocatorPlan plan,
+                            @NotNull Collection<AttributeType> predicates) {
+        return COMPILER.compile(plan, predicates);
+    }
+
+    /**
+     * Get the nodes that may pass a non-positional
+     * {@link LocatorPlan.Step}, by intersecting the {@link SnapshotIndexes}
+     * entries for its name test and its exact-match predicates.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @return {@link Integer} array, sorted, or null if no index applies.
+     * @see SnapshotIndexes#tagged(String)
+     * @see #candidates(SnapshotIndexes, AttributeType)
+     */
+    @Nullable
+    int[] candidates(@NotNull SnapshotType snapshot, @NotNull LocatorPlan.Step step) {
+        SnapshotIndexes indexes = snapshot.indexes();
+        int[] result = step.matchesAnyName() ? null : indexes.tagged(step.nameTest());
+
+        for (LocatorPlan.Segment segment : step.segments()) {
+            for (AttributeType predicate : segment.predicates()) {
+                int[] ids = candidates(indexes, predicate);
+
+                if (ids != null) {
+                    result = result != null ? IntSets.intersect(result, ids) : ids;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the nodes that may pass a predicate.
+     * @param indexes {@link SnapshotIndexes} instance.
+     * @param predicate {@link AttributeType} instance.
+     * @return {@link Integer} array, sorted, or null if the predicate
+     * cannot be answered with an index.
+     * @see Comparison#isSubstring()
+     * @see SnapshotIndexes#containing(String, String, boolean)
+     * @see SnapshotIndexes#withAttribute(String, String)
+     * @see #substringIndex
+     */
+    @Nullable
+    int[] candidates(@NotNull SnapshotIndexes indexes, @NotNull AttributeType predicate) {
+        if (predicate instanceof Attribute) {
+            Attribute<?> attribute = (Attribute<?>)predicate;
+            Comparison comparison = attribute.formatible().comparison();
+
+            if (attribute.wrapper() == Wrapper.NOT
+                || (comparison.isSubstring() && !substringIndex)) {
+                return null;
+            }
+
+            String value = String.valueOf(attribute.value());
+            boolean and = attribute.joiner() == Joiner.AND;
+            int[] result = null;
+
+            for (String name : attribute.attributes()) {
+                int[] ids = comparison.isSubstring()
+                    ? indexes.containing(name, value, comparison == Comparison.CONTAINS_IGNORE_CASE)
+                    : indexes.withAttribute(name, value);
+
+                if (ids == null && !and) {
+                    return null;
+                } else if (ids != null) {
+                    if (result == null) {
+                        result = ids;
+                    } else {
+                        result = and ? IntSets.intersect(result, ids) : IntSets.union(result, ids);
+                    }
+                }
+            }
+
+            return result;
+        } else if (predicate instanceof AttributeBlock) {
+            AttributeBlock block = (AttributeBlock)predicate;
+            boolean and = block.joiner() == Joiner.AND;
+            int[] result = null;
+
+            for (AttributeType child : block.attributes()) {
+                int[] ids = candidates(indexes, child);
+
+                if (ids == null && !and) {
+                    /* One unindexed alternative may match any node */
+                    return null;
+                } else if (ids != null) {
+                    if (result == null) {
+                        result = ids;
+                    } else {
+                        result = and ? IntSets.intersect(result, ids) : IntSets.union(result, ids);
+                    }
+                }
+            }
+
+            return result;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Select matching nodes for child, sibling and self axes.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param plan {@link LocatorPlan} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @param context {@link Integer} array, in document order.
+     * @param limit {@link Integer} value.
+     * @return {@link Integer} array, in document order.
+     * @see #axisNodes(SnapshotType, int, Axis, IntList, BitSet)
+     * @see #expand(SnapshotType, LocatorPlan.Step, int[])
+     * @see #predicate(LocatorPlan, LocatorPlan.Step)
+     */
+    @NotNull
+    int[] applyOther(@NotNull SnapshotType snapshot,
+                     @NotNull LocatorPlan plan,
+                     @NotNull LocatorPlan.Step step,
+                     @NotNull int[] context,
+                     int limit) {
+        int[] base = expand(snapshot, step, context);
+        IntList candidates = new IntList();
+        BitSet seen = new BitSet(snapshot.size());
+
+        if (step.axis() == Axis.PRECEDING_SIBLING) {
+            /* Walking from the last context node first lets each sibling
+             * chain stop at nodes that were already visited */
+            for (int i = base.length - 1; i >= 0; i--) {
+                axisNodes(snapshot, base[i], step.axis(), candidates, seen);
+            }
+        } else {
+            for (int node : base) {
+                axisNodes(snapshot, node, step.axis(), candidates, seen);
+            }
+        }
+
+        IntList result = new IntList();
+        int[] indexed = candidates(snapshot, step);
+        NodePredicate predicate = predicate(plan, step);
+
+        for (int node : candidates.toSortedSet()) {
+            if (indexed != null && !IntSets.contains(indexed, node)) {
+                continue;
+            }
+
+            if (predicate.test(snapshot, node)) {
+                result.add(node);
+
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+        }
+
+        return result.toArray();
+    }
+
+    /**
+     * Select matching nodes for a {@link LocatorPlan.Step} with position
+     * predicates, which must be applied separately for each context node.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param plan {@link LocatorPlan} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @param context {@link Integer} array, in document order.
+     * @param limit {@link Integer} value.
+     * @return {@link Integer} array, in document order.
+     * @see #axisNodes(SnapshotType, int, Axis, IntList, BitSet)
+     * @see #expand(SnapshotType, LocatorPlan.Step, int[])
+     * @see #filterSegment(SnapshotType, LocatorPlan, LocatorPlan.Segment, IntList)
+     * @see #matchesName(SnapshotType, LocatorPlan.Step, int)
+     */
+    @NotNull
+    int[] applyPositional(@NotNull SnapshotType snapshot,
+                          @NotNull LocatorPlan plan,
+                          @NotNull LocatorPlan.Step step,
+                          @NotNull int[] context,
+                          int limit) {
+        IntList result = new IntList();
+
+        for (int node : expand(snapshot, step, context)) {
+            IntList axisNodes = new IntList();
+            axisNodes(snapshot, node, step.axis(), axisNodes, null);
+            IntList candidates = new IntList(axisNodes.size());
+
+            for (int i = 0, count = axisNodes.size(); i < count; i++) {
+                int candidate = axisNodes.get(i);
+
+                if (matchesName(snapshot, step, candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+
+            for (LocatorPlan.Segment segment : step.segments()) {
+                candidates = filterSegment(snapshot, plan, segment, candidates);
+            }
+
+            for (int i = 0, count = candidates.size(); i < count; i++) {
+                result.add(candidates.get(i));
+            }
+        }
+
+        int[] sorted = result.toSortedSet();
+
+        if (sorted.length > limit) {
+            int[] truncated = new int[limit];
+            System.arraycopy(sorted, 0, truncated, 0, limit);
+            return truncated;
+        } else {
+            return sorted;
+        }
+    }
+
+    /**
+     * Apply a {@link LocatorPlan.Segment} to candidates that are in axis
+     * order.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param plan {@link LocatorPlan} instance.
+     * @param segment {@link LocatorPlan.Segment} instance.
+     * @param candidates {@link IntList} instance.
+     * @return {@link IntList} instance.
+     * @see #predicate(LocatorPlan, Collection)
+     */
+    @NotNull
+    IntList filterSegment(@NotNull SnapshotType snapshot,
+                          @NotNull LocatorPlan plan,
+                          @NotNull LocatorPlan.Segment segment,
+                          @NotNull IntList candidates) {
+        IntList filtered = new IntList(candidates.size());
+        NodePredicate predicate = predicate(plan, segment.predicates());
+        Integer position = segment.position();
+
+        for (int i = 0, count = candidates.size(); i < count; i++) {
+            int node = candidates.get(i);
+
+            if (predicate.test(snapshot, node)) {
+                filtered.add(node);
+            }
+        }
+
+        if (position == null) {
+            return filtered;
+        }
+
+        IntList selected = new IntList(1);
+
+        if (position >= 1 && position <= filtered.size()) {
+            selected.add(filtered.get(position - 1));
+        }
+
+        return selected;
+    }
+
+    /**
+     * Expand context nodes to their descendant-or-self nodes if a
+     * {@link LocatorPlan.Step} is preceded by //.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @param context {@link Integer} array, in document order.
+     * @return {@link Integer} array, in document order.
+     * @see LocatorPlan.Step#isAnyPath()
+     */
+    @NotNull
+    int[] expand(@NotNull SnapshotType snapshot,
+                 @NotNull LocatorPlan.Step step,
+                 @NotNull int[] context) {
+        if (!step.isAnyPath()) {
+            return context;
+        }
+
+        IntList expanded = new IntList();
+        int covered = 0;
+
+        for (int node : context) {
+            if (node == DOCUMENT) {
+                expanded.add(DOCUMENT);
+            }
+
+            int start = node == DOCUMENT ? 0 : node;
+            int end = node == DOCUMENT ? snapshot.size() : snapshot.subtreeEnd(node);
+
+            for (int i = Math.max(start, covered); i < end; i++) {
+                expanded.add(i);
+            }
+
+            covered = Math.max(covered, end);
+        }
+
+        return expanded.toArray();
+    }
+
+    /**
+     * Add the nodes on an {@link Axis} from a context node, in axis order.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param node {@link Integer} value.
+     * @param axis {@link Axis} instance.
+     * @param result {@link IntList} instance.
+     * @param seen {@link BitSet} of nodes that were already added. Sibling
+     *             chains stop at the first such node. This can be null.
+     */
+    void axisNodes(@NotNull SnapshotType snapshot,
+                   int node,
+                   @NotNull Axis axis,
+                   @NotNull IntList result,
+                   BitSet seen) {
+        switch (axis) {
+            case CHILD:
+                if (node == DOCUMENT) {
+                    result.add(0);
+                } else {
+                    for (int c = snapshot.firstChild(node);
+                         c != SnapshotType.NO_NODE;
+                         c = snapshot.nextSibling(c)) {
+                        result.add(c);
+                    }
+                }
+
+                break;
+
+            case DESCENDANT:
+                int start = node == DOCUMENT ? 0 : node + 1;
+                int end = node == DOCUMENT ? snapshot.size() : snapshot.subtreeEnd(node);
+
+                for (int i = start; i < end; i++) {
+                    result.add(i);
+                }
+
+                break;
+
+            case FOLLOWING_SIBLING:
+            case PRECEDING_SIBLING:
+                if (node == DOCUMENT) {
+                    break;
+                }
+
+                boolean following = axis == Axis.FOLLOWING_SIBLING;
+                int sibling = following
+                    ? snapshot.nextSibling(node)
+                    : snapshot.previousSibling(node);
+
+                while (sibling != SnapshotType.NO_NODE) {
+                    if (seen != null) {
+                        if (seen.get(sibling)) {
+                            break;
+                        }
+
+                        seen.set(sibling);
+                    }
+
+                    result.add(sibling);
+
+                    sibling = following
+                        ? snapshot.nextSibling(sibling)
+                        : snapshot.previousSibling(sibling);
+                }
+
+                break;
+
+            case NONE:
+            default:
+                if (node != DOCUMENT) {
+                    result.add(node);
+                }
+
+                break;
+        }
+    }
+
+    /**
+     * Check if a node passes the name test of a {@link LocatorPlan.Step}.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @param node {@link Integer} value.
+     * @return {@link Boolean} value.
+     * @see LocatorPlan.Step#matchesAnyName()
+     * @see LocatorPlan.Step#nameTest()
+     */
+    boolean matchesName(@NotNull SnapshotType snapshot,
+                        @NotNull LocatorPlan.Step step,
+                        int node) {
+        return step.matchesAnyName() || snapshot.tagEquals(node, step.nameTest());
+    }
+
+    /**
+     * Evaluate an {@link Attribute} against a source of attribute values.
+     * @param attribute {@link Attribute} instance.
+     * @param values {@link Function} that returns the value of an attribute
+     *               name, or null if it is absent.
+     * @return {@link Boolean} value.
+     * @see Comparison#matches(String, String)
+     * @see Formatible#comparison()
+     * @see #joinAttribute(Attribute, Predicate)
+     */
+    static boolean testAttribute(@NotNull Attribute<?> attribute,
+                                 @NotNull Function<String, String> values) {
+        Comparison comparison = attribute.formatible().comparison();
+        String expected = String.valueOf(attribute.value());
+
+        return joinAttribute(attribute, name ->
+            comparison.matches(expected, values.apply(name)));
+    }
+
+    /**
+     * Evaluate an {@link Attribute}, given a test for each attribute name.
+     * This applies the {@link Joiner} and {@link Wrapper} of the
+     * {@link Attribute}.
+     * @param attribute {@link Attribute} instance.
+     * @param matches {@link Predicate} that checks one attribute name.
+     * @return {@link Boolean} value.
+     */
+    static boolean joinAttribute(@NotNull Attribute<?> attribute,
+                                 @NotNull Predicate<String> matches) {
+        boolean and = attribute.joiner() == Joiner.AND;
+        boolean result = and;
+
+        for (String name : attribute.attributes()) {
+            if (matches.test(name) != and) {
+                result = !and;
+                break;
+            }
+        }
+
+        return result != (attribute.wrapper() == Wrapper.NOT);
+    }
+
+    /**
+     * Builder class for {@link LocatorEvaluator}.
+     */
+    public static final class Builder {
+        @NotNull private final LocatorEvaluator EVALUATOR;
+
+        Builder() {
+            EVALUATOR = new LocatorEvaluator();
+        }
+
+        /**
+         * Set the {@link #substringIndex} value.
+         * @param enabled {@link Boolean} value.
+         * @return {@link Builder} instance.
+         * @see #substringIndex
+         */
+        @NotNull
+        public Builder withSubstringIndex(boolean enabled) {
+            EVALUATOR.substringIndex = enabled;
+            return this;
+        }
+
+        /**
+         * Set the {@link #subtreeFilters} value.
+         * @param enabled {@link Boolean} value.
+         * @return {@link Builder} instance.
+         * @see #subtreeFilters
+         */
+        @NotNull
+        public Builder withSubtreeFilters(boolean enabled) {
+            EVALUATOR.subtreeFilters = enabled;
+            return this;
+        }
+
+        /**
+         * Set the {@link #pool} instance. {@link SnapshotType} reads must
+         * be thread-safe for this to be used.
+         * @param pool {@link ForkJoinPool} instance, or null to scan
+         *             sequentially.
+         * @return {@link Builder} instance.
+         * @see #pool
+         */
+        @NotNull
+        public Builder withForkJoinPool(@Nullable ForkJoinPool pool) {
+            EVALUATOR.pool = pool;
+            return this;
+        }
+
+        /**
+         * Set the {@link #cache} instance. It may be shared between
+         * evaluators, since options only change how results are found.
+         * @param cache {@link QueryCache} instance, or null to evaluate
+         *              every time.
+         * @return {@link Builder} instance.
+         * @see #cache
+         */
+        @NotNull
+        public Builder withQueryCache(@Nullable QueryCache cache) {
+            EVALUATOR.cache = cache;
+            return this;
+        }
+
+        /**
+         * Set the {@link #parallelThreshold} value.
+         * @param threshold {@link Integer} value.
+         * @return {@link Builder} instance.
+         * @see #parallelThreshold
+         */
+        @NotNull
+        public Builder withParallelThreshold(int threshold) {
+            EVALUATOR.parallelThreshold = Math.max(1, threshold);
+            return this;
+        }
+
+        /**
+         * Set the {@link #bytecodeThreshold} value. Steps are only counted
+         * if this is not negative.
+         * @param threshold {@link Integer} value.
+         * @return {@link Builder} instance.
+         * @see #bytecodeThreshold
+         */
+        @NotNull
+        public Builder withBytecodeThreshold(int threshold) {
+            EVALUATOR.bytecodeThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Get {@link #EVALUATOR}.
+         * @return {@link LocatorEvaluator} instance.
+         * @see #EVALUATOR
+         */
+        @NotNull
+        public LocatorEvaluator build() {
+            return EVALUATOR;
+        }
+    }
+}
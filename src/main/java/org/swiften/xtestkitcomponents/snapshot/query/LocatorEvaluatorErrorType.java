@@ -0,0 +1,11 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+/**
+ * This interface provides error messages for local locator evaluation.
+ */
+public interface LocatorEvaluatorErrorType {
+    String NEGATED_LOCATION_PATH = "A top-level location path cannot be wrapped in not()";
+    String NEGATED_FILTER = "A predicate-only step cannot be wrapped in not()";
+    String UNSUPPORTED_ATTRIBUTE = "Attribute type cannot be evaluated locally";
+    String NO_DIRECTION = "Directional queries need a vertical or horizontal direction";
+}
@@ -0,0 +1,139 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.util.JSONWriter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is the result of {@link LocatorEvaluator#explain}, similar to
+ * a database EXPLAIN ANALYZE. It holds the selected nodes and a tree of
+ * {@link StepProfile}, each with a {@link PredicateProfile} for every
+ * top-level predicate, which may in turn hold the steps of a nested
+ * locator.
+ */
+public final class LocatorExplanation {
+    /**
+     * Append indentation to a {@link StringBuilder}.
+     * @param builder {@link StringBuilder} instance.
+     * @param depth {@link Integer} value.
+     * @return {@link StringBuilder} instance.
+     */
+    @NotNull
+    static StringBuilder indent(@NotNull StringBuilder builder, int depth) {
+        for (int i = 0; i < depth; i++) {
+            builder.append("   ");
+        }
+
+        return builder;
+    }
+
+    @NotNull private final String QUERY;
+    @NotNull private final int[] NODES;
+    @NotNull private final List<StepProfile> STEPS;
+    private final long NANOS;
+
+    LocatorExplanation(@NotNull String query,
+                       @NotNull int[] nodes,
+                       @NotNull List<StepProfile> steps,
+                       long nanos) {
+        QUERY = query;
+        NODES = nodes;
+        STEPS = Collections.unmodifiableList(steps);
+        NANOS = nanos;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return render();
+    }
+
+    /**
+     * Get {@link #QUERY}.
+     * @return {@link String} value.
+     * @see #QUERY
+     */
+    @NotNull
+    public String query() {
+        return QUERY;
+    }
+
+    /**
+     * Get {@link #NODES}.
+     * @return {@link Integer} array, in document order.
+     * @see #NODES
+     */
+    @NotNull
+    public int[] nodes() {
+        return NODES.clone();
+    }
+
+    /**
+     * Get the number of selected nodes.
+     * @return {@link Integer} value.
+     * @see #NODES
+     */
+    public int resultCount() {
+        return NODES.length;
+    }
+
+    /**
+     * Get {@link #STEPS}, in the order they were applied.
+     * @return {@link List} of {@link StepProfile}.
+     * @see #STEPS
+     */
+    @NotNull
+    public List<StepProfile> steps() {
+        return STEPS;
+    }
+
+    /**
+     * Get {@link #NANOS}, the time spent on the whole locator.
+     * @return {@link Long} value, in nanoseconds.
+     * @see #NANOS
+     */
+    public long nanos() {
+        return NANOS;
+    }
+
+    /**
+     * Get an indented text tree, with one line per step and predicate.
+     * @return {@link String} value.
+     * @see StepProfile#render(StringBuilder, int)
+     */
+    @NotNull
+    public String render() {
+        StringBuilder builder = new StringBuilder(QUERY)
+            .append(String.format(" (rows=%d time=%.3fms)\n", NODES.length, NANOS / 1e6));
+
+        for (StepProfile step : STEPS) {
+            step.render(builder, 1);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Get the JSON representation of the whole tree.
+     * @return {@link String} value.
+     * @see StepProfile#writeTo(JSONWriter)
+     */
+    @NotNull
+    public String toJSON() {
+        JSONWriter writer = JSONWriter.create()
+            .beginObject()
+            .member("query", QUERY)
+            .member("resultCount", NODES.length)
+            .member("nanos", NANOS)
+            .name("steps")
+            .beginArray();
+
+        for (StepProfile step : STEPS) {
+            step.writeTo(writer);
+        }
+
+        return writer.endArray().endObject().toString();
+    }
+}
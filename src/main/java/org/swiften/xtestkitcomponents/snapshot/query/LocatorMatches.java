@@ -0,0 +1,84 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the result of evaluating a {@link LocatorTrie}. It can
+ * be read per locator, or per node to find every locator that matches it.
+ */
+public final class LocatorMatches {
+    @NotNull private final int[][] MATCHES;
+    @NotNull private final int[] OFFSETS;
+    @NotNull private final int[] LOCATORS;
+
+    LocatorMatches(int nodeCount, @NotNull int[][] matches) {
+        MATCHES = matches;
+        OFFSETS = new int[nodeCount + 1];
+
+        for (int[] nodes : matches) {
+            for (int node : nodes) {
+                OFFSETS[node + 1] += 1;
+            }
+        }
+
+        for (int i = 0; i < nodeCount; i++) {
+            OFFSETS[i + 1] += OFFSETS[i];
+        }
+
+        /* Locators are visited in order, so every node's locators end up
+         * sorted */
+        int[] next = Arrays.copyOf(OFFSETS, nodeCount);
+        LOCATORS = new int[OFFSETS[nodeCount]];
+
+        for (int locator = 0; locator < matches.length; locator++) {
+            for (int node : matches[locator]) {
+                LOCATORS[next[node]++] = locator;
+            }
+        }
+    }
+
+    /**
+     * Get the number of locators.
+     * @return {@link Integer} value.
+     * @see #MATCHES
+     */
+    public int size() {
+        return MATCHES.length;
+    }
+
+    /**
+     * Get the nodes that match a locator.
+     * @param locator {@link Integer} value, as indexed by
+     *                {@link LocatorTrie#locator(int)}.
+     * @return {@link Integer} array, in document order.
+     * @see #MATCHES
+     */
+    @NotNull
+    public int[] matches(int locator) {
+        return MATCHES[locator].clone();
+    }
+
+    /**
+     * Check if a locator matches any node.
+     * @param locator {@link Integer} value.
+     * @return {@link Boolean} value.
+     * @see #MATCHES
+     */
+    public boolean isMatched(int locator) {
+        return MATCHES[locator].length > 0;
+    }
+
+    /**
+     * Get the locators that match a node.
+     * @param node {@link Integer} value.
+     * @return {@link Integer} array, in ascending order.
+     * @see #LOCATORS
+     * @see #OFFSETS
+     */
+    @NotNull
+    public int[] locators(int node) {
+        return Arrays.copyOfRange(LOCATORS, OFFSETS[node], OFFSETS[node + 1]);
+    }
+}
@@ -0,0 +1,355 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.snapshot.SubtreeFilters;
+import org.swiften.xtestkitcomponents.xpath.*;
+
+import java.util.*;
+
+/**
+ * This class normalizes an {@link XPath} or {@link CompoundAttribute} into
+ * a list of {@link Step}, each with an explicit {@link Axis}, name test and
+ * predicate {@link Segment}. Predicate-only {@link CompoundAttribute}
+ * (no path, axis and class) are merged into the preceding {@link Step},
+ * because that is how their rendered predicates are parsed.
+ */
+public final class LocatorPlan implements LocatorEvaluatorErrorType {
+    /**
+     * Get a {@link LocatorPlan} for a top-level {@link XPath}.
+     * @param xpath {@link XPath} instance.
+     * @return {@link LocatorPlan} instance.
+     * @see XPath#compoundAttributes()
+     * @see #NEGATED_LOCATION_PATH
+     */
+    @NotNull
+    public static LocatorPlan of(@NotNull XPath xpath) {
+        List<CompoundAttribute> steps = xpath.compoundAttributes();
+
+        for (CompoundAttribute step : steps) {
+            if (step.wrapper() == Wrapper.NOT && !isFilter(step)) {
+                throw new RuntimeException(NEGATED_LOCATION_PATH);
+            }
+        }
+
+        return new LocatorPlan(steps, false);
+    }
+
+    /**
+     * Get a {@link LocatorPlan} for a {@link CompoundAttribute} that is
+     * used as a predicate. The result is negated if it is wrapped in
+     * {@link Wrapper#NOT}.
+     * @param attribute {@link CompoundAttribute} instance.
+     * @return {@link LocatorPlan} instance.
+     * @see CompoundAttribute#wrapper()
+     */
+    @NotNull
+    public static LocatorPlan of(@NotNull CompoundAttribute attribute) {
+        List<CompoundAttribute> steps = Collections.singletonList(attribute);
+        return new LocatorPlan(steps, attribute.wrapper() == Wrapper.NOT);
+    }
+
+    /**
+     * Check if a {@link CompoundAttribute} only renders predicates.
+     * @param attribute {@link CompoundAttribute} instance.
+     * @return {@link Boolean} value.
+     */
+    static boolean isFilter(@NotNull CompoundAttribute attribute) {
+        return attribute.path() == Path.NONE
+            && attribute.axis() == Axis.NONE
+            && attribute.className().isEmpty();
+    }
+
+    @NotNull private final List<Step> STEPS;
+    @NotNull private final Map<CompoundAttribute, LocatorPlan> NESTED;
+    private final boolean ABSOLUTE;
+    private final boolean NEGATED;
+
+    private LocatorPlan(@NotNull List<CompoundAttribute> attributes, boolean negated) {
+        List<Step> steps = new ArrayList<>();
+        NESTED = new IdentityHashMap<>();
+        NEGATED = negated;
+        ABSOLUTE = !attributes.isEmpty() && attributes.get(0).path() != Path.NONE;
+
+        for (CompoundAttribute attribute : attributes) {
+            Segment segment = new Segment(attribute.attributes(), attribute.index());
+
+            if (isFilter(attribute) && !steps.isEmpty()) {
+                if (attribute.wrapper() == Wrapper.NOT) {
+                    throw new RuntimeException(NEGATED_FILTER);
+                }
+
+                steps.get(steps.size() - 1).SEGMENTS.add(segment);
+            } else {
+                steps.add(new Step(attribute, segment, steps.isEmpty()));
+            }
+
+            for (AttributeType predicate : attribute.attributes()) {
+                collectNested(predicate);
+            }
+        }
+
+        STEPS = Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Create a {@link LocatorPlan} for every nested {@link CompoundAttribute}
+     * found in a predicate.
+     * @param attribute {@link AttributeType} instance.
+     * @see #NESTED
+     */
+    private void collectNested(@NotNull AttributeType attribute) {
+        if (attribute instanceof CompoundAttribute) {
+            CompoundAttribute compound = (CompoundAttribute)attribute;
+            NESTED.put(compound, LocatorPlan.of(compound));
+        } else if (attribute instanceof AttributeBlock) {
+            for (AttributeType child : ((AttributeBlock)attribute).attributes()) {
+                collectNested(child);
+            }
+        }
+    }
+
+    /**
+     * Get {@link #STEPS}.
+     * @return {@link List} of {@link Step}.
+     * @see #STEPS
+     */
+    @NotNull
+    public List<Step> steps() {
+        return STEPS;
+    }
+
+    /**
+     * Check if the first {@link Step} starts at the document root, rather
+     * than at the context node.
+     * @return {@link Boolean} value.
+     * @see #ABSOLUTE
+     */
+    public boolean isAbsolute() {
+        return ABSOLUTE;
+    }
+
+    /**
+     * Check if a predicate using this {@link LocatorPlan} is negated.
+     * @return {@link Boolean} value.
+     * @see #NEGATED
+     */
+    public boolean isNegated() {
+        return NEGATED;
+    }
+
+    /**
+     * Get the {@link LocatorPlan} of a nested {@link CompoundAttribute}.
+     * @param attribute {@link CompoundAttribute} instance.
+     * @return {@link LocatorPlan} instance.
+     * @see #NESTED
+     */
+    @NotNull
+    public LocatorPlan nested(@NotNull CompoundAttribute attribute) {
+        LocatorPlan plan = NESTED.get(attribute);
+
+        if (plan == null) {
+            plan = LocatorPlan.of(attribute);
+        }
+
+        return plan;
+    }
+
+    /**
+     * This class represents a single location step.
+     */
+    public static final class Step {
+        @NotNull private final Axis AXIS;
+        @NotNull private final String NAME_TEST;
+        @NotNull private final List<Segment> SEGMENTS;
+        private final boolean ANY_PATH;
+        @Nullable private volatile long[] requiredKeys;
+
+        Step(@NotNull CompoundAttribute attribute, @NotNull Segment segment, boolean first) {
+            String className = attribute.className();
+            ANY_PATH = attribute.path() == Path.ANY;
+            NAME_TEST = className.isEmpty() ? "*" : className;
+            SEGMENTS = new ArrayList<>();
+            SEGMENTS.add(segment);
+
+            if (attribute.axis() != Axis.NONE) {
+                AXIS = attribute.axis();
+            } else if (first && isFilter(attribute)) {
+                /* Predicates without a step apply to the context node */
+                AXIS = Axis.NONE;
+            } else {
+                AXIS = Axis.CHILD;
+            }
+        }
+
+        /**
+         * Check if the {@link Step} is preceded by //, i.e. its
+         * {@link Axis} is applied to every descendant-or-self of the
+         * context nodes.
+         * @return {@link Boolean} value.
+         * @see #ANY_PATH
+         */
+        public boolean isAnyPath() {
+            return ANY_PATH;
+        }
+
+        /**
+         * Get {@link #AXIS}. {@link Axis#NONE} denotes the self axis.
+         * @return {@link Axis} instance.
+         * @see #AXIS
+         */
+        @NotNull
+        public Axis axis() {
+            return AXIS;
+        }
+
+        /**
+         * Get {@link #NAME_TEST}. * matches every element.
+         * @return {@link String} value.
+         * @see #NAME_TEST
+         */
+        @NotNull
+        public String nameTest() {
+            return NAME_TEST;
+        }
+
+        /**
+         * Check if the {@link #NAME_TEST} matches every element.
+         * @return {@link Boolean} value.
+         * @see #NAME_TEST
+         */
+        public boolean matchesAnyName() {
+            return NAME_TEST.equals("*");
+        }
+
+        /**
+         * Get {@link #SEGMENTS}.
+         * @return {@link List} of {@link Segment}.
+         * @see #SEGMENTS
+         */
+        @NotNull
+        public List<Segment> segments() {
+            return Collections.unmodifiableList(SEGMENTS);
+        }
+
+        /**
+         * Check if any {@link Segment} selects by position, in which case
+         * the {@link Step} must be evaluated per context node.
+         * @return {@link Boolean} value.
+         * @see Segment#position()
+         * @see #segments()
+         */
+        public boolean isPositional() {
+            for (Segment segment : SEGMENTS) {
+                if (segment.position() != null) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Get the {@link SubtreeFilters} keys that a subtree must contain
+         * for some node in it to pass this {@link Step}. Only the name
+         * test and exact-match predicates that must all hold are used.
+         * @return {@link Long} array.
+         * @see SubtreeFilters#attributeKey(String, String)
+         * @see SubtreeFilters#tagKey(String)
+         * @see #requiredKeys(AttributeType, List)
+         */
+        @NotNull
+        long[] requiredKeys() {
+            long[] keys = requiredKeys;
+
+            if (keys == null) {
+                List<Long> list = new ArrayList<>();
+
+                if (!matchesAnyName()) {
+                    list.add(SubtreeFilters.tagKey(NAME_TEST));
+                }
+
+                for (Segment segment : SEGMENTS) {
+                    for (AttributeType predicate : segment.predicates()) {
+                        requiredKeys(predicate, list);
+                    }
+                }
+
+                keys = new long[list.size()];
+
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = list.get(i);
+                }
+
+                requiredKeys = keys;
+            }
+
+            return keys;
+        }
+
+        /**
+         * Add the keys that a predicate requires.
+         * @param predicate {@link AttributeType} instance.
+         * @param keys {@link List} of {@link Long}.
+         * @see Comparison#EQUAL
+         */
+        private static void requiredKeys(@NotNull AttributeType predicate, @NotNull List<Long> keys) {
+            if (predicate instanceof Attribute) {
+                Attribute<?> attribute = (Attribute<?>)predicate;
+                List<String> names = attribute.attributes();
+
+                if (attribute.wrapper() != Wrapper.NOT
+                    && attribute.formatible().comparison() == Comparison.EQUAL
+                    && (names.size() == 1 || attribute.joiner() == Joiner.AND)) {
+                    String value = String.valueOf(attribute.value());
+
+                    for (String name : names) {
+                        keys.add(SubtreeFilters.attributeKey(name, value));
+                    }
+                }
+            } else if (predicate instanceof AttributeBlock) {
+                AttributeBlock block = (AttributeBlock)predicate;
+
+                if (block.joiner() == Joiner.AND) {
+                    for (AttributeType child : block.attributes()) {
+                        requiredKeys(child, keys);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * This class represents predicates that are applied in sequence,
+     * followed by an optional position predicate.
+     */
+    public static final class Segment {
+        @NotNull private final List<AttributeType> PREDICATES;
+        @Nullable private final Integer POSITION;
+
+        Segment(@NotNull Collection<AttributeType> predicates, @Nullable Integer position) {
+            PREDICATES = Collections.unmodifiableList(new ArrayList<>(predicates));
+            POSITION = position;
+        }
+
+        /**
+         * Get {@link #PREDICATES}.
+         * @return {@link List} of {@link AttributeType}.
+         * @see #PREDICATES
+         */
+        @NotNull
+        public List<AttributeType> predicates() {
+            return PREDICATES;
+        }
+
+        /**
+         * Get {@link #POSITION}. This is 1-based, as in XPath.
+         * @return {@link Integer} value.
+         * @see #POSITION
+         */
+        @Nullable
+        public Integer position() {
+            return POSITION;
+        }
+    }
+}
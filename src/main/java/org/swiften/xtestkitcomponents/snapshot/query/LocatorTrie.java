@@ -0,0 +1,222 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.util.IntList;
+import org.swiften.xtestkitcomponents.xpath.CompoundAttribute;
+import org.swiften.xtestkitcomponents.xpath.XPath;
+
+import java.util.*;
+
+/**
+ * This class compiles a set of {@link XPath} into a trie of
+ * {@link LocatorPlan.Step}, where locators that start with the same steps
+ * share the same trie nodes. {@link LocatorEvaluator} evaluates every
+ * shared prefix once for all locators that pass through it.
+ *
+ * Steps are keyed on their rendered {@link CompoundAttribute}, so two
+ * steps are only shared if they produce the same query.
+ */
+public final class LocatorTrie {
+    /**
+     * Get {@link Builder} instance.
+     * @return {@link Builder} instance.
+     */
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @NotNull private final List<XPath> LOCATORS;
+    @NotNull private final Node ROOT;
+    private int stepCount;
+    private int totalSteps;
+
+    LocatorTrie() {
+        LOCATORS = new ArrayList<>();
+        ROOT = new Node(null, null);
+    }
+
+    /**
+     * Get the number of locators.
+     * @return {@link Integer} value.
+     * @see #LOCATORS
+     */
+    public int size() {
+        return LOCATORS.size();
+    }
+
+    /**
+     * Get the {@link XPath} at an index.
+     * @param index {@link Integer} value.
+     * @return {@link XPath} instance.
+     * @see #LOCATORS
+     */
+    @NotNull
+    public XPath locator(int index) {
+        return LOCATORS.get(index);
+    }
+
+    /**
+     * Get the number of trie nodes below the root, i.e. the number of
+     * {@link LocatorPlan.Step} evaluated for all locators at most.
+     * @return {@link Integer} value.
+     * @see #stepCount
+     */
+    public int stepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Get the number of {@link LocatorPlan.Step} that would be evaluated if
+     * every locator were evaluated on its own.
+     * @return {@link Integer} value.
+     * @see #totalSteps
+     */
+    public int totalSteps() {
+        return totalSteps;
+    }
+
+    /**
+     * Get {@link #ROOT}.
+     * @return {@link Node} instance.
+     * @see #ROOT
+     */
+    @NotNull
+    Node root() {
+        return ROOT;
+    }
+
+    /**
+     * Add an {@link XPath} to the trie.
+     * @param xpath {@link XPath} instance.
+     * @see LocatorPlan#isFilter(CompoundAttribute)
+     * @see LocatorPlan#of(XPath)
+     * @see #keys(XPath)
+     */
+    private void add(@NotNull XPath xpath) {
+        LocatorPlan plan = LocatorPlan.of(xpath);
+        List<LocatorPlan.Step> steps = plan.steps();
+        List<String> keys = keys(xpath);
+        int index = LOCATORS.size();
+        LOCATORS.add(xpath);
+
+        /* A locator without steps selects nothing, so it is never
+         * accepted anywhere */
+        if (steps.isEmpty()) {
+            return;
+        }
+
+        Node node = ROOT;
+
+        for (int i = 0, count = steps.size(); i < count; i++) {
+            Node child = node.CHILDREN.get(keys.get(i));
+
+            if (child == null) {
+                child = new Node(plan, steps.get(i));
+                node.CHILDREN.put(keys.get(i), child);
+                stepCount += 1;
+            }
+
+            node = child;
+        }
+
+        totalSteps += steps.size();
+        node.ACCEPTS.add(index);
+    }
+
+    /**
+     * Get the key of every {@link LocatorPlan.Step} of an {@link XPath}.
+     * Predicate-only {@link CompoundAttribute} are grouped with the
+     * preceding step, the same way {@link LocatorPlan} merges them.
+     * @param xpath {@link XPath} instance.
+     * @return {@link List} of {@link String}.
+     * @see CompoundAttribute#fullAttribute()
+     * @see LocatorPlan#isFilter(CompoundAttribute)
+     */
+    @NotNull
+    private static List<String> keys(@NotNull XPath xpath) {
+        List<String> keys = new ArrayList<>();
+
+        for (CompoundAttribute attribute : xpath.compoundAttributes()) {
+            String rendered = attribute.fullAttribute();
+
+            if (LocatorPlan.isFilter(attribute) && !keys.isEmpty()) {
+                int last = keys.size() - 1;
+                keys.set(last, keys.get(last) + rendered);
+            } else {
+                keys.add(rendered);
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * This class represents a shared {@link LocatorPlan.Step}, which is
+     * null for {@link #ROOT}. The {@link LocatorPlan} that first added it
+     * is kept so that nested predicates are resolved from it.
+     */
+    static final class Node {
+        @NotNull final Map<String, Node> CHILDREN;
+        @NotNull final IntList ACCEPTS;
+        @Nullable final LocatorPlan PLAN;
+        @Nullable final LocatorPlan.Step STEP;
+
+        Node(@Nullable LocatorPlan plan, @Nullable LocatorPlan.Step step) {
+            CHILDREN = new LinkedHashMap<>();
+            ACCEPTS = new IntList();
+            PLAN = plan;
+            STEP = step;
+        }
+    }
+
+    /**
+     * Builder class for {@link LocatorTrie}.
+     */
+    public static final class Builder {
+        @NotNull private final LocatorTrie TRIE;
+
+        Builder() {
+            TRIE = new LocatorTrie();
+        }
+
+        /**
+         * Add an {@link XPath}. Its index is the number of locators added
+         * before it.
+         * @param xpath {@link XPath} instance.
+         * @return {@link Builder} instance.
+         * @see LocatorTrie#add(XPath)
+         */
+        @NotNull
+        public Builder addLocator(@NotNull XPath xpath) {
+            TRIE.add(xpath);
+            return this;
+        }
+
+        /**
+         * Same as above, but uses a {@link Collection} of {@link XPath}.
+         * @param xpaths {@link Collection} of {@link XPath}.
+         * @return {@link Builder} instance.
+         * @see #addLocator(XPath)
+         */
+        @NotNull
+        public Builder addLocator(@NotNull Collection<XPath> xpaths) {
+            for (XPath xpath : xpaths) {
+                addLocator(xpath);
+            }
+
+            return this;
+        }
+
+        /**
+         * Get {@link #TRIE}.
+         * @return {@link LocatorTrie} instance.
+         * @see #TRIE
+         */
+        @NotNull
+        public LocatorTrie build() {
+            return TRIE;
+        }
+    }
+}
@@ -0,0 +1,618 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.javautilities.util.HPLog;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+import org.swiften.xtestkitcomponents.util.IntList;
+import org.swiften.xtestkitcomponents.xpath.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class emits a class file per {@link LocatorPlan.Step} whose
+ * test(SnapshotType, int) method checks the name test and all attribute
+ * predicates in straight-line bytecode, with constants in the constant
+ * pool. Predicates that cannot be emitted, such as nested location paths,
+ * call their {@link NodePredicate} from {@link PredicateCompiler}.
+ *
+ * Classes are written for version 49 so that they do not need stack map
+ * frames, and each is defined in its own {@link ClassLoader} so that it
+ * can be unloaded with the {@link NodePredicate}.
+ */
+final class MatcherGenerator {
+    /**
+     * Generated methods are kept well within the range of 16-bit branch
+     * offsets.
+     */
+    static final int MAX_CODE_LENGTH = 16384;
+
+    private static final String PACKAGE = "org/swiften/xtestkitcomponents/snapshot/query/generated/";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String STRING = "java/lang/String";
+    private static final String SNAPSHOT = internalName(SnapshotType.class);
+    private static final String PREDICATE = internalName(NodePredicate.class);
+    private static final String COMPARISON = internalName(Comparison.class);
+    private static final String TEST = "(L" + SNAPSHOT + ";I)Z";
+    private static final String FALLBACKS = "[L" + PREDICATE + ";";
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    /**
+     * Check if a {@link NodePredicate} was emitted as bytecode.
+     * @param predicate {@link NodePredicate} instance.
+     * @return {@link Boolean} value.
+     * @see MatcherLoader
+     */
+    static boolean isGenerated(@NotNull NodePredicate predicate) {
+        return predicate.getClass().getClassLoader() instanceof MatcherLoader;
+    }
+
+    /**
+     * Get the internal name of a {@link Class}.
+     * @param cls {@link Class} instance.
+     * @return {@link String} value.
+     */
+    @NotNull
+    private static String internalName(@NotNull Class<?> cls) {
+        return cls.getName().replace('.', '/');
+    }
+
+    @NotNull private final PredicateCompiler COMPILER;
+    @NotNull private final AtomicInteger FAILURES;
+
+    MatcherGenerator(@NotNull PredicateCompiler compiler) {
+        COMPILER = compiler;
+        FAILURES = new AtomicInteger();
+    }
+
+    /**
+     * Get the number of matchers that could not be generated.
+     * @return {@link Integer} value.
+     * @see #FAILURES
+     */
+    int failureCount() {
+        return FAILURES.get();
+    }
+
+    /**
+     * Emit and load a matcher class for a non-positional
+     * {@link LocatorPlan.Step}.
+     * @param plan {@link LocatorPlan} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @return {@link NodePredicate} instance, or null if the step cannot
+     * be emitted, e.g. because the method would be too long. The failure
+     * is logged and counted.
+     * @see #emit(String, LocatorPlan, LocatorPlan.Step, List)
+     * @see #FAILURES
+     */
+    @Nullable
+    NodePredicate generate(@NotNull LocatorPlan plan, @NotNull LocatorPlan.Step step) {
+        String name = PACKAGE + "Matcher" + COUNTER.getAndIncrement();
+        List<NodePredicate> fallbacks = new ArrayList<>();
+
+        try {
+            byte[] bytes = emit(name, plan, step, fallbacks);
+            MatcherLoader loader = new MatcherLoader(MatcherGenerator.class.getClassLoader());
+            Class<?> cls = loader.define(name.replace('/', '.'), bytes);
+            NodePredicate[] args = fallbacks.toArray(new NodePredicate[fallbacks.size()]);
+            return (NodePredicate)cls.getConstructor(NodePredicate[].class).newInstance((Object)args);
+        } catch (Exception | LinkageError e) {
+            FAILURES.incrementAndGet();
+            HPLog.printft("Failed to generate %s for step %s: %s", name, step.nameTest(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the class file of a matcher.
+     * @param name {@link String} value. The internal class name.
+     * @param plan {@link LocatorPlan} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @param fallbacks {@link List} of {@link NodePredicate}, filled with
+     *                  the predicates that are called instead of emitted.
+     * @return {@link Byte} array.
+     * @throws IOException If the class file cannot be written.
+     * @see #predicate(Code, LocatorPlan, AttributeType, List)
+     */
+    @NotNull
+    byte[] emit(@NotNull String name,
+                @NotNull LocatorPlan plan,
+                @NotNull LocatorPlan.Step step,
+                @NotNull List<NodePredicate> fallbacks) throws IOException {
+        ConstantPool pool = new ConstantPool();
+        Code test = new Code(pool, name);
+        List<Emitter> parts = new ArrayList<>();
+
+        if (!step.matchesAnyName()) {
+            final String NAME = step.nameTest();
+
+            parts.add(test.leaf(() -> {
+                test.op(0x2b).op(0x1c).ldc(pool.string(NAME));
+                test.invokeInterface(SNAPSHOT, "tagEquals", "(ILjava/lang/String;)Z", 3);
+            }));
+        }
+
+        for (LocatorPlan.Segment segment : step.segments()) {
+            for (AttributeType predicate : segment.predicates()) {
+                parts.add(predicate(test, plan, predicate, fallbacks));
+            }
+        }
+
+        /* The body jumps to fail as soon as the conjunction fails */
+        Label fail = new Label();
+        test.join(parts, true, false, fail);
+        test.op(0x04).op(0xac);
+        test.place(fail);
+        test.op(0x03).op(0xac);
+        test.resolve();
+
+        Code init = new Code(pool, name);
+        init.op(0x2a).op(0xb7).u2(pool.member(10, OBJECT, "<init>", "()V"));
+        init.op(0x2a).op(0x2b).op(0xb5).u2(pool.member(9, name, "FALLBACKS", FALLBACKS));
+        init.op(0xb1);
+
+        int thisClass = pool.cls(name);
+        int superClass = pool.cls(OBJECT);
+        int predicateClass = pool.cls(PREDICATE);
+        int fieldName = pool.utf8("FALLBACKS");
+        int fieldType = pool.utf8(FALLBACKS);
+        int initName = pool.utf8("<init>");
+        int initType = pool.utf8("(" + FALLBACKS + ")V");
+        int testName = pool.utf8("test");
+        int testType = pool.utf8(TEST);
+        int codeName = pool.utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xcafebabe);
+        out.writeShort(0);
+        out.writeShort(49);
+        pool.write(out);
+
+        /* public final super */
+        out.writeShort(0x0031);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(predicateClass);
+
+        /* private final NodePredicate[] FALLBACKS */
+        out.writeShort(1);
+        out.writeShort(0x0012);
+        out.writeShort(fieldName);
+        out.writeShort(fieldType);
+        out.writeShort(0);
+
+        out.writeShort(2);
+        init.write(out, 0x0001, initName, initType, codeName, 2, 2);
+        test.write(out, 0x0001, testName, testType, codeName, 6, 3);
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Get the {@link Emitter} of a predicate.
+     * @param code {@link Code} instance.
+     * @param plan {@link LocatorPlan} instance.
+     * @param predicate {@link AttributeType} instance.
+     * @param fallbacks {@link List} of {@link NodePredicate}.
+     * @return {@link Emitter} instance.
+     * @see #attribute(Code, Attribute, String)
+     * @see #fallback(Code, NodePredicate, List)
+     */
+    @NotNull
+    private Emitter predicate(@NotNull Code code,
+                              @NotNull LocatorPlan plan,
+                              @NotNull AttributeType predicate,
+                              @NotNull List<NodePredicate> fallbacks) {
+        if (predicate instanceof Attribute) {
+            Attribute<?> attribute = (Attribute<?>)predicate;
+            Comparison comparison = attribute.formatible().comparison();
+
+            switch (comparison) {
+                case EQUAL:
+                    /* Flag literals keep their mask test */
+                    if (FlagPredicate.isFlagValue(String.valueOf(attribute.value()))) {
+                        return fallback(code, COMPILER.compile(plan, predicate), fallbacks);
+                    }
+
+                    break;
+
+                case CONTAINS:
+                case CONTAINS_IGNORE_CASE:
+                    break;
+
+                default:
+                    return fallback(code, COMPILER.compile(plan, predicate), fallbacks);
+            }
+
+            List<Emitter> parts = new ArrayList<>();
+
+            for (String name : attribute.attributes()) {
+                parts.add(code.leaf(() -> attribute(code, attribute, name)));
+            }
+
+            boolean and = attribute.joiner() == Joiner.AND;
+            boolean negated = attribute.wrapper() == Wrapper.NOT;
+            return (jumpIf, target) -> code.join(parts, and, jumpIf != negated, target);
+        } else if (predicate instanceof AttributeBlock) {
+            AttributeBlock block = (AttributeBlock)predicate;
+            List<Emitter> parts = new ArrayList<>();
+
+            for (AttributeType child : block.attributes()) {
+                parts.add(predicate(code, plan, child, fallbacks));
+            }
+
+            /* An empty block renders no predicate at all */
+            boolean and = block.joiner() == Joiner.AND || parts.isEmpty();
+            return (jumpIf, target) -> code.join(parts, and, jumpIf, target);
+        } else {
+            return fallback(code, COMPILER.compile(plan, predicate), fallbacks);
+        }
+    }
+
+    /**
+     * Emit the test of one attribute name, leaving a boolean on the stack.
+     * @param code {@link Code} instance.
+     * @param attribute {@link Attribute} instance.
+     * @param name {@link String} value.
+     * @see Comparison#matches(String, String)
+     * @see Comparison#translate(String, String, String)
+     * @see SnapshotType#attributeEquals(int, String, String)
+     * @throws IOException If the constant pool is full.
+     */
+    private void attribute(@NotNull Code code,
+                           @NotNull Attribute<?> attribute,
+                           @NotNull String name) throws IOException {
+        ConstantPool pool = code.POOL;
+        Comparison comparison = attribute.formatible().comparison();
+        String expected = String.valueOf(attribute.value());
+
+        if (comparison == Comparison.EQUAL) {
+            code.op(0x2b).op(0x1c).ldc(pool.string(name)).ldc(pool.string(expected));
+            code.invokeInterface(SNAPSHOT, "attributeEquals", "(ILjava/lang/String;Ljava/lang/String;)Z", 4);
+            return;
+        }
+
+        /* A missing attribute behaves like an empty String */
+        Label absent = new Label();
+        Label end = new Label();
+        boolean ignoreCase = comparison == Comparison.CONTAINS_IGNORE_CASE;
+        String lower = ignoreCase ? expected.toLowerCase() : expected;
+        code.op(0x2b).op(0x1c).ldc(pool.string(name));
+        code.invokeInterface(SNAPSHOT, "attribute", "(ILjava/lang/String;)Ljava/lang/String;", 3);
+        code.op(0x59).branch(0xc6, absent);
+
+        if (ignoreCase) {
+            code.ldc(pool.string(expected.toUpperCase())).ldc(pool.string(lower));
+            code.op(0xb8).u2(pool.member(10, COMPARISON, "translate",
+                "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)Ljava/lang/String;"));
+        }
+
+        code.ldc(pool.string(lower));
+        code.op(0xb6).u2(pool.member(10, STRING, "contains", "(Ljava/lang/CharSequence;)Z"));
+        code.branch(0xa7, end);
+        code.place(absent);
+        code.op(0x57).op(lower.isEmpty() ? 0x04 : 0x03);
+        code.place(end);
+    }
+
+    /**
+     * Get an {@link Emitter} that calls a {@link NodePredicate} through
+     * the FALLBACKS field.
+     * @param code {@link Code} instance.
+     * @param predicate {@link NodePredicate} instance.
+     * @param fallbacks {@link List} of {@link NodePredicate}.
+     * @return {@link Emitter} instance.
+     */
+    @NotNull
+    private Emitter fallback(@NotNull Code code,
+                             @NotNull NodePredicate predicate,
+                             @NotNull List<NodePredicate> fallbacks) {
+        final int INDEX = fallbacks.size();
+        fallbacks.add(predicate);
+
+        return code.leaf(() -> {
+            ConstantPool pool = code.POOL;
+            code.op(0x2a).op(0xb4).u2(pool.member(9, code.OWNER, "FALLBACKS", FALLBACKS));
+            code.op(0x11).u2(INDEX).op(0x32).op(0x2b).op(0x1c);
+            code.invokeInterface(PREDICATE, "test", TEST, 3);
+        });
+    }
+
+    /**
+     * This interface emits a branch to a {@link Label} if a condition has
+     * some value, falling through otherwise.
+     */
+    @FunctionalInterface
+    interface Emitter {
+        void jump(boolean jumpIf, @NotNull Label target);
+    }
+
+    /**
+     * This class represents a position in a method's code.
+     */
+    static final class Label {
+        @NotNull final IntList BRANCHES = new IntList();
+        int position = -1;
+    }
+
+    /**
+     * This class writes the constant pool, reusing equal entries.
+     */
+    static final class ConstantPool {
+        @NotNull private final Map<String, Integer> ENTRIES = new HashMap<>();
+        @NotNull private final ByteArrayOutputStream BYTES = new ByteArrayOutputStream();
+        @NotNull private final DataOutputStream OUT = new DataOutputStream(BYTES);
+        private int count = 1;
+
+        int utf8(@NotNull String value) throws IOException {
+            Integer index = ENTRIES.get("U" + value);
+
+            if (index == null) {
+                OUT.writeByte(1);
+                OUT.writeUTF(value);
+                index = add("U" + value);
+            }
+
+            return index;
+        }
+
+        int cls(@NotNull String name) throws IOException {
+            return reference(7, name);
+        }
+
+        int string(@NotNull String value) throws IOException {
+            return reference(8, value);
+        }
+
+        /**
+         * Get a field (9), method (10) or interface method (11) entry.
+         * @param tag {@link Integer} value.
+         * @param owner {@link String} value.
+         * @param name {@link String} value.
+         * @param descriptor {@link String} value.
+         * @return {@link Integer} value.
+         * @throws IOException If the entry cannot be written.
+         */
+        int member(int tag, @NotNull String owner, @NotNull String name, @NotNull String descriptor)
+            throws IOException
+        {
+            String key = tag + owner + "." + name + ":" + descriptor;
+            Integer index = ENTRIES.get(key);
+
+            if (index == null) {
+                int cls = cls(owner);
+                int nameIndex = utf8(name);
+                int descriptorIndex = utf8(descriptor);
+                Integer type = ENTRIES.get("T" + name + ":" + descriptor);
+
+                if (type == null) {
+                    OUT.writeByte(12);
+                    OUT.writeShort(nameIndex);
+                    OUT.writeShort(descriptorIndex);
+                    type = add("T" + name + ":" + descriptor);
+                }
+
+                OUT.writeByte(tag);
+                OUT.writeShort(cls);
+                OUT.writeShort(type);
+                index = add(key);
+            }
+
+            return index;
+        }
+
+        private int reference(int tag, @NotNull String value) throws IOException {
+            String key = tag + value;
+            Integer index = ENTRIES.get(key);
+
+            if (index == null) {
+                int utf8 = utf8(value);
+                OUT.writeByte(tag);
+                OUT.writeShort(utf8);
+                index = add(key);
+            }
+
+            return index;
+        }
+
+        private int add(@NotNull String key) throws IOException {
+            if (count >= 0xffff) {
+                throw new IOException("Constant pool is full");
+            }
+
+            ENTRIES.put(key, count);
+            return count++;
+        }
+
+        void write(@NotNull DataOutputStream out) throws IOException {
+            OUT.flush();
+            out.writeShort(count);
+            BYTES.writeTo(out);
+        }
+    }
+
+    /**
+     * This class writes the code of a method.
+     */
+    static final class Code {
+        @NotNull final ConstantPool POOL;
+        @NotNull final String OWNER;
+        @NotNull private final ByteArrayOutputStream BYTES;
+        @NotNull private final Set<Label> LABELS;
+
+        Code(@NotNull ConstantPool pool, @NotNull String owner) {
+            POOL = pool;
+            OWNER = owner;
+            BYTES = new ByteArrayOutputStream();
+            LABELS = new LinkedHashSet<>();
+        }
+
+        @NotNull
+        Code op(int opcode) {
+            BYTES.write(opcode);
+            return this;
+        }
+
+        @NotNull
+        Code u2(int value) {
+            BYTES.write(value >>> 8);
+            BYTES.write(value);
+            return this;
+        }
+
+        @NotNull
+        Code ldc(int index) {
+            return index < 0x100 ? op(0x12).op(index) : op(0x13).u2(index);
+        }
+
+        void invokeInterface(@NotNull String owner,
+                             @NotNull String name,
+                             @NotNull String descriptor,
+                             int argumentSlots) {
+            try {
+                op(0xb9).u2(POOL.member(11, owner, name, descriptor));
+                op(argumentSlots).op(0);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @NotNull
+        Code branch(int opcode, @NotNull Label target) {
+            target.BRANCHES.add(BYTES.size());
+            LABELS.add(target);
+            return op(opcode).u2(0);
+        }
+
+        void place(@NotNull Label label) {
+            label.position = BYTES.size();
+        }
+
+        /**
+         * Get an {@link Emitter} for code that leaves a boolean on the
+         * stack.
+         * @param value {@link ValueWriter} instance.
+         * @return {@link Emitter} instance.
+         */
+        @NotNull
+        Emitter leaf(@NotNull ValueWriter value) {
+            return (jumpIf, target) -> {
+                try {
+                    value.write();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+
+                branch(jumpIf ? 0x9a : 0x99, target);
+            };
+        }
+
+        /**
+         * Emit a short-circuit and/or of several {@link Emitter}.
+         * @param parts {@link List} of {@link Emitter}.
+         * @param and {@link Boolean} value.
+         * @param jumpIf {@link Boolean} value.
+         * @param target {@link Label} instance.
+         */
+        void join(@NotNull List<Emitter> parts, boolean and, boolean jumpIf, @NotNull Label target) {
+            if (parts.isEmpty()) {
+                /* An empty and() is true, an empty or() is false */
+                if (and == jumpIf) {
+                    branch(0xa7, target);
+                }
+            } else if (and == jumpIf) {
+                /* All parts must be decided before jumping, so an early
+                 * opposite result skips to the end */
+                Label skip = new Label();
+
+                for (int i = 0, last = parts.size() - 1; i < last; i++) {
+                    parts.get(i).jump(!jumpIf, skip);
+                }
+
+                parts.get(parts.size() - 1).jump(jumpIf, target);
+                place(skip);
+            } else {
+                for (Emitter part : parts) {
+                    part.jump(jumpIf, target);
+                }
+            }
+        }
+
+        /**
+         * Patch all branch offsets.
+         * @throws IOException If the code is too long.
+         * @see #MAX_CODE_LENGTH
+         */
+        void resolve() throws IOException {
+            if (BYTES.size() > MAX_CODE_LENGTH) {
+                throw new IOException("Method is too long");
+            }
+
+            byte[] code = BYTES.toByteArray();
+
+            for (Label label : LABELS) {
+                for (int i = 0, count = label.BRANCHES.size(); i < count; i++) {
+                    int at = label.BRANCHES.get(i);
+                    int offset = label.position - at;
+                    code[at + 1] = (byte)(offset >>> 8);
+                    code[at + 2] = (byte)offset;
+                }
+            }
+
+            BYTES.reset();
+            BYTES.write(code, 0, code.length);
+        }
+
+        void write(@NotNull DataOutputStream out,
+                   int access,
+                   int name,
+                   int descriptor,
+                   int codeName,
+                   int maxStack,
+                   int maxLocals) throws IOException {
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + BYTES.size());
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(BYTES.size());
+            BYTES.writeTo(out);
+
+            /* No exception table and no attributes */
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+    }
+
+    /**
+     * This interface writes code that leaves a value on the stack.
+     */
+    @FunctionalInterface
+    interface ValueWriter {
+        void write() throws IOException;
+    }
+
+    /**
+     * This class defines a single matcher class.
+     */
+    static final class MatcherLoader extends ClassLoader {
+        MatcherLoader(@Nullable ClassLoader parent) {
+            super(parent);
+        }
+
+        @NotNull
+        Class<?> define(@NotNull String name, @NotNull byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+
+import java.util.Map;
+
+/**
+ * This class describes a node that matched a locator. It is a lightweight
+ * view over the {@link SnapshotType} that contains the node.
+ */
+public final class NodeDescriptor {
+    @NotNull private final SnapshotType SNAPSHOT;
+    private final int NODE;
+
+    NodeDescriptor(@NotNull SnapshotType snapshot, int node) {
+        SNAPSHOT = snapshot;
+        NODE = node;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return String.format("%d: %s%s", NODE, tagName(), attributes());
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (object instanceof NodeDescriptor) {
+            NodeDescriptor other = (NodeDescriptor)object;
+            return other.SNAPSHOT == SNAPSHOT && other.NODE == NODE;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(SNAPSHOT) * 31 + NODE;
+    }
+
+    /**
+     * Get {@link #SNAPSHOT}.
+     * @return {@link SnapshotType} instance.
+     * @see #SNAPSHOT
+     */
+    @NotNull
+    public SnapshotType snapshot() {
+        return SNAPSHOT;
+    }
+
+    /**
+     * Get {@link #NODE}, the node id within {@link #SNAPSHOT}.
+     * @return {@link Integer} value.
+     * @see #NODE
+     */
+    public int id() {
+        return NODE;
+    }
+
+    /**
+     * Get the node's tag name.
+     * @return {@link String} value.
+     * @see SnapshotType#tagName(int)
+     */
+    @NotNull
+    public String tagName() {
+        return SNAPSHOT.tagName(NODE);
+    }
+
+    /**
+     * Get the value of an attribute.
+     * @param name {@link String} value.
+     * @return {@link String} value.
+     * @see SnapshotType#attribute(int, String)
+     */
+    @Nullable
+    public String attribute(@NotNull String name) {
+        return SNAPSHOT.attribute(NODE, name);
+    }
+
+    /**
+     * Get all attributes.
+     * @return {@link Map} of {@link String} and {@link String}.
+     * @see SnapshotType#attributes(int)
+     */
+    @NotNull
+    public Map<String, String> attributes() {
+        return SNAPSHOT.attributes(NODE);
+    }
+}
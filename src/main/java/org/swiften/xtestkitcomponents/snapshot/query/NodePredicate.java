@@ -0,0 +1,23 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+
+/**
+ * This interface represents a compiled test on a snapshot node.
+ */
+@FunctionalInterface
+public interface NodePredicate {
+    /**
+     * {@link NodePredicate} that passes every node.
+     */
+    NodePredicate ANY = (snapshot, node) -> true;
+
+    /**
+     * Check if a node passes this test.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param node {@link Integer} value.
+     * @return {@link Boolean} value.
+     */
+    boolean test(@NotNull SnapshotType snapshot, int node);
+}
@@ -0,0 +1,421 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.xpath.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class compiles predicates into trees of {@link NodePredicate}, so
+ * that {@link Joiner}, {@link Wrapper}, {@link Comparison} and expected
+ * values are resolved once instead of for every node. Compiled predicates
+ * are cached by their {@link StructuralHashes}, so the same predicate
+ * used by different locators is only compiled once.
+ *
+ * Boolean attributes compared against true or false compile to
+ * {@link FlagPredicate}, and and/or combinations of them are merged into
+ * one mask test.
+ *
+ * If {@link LocatorEvaluator#bytecodeThreshold()} is not negative, a
+ * {@link LocatorPlan.Step} that has been applied that many times is
+ * promoted to a class emitted by {@link MatcherGenerator}.
+ */
+final class PredicateCompiler implements LocatorEvaluatorErrorType {
+    /**
+     * The cache is cleared when it reaches this size, so that a stream of
+     * one-off locators cannot grow it without bound.
+     */
+    static final int MAX_CACHED = 4096;
+
+    @NotNull private final LocatorEvaluator EVALUATOR;
+    @NotNull private final MatcherGenerator GENERATOR;
+    @NotNull private final Map<Long, NodePredicate> CACHE;
+    @NotNull private final Map<Long, HotStep> HOT_STEPS;
+
+    PredicateCompiler(@NotNull LocatorEvaluator evaluator) {
+        EVALUATOR = evaluator;
+        GENERATOR = new MatcherGenerator(this);
+        CACHE = new ConcurrentHashMap<>();
+        HOT_STEPS = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the number of cached {@link NodePredicate}.
+     * @return {@link Integer} value.
+     * @see #CACHE
+     */
+    int size() {
+        return CACHE.size();
+    }
+
+    /**
+     * Compile the name test and all predicates of a non-positional
+     * {@link LocatorPlan.Step}, promoting it to bytecode once it is hot.
+     * @param plan {@link LocatorPlan} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @return {@link NodePredicate} instance.
+     * @see LocatorEvaluator#bytecodeThreshold()
+     * @see MatcherGenerator#generate(LocatorPlan, LocatorPlan.Step)
+     * @see #closure(LocatorPlan, LocatorPlan.Step)
+     * @see #key(LocatorPlan.Step)
+     */
+    @NotNull
+    NodePredicate compile(@NotNull LocatorPlan plan, @NotNull LocatorPlan.Step step) {
+        int threshold = EVALUATOR.bytecodeThreshold();
+
+        if (threshold < 0) {
+            return closure(plan, step);
+        }
+
+        long key = key(step);
+        HotStep hot = HOT_STEPS.get(key);
+
+        if (hot == null) {
+            if (HOT_STEPS.size() >= MAX_CACHED) {
+                HOT_STEPS.clear();
+            }
+
+            hot = HOT_STEPS.computeIfAbsent(key, k -> new HotStep());
+        }
+
+        NodePredicate generated = hot.generated;
+
+        if (generated != null) {
+            return generated;
+        } else if (hot.USES.incrementAndGet() >= threshold && !hot.failed) {
+            synchronized (hot) {
+                if (hot.generated == null && !hot.failed) {
+                    generated = GENERATOR.generate(plan, step);
+                    hot.failed = generated == null;
+                    hot.generated = generated;
+                }
+
+                if (hot.generated != null) {
+                    return hot.generated;
+                }
+            }
+        }
+
+        return closure(plan, step);
+    }
+
+    /**
+     * Check if a {@link LocatorPlan.Step} has been promoted to bytecode.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @return {@link Boolean} value.
+     * @see #HOT_STEPS
+     */
+    boolean isPromoted(@NotNull LocatorPlan.Step step) {
+        HotStep hot = HOT_STEPS.get(key(step));
+        return hot != null && hot.generated != null;
+    }
+
+    /**
+     * Get the number of {@link LocatorPlan.Step} that could not be
+     * promoted to bytecode, and are kept as closures.
+     * @return {@link Integer} value.
+     * @see MatcherGenerator#failureCount()
+     */
+    int failureCount() {
+        return GENERATOR.failureCount();
+    }
+
+    /**
+     * Get the key of a {@link LocatorPlan.Step} from its name test and the
+     * {@link StructuralHashes} of its predicates.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @return {@link Long} value.
+     */
+    static long key(@NotNull LocatorPlan.Step step) {
+        long key = step.nameTest().hashCode();
+
+        for (LocatorPlan.Segment segment : step.segments()) {
+            for (AttributeType predicate : segment.predicates()) {
+                key = Long.rotateLeft((key ^ StructuralHashes.of(predicate)) * 0x9e3779b97f4a7c15L, 31);
+            }
+        }
+
+        return key;
+    }
+
+    /**
+     * Compile a {@link LocatorPlan.Step} into {@link NodePredicate}
+     * closures.
+     * @param plan {@link LocatorPlan} instance.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @return {@link NodePredicate} instance.
+     * @see #compile(LocatorPlan, Collection)
+     */
+    @NotNull
+    NodePredicate closure(@NotNull LocatorPlan plan, @NotNull LocatorPlan.Step step) {
+        List<AttributeType> predicates = new ArrayList<>();
+
+        for (LocatorPlan.Segment segment : step.segments()) {
+            predicates.addAll(segment.predicates());
+        }
+
+        NodePredicate filter = compile(plan, predicates);
+
+        if (step.matchesAnyName()) {
+            return filter;
+        }
+
+        final String NAME = step.nameTest();
+
+        if (filter == NodePredicate.ANY) {
+            return (snapshot, node) -> snapshot.tagEquals(node, NAME);
+        } else {
+            return (snapshot, node) -> snapshot.tagEquals(node, NAME)
+                && filter.test(snapshot, node);
+        }
+    }
+
+    /**
+     * Compile predicates that must all pass.
+     * @param plan {@link LocatorPlan} instance.
+     * @param predicates {@link Collection} of {@link AttributeType}.
+     * @return {@link NodePredicate} instance.
+     * @see #compile(LocatorPlan, AttributeType)
+     * @see #join(NodePredicate[], boolean)
+     */
+    @NotNull
+    NodePredicate compile(@NotNull LocatorPlan plan,
+                          @NotNull Collection<AttributeType> predicates) {
+        NodePredicate[] compiled = new NodePredicate[predicates.size()];
+        int i = 0;
+
+        for (AttributeType predicate : predicates) {
+            compiled[i++] = compile(plan, predicate);
+        }
+
+        return join(compiled, true);
+    }
+
+    /**
+     * Compile a predicate, or get it from {@link #CACHE}.
+     * @param plan {@link LocatorPlan} that owns the predicate.
+     * @param predicate {@link AttributeType} instance.
+     * @return {@link NodePredicate} instance.
+     * @see StructuralHashes#of(AttributeType)
+     * @see #create(LocatorPlan, AttributeType)
+     * @see #MAX_CACHED
+     */
+    @NotNull
+    NodePredicate compile(@NotNull LocatorPlan plan, @NotNull AttributeType predicate) {
+        long hash = StructuralHashes.of(predicate);
+        NodePredicate compiled = CACHE.get(hash);
+
+        if (compiled == null) {
+            compiled = create(plan, predicate);
+
+            if (CACHE.size() >= MAX_CACHED) {
+                CACHE.clear();
+            }
+
+            CACHE.put(hash, compiled);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Compile a predicate without looking at {@link #CACHE}.
+     * @param plan {@link LocatorPlan} that owns the predicate.
+     * @param predicate {@link AttributeType} instance.
+     * @return {@link NodePredicate} instance.
+     * @see LocatorPlan#nested(CompoundAttribute)
+     * @see #attribute(Attribute)
+     * @see #UNSUPPORTED_ATTRIBUTE
+     */
+    @NotNull
+    private NodePredicate create(@NotNull LocatorPlan plan, @NotNull AttributeType predicate) {
+        if (predicate instanceof Attribute) {
+            return attribute((Attribute<?>)predicate);
+        } else if (predicate instanceof AttributeBlock) {
+            AttributeBlock block = (AttributeBlock)predicate;
+            Collection<AttributeType> children = block.attributes();
+
+            if (children.isEmpty()) {
+                /* An empty block renders no predicate at all */
+                return NodePredicate.ANY;
+            }
+
+            NodePredicate[] compiled = new NodePredicate[children.size()];
+            int i = 0;
+
+            for (AttributeType child : children) {
+                compiled[i++] = compile(plan, child);
+            }
+
+            return join(compiled, block.joiner() == Joiner.AND);
+        } else if (predicate instanceof CompoundAttribute) {
+            final LocatorPlan NESTED = plan.nested((CompoundAttribute)predicate);
+            final boolean NEGATED = NESTED.isNegated();
+
+            return (snapshot, node) ->
+                (EVALUATOR.select(snapshot, NESTED, node, 1).length > 0) != NEGATED;
+        } else {
+            throw new RuntimeException(UNSUPPORTED_ATTRIBUTE);
+        }
+    }
+
+    /**
+     * Compile an {@link Attribute}. Exact matches are left to the snapshot,
+     * which may compare encoded values, and exact matches against true or
+     * false are wrapped in a {@link FlagPredicate}.
+     * @param attribute {@link Attribute} instance.
+     * @return {@link NodePredicate} instance.
+     * @see org.swiften.xtestkitcomponents.snapshot.SnapshotType#attributeEquals(int, String, String)
+     * @see FlagPredicate#isFlagValue(String)
+     * @see #value(Comparison, String)
+     * @see #join(NodePredicate[], boolean)
+     */
+    @NotNull
+    private NodePredicate attribute(@NotNull Attribute<?> attribute) {
+        Comparison comparison = attribute.formatible().comparison();
+        String expected = String.valueOf(attribute.value());
+        List<String> names = attribute.attributes();
+        NodePredicate[] compiled = new NodePredicate[names.size()];
+
+        for (int i = 0; i < compiled.length; i++) {
+            final String NAME = names.get(i);
+
+            if (comparison == Comparison.EQUAL) {
+                compiled[i] = (snapshot, node) ->
+                    snapshot.attributeEquals(node, NAME, expected);
+            } else {
+                final ValueTest TEST = value(comparison, expected);
+                compiled[i] = (snapshot, node) ->
+                    TEST.test(snapshot.attribute(node, NAME));
+            }
+        }
+
+        boolean and = attribute.joiner() == Joiner.AND;
+        boolean negated = attribute.wrapper() == Wrapper.NOT;
+        NodePredicate joined = join(compiled, and);
+        NodePredicate result;
+
+        if (negated) {
+            result = (snapshot, node) -> !joined.test(snapshot, node);
+        } else {
+            result = joined;
+        }
+
+        if (comparison == Comparison.EQUAL && !names.isEmpty() && FlagPredicate.isFlagValue(expected)) {
+            return new FlagPredicate(names, Boolean.parseBoolean(expected), and, negated, result);
+        } else {
+            return result;
+        }
+    }
+
+    /**
+     * Compile a substring {@link Comparison} against a constant.
+     * @param comparison {@link Comparison} instance.
+     * @param expected {@link String} value.
+     * @return {@link ValueTest} instance.
+     * @see Comparison#matches(String, String)
+     * @see Comparison#translate(String, String, String)
+     */
+    @NotNull
+    private static ValueTest value(@NotNull Comparison comparison, @NotNull String expected) {
+        switch (comparison) {
+            case CONTAINS:
+                if (expected.isEmpty()) {
+                    return actual -> true;
+                }
+
+                return actual -> actual != null && actual.contains(expected);
+
+            case CONTAINS_IGNORE_CASE:
+                final String LOWER = expected.toLowerCase();
+                final String UPPER = expected.toUpperCase();
+
+                if (LOWER.isEmpty()) {
+                    return actual -> true;
+                }
+
+                return actual -> actual != null
+                    && Comparison.translate(actual, UPPER, LOWER).contains(LOWER);
+
+            default:
+                return actual -> comparison.matches(expected, actual);
+        }
+    }
+
+    /**
+     * Join {@link NodePredicate} with and/or, specializing the common
+     * small cases.
+     * @param predicates {@link NodePredicate} array.
+     * @param and {@link Boolean} value.
+     * @return {@link NodePredicate} instance.
+     * @see FlagPredicate#merge(NodePredicate[], boolean)
+     */
+    @NotNull
+    static NodePredicate join(@NotNull NodePredicate[] predicates, boolean and) {
+        FlagPredicate merged = FlagPredicate.merge(predicates, and);
+
+        if (merged != null) {
+            return merged;
+        }
+
+        switch (predicates.length) {
+            case 0:
+                /* An empty and() is true, an empty or() is false */
+                return and ? NodePredicate.ANY : (snapshot, node) -> false;
+
+            case 1:
+                return predicates[0];
+
+            case 2:
+                final NodePredicate FIRST = predicates[0];
+                final NodePredicate SECOND = predicates[1];
+
+                if (and) {
+                    return (snapshot, node) ->
+                        FIRST.test(snapshot, node) && SECOND.test(snapshot, node);
+                } else {
+                    return (snapshot, node) ->
+                        FIRST.test(snapshot, node) || SECOND.test(snapshot, node);
+                }
+
+            default:
+                return (snapshot, node) -> {
+                    for (NodePredicate predicate : predicates) {
+                        if (predicate.test(snapshot, node) != and) {
+                            return !and;
+                        }
+                    }
+
+                    return and;
+                };
+        }
+    }
+
+    /**
+     * This class counts the uses of a {@link LocatorPlan.Step}.
+     */
+    static final class HotStep {
+        @NotNull final AtomicInteger USES = new AtomicInteger();
+        @Nullable volatile NodePredicate generated;
+        volatile boolean failed;
+    }
+
+    /**
+     * This interface represents a compiled test on an attribute value.
+     */
+    @FunctionalInterface
+    interface ValueTest {
+        /**
+         * Check if an attribute value passes this test.
+         * @param actual {@link String} value, or null if absent.
+         * @return {@link Boolean} value.
+         */
+        boolean test(String actual);
+    }
+}
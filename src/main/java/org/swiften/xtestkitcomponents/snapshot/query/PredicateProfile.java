@@ -0,0 +1,133 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.util.JSONWriter;
+import org.swiften.xtestkitcomponents.xpath.AttributeType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds what happened when a top-level predicate of a
+ * {@link LocatorPlan.Step} was tested by {@link LocatorEvaluator#explain}.
+ * Predicates are tested in order and stop at the first failure, so later
+ * predicates see fewer nodes than earlier ones.
+ */
+public final class PredicateProfile {
+    @NotNull private final String DESCRIPTION;
+    @NotNull private final Map<LocatorPlan.Step, StepProfile> NESTED;
+    long tested;
+    long passed;
+    long nanos;
+
+    PredicateProfile(@NotNull AttributeType predicate) {
+        DESCRIPTION = predicate.fullAttribute();
+        NESTED = new LinkedHashMap<>();
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return String.format(
+            "[%s] (tested=%d passed=%d time=%.3fms)",
+            DESCRIPTION, tested, passed, nanos / 1e6);
+    }
+
+    /**
+     * Get the {@link StepProfile} of a nested step, creating it on first
+     * use.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @return {@link StepProfile} instance.
+     * @see #NESTED
+     */
+    @NotNull
+    StepProfile nested(@NotNull LocatorPlan.Step step) {
+        return NESTED.computeIfAbsent(step, StepProfile::new);
+    }
+
+    /**
+     * Get {@link #DESCRIPTION}.
+     * @return {@link String} value.
+     * @see #DESCRIPTION
+     */
+    @NotNull
+    public String description() {
+        return DESCRIPTION;
+    }
+
+    /**
+     * Get the number of nodes the predicate was tested on.
+     * @return {@link Long} value.
+     * @see #tested
+     */
+    public long tested() {
+        return tested;
+    }
+
+    /**
+     * Get the number of nodes that passed the predicate.
+     * @return {@link Long} value.
+     * @see #passed
+     */
+    public long passed() {
+        return passed;
+    }
+
+    /**
+     * Get the time spent testing the predicate.
+     * @return {@link Long} value, in nanoseconds.
+     * @see #nanos
+     */
+    public long nanos() {
+        return nanos;
+    }
+
+    /**
+     * Get the {@link StepProfile} of every step applied by a nested
+     * locator in the predicate, e.g. one added by
+     * {@link org.swiften.xtestkitcomponents.xpath.Axes#descendant}.
+     * @return {@link List} of {@link StepProfile}.
+     * @see #NESTED
+     */
+    @NotNull
+    public List<StepProfile> nestedSteps() {
+        return new ArrayList<>(NESTED.values());
+    }
+
+    /**
+     * Append the text form of the predicate and its nested steps.
+     * @param builder {@link StringBuilder} instance.
+     * @param depth {@link Integer} value, the indentation level.
+     * @see StepProfile#render(StringBuilder, int)
+     */
+    void render(@NotNull StringBuilder builder, int depth) {
+        LocatorExplanation.indent(builder, depth).append(this).append('\n');
+
+        for (StepProfile step : nestedSteps()) {
+            step.render(builder, depth + 1);
+        }
+    }
+
+    /**
+     * Write the predicate and its nested steps as a JSON object.
+     * @param writer {@link JSONWriter} instance.
+     * @see StepProfile#writeTo(JSONWriter)
+     */
+    void writeTo(@NotNull JSONWriter writer) {
+        writer.beginObject()
+            .member("predicate", DESCRIPTION)
+            .member("tested", tested)
+            .member("passed", passed)
+            .member("nanos", nanos)
+            .name("nestedSteps")
+            .beginArray();
+
+        for (StepProfile step : nestedSteps()) {
+            step.writeTo(writer);
+        }
+
+        writer.endArray().endObject();
+    }
+}
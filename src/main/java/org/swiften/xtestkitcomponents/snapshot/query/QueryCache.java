@@ -0,0 +1,422 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+import org.swiften.xtestkitcomponents.xpath.StructuralHashes;
+import org.swiften.xtestkitcomponents.xpath.XPath;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class memoizes locator results, keyed by the root subtree hash of
+ * a {@link SnapshotType} and the {@link StructuralHashes} of an
+ * {@link XPath}. Equal root hashes mean equal snapshots, so the same
+ * screen captured twice shares results, and a repeated lookup is a single
+ * hash lookup.
+ *
+ * The cache is bounded in two ways: the total weight of all results, with
+ * least recently used results evicted first, and the number of distinct
+ * snapshots, with all results of the least recently used snapshot dropped
+ * once another snapshot enters the working set. Both are kept in
+ * access-ordered {@link LinkedHashMap} under a single lock, so each
+ * eviction is O(1), and lookups, puts and evictions are atomic with
+ * respect to each other.
+ */
+public final class QueryCache {
+    /**
+     * Default {@link #maxWeight}, in bytes.
+     */
+    public static final long DEFAULT_MAX_WEIGHT = 4L << 20;
+
+    /**
+     * Default {@link #maxSnapshots}.
+     */
+    public static final int DEFAULT_MAX_SNAPSHOTS = 4;
+
+    /**
+     * Get {@link Builder} instance.
+     * @return {@link Builder} instance.
+     */
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the weight of a result.
+     * @param nodes {@link Integer} array.
+     * @return {@link Long} value, in bytes.
+     */
+    static long weight(@NotNull int[] nodes) {
+        return 64L + 4L * nodes.length;
+    }
+
+    /**
+     * Results from least to most recently used.
+     */
+    @NotNull private final LinkedHashMap<Key, Entry> ENTRIES;
+
+    /**
+     * The keys of each snapshot's results, from least to most recently
+     * used snapshot.
+     */
+    @NotNull private final LinkedHashMap<Long, Set<Key>> SNAPSHOTS;
+
+    @NotNull private final AtomicLong HITS;
+    @NotNull private final AtomicLong MISSES;
+    private long weight;
+    private long maxWeight;
+    private int maxSnapshots;
+
+    QueryCache() {
+        ENTRIES = new LinkedHashMap<>(16, 0.75f, true);
+        SNAPSHOTS = new LinkedHashMap<>(16, 0.75f, true);
+        HITS = new AtomicLong();
+        MISSES = new AtomicLong();
+        maxWeight = DEFAULT_MAX_WEIGHT;
+        maxSnapshots = DEFAULT_MAX_SNAPSHOTS;
+    }
+
+    /**
+     * Get the memoized result of an {@link XPath}, or evaluate and memoize
+     * it. The evaluation runs outside the lock.
+     * @param evaluator {@link LocatorEvaluator} instance.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Integer} array, in document order. Do not modify.
+     * @see LocatorEvaluator#select(SnapshotType, LocatorPlan)
+     * @see #get(SnapshotType, XPath)
+     * @see #put(SnapshotType, XPath, int[])
+     */
+    @NotNull
+    public int[] select(@NotNull LocatorEvaluator evaluator,
+                        @NotNull SnapshotType snapshot,
+                        @NotNull XPath xpath) {
+        int[] nodes = get(snapshot, xpath);
+
+        if (nodes == null) {
+            nodes = evaluator.select(snapshot, LocatorPlan.of(xpath));
+            put(snapshot, xpath, nodes);
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Get the memoized result of an {@link XPath}, and mark it and its
+     * snapshot as most recently used.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Integer} array, in document order, or null if absent.
+     * Do not modify.
+     * @see #key(SnapshotType, XPath)
+     */
+    @Nullable
+    public int[] get(@NotNull SnapshotType snapshot, @NotNull XPath xpath) {
+        Key key = key(snapshot, xpath);
+        Entry entry = null;
+
+        if (key != null) {
+            synchronized (this) {
+                entry = ENTRIES.get(key);
+
+                if (entry != null) {
+                    SNAPSHOTS.get(key.ROOT);
+                }
+            }
+        }
+
+        if (entry != null) {
+            HITS.incrementAndGet();
+            return entry.NODES;
+        } else {
+            MISSES.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Memoize the result of an {@link XPath}, then evict entries if a
+     * bound is exceeded.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param xpath {@link XPath} instance.
+     * @param nodes {@link Integer} array, in document order.
+     * @see #evictSnapshots()
+     * @see #evictWeight()
+     */
+    public void put(@NotNull SnapshotType snapshot,
+                    @NotNull XPath xpath,
+                    @NotNull int[] nodes) {
+        Key key = key(snapshot, xpath);
+
+        if (key == null || weight(nodes) > maxWeight) {
+            return;
+        }
+
+        Entry entry = new Entry(nodes);
+
+        synchronized (this) {
+            Entry previous = ENTRIES.put(key, entry);
+            weight += entry.WEIGHT - (previous != null ? previous.WEIGHT : 0);
+            SNAPSHOTS.computeIfAbsent(key.ROOT, a -> new HashSet<>()).add(key);
+            evictSnapshots();
+            evictWeight();
+        }
+    }
+
+    /**
+     * Drop all results of a snapshot.
+     * @param snapshot {@link SnapshotType} instance.
+     * @see #drop(long)
+     */
+    public void invalidate(@NotNull SnapshotType snapshot) {
+        if (snapshot.size() > 0) {
+            drop(snapshot.subtreeHash(0));
+        }
+    }
+
+    /**
+     * Drop all results.
+     */
+    public synchronized void clear() {
+        ENTRIES.clear();
+        SNAPSHOTS.clear();
+        weight = 0;
+    }
+
+    /**
+     * Get the number of memoized results.
+     * @return {@link Integer} value.
+     * @see #ENTRIES
+     */
+    public synchronized int size() {
+        return ENTRIES.size();
+    }
+
+    /**
+     * Get the number of snapshots in the working set.
+     * @return {@link Integer} value.
+     * @see #SNAPSHOTS
+     */
+    public synchronized int snapshotCount() {
+        return SNAPSHOTS.size();
+    }
+
+    /**
+     * Get the total weight of memoized results.
+     * @return {@link Long} value, in bytes.
+     * @see #weight
+     */
+    public synchronized long weight() {
+        return weight;
+    }
+
+    /**
+     * Get {@link #maxWeight}.
+     * @return {@link Long} value, in bytes.
+     * @see #maxWeight
+     */
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Get {@link #maxSnapshots}.
+     * @return {@link Integer} value.
+     * @see #maxSnapshots
+     */
+    public int maxSnapshots() {
+        return maxSnapshots;
+    }
+
+    /**
+     * Get the number of lookups that found a result.
+     * @return {@link Long} value.
+     * @see #HITS
+     */
+    public long hitCount() {
+        return HITS.get();
+    }
+
+    /**
+     * Get the number of lookups that found no result.
+     * @return {@link Long} value.
+     * @see #MISSES
+     */
+    public long missCount() {
+        return MISSES.get();
+    }
+
+    /**
+     * Get the {@link Key} of an {@link XPath} on a snapshot.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Key} instance, or null for an empty snapshot, which
+     * has no root hash.
+     * @see SnapshotType#subtreeHash(int)
+     * @see StructuralHashes#of(XPath)
+     */
+    @Nullable
+    private static Key key(@NotNull SnapshotType snapshot, @NotNull XPath xpath) {
+        if (snapshot.size() == 0) {
+            return null;
+        } else {
+            return new Key(snapshot.subtreeHash(0), StructuralHashes.of(xpath));
+        }
+    }
+
+    /**
+     * Drop the results of the least recently used snapshots until the
+     * working set is within {@link #maxSnapshots}. The caller must hold
+     * the lock.
+     * @see #removeAll(Set)
+     */
+    private void evictSnapshots() {
+        Iterator<Set<Key>> snapshots = SNAPSHOTS.values().iterator();
+
+        while (SNAPSHOTS.size() > maxSnapshots && snapshots.hasNext()) {
+            Set<Key> keys = snapshots.next();
+            snapshots.remove();
+            removeAll(keys);
+        }
+    }
+
+    /**
+     * Evict the least recently used results until {@link #weight} is
+     * within {@link #maxWeight}. The caller must hold the lock.
+     */
+    private void evictWeight() {
+        Iterator<Map.Entry<Key, Entry>> entries = ENTRIES.entrySet().iterator();
+
+        while (weight > maxWeight && entries.hasNext()) {
+            Map.Entry<Key, Entry> entry = entries.next();
+            Key key = entry.getKey();
+            Set<Key> keys = SNAPSHOTS.get(key.ROOT);
+            entries.remove();
+            weight -= entry.getValue().WEIGHT;
+
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                SNAPSHOTS.remove(key.ROOT);
+            }
+        }
+    }
+
+    /**
+     * Drop all results of a root hash.
+     * @param root {@link Long} value.
+     * @see #removeAll(Set)
+     */
+    private synchronized void drop(long root) {
+        Set<Key> keys = SNAPSHOTS.get(root);
+
+        if (keys != null) {
+            SNAPSHOTS.remove(root);
+            removeAll(keys);
+        }
+    }
+
+    /**
+     * Remove the results of a snapshot that is no longer in
+     * {@link #SNAPSHOTS}. The caller must hold the lock.
+     * @param keys {@link Set} of {@link Key}.
+     */
+    private void removeAll(@NotNull Set<Key> keys) {
+        for (Key key : keys) {
+            Entry entry = ENTRIES.remove(key);
+
+            if (entry != null) {
+                weight -= entry.WEIGHT;
+            }
+        }
+    }
+
+    /**
+     * This class represents a snapshot and locator pair.
+     */
+    static final class Key {
+        final long ROOT;
+        final long LOCATOR;
+
+        Key(long root, long locator) {
+            ROOT = root;
+            LOCATOR = locator;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            } else if (object instanceof Key) {
+                Key key = (Key)object;
+                return ROOT == key.ROOT && LOCATOR == key.LOCATOR;
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(ROOT * 31 + LOCATOR);
+        }
+    }
+
+    /**
+     * This class represents a memoized result.
+     */
+    static final class Entry {
+        @NotNull final int[] NODES;
+        final long WEIGHT;
+
+        Entry(@NotNull int[] nodes) {
+            NODES = nodes;
+            WEIGHT = weight(nodes);
+        }
+    }
+
+    /**
+     * Builder class for {@link QueryCache}.
+     */
+    public static final class Builder {
+        @NotNull private final QueryCache CACHE;
+
+        Builder() {
+            CACHE = new QueryCache();
+        }
+
+        /**
+         * Set the {@link #maxWeight} value.
+         * @param weight {@link Long} value, in bytes.
+         * @return {@link Builder} instance.
+         * @see #maxWeight
+         */
+        @NotNull
+        public Builder withMaxWeight(long weight) {
+            CACHE.maxWeight = weight;
+            return this;
+        }
+
+        /**
+         * Set the {@link #maxSnapshots} value.
+         * @param count {@link Integer} value.
+         * @return {@link Builder} instance.
+         * @see #maxSnapshots
+         */
+        @NotNull
+        public Builder withMaxSnapshots(int count) {
+            CACHE.maxSnapshots = Math.max(1, count);
+            return this;
+        }
+
+        /**
+         * Get {@link #CACHE}.
+         * @return {@link QueryCache} instance.
+         * @see #CACHE
+         */
+        @NotNull
+        public QueryCache build() {
+            return CACHE;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+import org.swiften.xtestkitcomponents.util.IntList;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class scans id ranges of a {@link SnapshotType} in parallel. The
+ * ranges are cut into chunks of at most a threshold number of nodes, and
+ * each task either scans one chunk or forks two halves of its chunks.
+ * Since chunks are in document order and halves are joined left to
+ * right, results come back in document order.
+ */
+final class RangeScanTask extends RecursiveTask<int[]> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Get a {@link RangeScanTask} for all chunks of some ranges.
+     * @param evaluator {@link LocatorEvaluator} instance.
+     * @param snapshot {@link SnapshotType} instance.
+     * @param predicate {@link NodePredicate} instance.
+     * @param candidates {@link Integer} array, sorted, or null.
+     * @param ranges {@link IntList} of start and end pairs, in order and
+     *               not overlapping.
+     * @param chunkSize {@link Integer} value.
+     * @return {@link RangeScanTask} instance.
+     */
+    @NotNull
+    static RangeScanTask of(@NotNull LocatorEvaluator evaluator,
+                            @NotNull SnapshotType snapshot,
+                            @NotNull NodePredicate predicate,
+                            @Nullable int[] candidates,
+                            @NotNull IntList ranges,
+                            int chunkSize) {
+        IntList chunks = new IntList();
+
+        for (int i = 0, count = ranges.size(); i < count; i += 2) {
+            for (int start = ranges.get(i), end = ranges.get(i + 1); start < end; start += chunkSize) {
+                chunks.add(start);
+                chunks.add(Math.min(end, start + chunkSize));
+            }
+        }
+
+        return new RangeScanTask(
+            evaluator, snapshot, predicate, candidates, chunks.toArray(), 0, chunks.size() / 2);
+    }
+
+    @NotNull private final LocatorEvaluator EVALUATOR;
+    @NotNull private final SnapshotType SNAPSHOT;
+    @NotNull private final NodePredicate PREDICATE;
+    @Nullable private final int[] CANDIDATES;
+    @NotNull private final int[] CHUNKS;
+    private final int FROM;
+    private final int TO;
+
+    private RangeScanTask(@NotNull LocatorEvaluator evaluator,
+                          @NotNull SnapshotType snapshot,
+                          @NotNull NodePredicate predicate,
+                          @Nullable int[] candidates,
+                          @NotNull int[] chunks,
+                          int from,
+                          int to) {
+        EVALUATOR = evaluator;
+        SNAPSHOT = snapshot;
+        PREDICATE = predicate;
+        CANDIDATES = candidates;
+        CHUNKS = chunks;
+        FROM = from;
+        TO = to;
+    }
+
+    /**
+     * Get a {@link RangeScanTask} for some of the same chunks.
+     * @param from {@link Integer} value, the first chunk.
+     * @param to {@link Integer} value, after the last chunk.
+     * @return {@link RangeScanTask} instance.
+     */
+    @NotNull
+    private RangeScanTask slice(int from, int to) {
+        return new RangeScanTask(EVALUATOR, SNAPSHOT, PREDICATE, CANDIDATES, CHUNKS, from, to);
+    }
+
+    @NotNull
+    @Override
+    protected int[] compute() {
+        if (TO - FROM <= 1) {
+            IntList result = new IntList();
+
+            for (int chunk = FROM; chunk < TO; chunk++) {
+                int start = CHUNKS[2 * chunk];
+                int end = CHUNKS[2 * chunk + 1];
+                EVALUATOR.scan(SNAPSHOT, PREDICATE, CANDIDATES, start, end, result, Integer.MAX_VALUE);
+            }
+
+            return result.toArray();
+        }
+
+        int middle = (FROM + TO) >>> 1;
+        RangeScanTask right = slice(middle, TO);
+        right.fork();
+        int[] first = slice(FROM, middle).compute();
+        int[] second = right.join();
+        int[] merged = new int[first.length + second.length];
+        System.arraycopy(first, 0, merged, 0, first.length);
+        System.arraycopy(second, 0, merged, first.length, second.length);
+        return merged;
+    }
+}
@@ -0,0 +1,23 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.direction.Direction;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+
+/**
+ * This interface provides the device round trips that
+ * {@link ScrollSearch} needs, so that it can be used with any driver.
+ */
+public interface ScrollDriverType {
+    /**
+     * Capture the current page source.
+     * @return {@link SnapshotType} instance.
+     */
+    @NotNull SnapshotType snapshot();
+
+    /**
+     * Swipe once in a {@link Direction}.
+     * @param direction {@link Direction} instance.
+     */
+    void swipe(@NotNull Direction direction);
+}
@@ -0,0 +1,337 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.direction.Direction;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+import org.swiften.xtestkitcomponents.xpath.StructuralHashes;
+import org.swiften.xtestkitcomponents.xpath.XPath;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class finds an element by swiping until it appears. Each new
+ * snapshot is checked with a {@link LocatorEvaluator} instead of another
+ * driver query, and a swipe that leaves the hash of the scroll container
+ * unchanged means that the end of the list was reached, so the search
+ * turns around, or gives up if it already did.
+ *
+ * The {@link Direction} that found each locator is remembered, so a later
+ * search for it swipes that way first.
+ */
+public final class ScrollSearch implements LocatorEvaluatorErrorType {
+    /**
+     * Default {@link #maxSwipes}.
+     */
+    public static final int DEFAULT_MAX_SWIPES = 20;
+
+    /**
+     * The remembered directions are cleared when they reach this size.
+     */
+    static final int MAX_REMEMBERED = 4096;
+
+    /**
+     * Get {@link Builder} instance.
+     * @return {@link Builder} instance.
+     */
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @NotNull private final Map<Long, Direction> DIRECTIONS;
+    @NotNull private LocatorEvaluator evaluator;
+    @NotNull private Direction direction;
+    @Nullable private XPath container;
+    private int maxSwipes;
+
+    ScrollSearch() {
+        DIRECTIONS = new ConcurrentHashMap<>();
+        evaluator = LocatorEvaluator.builder().build();
+        direction = Direction.DOWN_UP;
+        maxSwipes = DEFAULT_MAX_SWIPES;
+    }
+
+    /**
+     * Get {@link #evaluator}.
+     * @return {@link LocatorEvaluator} instance.
+     * @see #evaluator
+     */
+    @NotNull
+    public LocatorEvaluator evaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Get the {@link Direction} that a search for an {@link XPath} swipes
+     * first: the one that last found it, or {@link #direction}.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Direction} instance.
+     * @see StructuralHashes#of(XPath)
+     * @see #DIRECTIONS
+     */
+    @NotNull
+    public Direction firstDirection(@NotNull XPath xpath) {
+        Direction remembered = DIRECTIONS.get(StructuralHashes.of(xpath));
+        return remembered != null ? remembered : direction;
+    }
+
+    /**
+     * Swipe until an {@link XPath} matches, the list ends in both
+     * directions, or {@link #maxSwipes} swipes were made.
+     * @param driver {@link ScrollDriverType} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Result} instance.
+     * @see #containerHash(SnapshotType)
+     * @see #firstDirection(XPath)
+     * @see #NO_DIRECTION
+     */
+    @NotNull
+    public Result search(@NotNull ScrollDriverType driver, @NotNull XPath xpath) {
+        Direction first = firstDirection(xpath);
+
+        if (!first.isVertical() && !first.isHorizontal()) {
+            throw new RuntimeException(NO_DIRECTION);
+        }
+
+        SnapshotType snapshot = driver.snapshot();
+        int[] nodes = evaluator.select(snapshot, xpath);
+        int swipes = 0;
+
+        if (nodes.length > 0) {
+            return new Result(snapshot, nodes, Direction.NONE, swipes, false);
+        }
+
+        int ends = 0;
+
+        for (Direction direction : new Direction[] { first, first.opposite() }) {
+            long hash = containerHash(snapshot);
+
+            while (swipes < maxSwipes) {
+                driver.swipe(direction);
+                swipes++;
+                snapshot = driver.snapshot();
+                nodes = evaluator.select(snapshot, xpath);
+
+                if (nodes.length > 0) {
+                    remember(xpath, direction);
+                    return new Result(snapshot, nodes, direction, swipes, ends > 0);
+                }
+
+                long next = containerHash(snapshot);
+
+                if (next == hash) {
+                    ends++;
+                    break;
+                }
+
+                hash = next;
+            }
+        }
+
+        return new Result(snapshot, nodes, Direction.NONE, swipes, ends > 0);
+    }
+
+    /**
+     * Forget the remembered {@link Direction} of all locators.
+     * @see #DIRECTIONS
+     */
+    public void clear() {
+        DIRECTIONS.clear();
+    }
+
+    /**
+     * Get the subtree hash of the scroll container, which is the first
+     * node that matches {@link #container}, or the root if there is none.
+     * Hashing only the container keeps changes elsewhere, such as a
+     * clock, from hiding the end of a list.
+     * @param snapshot {@link SnapshotType} instance.
+     * @return {@link Long} value.
+     * @see SnapshotType#subtreeHash(int)
+     */
+    private long containerHash(@NotNull SnapshotType snapshot) {
+        XPath container = this.container;
+        int node = 0;
+
+        if (container != null) {
+            int[] nodes = evaluator.select(snapshot, container);
+            node = nodes.length > 0 ? nodes[0] : 0;
+        }
+
+        return snapshot.size() > 0 ? snapshot.subtreeHash(node) : 0;
+    }
+
+    /**
+     * Remember the {@link Direction} that found an {@link XPath}.
+     * @param xpath {@link XPath} instance.
+     * @param direction {@link Direction} instance.
+     * @see StructuralHashes#of(XPath)
+     * @see #MAX_REMEMBERED
+     */
+    private void remember(@NotNull XPath xpath, @NotNull Direction direction) {
+        if (DIRECTIONS.size() >= MAX_REMEMBERED) {
+            DIRECTIONS.clear();
+        }
+
+        DIRECTIONS.put(StructuralHashes.of(xpath), direction);
+    }
+
+    /**
+     * Builder class for {@link ScrollSearch}.
+     */
+    public static final class Builder {
+        @NotNull private final ScrollSearch SEARCH;
+
+        Builder() {
+            SEARCH = new ScrollSearch();
+        }
+
+        /**
+         * Set the {@link #evaluator} instance.
+         * @param evaluator {@link LocatorEvaluator} instance.
+         * @return {@link Builder} instance.
+         * @see #evaluator
+         */
+        @NotNull
+        public Builder withEvaluator(@NotNull LocatorEvaluator evaluator) {
+            SEARCH.evaluator = evaluator;
+            return this;
+        }
+
+        /**
+         * Set the {@link #direction} instance, which is swiped first for
+         * locators that were never found.
+         * @param direction {@link Direction} instance.
+         * @return {@link Builder} instance.
+         * @see #direction
+         */
+        @NotNull
+        public Builder withDirection(@NotNull Direction direction) {
+            SEARCH.direction = direction;
+            return this;
+        }
+
+        /**
+         * Set the {@link #container} instance.
+         * @param container {@link XPath} instance.
+         * @return {@link Builder} instance.
+         * @see #container
+         */
+        @NotNull
+        public Builder withContainer(@NotNull XPath container) {
+            SEARCH.container = container;
+            return this;
+        }
+
+        /**
+         * Set the {@link #maxSwipes} value.
+         * @param swipes {@link Integer} value.
+         * @return {@link Builder} instance.
+         * @see #maxSwipes
+         */
+        @NotNull
+        public Builder withMaxSwipes(int swipes) {
+            SEARCH.maxSwipes = Math.max(0, swipes);
+            return this;
+        }
+
+        /**
+         * Get {@link #SEARCH}.
+         * @return {@link ScrollSearch} instance.
+         * @see #SEARCH
+         */
+        @NotNull
+        public ScrollSearch build() {
+            return SEARCH;
+        }
+    }
+
+    /**
+     * This class holds the outcome of a {@link ScrollSearch}.
+     */
+    public static final class Result {
+        @NotNull private final SnapshotType SNAPSHOT;
+        @NotNull private final int[] NODES;
+        @NotNull private final Direction DIRECTION;
+        private final int SWIPES;
+        private final boolean REACHED_END;
+
+        Result(@NotNull SnapshotType snapshot,
+               @NotNull int[] nodes,
+               @NotNull Direction direction,
+               int swipes,
+               boolean reachedEnd) {
+            SNAPSHOT = snapshot;
+            NODES = nodes;
+            DIRECTION = direction;
+            SWIPES = swipes;
+            REACHED_END = reachedEnd;
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return String.format("found: %b, direction: %s, swipes: %d, reached end: %b",
+                isFound(), DIRECTION, SWIPES, REACHED_END);
+        }
+
+        /**
+         * Check if the locator matched.
+         * @return {@link Boolean} value.
+         * @see #NODES
+         */
+        public boolean isFound() {
+            return NODES.length > 0;
+        }
+
+        /**
+         * Get {@link #SNAPSHOT}, the last captured snapshot.
+         * @return {@link SnapshotType} instance.
+         * @see #SNAPSHOT
+         */
+        @NotNull
+        public SnapshotType snapshot() {
+            return SNAPSHOT;
+        }
+
+        /**
+         * Get {@link #NODES}, the matches in {@link #SNAPSHOT}.
+         * @return {@link Integer} array, in document order.
+         * @see #NODES
+         */
+        @NotNull
+        public int[] nodes() {
+            return NODES.clone();
+        }
+
+        /**
+         * Get {@link #DIRECTION}.
+         * @return {@link Direction} instance, which found the locator, or
+         * {@link Direction#NONE} if no swipe did.
+         * @see #DIRECTION
+         */
+        @NotNull
+        public Direction direction() {
+            return DIRECTION;
+        }
+
+        /**
+         * Get {@link #SWIPES}.
+         * @return {@link Integer} value.
+         * @see #SWIPES
+         */
+        public int swipes() {
+            return SWIPES;
+        }
+
+        /**
+         * Check if a swipe left the container unchanged.
+         * @return {@link Boolean} value.
+         * @see #REACHED_END
+         */
+        public boolean reachedEnd() {
+            return REACHED_END;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.util.JSONWriter;
+import org.swiften.xtestkitcomponents.xpath.AttributeType;
+
+import java.util.*;
+
+/**
+ * This class holds what happened when a {@link LocatorPlan.Step} was
+ * applied by {@link LocatorEvaluator#explain}. Steps of nested predicates
+ * are applied once per tested node, so their counts and times add up over
+ * all applications.
+ *
+ * Times are inclusive, i.e. the time of a step includes the time of its
+ * predicates, which includes the time of their nested steps.
+ */
+public final class StepProfile {
+    /**
+     * Render a {@link LocatorPlan.Step} as a location step.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @return {@link String} value.
+     * @see AttributeType#fullAttribute()
+     */
+    @NotNull
+    static String describe(@NotNull LocatorPlan.Step step) {
+        StringBuilder builder = new StringBuilder(step.isAnyPath() ? "//" : "/")
+            .append(step.axis().symbol())
+            .append(step.nameTest());
+
+        for (LocatorPlan.Segment segment : step.segments()) {
+            for (AttributeType predicate : segment.predicates()) {
+                builder.append('[').append(predicate.fullAttribute()).append(']');
+            }
+
+            if (segment.position() != null) {
+                builder.append('[').append(segment.position()).append(']');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    @NotNull private final String DESCRIPTION;
+    @NotNull private final Map<AttributeType, PredicateProfile> PREDICATES;
+    private final boolean POSITIONAL;
+    long calls;
+    long contextNodes;
+    long prunedContexts;
+    long indexedCalls;
+    long indexCandidates;
+    long visited;
+    long kept;
+    long nanos;
+
+    StepProfile(@NotNull LocatorPlan.Step step) {
+        DESCRIPTION = describe(step);
+        PREDICATES = new LinkedHashMap<>();
+        POSITIONAL = step.isPositional();
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return String.format(
+            "%s (calls=%d context=%d visited=%d kept=%d access=%s time=%.3fms)",
+            DESCRIPTION, calls, contextNodes, visited, kept, access(), nanos / 1e6);
+    }
+
+    /**
+     * Get the {@link PredicateProfile} of a predicate, creating it on first
+     * use. Predicates do not override equality, so each one is keyed by
+     * identity.
+     * @param predicate {@link AttributeType} instance.
+     * @return {@link PredicateProfile} instance.
+     * @see #PREDICATES
+     */
+    @NotNull
+    PredicateProfile predicate(@NotNull AttributeType predicate) {
+        return PREDICATES.computeIfAbsent(predicate, PredicateProfile::new);
+    }
+
+    /**
+     * Get {@link #DESCRIPTION}.
+     * @return {@link String} value.
+     * @see #DESCRIPTION
+     */
+    @NotNull
+    public String description() {
+        return DESCRIPTION;
+    }
+
+    /**
+     * Check if the step has position predicates, which are applied
+     * separately for each context node.
+     * @return {@link Boolean} value.
+     * @see #POSITIONAL
+     */
+    public boolean isPositional() {
+        return POSITIONAL;
+    }
+
+    /**
+     * Get the number of times the step was applied.
+     * @return {@link Long} value.
+     * @see #calls
+     */
+    public long calls() {
+        return calls;
+    }
+
+    /**
+     * Get the number of context nodes the step was applied to.
+     * @return {@link Long} value.
+     * @see #contextNodes
+     */
+    public long contextNodes() {
+        return contextNodes;
+    }
+
+    /**
+     * Get the number of context nodes skipped by
+     * {@link org.swiften.xtestkitcomponents.snapshot.SubtreeFilters}.
+     * @return {@link Long} value.
+     * @see #prunedContexts
+     */
+    public long prunedContexts() {
+        return prunedContexts;
+    }
+
+    /**
+     * Get the number of applications that narrowed candidates with an
+     * index instead of scanning.
+     * @return {@link Long} value.
+     * @see #indexedCalls
+     */
+    public long indexedCalls() {
+        return indexedCalls;
+    }
+
+    /**
+     * Get the number of index entries returned for this step.
+     * @return {@link Long} value.
+     * @see #indexCandidates
+     */
+    public long indexCandidates() {
+        return indexCandidates;
+    }
+
+    /**
+     * Get the number of nodes the name test and predicates were tested on.
+     * @return {@link Long} value.
+     * @see #visited
+     */
+    public long visited() {
+        return visited;
+    }
+
+    /**
+     * Get the number of nodes the step selected.
+     * @return {@link Long} value.
+     * @see #kept
+     */
+    public long kept() {
+        return kept;
+    }
+
+    /**
+     * Get the time spent applying the step.
+     * @return {@link Long} value, in nanoseconds.
+     * @see #nanos
+     */
+    public long nanos() {
+        return nanos;
+    }
+
+    /**
+     * Get how candidates were found: "index" if every application used an
+     * index, "scan" if none did, and "mixed" otherwise.
+     * @return {@link String} value.
+     * @see #indexedCalls
+     */
+    @NotNull
+    public String access() {
+        if (indexedCalls == 0) {
+            return "scan";
+        } else if (indexedCalls == calls) {
+            return "index";
+        } else {
+            return "mixed";
+        }
+    }
+
+    /**
+     * Get the {@link PredicateProfile} of every predicate that was tested,
+     * in the order they were first tested.
+     * @return {@link List} of {@link PredicateProfile}.
+     * @see #PREDICATES
+     */
+    @NotNull
+    public List<PredicateProfile> predicates() {
+        return new ArrayList<>(PREDICATES.values());
+    }
+
+    /**
+     * Append the text form of the step and its predicates.
+     * @param builder {@link StringBuilder} instance.
+     * @param depth {@link Integer} value, the indentation level.
+     * @see PredicateProfile#render(StringBuilder, int)
+     */
+    void render(@NotNull StringBuilder builder, int depth) {
+        LocatorExplanation.indent(builder, depth).append("-> ").append(this).append('\n');
+
+        for (PredicateProfile predicate : predicates()) {
+            predicate.render(builder, depth + 1);
+        }
+    }
+
+    /**
+     * Write the step and its predicates as a JSON object.
+     * @param writer {@link JSONWriter} instance.
+     * @see PredicateProfile#writeTo(JSONWriter)
+     */
+    void writeTo(@NotNull JSONWriter writer) {
+        writer.beginObject()
+            .member("step", DESCRIPTION)
+            .member("positional", POSITIONAL)
+            .member("calls", calls)
+            .member("contextNodes", contextNodes)
+            .member("prunedContexts", prunedContexts)
+            .member("access", access())
+            .member("indexedCalls", indexedCalls)
+            .member("indexCandidates", indexCandidates)
+            .member("visited", visited)
+            .member("kept", kept)
+            .member("nanos", nanos)
+            .name("predicates")
+            .beginArray();
+
+        for (PredicateProfile predicate : predicates()) {
+            predicate.writeTo(writer);
+        }
+
+        writer.endArray().endObject();
+    }
+}
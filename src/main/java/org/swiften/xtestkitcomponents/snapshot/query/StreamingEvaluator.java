@@ -0,0 +1,471 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.snapshot.DOMSnapshot;
+import org.swiften.xtestkitcomponents.util.IntList;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.xml.sax.InputSource;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class evaluates {@link XPath} locators against a page source as it
+ * is being read, without building a tree. Memory use is bounded by the
+ * depth of the page source and the number of steps in the locator, and
+ * reading stops as soon as enough matches have been found.
+ *
+ * Only locators that can be decided on the start tag of an element are
+ * streamed: absolute paths, forward axes (child, descendant and
+ * following-sibling), attribute predicates and positions on the child axis.
+ * Other locators are evaluated with {@link LocatorEvaluator} on a
+ * {@link DOMSnapshot} instead.
+ *
+ * Node ids are the same as those of a {@link DOMSnapshot} of the same page
+ * source.
+ */
+public class StreamingEvaluator implements LocatorEvaluatorErrorType {
+    /**
+     * A mask can track this many steps, since bit 0 is for the document.
+     */
+    static final int MAX_STEPS = Long.SIZE - 1;
+
+    /**
+     * Check if a {@link LocatorPlan} can be evaluated in a single forward
+     * pass.
+     * @param plan {@link LocatorPlan} instance.
+     * @return {@link Boolean} value.
+     * @see LocatorPlan#isAbsolute()
+     * @see #isStreamable(AttributeType)
+     * @see #MAX_STEPS
+     */
+    public static boolean isStreamable(@NotNull LocatorPlan plan) {
+        List<LocatorPlan.Step> steps = plan.steps();
+
+        if (!plan.isAbsolute() || steps.isEmpty() || steps.size() > MAX_STEPS) {
+            return false;
+        }
+
+        for (LocatorPlan.Step step : steps) {
+            switch (step.axis()) {
+                case CHILD:
+                    break;
+
+                case DESCENDANT:
+                case FOLLOWING_SIBLING:
+                    if (step.isPositional()) {
+                        return false;
+                    }
+
+                    break;
+
+                default:
+                    return false;
+            }
+
+            for (LocatorPlan.Segment segment : step.segments()) {
+                for (AttributeType predicate : segment.predicates()) {
+                    if (!isStreamable(predicate)) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if a predicate only depends on the attributes of an element.
+     * @param predicate {@link AttributeType} instance.
+     * @return {@link Boolean} value.
+     */
+    static boolean isStreamable(@NotNull AttributeType predicate) {
+        if (predicate instanceof Attribute) {
+            return true;
+        } else if (predicate instanceof AttributeBlock) {
+            for (AttributeType child : ((AttributeBlock)predicate).attributes()) {
+                if (!isStreamable(child)) {
+                    return false;
+                }
+            }
+
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @NotNull private final XMLInputFactory FACTORY;
+    @NotNull private final LocatorEvaluator FALLBACK;
+
+    public StreamingEvaluator() {
+        FACTORY = XMLInputFactory.newInstance();
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        FALLBACK = LocatorEvaluator.builder().build();
+    }
+
+    /**
+     * Select the ids of all nodes that match an {@link XPath}.
+     * @param pageSource {@link String} value.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Integer} array, in document order.
+     * @see #select(Reader, XPath, int)
+     */
+    @NotNull
+    public int[] select(@NotNull String pageSource, @NotNull XPath xpath) {
+        return select(new StringReader(pageSource), xpath, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Check if any node matches an {@link XPath}, reading no further than
+     * the first match.
+     * @param pageSource {@link String} value.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Boolean} value.
+     * @see #select(Reader, XPath, int)
+     */
+    public boolean exists(@NotNull String pageSource, @NotNull XPath xpath) {
+        return select(new StringReader(pageSource), xpath, 1).length > 0;
+    }
+
+    /**
+     * Select the ids of at most some number of nodes that match an
+     * {@link XPath}.
+     * @param source {@link Reader} instance. This is not closed.
+     * @param xpath {@link XPath} instance.
+     * @param limit {@link Integer} value.
+     * @return {@link Integer} array, in document order.
+     * @see LocatorPlan#of(XPath)
+     * @see #select(Reader, LocatorPlan, int)
+     */
+    @NotNull
+    public int[] select(@NotNull Reader source, @NotNull XPath xpath, int limit) {
+        return select(source, LocatorPlan.of(xpath), limit);
+    }
+
+    /**
+     * Same as above, but uses a {@link LocatorPlan}.
+     * @param source {@link Reader} instance. This is not closed.
+     * @param plan {@link LocatorPlan} instance.
+     * @param limit {@link Integer} value.
+     * @return {@link Integer} array, in document order.
+     * @see #isStreamable(LocatorPlan)
+     * @see #stream(XMLStreamReader, LocatorPlan, int)
+     */
+    @NotNull
+    public int[] select(@NotNull Reader source, @NotNull LocatorPlan plan, int limit) {
+        if (!isStreamable(plan)) {
+            DOMSnapshot snapshot = DOMSnapshot.parse(new InputSource(source));
+            return FALLBACK.select(snapshot, plan, LocatorEvaluator.DOCUMENT, limit);
+        }
+
+        XMLStreamReader reader = null;
+
+        try {
+            reader = FACTORY.createXMLStreamReader(source);
+            return stream(reader, plan, limit);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Evaluate a streamable {@link LocatorPlan}.
+     *
+     * Each open element has a {@link Frame}. Bit k + 1 of
+     * {@link Frame#matched} is set if the element matches step k, and bit
+     * 0 stands for the document. Whether an element matches a step then
+     * only depends on the frames of its ancestors and earlier siblings.
+     * @param reader {@link XMLStreamReader} instance.
+     * @param plan {@link LocatorPlan} instance.
+     * @param limit {@link Integer} value.
+     * @return {@link Integer} array, in document order.
+     * @throws XMLStreamException If the page source cannot be read.
+     * @see #maxMatches(LocatorPlan)
+     * @see #matches(XMLStreamReader, LocatorPlan.Step, int, Frame)
+     * @see #isLive(LocatorPlan, Frame)
+     */
+    @NotNull
+    int[] stream(@NotNull XMLStreamReader reader,
+                 @NotNull LocatorPlan plan,
+                 int limit) throws XMLStreamException {
+        List<LocatorPlan.Step> steps = plan.steps();
+        int stepCount = steps.size();
+        long last = 1L << stepCount;
+        int required = Math.min(limit, maxMatches(plan));
+        List<Frame> frames = new ArrayList<>();
+        IntList result = new IntList();
+        Frame document = new Frame(stepCount);
+        document.matched = 1L;
+        document.chain = 1L;
+        frames.add(document);
+        int depth = 0;
+        int skipDepth = 0;
+        int id = 0;
+
+        while (reader.hasNext() && result.size() < required) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                int node = id++;
+
+                if (skipDepth > 0) {
+                    skipDepth++;
+                    continue;
+                }
+
+                Frame parent = frames.get(depth);
+                depth++;
+
+                if (frames.size() <= depth) {
+                    frames.add(new Frame(stepCount));
+                }
+
+                Frame frame = frames.get(depth);
+                frame.reset();
+
+                for (int k = 0; k < stepCount; k++) {
+                    if (matches(reader, steps.get(k), k, parent)) {
+                        frame.matched |= 1L << (k + 1);
+                    }
+                }
+
+                frame.chain = parent.chain | frame.matched;
+                parent.children |= frame.matched;
+                parent.hasChild = true;
+
+                if ((frame.matched & last) != 0) {
+                    result.add(node);
+                }
+
+                if (!isLive(plan, frame)) {
+                    /* No descendant can match, so only count ids until the
+                     * element closes */
+                    depth--;
+                    skipDepth = 1;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (skipDepth > 0) {
+                    skipDepth--;
+                } else {
+                    depth--;
+                }
+            }
+        }
+
+        return result.toArray();
+    }
+
+    /**
+     * Get the maximum number of nodes that a {@link LocatorPlan} can
+     * select. If every step is a direct child step with a position, each
+     * context node yields at most one node, so reading can stop at the
+     * first match.
+     * @param plan {@link LocatorPlan} instance.
+     * @return {@link Integer} value.
+     */
+    int maxMatches(@NotNull LocatorPlan plan) {
+        for (LocatorPlan.Step step : plan.steps()) {
+            if (step.axis() != Axis.CHILD || step.isAnyPath() || !step.isPositional()) {
+                return Integer.MAX_VALUE;
+            }
+        }
+
+        return 1;
+    }
+
+    /**
+     * Check if the current element matches a step.
+     * @param reader {@link XMLStreamReader} instance, at a start tag.
+     * @param step {@link LocatorPlan.Step} instance.
+     * @param k {@link Integer} value. The index of the step.
+     * @param parent {@link Frame} of the parent element.
+     * @return {@link Boolean} value.
+     * @see #test(XMLStreamReader, AttributeType)
+     */
+    boolean matches(@NotNull XMLStreamReader reader,
+                    @NotNull LocatorPlan.Step step,
+                    int k,
+                    @NotNull Frame parent) {
+        long previous = 1L << k;
+        boolean axis;
+
+        switch (step.axis()) {
+            case CHILD:
+                axis = step.isAnyPath()
+                    ? (parent.chain & previous) != 0
+                    : (parent.matched & previous) != 0;
+
+                break;
+
+            case DESCENDANT:
+                axis = (parent.chain & previous) != 0;
+                break;
+
+            case FOLLOWING_SIBLING:
+                /* With //, the context may also be any ancestor, as long as
+                 * there is an earlier sibling below it */
+                axis = (parent.children & previous) != 0
+                    || (step.isAnyPath()
+                        && parent.hasChild
+                        && (parent.chain & previous) != 0);
+
+                break;
+
+            default:
+                axis = false;
+                break;
+        }
+
+        if (!axis || !(step.matchesAnyName() || step.nameTest().equals(tagName(reader)))) {
+            return false;
+        }
+
+        List<LocatorPlan.Segment> segments = step.segments();
+
+        for (int i = 0, count = segments.size(); i < count; i++) {
+            LocatorPlan.Segment segment = segments.get(i);
+
+            for (AttributeType predicate : segment.predicates()) {
+                if (!test(reader, predicate)) {
+                    return false;
+                }
+            }
+
+            Integer position = segment.position();
+
+            if (position == null) {
+                continue;
+            }
+
+            /* Positions are only streamed on the child axis, where each
+             * parent is a separate context */
+            if (parent.counts[k] == null) {
+                parent.counts[k] = new int[count];
+            }
+
+            if (++parent.counts[k][i] != position) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if any descendant of an element may still match the last step.
+     * A descendant can match step k if the element itself provides the
+     * context, or if another descendant matched step k - 1, so the subtree
+     * is live if the element provides the context for any step.
+     * @param plan {@link LocatorPlan} instance.
+     * @param frame {@link Frame} of the element.
+     * @return {@link Boolean} value.
+     */
+    boolean isLive(@NotNull LocatorPlan plan, @NotNull Frame frame) {
+        List<LocatorPlan.Step> steps = plan.steps();
+
+        for (int k = 0, count = steps.size(); k < count; k++) {
+            LocatorPlan.Step step = steps.get(k);
+            long previous = 1L << k;
+
+            if (step.isAnyPath() || step.axis() == Axis.DESCENDANT) {
+                if ((frame.chain & previous) != 0) {
+                    return true;
+                }
+            } else if (step.axis() == Axis.CHILD) {
+                if ((frame.matched & previous) != 0) {
+                    return true;
+                }
+            }
+
+            /* Following siblings of a child need a child that matched the
+             * previous step, which is covered by that step */
+        }
+
+        return false;
+    }
+
+    /**
+     * Evaluate an attribute-only predicate on the current element.
+     * @param reader {@link XMLStreamReader} instance, at a start tag.
+     * @param predicate {@link AttributeType} instance.
+     * @return {@link Boolean} value.
+     * @see LocatorEvaluator#testAttribute(Attribute, java.util.function.Function)
+     * @see #UNSUPPORTED_ATTRIBUTE
+     */
+    boolean test(@NotNull XMLStreamReader reader, @NotNull AttributeType predicate) {
+        if (predicate instanceof Attribute) {
+            return LocatorEvaluator.testAttribute((Attribute<?>)predicate,
+                name -> reader.getAttributeValue(null, name));
+        } else if (predicate instanceof AttributeBlock) {
+            AttributeBlock block = (AttributeBlock)predicate;
+            boolean and = block.joiner() == Joiner.AND;
+
+            for (AttributeType child : block.attributes()) {
+                if (test(reader, child) != and) {
+                    return !and;
+                }
+            }
+
+            return and || block.attributes().isEmpty();
+        } else {
+            throw new RuntimeException(UNSUPPORTED_ATTRIBUTE);
+        }
+    }
+
+    /**
+     * Get the qualified tag name of the current element.
+     * @param reader {@link XMLStreamReader} instance, at a start tag.
+     * @return {@link String} value.
+     */
+    @NotNull
+    String tagName(@NotNull XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+
+        if (prefix == null || prefix.isEmpty()) {
+            return reader.getLocalName();
+        } else {
+            return prefix + ":" + reader.getLocalName();
+        }
+    }
+
+    /**
+     * Match state of an open element. Instances are reused by depth.
+     */
+    static final class Frame {
+        @NotNull final int[][] counts;
+        long matched;
+        long chain;
+        long children;
+        boolean hasChild;
+
+        Frame(int stepCount) {
+            counts = new int[stepCount][];
+        }
+
+        void reset() {
+            matched = 0L;
+            chain = 0L;
+            children = 0L;
+            hasChild = false;
+
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.swiften.xtestkitcomponents.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * This class is a growable list of primitive {@link Integer}, used to hold
+ * node ids without boxing.
+ */
+public final class IntList {
+    @NotNull private int[] values;
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * Get the number of values.
+     * @return {@link Integer} value.
+     * @see #size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if there is no value.
+     * @return {@link Boolean} value.
+     * @see #size
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the value at an index.
+     * @param index {@link Integer} value.
+     * @return {@link Integer} value.
+     * @see #values
+     */
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+
+        return values[index];
+    }
+
+    /**
+     * Replace the value at an index.
+     * @param index {@link Integer} value.
+     * @param value {@link Integer} value.
+     * @see #values
+     */
+    public void set(int index, int value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+
+        values[index] = value;
+    }
+
+    /**
+     * Get the last value.
+     * @return {@link Integer} value.
+     * @see #get(int)
+     */
+    public int last() {
+        return get(size - 1);
+    }
+
+    /**
+     * Remove and return the last value.
+     * @return {@link Integer} value.
+     * @see #last()
+     */
+    public int removeLast() {
+        int value = last();
+        size--;
+        return value;
+    }
+
+    /**
+     * Append a value.
+     * @param value {@link Integer} value.
+     * @see #values
+     */
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        values[size++] = value;
+    }
+
+    /**
+     * Append all values in an array.
+     * @param array {@link Integer} array.
+     * @see #add(int)
+     */
+    public void addAll(@NotNull int[] array) {
+        for (int value : array) {
+            add(value);
+        }
+    }
+
+    /**
+     * Remove all values.
+     * @see #size
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Get a copy of the values.
+     * @return {@link Integer} array.
+     * @see #values
+     */
+    @NotNull
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Get a sorted copy of the values, with duplicates removed.
+     * @return {@link Integer} array.
+     * @see #toArray()
+     */
+    @NotNull
+    public int[] toSortedSet() {
+        int[] sorted = toArray();
+        Arrays.sort(sorted);
+        int count = 0;
+
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+
+        return Arrays.copyOf(sorted, count);
+    }
+}
@@ -0,0 +1,75 @@
+package org.swiften.xtestkitcomponents.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * This class provides set operations on sorted, duplicate-free
+ * {@link Integer} arrays.
+ */
+public final class IntSets {
+    private IntSets() {}
+
+    /**
+     * Get the values that are in both sets.
+     * @param a {@link Integer} array.
+     * @param b {@link Integer} array.
+     * @return {@link Integer} array.
+     */
+    @NotNull
+    public static int[] intersect(@NotNull int[] a, @NotNull int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, count = 0;
+
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Get the values that are in either set.
+     * @param a {@link Integer} array.
+     * @param b {@link Integer} array.
+     * @return {@link Integer} array.
+     */
+    @NotNull
+    public static int[] union(@NotNull int[] a, @NotNull int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, count = 0;
+
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[count++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[count++] = b[j++];
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Check if a set contains a value.
+     * @param set {@link Integer} array.
+     * @param value {@link Integer} value.
+     * @return {@link Boolean} value.
+     */
+    public static boolean contains(@NotNull int[] set, int value) {
+        return Arrays.binarySearch(set, value) >= 0;
+    }
+}
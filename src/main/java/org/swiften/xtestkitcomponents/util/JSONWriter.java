@@ -0,0 +1,253 @@
+package org.swiften.xtestkitcomponents.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedList;
+
+/**
+ * This class provides a minimal streaming JSON writer, so that reports can
+ * be exported in a machine-readable format without an extra dependency.
+ */
+public final class JSONWriter {
+    /**
+     * Get a new {@link JSONWriter} instance.
+     * @return {@link JSONWriter} instance.
+     */
+    @NotNull
+    public static JSONWriter create() {
+        return new JSONWriter();
+    }
+
+    /**
+     * Escape a {@link String} so that it can be used as a JSON string
+     * literal, including the enclosing quotation marks.
+     * @param value {@link String} value.
+     * @return {@link String} value.
+     */
+    @NotNull
+    public static String quote(@NotNull String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+
+                case '\n':
+                    builder.append("\\n");
+                    break;
+
+                case '\r':
+                    builder.append("\\r");
+                    break;
+
+                case '\t':
+                    builder.append("\\t");
+                    break;
+
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        builder.append(c);
+                    }
+
+                    break;
+            }
+        }
+
+        return builder.append('"').toString();
+    }
+
+    @NotNull private final StringBuilder BUILDER;
+
+    /**
+     * Each element represents an open object or array, and indicates
+     * whether the next value needs to be preceded by a comma.
+     */
+    @NotNull private final LinkedList<Boolean> SEPARATORS;
+
+    /**
+     * This is true if a name has just been written, in which case the next
+     * value must not be preceded by a comma.
+     */
+    private boolean afterName;
+
+    private JSONWriter() {
+        BUILDER = new StringBuilder();
+        SEPARATORS = new LinkedList<>();
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return BUILDER.toString();
+    }
+
+    /**
+     * Write a comma if the current container already has an element.
+     */
+    private void separate() {
+        if (afterName) {
+            afterName = false;
+        } else if (!SEPARATORS.isEmpty()) {
+            if (SEPARATORS.peek()) {
+                BUILDER.append(',');
+            } else {
+                SEPARATORS.pop();
+                SEPARATORS.push(true);
+            }
+        }
+    }
+
+    /**
+     * Start a JSON object.
+     * @return {@link JSONWriter} instance.
+     * @see #separate()
+     */
+    @NotNull
+    public JSONWriter beginObject() {
+        separate();
+        BUILDER.append('{');
+        SEPARATORS.push(false);
+        return this;
+    }
+
+    /**
+     * End the current JSON object.
+     * @return {@link JSONWriter} instance.
+     */
+    @NotNull
+    public JSONWriter endObject() {
+        SEPARATORS.pop();
+        BUILDER.append('}');
+        return this;
+    }
+
+    /**
+     * Start a JSON array.
+     * @return {@link JSONWriter} instance.
+     * @see #separate()
+     */
+    @NotNull
+    public JSONWriter beginArray() {
+        separate();
+        BUILDER.append('[');
+        SEPARATORS.push(false);
+        return this;
+    }
+
+    /**
+     * End the current JSON array.
+     * @return {@link JSONWriter} instance.
+     */
+    @NotNull
+    public JSONWriter endArray() {
+        SEPARATORS.pop();
+        BUILDER.append(']');
+        return this;
+    }
+
+    /**
+     * Write the name of the next object member.
+     * @param name {@link String} value.
+     * @return {@link JSONWriter} instance.
+     * @see #quote(String)
+     * @see #separate()
+     */
+    @NotNull
+    public JSONWriter name(@NotNull String name) {
+        separate();
+        BUILDER.append(quote(name)).append(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Write a {@link String} value, or null.
+     * @param value {@link String} value.
+     * @return {@link JSONWriter} instance.
+     * @see #quote(String)
+     * @see #separate()
+     */
+    @NotNull
+    public JSONWriter value(@Nullable String value) {
+        separate();
+        BUILDER.append(value != null ? quote(value) : "null");
+        return this;
+    }
+
+    /**
+     * Write a {@link Number} value.
+     * @param value {@link Number} value.
+     * @return {@link JSONWriter} instance.
+     * @see #separate()
+     */
+    @NotNull
+    public JSONWriter value(@NotNull Number value) {
+        separate();
+        BUILDER.append(value);
+        return this;
+    }
+
+    /**
+     * Write a {@link Boolean} value.
+     * @param value {@link Boolean} value.
+     * @return {@link JSONWriter} instance.
+     * @see #separate()
+     */
+    @NotNull
+    public JSONWriter value(boolean value) {
+        separate();
+        BUILDER.append(value);
+        return this;
+    }
+
+    /**
+     * Write a {@link String} member.
+     * @param name {@link String} value.
+     * @param value {@link String} value.
+     * @return {@link JSONWriter} instance.
+     * @see #name(String)
+     * @see #value(String)
+     */
+    @NotNull
+    public JSONWriter member(@NotNull String name, @Nullable String value) {
+        return name(name).value(value);
+    }
+
+    /**
+     * Write a {@link Number} member.
+     * @param name {@link String} value.
+     * @param value {@link Number} value.
+     * @return {@link JSONWriter} instance.
+     * @see #name(String)
+     * @see #value(Number)
+     */
+    @NotNull
+    public JSONWriter member(@NotNull String name, @NotNull Number value) {
+        return name(name).value(value);
+    }
+
+    /**
+     * Write a {@link Boolean} member.
+     * @param name {@link String} value.
+     * @param value {@link Boolean} value.
+     * @return {@link JSONWriter} instance.
+     * @see #name(String)
+     * @see #value(boolean)
+     */
+    @NotNull
+    public JSONWriter member(@NotNull String name, boolean value) {
+        return name(name).value(value);
+    }
+}
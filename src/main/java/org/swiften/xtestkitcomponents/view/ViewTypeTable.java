@@ -0,0 +1,260 @@
+package org.swiften.xtestkitcomponents.view;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class maps class names to registered {@link ViewType}, so that the
+ * kind of an element can be looked up from its class name. A class name
+ * matches a {@link ViewType} if it equals its class name, or else if it
+ * ends with it after a '.' or '$', e.g. android.widget.Button matches
+ * Button. The longest matching suffix wins, and for equal class names the
+ * first registered {@link ViewType} wins.
+ *
+ * Each {@link ViewType} gets a kind code, which is its registration
+ * index, and a set of capability bits. Lookups are cached, including
+ * those that match nothing, so each class name is only resolved once.
+ */
+public final class ViewTypeTable {
+    /**
+     * The kind code of class names that match no {@link ViewType}.
+     */
+    public static final int UNKNOWN = -1;
+
+    /**
+     * Capability bit for {@link ViewType#hasText()}.
+     */
+    public static final int HAS_TEXT = 1;
+
+    /**
+     * Capability bit for {@link ViewType#isClickable()}.
+     */
+    public static final int CLICKABLE = 1 << 1;
+
+    /**
+     * Capability bit for {@link ViewType#isEditable()}.
+     */
+    public static final int EDITABLE = 1 << 2;
+
+    /**
+     * The cache is cleared when it reaches this size, so that a stream of
+     * generated class names cannot grow it without bound.
+     */
+    static final int MAX_CACHED = 4096;
+
+    /**
+     * Get {@link Builder} instance.
+     * @return {@link Builder} instance.
+     */
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the capability bits of a {@link ViewType}.
+     * @param viewType {@link ViewType} instance.
+     * @return {@link Integer} value.
+     * @see #CLICKABLE
+     * @see #EDITABLE
+     * @see #HAS_TEXT
+     */
+    public static int capabilities(@NotNull ViewType viewType) {
+        return (viewType.hasText() ? HAS_TEXT : 0)
+            | (viewType.isClickable() ? CLICKABLE : 0)
+            | (viewType.isEditable() ? EDITABLE : 0);
+    }
+
+    @NotNull private final List<ViewType> VIEW_TYPES;
+    @NotNull private final Map<String, Integer> CLASS_NAMES;
+    @NotNull private final Map<String, Integer> CACHE;
+    @NotNull private int[] capabilities;
+
+    ViewTypeTable() {
+        VIEW_TYPES = new ArrayList<>();
+        CLASS_NAMES = new HashMap<>();
+        CACHE = new ConcurrentHashMap<>();
+        capabilities = new int[0];
+    }
+
+    /**
+     * Get the number of registered {@link ViewType}.
+     * @return {@link Integer} value.
+     * @see #VIEW_TYPES
+     */
+    public int size() {
+        return VIEW_TYPES.size();
+    }
+
+    /**
+     * Get the kind code of a class name.
+     * @param className {@link String} value.
+     * @return {@link Integer} value, or {@link #UNKNOWN}.
+     * @see #resolve(String)
+     * @see #MAX_CACHED
+     */
+    public int kind(@NotNull String className) {
+        Integer kind = CACHE.get(className);
+
+        if (kind == null) {
+            kind = resolve(className);
+
+            if (CACHE.size() >= MAX_CACHED) {
+                CACHE.clear();
+            }
+
+            CACHE.put(className, kind);
+        }
+
+        return kind;
+    }
+
+    /**
+     * Get the {@link ViewType} of a kind code.
+     * @param kind {@link Integer} value.
+     * @return {@link ViewType} instance, or null for {@link #UNKNOWN}.
+     * @see #VIEW_TYPES
+     */
+    @Nullable
+    public ViewType viewType(int kind) {
+        return kind == UNKNOWN ? null : VIEW_TYPES.get(kind);
+    }
+
+    /**
+     * Get the {@link ViewType} of a class name.
+     * @param className {@link String} value.
+     * @return {@link ViewType} instance, or null if none matches.
+     * @see #kind(String)
+     * @see #viewType(int)
+     */
+    @Nullable
+    public ViewType viewType(@NotNull String className) {
+        return viewType(kind(className));
+    }
+
+    /**
+     * Get the capability bits of a kind code.
+     * @param kind {@link Integer} value.
+     * @return {@link Integer} value, 0 for {@link #UNKNOWN}.
+     * @see #capabilities
+     */
+    public int capabilities(int kind) {
+        return kind == UNKNOWN ? 0 : capabilities[kind];
+    }
+
+    /**
+     * Get the capability bits of a class name.
+     * @param className {@link String} value.
+     * @return {@link Integer} value.
+     * @see #capabilities(int)
+     * @see #kind(String)
+     */
+    public int capabilities(@NotNull String className) {
+        return capabilities(kind(className));
+    }
+
+    /**
+     * Get the number of cached class names.
+     * @return {@link Integer} value.
+     * @see #CACHE
+     */
+    public int cachedCount() {
+        return CACHE.size();
+    }
+
+    /**
+     * Resolve a class name without looking at {@link #CACHE}. Suffixes are
+     * tried from the longest to the shortest.
+     * @param className {@link String} value.
+     * @return {@link Integer} value.
+     * @see #CLASS_NAMES
+     */
+    private int resolve(@NotNull String className) {
+        Integer kind = CLASS_NAMES.get(className);
+
+        for (int i = 0, length = className.length(); kind == null && i < length; i++) {
+            char c = className.charAt(i);
+
+            if (c == '.' || c == '$') {
+                kind = CLASS_NAMES.get(className.substring(i + 1));
+            }
+        }
+
+        return kind != null ? kind : UNKNOWN;
+    }
+
+    /**
+     * Builder class for {@link ViewTypeTable}.
+     */
+    public static final class Builder {
+        @NotNull private final ViewTypeTable TABLE;
+
+        Builder() {
+            TABLE = new ViewTypeTable();
+        }
+
+        /**
+         * Register a {@link ViewType}.
+         * @param viewType {@link ViewType} instance.
+         * @return {@link Builder} instance.
+         * @see #VIEW_TYPES
+         * @see #CLASS_NAMES
+         */
+        @NotNull
+        public Builder addViewType(@NotNull ViewType viewType) {
+            TABLE.CLASS_NAMES.putIfAbsent(viewType.className(), TABLE.VIEW_TYPES.size());
+            TABLE.VIEW_TYPES.add(viewType);
+            return this;
+        }
+
+        /**
+         * Register a {@link Collection} of {@link ViewType}.
+         * @param viewTypes {@link Collection} of {@link ViewType}.
+         * @return {@link Builder} instance.
+         * @see #addViewType(ViewType)
+         */
+        @NotNull
+        public Builder addViewType(@NotNull Collection<? extends ViewType> viewTypes) {
+            for (ViewType viewType : viewTypes) {
+                addViewType(viewType);
+            }
+
+            return this;
+        }
+
+        /**
+         * Register an array of {@link ViewType}, e.g. the values of a
+         * platform's {@link ViewType} enum.
+         * @param viewTypes {@link ViewType} varargs.
+         * @return {@link Builder} instance.
+         * @see #addViewType(Collection)
+         */
+        @NotNull
+        public Builder addViewType(@NotNull ViewType...viewTypes) {
+            return addViewType(Arrays.asList(viewTypes));
+        }
+
+        /**
+         * Get {@link #TABLE}, with the capability bits of each
+         * {@link ViewType} precomputed.
+         * @return {@link ViewTypeTable} instance.
+         * @see ViewTypeTable#capabilities(ViewType)
+         * @see #TABLE
+         */
+        @NotNull
+        public ViewTypeTable build() {
+            int[] capabilities = new int[TABLE.VIEW_TYPES.size()];
+
+            for (int i = 0; i < capabilities.length; i++) {
+                capabilities[i] = ViewTypeTable.capabilities(TABLE.VIEW_TYPES.get(i));
+            }
+
+            TABLE.capabilities = capabilities;
+            TABLE.CACHE.clear();
+            return TABLE;
+        }
+    }
+}
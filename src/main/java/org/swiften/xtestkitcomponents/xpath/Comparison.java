@@ -0,0 +1,99 @@
+package org.swiften.xtestkitcomponents.xpath;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.common.ErrorProviderType;
+
+/**
+ * This {@link Enum} describes how a {@link Formatible} compares an attribute
+ * with its value. It allows {@link XPath} queries to be inspected without
+ * parsing the rendered {@link String}.
+ */
+public enum Comparison implements ErrorProviderType {
+    EQUAL,
+    CONTAINS,
+    CONTAINS_IGNORE_CASE;
+
+    /**
+     * Check whether the current {@link Comparison} requires a substring
+     * search, rather than an exact match.
+     * @return {@link Boolean} value.
+     * @see #CONTAINS
+     * @see #CONTAINS_IGNORE_CASE
+     * @see #EQUAL
+     * @see #NOT_AVAILABLE
+     */
+    public boolean isSubstring() {
+        switch (this) {
+            case EQUAL:
+                return false;
+
+            case CONTAINS:
+            case CONTAINS_IGNORE_CASE:
+                return true;
+
+            default:
+                throw new RuntimeException(NOT_AVAILABLE);
+        }
+    }
+
+    /**
+     * Check whether an attribute value satisfies the current
+     * {@link Comparison}, with the same semantics as the rendered XPath.
+     * A missing attribute never equals a value, but behaves like an empty
+     * {@link String} in contains().
+     * @param expected {@link String} value.
+     * @param actual {@link String} value, or null if the attribute is absent.
+     * @return {@link Boolean} value.
+     * @see #translate(String, String, String)
+     * @see #CONTAINS
+     * @see #CONTAINS_IGNORE_CASE
+     * @see #EQUAL
+     * @see #NOT_AVAILABLE
+     */
+    public boolean matches(@NotNull String expected, @Nullable String actual) {
+        switch (this) {
+            case EQUAL:
+                return expected.equals(actual);
+
+            case CONTAINS:
+                return (actual != null ? actual : "").contains(expected);
+
+            case CONTAINS_IGNORE_CASE:
+                String lower = expected.toLowerCase();
+                String upper = expected.toUpperCase();
+                String value = actual != null ? actual : "";
+                return translate(value, upper, lower).contains(lower);
+
+            default:
+                throw new RuntimeException(NOT_AVAILABLE);
+        }
+    }
+
+    /**
+     * Replicate the XPath translate() function.
+     * @param value {@link String} value.
+     * @param from {@link String} value.
+     * @param to {@link String} value.
+     * @return {@link String} value.
+     */
+    @NotNull
+    public static String translate(@NotNull String value,
+                                   @NotNull String from,
+                                   @NotNull String to) {
+        StringBuilder builder = new StringBuilder(value.length());
+
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            int index = from.indexOf(c);
+
+            if (index < 0) {
+                builder.append(c);
+            } else if (index < to.length()) {
+                builder.append(to.charAt(index));
+            }
+        }
+
+        return builder.toString();
+    }
+}
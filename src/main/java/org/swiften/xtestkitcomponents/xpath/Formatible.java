@@ -34,4 +34,15 @@ public interface Formatible<T> {
         String raw = formatValue(value);
         return String.format("@%1$s=%2$s", "%1$s", raw);
     }
+
+    /**
+     * Get the {@link Comparison} that {@link #stringFormat(Object)} renders.
+     * Override this when the format does not perform a direct comparison.
+     * @return {@link Comparison} instance.
+     * @see Comparison#EQUAL
+     */
+    @NotNull
+    default Comparison comparison() {
+        return Comparison.EQUAL;
+    }
 }
@@ -141,6 +141,24 @@ public final class Formatibles {
                 );
             }
         }
+
+        /**
+         * Override this method to reflect the contains() query that
+         * {@link #stringFormat(String)} produces.
+         * @return {@link Comparison} instance.
+         * @see Comparison#CONTAINS
+         * @see Comparison#CONTAINS_IGNORE_CASE
+         * @see #ignoreCase()
+         */
+        @NotNull
+        @Override
+        default Comparison comparison() {
+            if (ignoreCase()) {
+                return Comparison.CONTAINS_IGNORE_CASE;
+            } else {
+                return Comparison.CONTAINS;
+            }
+        }
     }
 
     interface AtIndex extends Formatible<Integer> {}
@@ -0,0 +1,300 @@
+package org.swiften.xtestkitcomponents.xpath;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.util.JSONWriter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class records every {@link XPath} rendered through
+ * {@link XPath#attribute()}, so that hot locators can be found. Recording is
+ * opt-in; when disabled, the only overhead is a single volatile read.
+ */
+public final class LocatorRegistry {
+    @NotNull private static final LocatorRegistry SHARED;
+
+    static {
+        SHARED = new LocatorRegistry();
+    }
+
+    /**
+     * Get {@link #SHARED}.
+     * @return {@link LocatorRegistry} instance.
+     * @see #SHARED
+     */
+    @NotNull
+    public static LocatorRegistry shared() {
+        return SHARED;
+    }
+
+    @NotNull private final ConcurrentMap<Long, Entry> ENTRIES;
+    private volatile boolean enabled;
+    private volatile boolean captureCaller;
+
+    LocatorRegistry() {
+        ENTRIES = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Check if recording is enabled.
+     * @return {@link Boolean} value.
+     * @see #enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable recording.
+     * @param enabled {@link Boolean} value.
+     * @see #enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Check if the calling class is captured for every render.
+     * @return {@link Boolean} value.
+     * @see #captureCaller
+     */
+    public boolean isCapturingCaller() {
+        return captureCaller;
+    }
+
+    /**
+     * Enable or disable caller capture. This walks the stack on every
+     * render, so it is more expensive than plain recording.
+     * @param capture {@link Boolean} value.
+     * @see #captureCaller
+     */
+    public void setCapturingCaller(boolean capture) {
+        captureCaller = capture;
+    }
+
+    /**
+     * Remove all recorded statistics.
+     * @see #ENTRIES
+     */
+    public void clear() {
+        ENTRIES.clear();
+    }
+
+    /**
+     * Get the {@link Entry} for an {@link XPath}, creating it if necessary.
+     * @param xpath {@link XPath} instance.
+     * @param query {@link String} value. If this is null, the {@link XPath}
+     *              is rendered only when a new {@link Entry} is created.
+     * @return {@link Entry} instance.
+     * @see StructuralHashes#of(XPath)
+     * @see XPath#renderAttribute()
+     * @see #ENTRIES
+     */
+    @NotNull
+    private Entry entry(@NotNull XPath xpath, @Nullable String query) {
+        long hash = StructuralHashes.of(xpath);
+
+        return ENTRIES.computeIfAbsent(hash, a ->
+            new Entry(a, query != null ? query : xpath.renderAttribute()));
+    }
+
+    /**
+     * Record a render. This is called by {@link XPath#attribute()}.
+     * @param xpath {@link XPath} instance.
+     * @param query {@link String} value.
+     * @param nanos {@link Long} value.
+     * @see #caller()
+     * @see #entry(XPath, String)
+     * @see #isCapturingCaller()
+     */
+    void recordRender(@NotNull XPath xpath, @NotNull String query, long nanos) {
+        Entry entry = entry(xpath, query);
+        entry.RENDER_COUNT.increment();
+        entry.RENDER_NANOS.add(nanos);
+
+        if (isCapturingCaller()) {
+            String caller = caller();
+
+            if (caller != null) {
+                entry.CALLERS.computeIfAbsent(caller, a -> new LongAdder()).increment();
+            }
+        }
+    }
+
+    /**
+     * Record the time taken to look up elements with an {@link XPath}.
+     * Drivers should call this after each lookup.
+     * @param xpath {@link XPath} instance.
+     * @param nanos {@link Long} value.
+     * @see #entry(XPath, String)
+     * @see #isEnabled()
+     */
+    public void recordLookup(@NotNull XPath xpath, long nanos) {
+        if (isEnabled()) {
+            Entry entry = entry(xpath, null);
+            entry.LOOKUP_COUNT.increment();
+            entry.LOOKUP_NANOS.add(nanos);
+        }
+    }
+
+    /**
+     * Find the first stack frame outside of {@link XPath},
+     * {@link LocatorRegistry} and the JDK, which should be the page object
+     * or driver that requested the locator.
+     * @return {@link String} value.
+     */
+    @Nullable
+    private String caller() {
+        String xpath = XPath.class.getName();
+        String registry = LocatorRegistry.class.getName();
+
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            String className = element.getClassName();
+
+            if (!className.equals(xpath)
+                && !className.equals(registry)
+                && !className.startsWith(registry + "$")
+                && !className.startsWith("java.")
+                && !className.startsWith("jdk.")
+                && !className.startsWith("sun.")) {
+                return className;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get an immutable copy of all recorded statistics, sorted by render
+     * count in descending order.
+     * @return {@link List} of {@link LocatorStats}.
+     * @see Entry#stats()
+     * @see #ENTRIES
+     */
+    @NotNull
+    public List<LocatorStats> snapshot() {
+        List<LocatorStats> stats = new ArrayList<>();
+
+        for (Entry entry : ENTRIES.values()) {
+            stats.add(entry.stats());
+        }
+
+        stats.sort(Comparator.comparingLong(LocatorStats::renderCount).reversed());
+        return stats;
+    }
+
+    /**
+     * Export {@link #snapshot()} as JSON.
+     * @return {@link String} value.
+     * @see LocatorStats#writeTo(JSONWriter)
+     * @see #snapshot()
+     */
+    @NotNull
+    public String toJSON() {
+        JSONWriter writer = JSONWriter.create().beginArray();
+
+        for (LocatorStats stats : snapshot()) {
+            stats.writeTo(writer);
+        }
+
+        return writer.endArray().toString();
+    }
+
+    /**
+     * Export {@link #snapshot()} as CSV, with one row per locator. Callers
+     * are joined with semicolons.
+     * @return {@link String} value.
+     * @see #csvField(String)
+     * @see #snapshot()
+     */
+    @NotNull
+    public String toCSV() {
+        StringBuilder builder = new StringBuilder()
+            .append("hash,query,length,renderCount,renderNanos,")
+            .append("lookupCount,lookupNanos,callers\n");
+
+        for (LocatorStats stats : snapshot()) {
+            List<String> callers = new ArrayList<>();
+
+            for (Map.Entry<String, Long> entry : stats.callers().entrySet()) {
+                callers.add(String.format("%s=%d", entry.getKey(), entry.getValue()));
+            }
+
+            builder.append(String.format("%016x", stats.hash())).append(',')
+                .append(csvField(stats.query())).append(',')
+                .append(stats.length()).append(',')
+                .append(stats.renderCount()).append(',')
+                .append(stats.renderNanos()).append(',')
+                .append(stats.lookupCount()).append(',')
+                .append(stats.lookupNanos()).append(',')
+                .append(csvField(String.join(";", callers))).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Quote a CSV field if necessary.
+     * @param value {@link String} value.
+     * @return {@link String} value.
+     */
+    @NotNull
+    private static String csvField(@NotNull String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return String.format("\"%s\"", value.replace("\"", "\"\""));
+        } else {
+            return value;
+        }
+    }
+
+    /**
+     * Mutable statistics for a single locator.
+     */
+    private static final class Entry {
+        @NotNull private final String QUERY;
+        @NotNull private final LongAdder RENDER_COUNT;
+        @NotNull private final LongAdder RENDER_NANOS;
+        @NotNull private final LongAdder LOOKUP_COUNT;
+        @NotNull private final LongAdder LOOKUP_NANOS;
+        @NotNull private final ConcurrentMap<String, LongAdder> CALLERS;
+        private final long HASH;
+
+        Entry(long hash, @NotNull String query) {
+            HASH = hash;
+            QUERY = query;
+            RENDER_COUNT = new LongAdder();
+            RENDER_NANOS = new LongAdder();
+            LOOKUP_COUNT = new LongAdder();
+            LOOKUP_NANOS = new LongAdder();
+            CALLERS = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Get an immutable {@link LocatorStats} copy.
+         * @return {@link LocatorStats} instance.
+         */
+        @NotNull
+        LocatorStats stats() {
+            Map<String, Long> callers = new LinkedHashMap<>();
+
+            for (Map.Entry<String, LongAdder> entry : CALLERS.entrySet()) {
+                callers.put(entry.getKey(), entry.getValue().sum());
+            }
+
+            return new LocatorStats(
+                HASH, QUERY,
+                RENDER_COUNT.sum(), RENDER_NANOS.sum(),
+                LOOKUP_COUNT.sum(), LOOKUP_NANOS.sum(),
+                callers
+            );
+        }
+    }
+}
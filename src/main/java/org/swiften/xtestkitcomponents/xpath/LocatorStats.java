@@ -0,0 +1,143 @@
+package org.swiften.xtestkitcomponents.xpath;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.util.JSONWriter;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * This class is an immutable copy of the usage statistics that
+ * {@link LocatorRegistry} keeps for a single locator.
+ */
+public final class LocatorStats {
+    @NotNull private final String QUERY;
+    @NotNull private final Map<String, Long> CALLERS;
+    private final long HASH;
+    private final long RENDER_COUNT;
+    private final long RENDER_NANOS;
+    private final long LOOKUP_COUNT;
+    private final long LOOKUP_NANOS;
+
+    LocatorStats(long hash,
+                 @NotNull String query,
+                 long renderCount,
+                 long renderNanos,
+                 long lookupCount,
+                 long lookupNanos,
+                 @NotNull Map<String, Long> callers) {
+        HASH = hash;
+        QUERY = query;
+        RENDER_COUNT = renderCount;
+        RENDER_NANOS = renderNanos;
+        LOOKUP_COUNT = lookupCount;
+        LOOKUP_NANOS = lookupNanos;
+        CALLERS = Collections.unmodifiableMap(callers);
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return String.format("%016x (%d renders): %s", HASH, RENDER_COUNT, QUERY);
+    }
+
+    /**
+     * Get {@link #HASH}.
+     * @return {@link Long} value.
+     * @see StructuralHashes#of(XPath)
+     * @see #HASH
+     */
+    public long hash() {
+        return HASH;
+    }
+
+    /**
+     * Get {@link #QUERY}.
+     * @return {@link String} value.
+     * @see #QUERY
+     */
+    @NotNull
+    public String query() {
+        return QUERY;
+    }
+
+    /**
+     * Get the rendered length of {@link #QUERY}.
+     * @return {@link Integer} value.
+     * @see #QUERY
+     */
+    public int length() {
+        return QUERY.length();
+    }
+
+    /**
+     * Get {@link #RENDER_COUNT}.
+     * @return {@link Long} value.
+     * @see #RENDER_COUNT
+     */
+    public long renderCount() {
+        return RENDER_COUNT;
+    }
+
+    /**
+     * Get {@link #RENDER_NANOS}, the cumulative time spent rendering.
+     * @return {@link Long} value.
+     * @see #RENDER_NANOS
+     */
+    public long renderNanos() {
+        return RENDER_NANOS;
+    }
+
+    /**
+     * Get {@link #LOOKUP_COUNT}.
+     * @return {@link Long} value.
+     * @see #LOOKUP_COUNT
+     */
+    public long lookupCount() {
+        return LOOKUP_COUNT;
+    }
+
+    /**
+     * Get {@link #LOOKUP_NANOS}, the cumulative time spent looking up
+     * elements with this locator.
+     * @return {@link Long} value.
+     * @see #LOOKUP_NANOS
+     */
+    public long lookupNanos() {
+        return LOOKUP_NANOS;
+    }
+
+    /**
+     * Get {@link #CALLERS}, mapping each calling class to the number of
+     * renders it requested.
+     * @return {@link Map} of {@link String} and {@link Long}.
+     * @see #CALLERS
+     */
+    @NotNull
+    public Map<String, Long> callers() {
+        return CALLERS;
+    }
+
+    /**
+     * Write the current {@link LocatorStats} as a JSON object.
+     * @param writer {@link JSONWriter} instance.
+     */
+    void writeTo(@NotNull JSONWriter writer) {
+        writer.beginObject()
+            .member("hash", String.format("%016x", HASH))
+            .member("query", QUERY)
+            .member("length", length())
+            .member("renderCount", RENDER_COUNT)
+            .member("renderNanos", RENDER_NANOS)
+            .member("lookupCount", LOOKUP_COUNT)
+            .member("lookupNanos", LOOKUP_NANOS)
+            .name("callers")
+            .beginObject();
+
+        for (Map.Entry<String, Long> entry : CALLERS.entrySet()) {
+            writer.member(entry.getKey(), entry.getValue());
+        }
+
+        writer.endObject().endObject();
+    }
+}
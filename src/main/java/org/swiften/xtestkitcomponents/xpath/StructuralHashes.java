@@ -0,0 +1,138 @@
+package org.swiften.xtestkitcomponents.xpath;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This utility class computes 64-bit structural hashes for {@link XPath}
+ * and {@link AttributeType}. Two locators with the same structure produce
+ * the same hash without having to be rendered.
+ */
+public final class StructuralHashes {
+    private static final long SEED = 0xcbf29ce484222325L;
+    private static final long MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+    private StructuralHashes() {}
+
+    /**
+     * Combine a hash with a new value.
+     * @param hash {@link Long} value.
+     * @param value {@link Long} value.
+     * @return {@link Long} value.
+     */
+    static long combine(long hash, long value) {
+        return Long.rotateLeft((hash ^ value) * MULTIPLIER, 31);
+    }
+
+    /**
+     * Combine a hash with a {@link String}.
+     * @param hash {@link Long} value.
+     * @param value {@link String} value.
+     * @return {@link Long} value.
+     * @see #combine(long, long)
+     */
+    static long combine(long hash, @NotNull String value) {
+        long result = combine(hash, value.length());
+
+        for (int i = 0, length = value.length(); i < length; i++) {
+            result = (result ^ value.charAt(i)) * 0x100000001b3L;
+        }
+
+        return result;
+    }
+
+    /**
+     * Spread the bits of a hash so that small differences in input affect
+     * the whole result.
+     * @param hash {@link Long} value.
+     * @return {@link Long} value.
+     */
+    private static long finish(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * Get the structural hash of an {@link XPath}.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Long} value.
+     * @see XPath#compoundAttributes()
+     * @see #hash(AttributeType)
+     */
+    public static long of(@NotNull XPath xpath) {
+        long hash = combine(SEED, 'X');
+
+        for (CompoundAttribute attribute : xpath.compoundAttributes()) {
+            hash = combine(hash, hash(attribute));
+        }
+
+        return finish(hash);
+    }
+
+    /**
+     * Get the structural hash of an {@link AttributeType}.
+     * @param attribute {@link AttributeType} instance.
+     * @return {@link Long} value.
+     * @see #hash(AttributeType)
+     */
+    public static long of(@NotNull AttributeType attribute) {
+        return finish(hash(attribute));
+    }
+
+    /**
+     * Get the unfinished hash of an {@link AttributeType}. Unknown
+     * {@link AttributeType} fall back to {@link AttributeType#fullAttribute()}.
+     * @param attribute {@link AttributeType} instance.
+     * @return {@link Long} value.
+     * @see Attribute#formatible()
+     * @see Formatible#comparison()
+     */
+    private static long hash(@NotNull AttributeType attribute) {
+        if (attribute instanceof CompoundAttribute) {
+            CompoundAttribute compound = (CompoundAttribute)attribute;
+            Integer index = compound.index();
+            long hash = combine(SEED, 'C');
+            hash = combine(hash, compound.path().ordinal());
+            hash = combine(hash, compound.axis().ordinal());
+            hash = combine(hash, compound.wrapper().ordinal());
+            hash = combine(hash, compound.className());
+            hash = combine(hash, index != null ? index : Long.MIN_VALUE);
+
+            for (AttributeType child : compound.attributes()) {
+                hash = combine(hash, hash(child));
+            }
+
+            return hash;
+        } else if (attribute instanceof AttributeBlock) {
+            AttributeBlock block = (AttributeBlock)attribute;
+            long hash = combine(SEED, 'B');
+            hash = combine(hash, block.joiner().ordinal());
+
+            for (AttributeType child : block.attributes()) {
+                hash = combine(hash, hash(child));
+            }
+
+            return hash;
+        } else if (attribute instanceof Attribute) {
+            Attribute<?> attr = (Attribute<?>)attribute;
+            Formatible<?> formatible = attr.formatible();
+            long hash = combine(SEED, 'A');
+            hash = combine(hash, attr.joiner().ordinal());
+            hash = combine(hash, attr.wrapper().ordinal());
+            hash = combine(hash, formatible.comparison().ordinal());
+
+            /* Custom Formatible may render differently even with the same
+             * Comparison, so they must not share a hash */
+            hash = combine(hash, formatible.getClass().getName());
+            hash = combine(hash, String.valueOf(attr.value()));
+
+            for (String name : attr.attributes()) {
+                hash = combine(hash, name);
+            }
+
+            return hash;
+        } else {
+            return combine(combine(SEED, 'T'), attribute.fullAttribute());
+        }
+    }
+}
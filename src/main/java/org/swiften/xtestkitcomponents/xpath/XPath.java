@@ -36,7 +36,7 @@ public class XPath {
 
     @NotNull
     public String toString() {
-        return attribute();
+        return renderAttribute();
     }
 
     /**
@@ -82,14 +82,39 @@ public class XPath {
     }
 
     /**
-     * Get an attribute represented by {@link #ATTRIBUTES}.
+     * Get an attribute represented by {@link #ATTRIBUTES}. If
+     * {@link LocatorRegistry} is enabled, the render is recorded.
+     * @return {@link String} value.
+     * @see LocatorRegistry#isEnabled()
+     * @see LocatorRegistry#recordRender(XPath, String, long)
+     * @see LocatorRegistry#shared()
+     * @see #renderAttribute()
+     */
+    @NotNull
+    public String attribute() {
+        LocatorRegistry registry = LocatorRegistry.shared();
+
+        if (registry.isEnabled()) {
+            long start = System.nanoTime();
+            String attribute = renderAttribute();
+            registry.recordRender(this, attribute, System.nanoTime() - start);
+            return attribute;
+        } else {
+            return renderAttribute();
+        }
+    }
+
+    /**
+     * Render the attribute represented by {@link #ATTRIBUTES}, without
+     * recording it in {@link LocatorRegistry}. Use this when the query is
+     * not sent to a driver, e.g. for logging, analysis or cache keys.
      * @return {@link String} value.
      * @see Attribute#fullAttribute()
      * @see #compoundAttributes()
      * @see #ATTRIBUTES
      */
     @NotNull
-    public String attribute() {
+    public String renderAttribute() {
         List<CompoundAttribute> attributes = compoundAttributes();
 
         List<String> components = attributes.stream()
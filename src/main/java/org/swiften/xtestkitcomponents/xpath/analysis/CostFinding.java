@@ -0,0 +1,86 @@
+package org.swiften.xtestkitcomponents.xpath.analysis;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.util.JSONWriter;
+
+/**
+ * This class represents a single occurrence of a {@link CostIssue} within
+ * a locator.
+ */
+public final class CostFinding {
+    @NotNull private final CostIssue ISSUE;
+    @NotNull private final String FRAGMENT;
+    private final int NESTING;
+    private final double COST;
+
+    CostFinding(@NotNull CostIssue issue,
+                @NotNull String fragment,
+                int nesting,
+                double cost) {
+        ISSUE = issue;
+        FRAGMENT = fragment;
+        NESTING = nesting;
+        COST = cost;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return String.format("%s (%.1f): %s", ISSUE, COST, FRAGMENT);
+    }
+
+    /**
+     * Get {@link #ISSUE}.
+     * @return {@link CostIssue} instance.
+     * @see #ISSUE
+     */
+    @NotNull
+    public CostIssue issue() {
+        return ISSUE;
+    }
+
+    /**
+     * Get {@link #FRAGMENT}, the rendered part of the locator that caused
+     * the issue.
+     * @return {@link String} value.
+     * @see #FRAGMENT
+     */
+    @NotNull
+    public String fragment() {
+        return FRAGMENT;
+    }
+
+    /**
+     * Get {@link #NESTING}, the number of enclosing predicates. An issue
+     * nested in a predicate is paid once for every candidate node.
+     * @return {@link Integer} value.
+     * @see #NESTING
+     */
+    public int nesting() {
+        return NESTING;
+    }
+
+    /**
+     * Get {@link #COST}.
+     * @return {@link Double} value.
+     * @see #COST
+     */
+    public double cost() {
+        return COST;
+    }
+
+    /**
+     * Write the current {@link CostFinding} as a JSON object.
+     * @param writer {@link JSONWriter} instance.
+     * @see JSONWriter#beginObject()
+     * @see JSONWriter#endObject()
+     */
+    void writeTo(@NotNull JSONWriter writer) {
+        writer.beginObject()
+            .member("issue", ISSUE.name())
+            .member("nesting", NESTING)
+            .member("cost", COST)
+            .member("fragment", FRAGMENT)
+            .endObject();
+    }
+}
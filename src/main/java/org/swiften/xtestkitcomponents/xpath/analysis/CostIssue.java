@@ -0,0 +1,91 @@
+package org.swiften.xtestkitcomponents.xpath.analysis;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.common.ErrorProviderType;
+
+/**
+ * This {@link Enum} contains the constructs that make an
+ * {@link org.swiften.xtestkitcomponents.xpath.XPath} expensive to evaluate.
+ */
+public enum CostIssue implements ErrorProviderType {
+    LEADING_ANY_PATH,
+    ABSOLUTE_PREDICATE,
+    TRANSLATE,
+    NOT_WRAPPER,
+    UNANCHORED_DESCENDANT,
+    LONG_QUERY;
+
+    /**
+     * Get the default weight that is added to a locator's score every time
+     * the current {@link CostIssue} is found.
+     * @return {@link Double} value.
+     * @see #ABSOLUTE_PREDICATE
+     * @see #LEADING_ANY_PATH
+     * @see #LONG_QUERY
+     * @see #NOT_WRAPPER
+     * @see #TRANSLATE
+     * @see #UNANCHORED_DESCENDANT
+     * @see #NOT_AVAILABLE
+     */
+    public double defaultWeight() {
+        switch (this) {
+            case LEADING_ANY_PATH:
+                return 2d;
+
+            case ABSOLUTE_PREDICATE:
+                return 10d;
+
+            case TRANSLATE:
+                return 3d;
+
+            case NOT_WRAPPER:
+                return 1d;
+
+            case UNANCHORED_DESCENDANT:
+                return 5d;
+
+            case LONG_QUERY:
+                return 1d;
+
+            default:
+                throw new RuntimeException(NOT_AVAILABLE);
+        }
+    }
+
+    /**
+     * Get a short description of the current {@link CostIssue}.
+     * @return {@link String} value.
+     * @see #ABSOLUTE_PREDICATE
+     * @see #LEADING_ANY_PATH
+     * @see #LONG_QUERY
+     * @see #NOT_WRAPPER
+     * @see #TRANSLATE
+     * @see #UNANCHORED_DESCENDANT
+     * @see #NOT_AVAILABLE
+     */
+    @NotNull
+    public String description() {
+        switch (this) {
+            case LEADING_ANY_PATH:
+                return "Leading // scans the whole hierarchy";
+
+            case ABSOLUTE_PREDICATE:
+                return "Absolute path inside a predicate is evaluated for every candidate";
+
+            case TRANSLATE:
+                return "translate() cannot use driver-side indexes";
+
+            case NOT_WRAPPER:
+                return "not() must evaluate its whole operand";
+
+            case UNANCHORED_DESCENDANT:
+                return "descendant::* without a class name visits every node below the context";
+
+            case LONG_QUERY:
+                return "Rendered query exceeds the length threshold";
+
+            default:
+                throw new RuntimeException(NOT_AVAILABLE);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.swiften.xtestkitcomponents.xpath.analysis;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.util.JSONWriter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class contains the {@link LocatorCost} of a whole locator catalog,
+ * sorted so that the most expensive locators come first.
+ */
+public final class CostReport {
+    @NotNull private final List<LocatorCost> COSTS;
+
+    CostReport(@NotNull Collection<LocatorCost> costs) {
+        List<LocatorCost> sorted = new ArrayList<>(costs);
+        sorted.sort(Comparator.comparingDouble(LocatorCost::score).reversed());
+        COSTS = Collections.unmodifiableList(sorted);
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return toJSON();
+    }
+
+    /**
+     * Get {@link #COSTS}.
+     * @return {@link List} of {@link LocatorCost}.
+     * @see #COSTS
+     */
+    @NotNull
+    public List<LocatorCost> costs() {
+        return COSTS;
+    }
+
+    /**
+     * Get the total score of all locators.
+     * @return {@link Double} value.
+     * @see LocatorCost#score()
+     * @see #costs()
+     */
+    public double totalScore() {
+        return costs().stream().mapToDouble(LocatorCost::score).sum();
+    }
+
+    /**
+     * Get the JSON representation of the whole catalog.
+     * @return {@link String} value.
+     * @see LocatorCost#writeTo(JSONWriter)
+     * @see #costs()
+     * @see #totalScore()
+     */
+    @NotNull
+    public String toJSON() {
+        JSONWriter writer = JSONWriter.create()
+            .beginObject()
+            .member("locatorCount", COSTS.size())
+            .member("totalScore", totalScore())
+            .name("locators")
+            .beginArray();
+
+        for (LocatorCost cost : costs()) {
+            cost.writeTo(writer);
+        }
+
+        return writer.endArray().endObject().toString();
+    }
+}
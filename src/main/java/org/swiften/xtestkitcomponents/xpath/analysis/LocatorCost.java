@@ -0,0 +1,138 @@
+package org.swiften.xtestkitcomponents.xpath.analysis;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.util.JSONWriter;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class contains the cost analysis of a single locator.
+ */
+public final class LocatorCost {
+    @NotNull private final String NAME;
+    @NotNull private final String QUERY;
+    @NotNull private final List<CostFinding> FINDINGS;
+    private final double SCORE;
+
+    LocatorCost(@NotNull String name,
+                @NotNull String query,
+                @NotNull List<CostFinding> findings) {
+        NAME = name;
+        QUERY = query;
+        FINDINGS = Collections.unmodifiableList(findings);
+        SCORE = findings.stream().mapToDouble(CostFinding::cost).sum();
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return String.format("%s (%.1f): %s", NAME, SCORE, QUERY);
+    }
+
+    /**
+     * Get {@link #NAME}.
+     * @return {@link String} value.
+     * @see #NAME
+     */
+    @NotNull
+    public String name() {
+        return NAME;
+    }
+
+    /**
+     * Get {@link #QUERY}.
+     * @return {@link String} value.
+     * @see #QUERY
+     */
+    @NotNull
+    public String query() {
+        return QUERY;
+    }
+
+    /**
+     * Get the rendered length of {@link #QUERY}.
+     * @return {@link Integer} value.
+     * @see #QUERY
+     */
+    public int length() {
+        return QUERY.length();
+    }
+
+    /**
+     * Get {@link #FINDINGS}.
+     * @return {@link List} of {@link CostFinding}.
+     * @see #FINDINGS
+     */
+    @NotNull
+    public List<CostFinding> findings() {
+        return FINDINGS;
+    }
+
+    /**
+     * Get {@link #SCORE}, which is the sum of all {@link CostFinding#cost()}.
+     * @return {@link Double} value.
+     * @see #SCORE
+     */
+    public double score() {
+        return SCORE;
+    }
+
+    /**
+     * Count the number of {@link CostFinding} for each {@link CostIssue}.
+     * @return {@link Map} of {@link CostIssue} and {@link Integer}.
+     * @see #findings()
+     */
+    @NotNull
+    public Map<CostIssue, Integer> issueCounts() {
+        Map<CostIssue, Integer> counts = new EnumMap<>(CostIssue.class);
+
+        for (CostFinding finding : findings()) {
+            counts.merge(finding.issue(), 1, Integer::sum);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Write the current {@link LocatorCost} as a JSON object.
+     * @param writer {@link JSONWriter} instance.
+     * @see CostFinding#writeTo(JSONWriter)
+     * @see #issueCounts()
+     */
+    void writeTo(@NotNull JSONWriter writer) {
+        writer.beginObject()
+            .member("name", NAME)
+            .member("query", QUERY)
+            .member("length", length())
+            .member("score", SCORE)
+            .name("issues")
+            .beginObject();
+
+        for (Map.Entry<CostIssue, Integer> entry : issueCounts().entrySet()) {
+            writer.member(entry.getKey().name(), entry.getValue());
+        }
+
+        writer.endObject().name("findings").beginArray();
+
+        for (CostFinding finding : FINDINGS) {
+            finding.writeTo(writer);
+        }
+
+        writer.endArray().endObject();
+    }
+
+    /**
+     * Get the JSON representation of the current {@link LocatorCost}.
+     * @return {@link String} value.
+     * @see #writeTo(JSONWriter)
+     */
+    @NotNull
+    public String toJSON() {
+        JSONWriter writer = JSONWriter.create();
+        writeTo(writer);
+        return writer.toString();
+    }
+}
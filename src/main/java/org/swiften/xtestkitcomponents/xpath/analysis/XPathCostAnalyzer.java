@@ -0,0 +1,277 @@
+package org.swiften.xtestkitcomponents.xpath.analysis;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.xpath.*;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class statically scores {@link XPath} and {@link CompoundAttribute}
+ * locators by walking their structure, so that expensive locators can be
+ * found before they are run against a device.
+ */
+public final class XPathCostAnalyzer {
+    /**
+     * Get {@link Builder} instance.
+     * @return {@link Builder} instance.
+     */
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @NotNull private final Map<CostIssue, Double> WEIGHTS;
+    private int lengthThreshold;
+
+    XPathCostAnalyzer() {
+        WEIGHTS = new EnumMap<>(CostIssue.class);
+        lengthThreshold = 200;
+
+        for (CostIssue issue : CostIssue.values()) {
+            WEIGHTS.put(issue, issue.defaultWeight());
+        }
+    }
+
+    /**
+     * Get the weight of a {@link CostIssue}.
+     * @param issue {@link CostIssue} instance.
+     * @return {@link Double} value.
+     * @see #WEIGHTS
+     */
+    public double weight(@NotNull CostIssue issue) {
+        return WEIGHTS.get(issue);
+    }
+
+    /**
+     * Get {@link #lengthThreshold}.
+     * @return {@link Integer} value.
+     * @see #lengthThreshold
+     */
+    public int lengthThreshold() {
+        return lengthThreshold;
+    }
+
+    /**
+     * Analyze a named {@link XPath}.
+     * @param name {@link String} value.
+     * @param xpath {@link XPath} instance.
+     * @return {@link LocatorCost} instance.
+     * @see XPath#renderAttribute()
+     * @see XPath#compoundAttributes()
+     * @see #visitStep(CompoundAttribute, int, boolean, List)
+     * @see #visitLength(String, List)
+     */
+    @NotNull
+    public LocatorCost analyze(@NotNull String name, @NotNull XPath xpath) {
+        List<CostFinding> findings = new ArrayList<>();
+        boolean leading = true;
+
+        for (CompoundAttribute step : xpath.compoundAttributes()) {
+            visitStep(step, 0, leading, findings);
+            leading = false;
+        }
+
+        String query = xpath.renderAttribute();
+        visitLength(query, findings);
+        return new LocatorCost(name, query, findings);
+    }
+
+    /**
+     * Same as above, but uses a single {@link CompoundAttribute}.
+     * @param name {@link String} value.
+     * @param attribute {@link CompoundAttribute} instance.
+     * @return {@link LocatorCost} instance.
+     * @see XPath.Builder#addAttribute(CompoundAttribute)
+     * @see #analyze(String, XPath)
+     */
+    @NotNull
+    public LocatorCost analyze(@NotNull String name,
+                               @NotNull CompoundAttribute attribute) {
+        return analyze(name, XPath.builder().addAttribute(attribute).build());
+    }
+
+    /**
+     * Analyze a whole locator catalog.
+     * @param catalog {@link Map} of locator name and {@link XPath}.
+     * @return {@link CostReport} instance.
+     * @see #analyze(String, XPath)
+     */
+    @NotNull
+    public CostReport analyze(@NotNull Map<String, XPath> catalog) {
+        List<LocatorCost> costs = new ArrayList<>();
+
+        for (Map.Entry<String, XPath> entry : catalog.entrySet()) {
+            costs.add(analyze(entry.getKey(), entry.getValue()));
+        }
+
+        return new CostReport(costs);
+    }
+
+    /**
+     * Add a {@link CostFinding}. The weight is multiplied by the nesting
+     * level, because each level of predicate is evaluated once for every
+     * candidate of the enclosing step.
+     * @param issue {@link CostIssue} instance.
+     * @param fragment {@link String} value.
+     * @param nesting {@link Integer} value.
+     * @param findings {@link List} of {@link CostFinding}.
+     * @see #weight(CostIssue)
+     */
+    private void add(@NotNull CostIssue issue,
+                     @NotNull String fragment,
+                     int nesting,
+                     @NotNull List<CostFinding> findings) {
+        double cost = weight(issue) * (1 + nesting);
+        findings.add(new CostFinding(issue, fragment, nesting, cost));
+    }
+
+    /**
+     * Check a {@link CompoundAttribute} step, and then its predicates.
+     * @param step {@link CompoundAttribute} instance.
+     * @param nesting {@link Integer} value.
+     * @param leading {@link Boolean} value. This is true if the step is the
+     *                first one in an {@link XPath}.
+     * @param findings {@link List} of {@link CostFinding}.
+     * @see CostIssue#ABSOLUTE_PREDICATE
+     * @see CostIssue#LEADING_ANY_PATH
+     * @see CostIssue#NOT_WRAPPER
+     * @see CostIssue#UNANCHORED_DESCENDANT
+     * @see #visitAttribute(AttributeType, int, List)
+     */
+    private void visitStep(@NotNull CompoundAttribute step,
+                           int nesting,
+                           boolean leading,
+                           @NotNull List<CostFinding> findings) {
+        Path path = step.path();
+        String className = step.className();
+
+        if (leading && path == Path.ANY) {
+            add(CostIssue.LEADING_ANY_PATH, step.fullAttribute(), nesting, findings);
+        }
+
+        if (nesting > 0 && path != Path.NONE) {
+            add(CostIssue.ABSOLUTE_PREDICATE, step.fullAttribute(), nesting, findings);
+        }
+
+        if (step.axis() == Axis.DESCENDANT
+            && (className.isEmpty() || className.equals("*"))) {
+            add(CostIssue.UNANCHORED_DESCENDANT, step.fullAttribute(), nesting, findings);
+        }
+
+        if (step.wrapper() == Wrapper.NOT) {
+            add(CostIssue.NOT_WRAPPER, step.fullAttribute(), nesting, findings);
+        }
+
+        for (AttributeType attribute : step.attributes()) {
+            visitAttribute(attribute, nesting, findings);
+        }
+    }
+
+    /**
+     * Check an {@link AttributeType} predicate. Nested
+     * {@link CompoundAttribute} increase the nesting level.
+     * @param attribute {@link AttributeType} instance.
+     * @param nesting {@link Integer} value.
+     * @param findings {@link List} of {@link CostFinding}.
+     * @see Comparison#CONTAINS_IGNORE_CASE
+     * @see CostIssue#NOT_WRAPPER
+     * @see CostIssue#TRANSLATE
+     * @see Formatible#comparison()
+     * @see #visitStep(CompoundAttribute, int, boolean, List)
+     */
+    private void visitAttribute(@NotNull AttributeType attribute,
+                                int nesting,
+                                @NotNull List<CostFinding> findings) {
+        if (attribute instanceof CompoundAttribute) {
+            visitStep((CompoundAttribute)attribute, nesting + 1, false, findings);
+        } else if (attribute instanceof AttributeBlock) {
+            for (AttributeType child : ((AttributeBlock)attribute).attributes()) {
+                visitAttribute(child, nesting, findings);
+            }
+        } else if (attribute instanceof Attribute) {
+            Attribute<?> attr = (Attribute<?>)attribute;
+
+            if (attr.wrapper() == Wrapper.NOT) {
+                add(CostIssue.NOT_WRAPPER, attr.fullAttribute(), nesting, findings);
+            }
+
+            if (attr.formatible().comparison() == Comparison.CONTAINS_IGNORE_CASE) {
+                /* Each attribute name renders its own translate() */
+                for (int i = 0, count = attr.attributes().size(); i < count; i++) {
+                    add(CostIssue.TRANSLATE, attr.fullAttribute(), nesting, findings);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check the rendered length of a query. The cost grows with the number
+     * of times the threshold is exceeded.
+     * @param query {@link String} value.
+     * @param findings {@link List} of {@link CostFinding}.
+     * @see CostIssue#LONG_QUERY
+     * @see #lengthThreshold()
+     * @see #weight(CostIssue)
+     */
+    private void visitLength(@NotNull String query,
+                             @NotNull List<CostFinding> findings) {
+        int threshold = lengthThreshold();
+        int length = query.length();
+
+        if (length > threshold) {
+            CostIssue issue = CostIssue.LONG_QUERY;
+            double cost = weight(issue) * length / threshold;
+            String fragment = String.format("%d characters", length);
+            findings.add(new CostFinding(issue, fragment, 0, cost));
+        }
+    }
+
+    /**
+     * Builder class for {@link XPathCostAnalyzer}.
+     */
+    public static final class Builder {
+        @NotNull private final XPathCostAnalyzer ANALYZER;
+
+        Builder() {
+            ANALYZER = new XPathCostAnalyzer();
+        }
+
+        /**
+         * Set the weight of a {@link CostIssue}.
+         * @param issue {@link CostIssue} instance.
+         * @param weight {@link Double} value.
+         * @return {@link Builder} instance.
+         * @see #WEIGHTS
+         */
+        @NotNull
+        public Builder withWeight(@NotNull CostIssue issue, double weight) {
+            ANALYZER.WEIGHTS.put(issue, weight);
+            return this;
+        }
+
+        /**
+         * Set the {@link #lengthThreshold} value.
+         * @param threshold {@link Integer} value.
+         * @return {@link Builder} instance.
+         * @see #lengthThreshold
+         */
+        @NotNull
+        public Builder withLengthThreshold(int threshold) {
+            ANALYZER.lengthThreshold = Math.max(1, threshold);
+            return this;
+        }
+
+        /**
+         * Get {@link #ANALYZER}.
+         * @return {@link XPathCostAnalyzer} instance.
+         * @see #ANALYZER
+         */
+        @NotNull
+        public XPathCostAnalyzer build() {
+            return ANALYZER;
+        }
+    }
+}
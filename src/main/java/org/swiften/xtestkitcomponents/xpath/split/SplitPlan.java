@@ -0,0 +1,130 @@
+package org.swiften.xtestkitcomponents.xpath.split;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.common.ErrorProviderType;
+import org.swiften.xtestkitcomponents.xpath.XPath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents the result of splitting an {@link XPath}. Each
+ * {@link SplitPlan} is either a single query, or the union/intersection of
+ * the results of its children.
+ */
+public final class SplitPlan implements ErrorProviderType {
+    /**
+     * Use this to specify how the results of child plans are merged.
+     */
+    public enum Kind {
+        QUERY,
+        UNION,
+        INTERSECTION
+    }
+
+    /**
+     * Get a {@link SplitPlan} that runs a single {@link XPath}.
+     * @param xpath {@link XPath} instance.
+     * @return {@link SplitPlan} instance.
+     * @see Kind#QUERY
+     */
+    @NotNull
+    public static SplitPlan query(@NotNull XPath xpath) {
+        return new SplitPlan(Kind.QUERY, xpath, Collections.emptyList());
+    }
+
+    /**
+     * Get a {@link SplitPlan} that merges the results of its children.
+     * @param kind {@link Kind} instance.
+     * @param children {@link List} of {@link SplitPlan}.
+     * @return {@link SplitPlan} instance.
+     * @see Kind#INTERSECTION
+     * @see Kind#UNION
+     */
+    @NotNull
+    static SplitPlan merge(@NotNull Kind kind, @NotNull List<SplitPlan> children) {
+        return new SplitPlan(kind, null, children);
+    }
+
+    @NotNull private final Kind KIND;
+    @NotNull private final List<SplitPlan> CHILDREN;
+    @Nullable private final XPath XPATH;
+
+    private SplitPlan(@NotNull Kind kind,
+                      @Nullable XPath xpath,
+                      @NotNull List<SplitPlan> children) {
+        KIND = kind;
+        XPATH = xpath;
+        CHILDREN = Collections.unmodifiableList(new ArrayList<>(children));
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        if (XPATH != null) {
+            return XPATH.toString();
+        } else {
+            return String.format("%s%s", KIND, CHILDREN);
+        }
+    }
+
+    /**
+     * Get {@link #KIND}.
+     * @return {@link Kind} instance.
+     * @see #KIND
+     */
+    @NotNull
+    public Kind kind() {
+        return KIND;
+    }
+
+    /**
+     * Get {@link #XPATH}.
+     * @return {@link XPath} instance.
+     * @see Kind#QUERY
+     * @see #XPATH
+     * @see #NOT_AVAILABLE
+     */
+    @NotNull
+    public XPath xpath() {
+        if (XPATH != null) {
+            return XPATH;
+        } else {
+            throw new RuntimeException(NOT_AVAILABLE);
+        }
+    }
+
+    /**
+     * Get {@link #CHILDREN}.
+     * @return {@link List} of {@link SplitPlan}.
+     * @see #CHILDREN
+     */
+    @NotNull
+    public List<SplitPlan> children() {
+        return CHILDREN;
+    }
+
+    /**
+     * Get all {@link XPath} queries in this plan, in execution order.
+     * @return {@link List} of {@link XPath}.
+     * @see #children()
+     * @see #kind()
+     * @see #xpath()
+     */
+    @NotNull
+    public List<XPath> queries() {
+        List<XPath> queries = new ArrayList<>();
+
+        if (kind() == Kind.QUERY) {
+            queries.add(xpath());
+        } else {
+            for (SplitPlan child : children()) {
+                queries.addAll(child.queries());
+            }
+        }
+
+        return queries;
+    }
+}
@@ -0,0 +1,618 @@
+package org.swiften.xtestkitcomponents.xpath.split;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.swiften.xtestkitcomponents.xpath.analysis.LocatorCost;
+import org.swiften.xtestkitcomponents.xpath.analysis.XPathCostAnalyzer;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * This class decomposes oversized {@link XPath} queries into independent
+ * sub-queries whose results can be merged back together.
+ *
+ * A {@link Joiner#OR} {@link AttributeBlock} can be split into a union of
+ * queries, as long as no {@link CompoundAttribute#index()} is applied after
+ * it. The predicates of the last step can be split into an intersection,
+ * because every result element has exactly one candidate for that step.
+ */
+public final class XPathSplitter {
+    /**
+     * Get {@link Builder} instance.
+     * @return {@link Builder} instance.
+     */
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @NotNull private XPathCostAnalyzer analyzer;
+    @NotNull private Executor executor;
+    private double maxCost;
+    private int maxLength;
+    private int maxQueries;
+
+    XPathSplitter() {
+        analyzer = XPathCostAnalyzer.builder().build();
+        executor = ForkJoinPool.commonPool();
+        maxCost = Double.MAX_VALUE;
+        maxLength = 2000;
+        maxQueries = 16;
+    }
+
+    /**
+     * Get {@link #maxLength}.
+     * @return {@link Integer} value.
+     * @see #maxLength
+     */
+    public int maxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Get {@link #maxCost}.
+     * @return {@link Double} value.
+     * @see #maxCost
+     */
+    public double maxCost() {
+        return maxCost;
+    }
+
+    /**
+     * Get {@link #maxQueries}.
+     * @return {@link Integer} value.
+     * @see #maxQueries
+     */
+    public int maxQueries() {
+        return maxQueries;
+    }
+
+    /**
+     * Check whether an {@link XPath} is within the size and cost budget.
+     * @param xpath {@link XPath} instance.
+     * @return {@link Boolean} value.
+     * @see LocatorCost#length()
+     * @see LocatorCost#score()
+     * @see XPathCostAnalyzer#analyze(String, XPath)
+     * @see #maxCost()
+     * @see #maxLength()
+     */
+    public boolean isWithinBudget(@NotNull XPath xpath) {
+        LocatorCost cost = analyzer.analyze("", xpath);
+        return cost.length() <= maxLength() && cost.score() <= maxCost();
+    }
+
+    /**
+     * Split an {@link XPath} until every sub-query is within budget, or
+     * cannot be split further. Queries are split breadth-first, so that
+     * {@link #maxQueries} is spread evenly across the plan.
+     * @param xpath {@link XPath} instance.
+     * @return {@link SplitPlan} instance.
+     * @see Node#toPlan()
+     * @see #isWithinBudget(XPath)
+     * @see #maxQueries()
+     * @see #splitIntersection(XPath)
+     * @see #splitUnion(XPath)
+     */
+    @NotNull
+    public SplitPlan split(@NotNull XPath xpath) {
+        Node root = new Node(xpath);
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.add(root);
+        int queryCount = 1;
+
+        while (!pending.isEmpty() && queryCount < maxQueries()) {
+            Node node = pending.poll();
+            XPath current = node.xpath;
+
+            if (current == null || isWithinBudget(current)) {
+                continue;
+            }
+
+            SplitPlan.Kind kind = SplitPlan.Kind.UNION;
+            List<XPath> parts = splitUnion(current);
+
+            if (parts == null) {
+                kind = SplitPlan.Kind.INTERSECTION;
+                parts = splitIntersection(current);
+            }
+
+            if (parts != null) {
+                node.xpath = null;
+                node.kind = kind;
+                queryCount += parts.size() - 1;
+
+                for (XPath part : parts) {
+                    Node child = new Node(part);
+                    node.children.add(child);
+                    pending.add(child);
+                }
+            }
+        }
+
+        return root.toPlan();
+    }
+
+    /**
+     * Check if a step is a pure predicate continuation of the previous
+     * step, i.e. it renders as [...] only.
+     * @param step {@link CompoundAttribute} instance.
+     * @return {@link Boolean} value.
+     */
+    private static boolean isFilter(@NotNull CompoundAttribute step) {
+        return step.path() == Path.NONE
+            && step.axis() == Axis.NONE
+            && step.className().isEmpty();
+    }
+
+    /**
+     * Check if a position predicate is applied to the step at an index,
+     * either directly or by a later filter step. Splitting the predicates
+     * of such a step would change which element is at that position.
+     * @param steps {@link List} of {@link CompoundAttribute}.
+     * @param index {@link Integer} value.
+     * @return {@link Boolean} value.
+     * @see #isFilter(CompoundAttribute)
+     */
+    private static boolean isPositional(@NotNull List<CompoundAttribute> steps,
+                                        int index) {
+        for (int i = index; i < steps.size(); i++) {
+            CompoundAttribute step = steps.get(i);
+
+            if (i > index && !isFilter(step)) {
+                break;
+            } else if (step.index() != null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Split the longest {@link Joiner#OR} {@link AttributeBlock} into two.
+     * @param xpath {@link XPath} instance.
+     * @return {@link List} of {@link XPath}, or null if nothing can be split.
+     * @see #isPositional(List, int)
+     * @see #replace(List, int, int, AttributeBlock)
+     * @see #splitBlock(AttributeBlock, Joiner)
+     */
+    @Nullable
+    private List<XPath> splitUnion(@NotNull XPath xpath) {
+        List<CompoundAttribute> steps = xpath.compoundAttributes();
+        List<AttributeBlock> best = null;
+        int bestLength = 0, bestStep = -1, bestBlock = -1;
+
+        for (int i = 0; i < steps.size(); i++) {
+            CompoundAttribute step = steps.get(i);
+
+            if (step.wrapper() == Wrapper.NOT || isPositional(steps, i)) {
+                continue;
+            }
+
+            int j = 0;
+
+            for (AttributeType attribute : step.attributes()) {
+                AttributeBlock block = (AttributeBlock)attribute;
+                List<AttributeBlock> halves = splitBlock(block, Joiner.OR);
+                int length = block.fullAttribute().length();
+
+                if (halves != null && length > bestLength) {
+                    best = halves;
+                    bestLength = length;
+                    bestStep = i;
+                    bestBlock = j;
+                }
+
+                j += 1;
+            }
+        }
+
+        if (best == null) {
+            return null;
+        }
+
+        List<XPath> parts = new ArrayList<>();
+
+        for (AttributeBlock half : best) {
+            parts.add(replace(steps, bestStep, bestBlock, half));
+        }
+
+        return parts;
+    }
+
+    /**
+     * Split the predicates of the last step into two intersecting halves.
+     * @param xpath {@link XPath} instance.
+     * @return {@link List} of {@link XPath}, or null if nothing can be split.
+     * @see #isFilter(CompoundAttribute)
+     * @see #isPositional(List, int)
+     * @see #replace(List, int, int, AttributeBlock)
+     * @see #splitBlock(AttributeBlock, Joiner)
+     */
+    @Nullable
+    private List<XPath> splitIntersection(@NotNull XPath xpath) {
+        List<CompoundAttribute> steps = xpath.compoundAttributes();
+        int last = steps.size() - 1;
+        int first = last;
+
+        while (first > 0 && isFilter(steps.get(first))) {
+            first -= 1;
+        }
+
+        if (last < 0 || isPositional(steps, first)) {
+            return null;
+        }
+
+        CompoundAttribute step = steps.get(last);
+        List<AttributeType> blocks = new ArrayList<>(step.attributes());
+
+        if (step.wrapper() == Wrapper.NOT) {
+            return null;
+        } else if (blocks.size() > 1) {
+            int middle = blocks.size() / 2;
+            List<XPath> parts = new ArrayList<>();
+
+            for (List<AttributeType> half : Arrays.asList(
+                blocks.subList(0, middle),
+                blocks.subList(middle, blocks.size()))
+            ) {
+                CompoundAttribute newStep = CompoundAttribute.builder()
+                    .withAttribute(step)
+                    .withAttribute(new ArrayList<>(half))
+                    .build();
+
+                List<CompoundAttribute> newSteps = new ArrayList<>(steps);
+                newSteps.set(last, newStep);
+                parts.add(XPath.builder().addAttribute(newSteps).build());
+            }
+
+            return parts;
+        } else if (blocks.size() == 1) {
+            AttributeBlock block = (AttributeBlock)blocks.get(0);
+            List<AttributeBlock> halves = splitBlock(block, Joiner.AND);
+
+            if (halves != null) {
+                List<XPath> parts = new ArrayList<>();
+
+                for (AttributeBlock half : halves) {
+                    parts.add(replace(steps, last, 0, half));
+                }
+
+                return parts;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Split an {@link AttributeBlock} joined by a {@link Joiner} into two
+     * halves. A block with a single {@link Attribute} is split by attribute
+     * names, e.g. text/value/label.
+     * @param block {@link AttributeBlock} instance.
+     * @param joiner {@link Joiner} instance.
+     * @return {@link List} of {@link AttributeBlock}, or null if the block
+     * cannot be split.
+     * @see #withNames(Attribute, List)
+     */
+    @Nullable
+    private static List<AttributeBlock> splitBlock(@NotNull AttributeBlock block,
+                                                   @NotNull Joiner joiner) {
+        List<AttributeType> children = new ArrayList<>(block.attributes());
+
+        if (children.size() > 1 && block.joiner() == joiner) {
+            int middle = children.size() / 2;
+
+            return Arrays.asList(
+                AttributeBlock.builder()
+                    .addAttribute(new ArrayList<>(children.subList(0, middle)))
+                    .withJoiner(joiner)
+                    .build(),
+
+                AttributeBlock.builder()
+                    .addAttribute(new ArrayList<>(children.subList(middle, children.size())))
+                    .withJoiner(joiner)
+                    .build()
+            );
+        } else if (children.size() == 1) {
+            AttributeType child = children.get(0);
+
+            if (child instanceof AttributeBlock) {
+                return splitBlock((AttributeBlock)child, joiner);
+            } else if (child instanceof Attribute) {
+                Attribute<?> attribute = (Attribute<?>)child;
+                List<String> names = attribute.attributes();
+
+                if (names.size() > 1
+                    && attribute.joiner() == joiner
+                    && attribute.wrapper() != Wrapper.NOT) {
+                    int middle = names.size() / 2;
+
+                    return Arrays.asList(
+                        AttributeBlock.single(withNames(attribute, names.subList(0, middle))),
+                        AttributeBlock.single(withNames(attribute, names.subList(middle, names.size())))
+                    );
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Copy an {@link Attribute} with different attribute names.
+     * @param attribute {@link Attribute} instance.
+     * @param names {@link List} of {@link String}.
+     * @param <T> Generics parameter.
+     * @return {@link Attribute} instance.
+     * @see Attribute.Builder#withAttribute(Attribute)
+     * @see Attribute.Builder#withAttribute(Collection)
+     */
+    @NotNull
+    private static <T> Attribute<T> withNames(@NotNull Attribute<T> attribute,
+                                              @NotNull List<String> names) {
+        return Attribute.<T>builder()
+            .withAttribute(attribute)
+            .withAttribute(new ArrayList<>(names))
+            .build();
+    }
+
+    /**
+     * Get a new {@link XPath} with one {@link AttributeBlock} replaced.
+     * @param steps {@link List} of {@link CompoundAttribute}.
+     * @param stepIndex {@link Integer} value.
+     * @param blockIndex {@link Integer} value.
+     * @param block {@link AttributeBlock} instance.
+     * @return {@link XPath} instance.
+     */
+    @NotNull
+    private static XPath replace(@NotNull List<CompoundAttribute> steps,
+                                 int stepIndex,
+                                 int blockIndex,
+                                 @NotNull AttributeBlock block) {
+        CompoundAttribute step = steps.get(stepIndex);
+        List<AttributeType> blocks = new ArrayList<>(step.attributes());
+        blocks.set(blockIndex, block);
+
+        CompoundAttribute newStep = CompoundAttribute.builder()
+            .withAttribute(step)
+            .withAttribute(blocks)
+            .build();
+
+        List<CompoundAttribute> newSteps = new ArrayList<>(steps);
+        newSteps.set(stepIndex, newStep);
+        return XPath.builder().addAttribute(newSteps).build();
+    }
+
+    /**
+     * Split an {@link XPath} and run the resulting queries concurrently.
+     * @param xpath {@link XPath} instance.
+     * @param lookup {@link Function} that finds elements for an
+     *               {@link XPath}.
+     * @param order {@link Comparator} that sorts elements in document order.
+     *              Unions are sorted with it, because their sub-queries
+     *              return elements in sub-query order.
+     * @param <E> Generics parameter.
+     * @return {@link List} of {@link E}.
+     * @see #execute(SplitPlan, Function, Comparator)
+     * @see #split(XPath)
+     */
+    @NotNull
+    public <E> List<E> execute(@NotNull XPath xpath,
+                               @NotNull Function<XPath, List<E>> lookup,
+                               @NotNull Comparator<? super E> order) {
+        return execute(split(xpath), lookup, order);
+    }
+
+    /**
+     * Run the queries of a {@link SplitPlan} concurrently with
+     * {@link #executor}, and merge their results.
+     * @param plan {@link SplitPlan} instance.
+     * @param lookup {@link Function} that finds elements for an
+     *               {@link XPath}.
+     * @param order {@link Comparator} that sorts elements in document order.
+     *              Unions are sorted with it, because their sub-queries
+     *              return elements in sub-query order.
+     * @param <E> Generics parameter.
+     * @return {@link List} of {@link E}.
+     * @see #merge(SplitPlan, Map, Comparator)
+     */
+    @NotNull
+    public <E> List<E> execute(@NotNull SplitPlan plan,
+                               @NotNull Function<XPath, List<E>> lookup,
+                               @NotNull Comparator<? super E> order) {
+        Map<SplitPlan, CompletableFuture<List<E>>> futures = new IdentityHashMap<>();
+        Deque<SplitPlan> pending = new ArrayDeque<>();
+        pending.add(plan);
+
+        while (!pending.isEmpty()) {
+            final SplitPlan CURRENT = pending.pop();
+
+            if (CURRENT.kind() == SplitPlan.Kind.QUERY) {
+                futures.put(CURRENT, CompletableFuture.supplyAsync(
+                    () -> lookup.apply(CURRENT.xpath()), executor));
+            } else {
+                pending.addAll(CURRENT.children());
+            }
+        }
+
+        return merge(plan, futures, order);
+    }
+
+    /**
+     * Merge the results of a {@link SplitPlan}. Intersections keep the
+     * order of their first child, which is already in document order.
+     * @param plan {@link SplitPlan} instance.
+     * @param futures {@link Map} of {@link SplitPlan} and
+     *                {@link CompletableFuture}.
+     * @param order {@link Comparator} that sorts elements in document order.
+     * @param <E> Generics parameter.
+     * @return {@link List} of {@link E}.
+     */
+    @NotNull
+    private <E> List<E> merge(@NotNull SplitPlan plan,
+                              @NotNull Map<SplitPlan, CompletableFuture<List<E>>> futures,
+                              @NotNull Comparator<? super E> order) {
+        switch (plan.kind()) {
+            case QUERY:
+                return futures.get(plan).join();
+
+            case UNION:
+                Set<E> union = new LinkedHashSet<>();
+
+                for (SplitPlan child : plan.children()) {
+                    union.addAll(merge(child, futures, order));
+                }
+
+                List<E> result = new ArrayList<>(union);
+                result.sort(order);
+                return result;
+
+            case INTERSECTION:
+            default:
+                List<E> intersection = null;
+
+                for (SplitPlan child : plan.children()) {
+                    List<E> elements = merge(child, futures, order);
+
+                    if (intersection == null) {
+                        intersection = new ArrayList<>(elements);
+                    } else {
+                        intersection.retainAll(new HashSet<>(elements));
+                    }
+                }
+
+                return intersection != null ? intersection : new ArrayList<>();
+        }
+    }
+
+    /**
+     * Mutable node that is used while a {@link SplitPlan} is built.
+     */
+    private static final class Node {
+        @NotNull private final List<Node> children;
+        @NotNull private SplitPlan.Kind kind;
+        @Nullable private XPath xpath;
+
+        Node(@NotNull XPath xpath) {
+            this.xpath = xpath;
+            kind = SplitPlan.Kind.QUERY;
+            children = new ArrayList<>();
+        }
+
+        /**
+         * Convert to an immutable {@link SplitPlan}, flattening nested
+         * children of the same {@link SplitPlan.Kind}.
+         * @return {@link SplitPlan} instance.
+         * @see SplitPlan#merge(SplitPlan.Kind, List)
+         * @see SplitPlan#query(XPath)
+         */
+        @NotNull
+        SplitPlan toPlan() {
+            if (xpath != null) {
+                return SplitPlan.query(xpath);
+            }
+
+            List<SplitPlan> plans = new ArrayList<>();
+
+            for (Node child : children) {
+                SplitPlan plan = child.toPlan();
+
+                if (plan.kind() == kind) {
+                    plans.addAll(plan.children());
+                } else {
+                    plans.add(plan);
+                }
+            }
+
+            return SplitPlan.merge(kind, plans);
+        }
+    }
+
+    /**
+     * Builder class for {@link XPathSplitter}.
+     */
+    public static final class Builder {
+        @NotNull private final XPathSplitter SPLITTER;
+
+        Builder() {
+            SPLITTER = new XPathSplitter();
+        }
+
+        /**
+         * Set the {@link #maxLength} value.
+         * @param length {@link Integer} value.
+         * @return {@link Builder} instance.
+         * @see #maxLength
+         */
+        @NotNull
+        public Builder withMaxLength(int length) {
+            SPLITTER.maxLength = length;
+            return this;
+        }
+
+        /**
+         * Set the {@link #maxCost} value.
+         * @param cost {@link Double} value.
+         * @return {@link Builder} instance.
+         * @see #maxCost
+         */
+        @NotNull
+        public Builder withMaxCost(double cost) {
+            SPLITTER.maxCost = cost;
+            return this;
+        }
+
+        /**
+         * Set the {@link #maxQueries} value.
+         * @param queries {@link Integer} value.
+         * @return {@link Builder} instance.
+         * @see #maxQueries
+         */
+        @NotNull
+        public Builder withMaxQueries(int queries) {
+            SPLITTER.maxQueries = Math.max(1, queries);
+            return this;
+        }
+
+        /**
+         * Set the {@link #analyzer} instance, which scores each sub-query.
+         * @param analyzer {@link XPathCostAnalyzer} instance.
+         * @return {@link Builder} instance.
+         * @see #analyzer
+         */
+        @NotNull
+        public Builder withAnalyzer(@NotNull XPathCostAnalyzer analyzer) {
+            SPLITTER.analyzer = analyzer;
+            return this;
+        }
+
+        /**
+         * Set the {@link #executor} instance, which runs sub-queries.
+         * @param executor {@link Executor} instance.
+         * @return {@link Builder} instance.
+         * @see #executor
+         */
+        @NotNull
+        public Builder withExecutor(@NotNull Executor executor) {
+            SPLITTER.executor = executor;
+            return this;
+        }
+
+        /**
+         * Get {@link #SPLITTER}.
+         * @return {@link XPathSplitter} instance.
+         * @see #SPLITTER
+         */
+        @NotNull
+        public XPathSplitter build() {
+            return SPLITTER;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.swiften.javautilities.util.HPLog;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.query.LocatorEvaluator;
+import org.swiften.xtestkitcomponents.xpath.Attributes;
+import org.swiften.xtestkitcomponents.xpath.CompoundAttribute;
+import org.swiften.xtestkitcomponents.xpath.XPath;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class CompactSnapshotTest {
+    static final String PAGE_SOURCE =
+        "<hierarchy>" +
+            "<Layout index='0' enabled='true'>" +
+                "<Button index='0' text='OK' clickable='true' enabled='true'/>" +
+                "<Button index='1' text='Cancel' clickable='true' enabled='false'/>" +
+                "<Layout index='2' enabled='true'>" +
+                    "<Text index='0' text='Item' focused='maybe'/>" +
+                "</Layout>" +
+                "<EditText index='3' text='' editable='true'/>" +
+            "</Layout>" +
+        "</hierarchy>";
+
+    @Test
+    public void test_compactSnapshot_shouldMatchDOMSnapshot() {
+        // Setup
+        PlatformType platform = () -> "value";
+        DOMSnapshot dom = DOMSnapshot.parse(PAGE_SOURCE);
+
+        for (boolean offHeap : new boolean[] { false, true }) {
+            // When
+            CompactSnapshot compact = CompactSnapshot.parse(
+                new StringReader(PAGE_SOURCE), platform, offHeap);
+
+            // Then
+            HPLog.printft("Off-heap: %b, estimated bytes: %d", offHeap, compact.estimatedBytes());
+            assertEquals(compact.isOffHeap(), offHeap);
+            assertEquals(compact.size(), dom.size());
+
+            for (int node = 0; node < dom.size(); node++) {
+                assertEquals(compact.parent(node), dom.parent(node));
+                assertEquals(compact.firstChild(node), dom.firstChild(node));
+                assertEquals(compact.nextSibling(node), dom.nextSibling(node));
+                assertEquals(compact.previousSibling(node), dom.previousSibling(node));
+                assertEquals(compact.subtreeEnd(node), dom.subtreeEnd(node));
+                assertEquals(compact.tagName(node), dom.tagName(node));
+                assertEquals(compact.attributes(node), dom.attributes(node));
+
+                for (String name : dom.attributes(node).keySet()) {
+                    assertEquals(compact.attribute(node, name), dom.attribute(node, name));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_flagAttributes_shouldBeStoredAsBits() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        CompactSnapshot compact = CompactSnapshot.parse(PAGE_SOURCE, platform);
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+        int enabled = compact.flagIndex("enabled");
+        int focused = compact.flagIndex("focused");
+
+        // When
+        int[] disabled = evaluator.select(compact, XPath.builder()
+            .addAttribute(attrs.isEnabled(false))
+            .build());
+
+        // Then
+        assertTrue(enabled >= 0);
+        assertEquals(compact.flag(2, enabled), Boolean.TRUE);
+        assertEquals(compact.flag(3, enabled), Boolean.FALSE);
+        assertNull(compact.flag(5, enabled));
+        assertNull(compact.flag(5, focused));
+        assertEquals(compact.attribute(5, "focused"), "maybe");
+        assertNull(compact.attribute(5, "enabled"));
+        assertEquals(disabled, new int[] { 3 });
+    }
+
+    @Test
+    public void test_sharedDictionary_shouldReuseCodesAcrossSnapshots() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        StringDictionary dictionary = new StringDictionary();
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+        DOMSnapshot dom = DOMSnapshot.parse(PAGE_SOURCE);
+
+        XPath xpath = XPath.builder()
+            .addAttribute(CompoundAttribute
+                .single(attrs.hasText("Cancel"))
+                .withClass("Button"))
+            .addAttribute(attrs.isEnabled(false))
+            .build();
+
+        // When
+        CompactSnapshot first = CompactSnapshot.parse(
+            new StringReader(PAGE_SOURCE), platform, false, dictionary);
+
+        int distinct = dictionary.size();
+
+        CompactSnapshot second = CompactSnapshot.parse(
+            new StringReader(PAGE_SOURCE), platform, true, dictionary);
+
+        // Then
+        assertEquals(dictionary.size(), distinct);
+        assertEquals(first.tagCode(2), second.tagCode(2));
+        assertEquals(first.tagCode(2), dictionary.indexOf("Button"));
+        assertEquals(first.attributeCode(3, dictionary.indexOf("text")), dictionary.indexOf("Cancel"));
+        assertTrue(second.attributeEquals(3, "enabled", "false"));
+        assertFalse(second.attributeEquals(3, "text", "never seen"));
+        assertTrue(second.tagEquals(3, "Button"));
+        assertEquals(evaluator.select(second, xpath), evaluator.select(dom, xpath));
+    }
+}
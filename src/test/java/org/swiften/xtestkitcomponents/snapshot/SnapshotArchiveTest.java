@@ -0,0 +1,105 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class SnapshotArchiveTest {
+    @Test
+    public void test_appendAndRead_shouldRoundTripSnapshots() throws IOException {
+        // Setup
+        PlatformType platform = () -> "value";
+        Path directory = Files.createTempDirectory("archive");
+        Path path = directory.resolve("run.snapshots");
+        List<CompactSnapshot> snapshots = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            String pageSource = SnapshotDiffTest.pageSource(20 + i, i, -1);
+            snapshots.add(CompactSnapshot.parse(pageSource, platform));
+        }
+
+        snapshots.add(CompactSnapshot.parse(CompactSnapshotTest.PAGE_SOURCE, platform));
+
+        // When
+        try (SnapshotArchive writer = SnapshotArchive.open(path)) {
+            for (CompactSnapshot snapshot : snapshots) {
+                writer.append(snapshot);
+            }
+        }
+
+        // Then
+        try (SnapshotArchive reader = SnapshotArchive.openReadOnly(path)) {
+            assertEquals(reader.size(), snapshots.size());
+
+            for (int id = snapshots.size() - 1; id >= 0; id--) {
+                CompactSnapshot expected = snapshots.get(id);
+                CompactSnapshot actual = reader.read(id);
+                assertTrue(actual.isOffHeap());
+                assertEquals(actual.size(), expected.size());
+                assertEquals(actual.flagNames(), expected.flagNames());
+                assertEquals(actual.subtreeHash(0), expected.subtreeHash(0));
+
+                for (int node = 0; node < expected.size(); node++) {
+                    assertEquals(actual.parent(node), expected.parent(node));
+                    assertEquals(actual.nextSibling(node), expected.nextSibling(node));
+                    assertEquals(actual.subtreeEnd(node), expected.subtreeEnd(node));
+                    assertEquals(actual.tagName(node), expected.tagName(node));
+                    assertEquals(actual.attributes(node), expected.attributes(node));
+                }
+            }
+
+            try {
+                reader.append(snapshots.get(0));
+                fail();
+            } catch (IOException e) {
+                assertEquals(e.getMessage(), SnapshotErrorType.READ_ONLY_ARCHIVE);
+            }
+        }
+
+        // Appending again continues after the existing records
+        try (SnapshotArchive writer = SnapshotArchive.open(path)) {
+            assertEquals(writer.append(snapshots.get(0)), snapshots.size());
+            assertEquals(writer.read(snapshots.size()).subtreeHash(0), snapshots.get(0).subtreeHash(0));
+        }
+    }
+
+    @Test
+    public void test_invalidHeader_shouldFailWithoutOpeningIndex() throws IOException {
+        // Setup
+        Path directory = Files.createTempDirectory("archive");
+        Path empty = Files.createFile(directory.resolve("empty.snapshots"));
+        Path invalid = Files.write(directory.resolve("invalid.snapshots"), new byte[64]);
+
+        // When & Then
+        for (Path path : new Path[] { empty, invalid }) {
+            try {
+                SnapshotArchive.openReadOnly(path).close();
+                fail();
+            } catch (IOException e) {
+                assertEquals(e.getMessage(), SnapshotErrorType.ARCHIVE_FORMAT);
+            }
+        }
+
+        try {
+            SnapshotArchive.open(invalid).close();
+            fail();
+        } catch (IOException e) {
+            assertEquals(e.getMessage(), SnapshotErrorType.ARCHIVE_FORMAT);
+        }
+
+        /* The index is opened after the header check, so it is never
+         * created for an invalid archive */
+        assertFalse(Files.exists(directory.resolve("invalid.snapshots" + SnapshotArchive.INDEX_SUFFIX)));
+    }
+}
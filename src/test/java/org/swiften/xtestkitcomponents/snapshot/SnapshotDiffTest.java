@@ -0,0 +1,133 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.swiften.javautilities.util.HPLog;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class SnapshotDiffTest {
+    /**
+     * Build a page source with a list of cells.
+     * @param cells {@link Integer} value.
+     * @param changedCell {@link Integer} value. The cell whose text is
+     *                    changed, or -1.
+     * @param insertAt {@link Integer} value. The position of an extra cell,
+     *                 or -1.
+     * @return {@link String} value.
+     */
+    static String pageSource(int cells, int changedCell, int insertAt) {
+        StringBuilder builder = new StringBuilder("<hierarchy><List index='0'>");
+
+        for (int i = 0; i < cells; i++) {
+            if (i == insertAt) {
+                builder.append("<Cell index='-1'><Text text='New'/></Cell>");
+            }
+
+            String text = i == changedCell ? "Changed" : "Cell " + i;
+            builder.append(String.format("<Cell index='%d'><Text text='%s'/></Cell>", i, text));
+        }
+
+        return builder.append("</List><Spinner/></hierarchy>").toString();
+    }
+
+    @Test
+    public void test_identicalSnapshots_shouldHaveSameHashes() {
+        // Setup
+        PlatformType platform = () -> "value";
+        String pageSource = pageSource(50, -1, -1);
+        SnapshotType dom = DOMSnapshot.parse(pageSource);
+        SnapshotType compact = CompactSnapshot.parse(pageSource, platform);
+
+        // When
+        SnapshotDiff diff = SnapshotDiff.between(dom, compact);
+
+        // Then
+        assertEquals(dom.subtreeHash(0), compact.subtreeHash(0));
+        assertTrue(diff.isUnchanged());
+        assertEquals(diff.comparisons(), 1);
+        assertEquals(diff.afterNode(77), 77);
+    }
+
+    @Test
+    public void test_changedCell_shouldOnlyVisitChangedPath() {
+        // Setup
+        SnapshotType before = DOMSnapshot.parse(pageSource(1000, -1, -1));
+        SnapshotType after = DOMSnapshot.parse(pageSource(1000, 500, -1));
+
+        // When
+        SnapshotDiff diff = SnapshotDiff.between(before, after);
+        List<SnapshotDiff.Change> changes = diff.changes();
+
+        // Then
+        HPLog.printft("Changes: %s, comparisons: %d", changes, diff.comparisons());
+        assertFalse(diff.isUnchanged());
+        assertEquals(changes.size(), 1);
+        assertEquals(changes.get(0).kind(), SnapshotDiff.Kind.MODIFIED);
+        assertEquals(before.attribute(changes.get(0).beforeNode(), "text"), "Cell 500");
+        assertEquals(after.attribute(changes.get(0).afterNode(), "text"), "Changed");
+        /* Only the siblings on the changed path are compared, none of
+         * their descendants */
+        assertTrue(diff.comparisons() < 1020);
+        assertEquals(diff.afterNode(3), 3);
+        assertEquals(diff.afterNode(before.size() - 1), after.size() - 1);
+    }
+
+    @Test
+    public void test_insertedCell_shouldMapShiftedNodes() {
+        // Setup
+        SnapshotType before = DOMSnapshot.parse(pageSource(100, -1, -1));
+        SnapshotType after = DOMSnapshot.parse(pageSource(100, -1, 40));
+
+        // When
+        SnapshotDiff diff = SnapshotDiff.between(before, after);
+        List<SnapshotDiff.Change> changes = diff.changes();
+        int beforeCell = 2 + 60 * 2;
+        int afterCell = diff.afterNode(beforeCell);
+
+        // Then
+        HPLog.printft("Changes: %s, comparisons: %d", changes, diff.comparisons());
+        assertEquals(changes.size(), 1);
+        assertEquals(changes.get(0).kind(), SnapshotDiff.Kind.INSERTED);
+        assertEquals(after.attribute(changes.get(0).afterNode(), "index"), "-1");
+        assertEquals(afterCell, beforeCell + 2);
+        assertEquals(after.attribute(afterCell, "index"), "60");
+        assertEquals(diff.beforeNode(changes.get(0).afterNode()), SnapshotType.NO_NODE);
+    }
+
+    @Test
+    public void test_inheritIndexes_shouldMatchRebuiltIndexes() {
+        // Setup
+        SnapshotType before = DOMSnapshot.parse(pageSource(100, 10, -1));
+        SnapshotType after = DOMSnapshot.parse(pageSource(100, 70, 40));
+        SnapshotType fresh = DOMSnapshot.parse(pageSource(100, 70, 40));
+        before.indexes().tagged("Cell");
+        before.indexes().withAttribute("text", "Cell 1");
+        before.indexes().containing("text", "cell 7", true);
+
+        // When
+        SnapshotDiff diff = SnapshotDiff.between(before, after);
+        after.indexes().inherit(diff);
+
+        // Then
+        assertTrue(after.indexes().isBuilt("text"));
+        assertTrue(after.indexes().isTrigramBuilt("text"));
+        assertFalse(after.indexes().isBuilt("index"));
+        assertEquals(after.indexes().tagged("Cell"), fresh.indexes().tagged("Cell"));
+
+        for (String text : new String[] { "Cell 10", "Cell 70", "Changed", "New", "Cell 99" }) {
+            assertEquals(
+                after.indexes().withAttribute("text", text),
+                fresh.indexes().withAttribute("text", text));
+
+            assertEquals(
+                after.indexes().containing("text", text, true),
+                fresh.indexes().containing("text", text, true));
+        }
+    }
+}
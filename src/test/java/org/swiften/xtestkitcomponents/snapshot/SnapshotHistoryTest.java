@@ -0,0 +1,154 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.swiften.javautilities.util.HPLog;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class SnapshotHistoryTest {
+    /**
+     * Get page sources as a polling loop would capture them: each one
+     * applies a small random change to the rows of the previous one.
+     * @param count {@link Integer} value.
+     * @param rows {@link Integer} value.
+     * @return {@link List} of {@link String}.
+     */
+    static List<String> pollingSources(int count, int rows) {
+        Random random = new Random(11);
+        List<int[]> model = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        int nextId = 0;
+
+        for (int i = 0; i < rows; i++) {
+            model.add(new int[] { nextId++, 0, 1 });
+        }
+
+        for (int i = 0; i < count; i++) {
+            int row = random.nextInt(model.size());
+
+            switch (i == 0 ? -1 : random.nextInt(5)) {
+                case 0:
+                    model.get(row)[1]++;
+                    break;
+
+                case 1:
+                    model.get(row)[2] ^= 1;
+                    break;
+
+                case 2:
+                    model.add(row, new int[] { nextId++, 0, 1 });
+                    break;
+
+                case 3:
+                    model.remove(row);
+                    break;
+
+                case 4:
+                    model.add(random.nextInt(model.size()), model.remove(row));
+                    break;
+
+                default:
+                    break;
+            }
+
+            StringBuilder builder = new StringBuilder(
+                "<hierarchy><Frame><List scrollable='true'>");
+
+            for (int[] cell : model) {
+                builder.append(String.format(
+                    "<Cell id='cell%d' enabled='%s'>" +
+                        "<Text text='Row %d v%d'/><Image/>" +
+                    "</Cell>",
+                    cell[0], cell[2] == 1, cell[0], cell[1]));
+            }
+
+            sources.add(builder.append("</List></Frame><Spinner/></hierarchy>").toString());
+        }
+
+        return sources;
+    }
+
+    /**
+     * Check that two snapshots have the same nodes.
+     * @param actual {@link SnapshotType} instance.
+     * @param expected {@link SnapshotType} instance.
+     */
+    static void assertSameNodes(SnapshotType actual, SnapshotType expected) {
+        assertEquals(actual.size(), expected.size());
+        assertEquals(actual.subtreeHash(0), expected.subtreeHash(0));
+
+        for (int node = 0; node < expected.size(); node++) {
+            assertEquals(actual.parent(node), expected.parent(node));
+            assertEquals(actual.tagName(node), expected.tagName(node));
+            assertEquals(actual.attributes(node), expected.attributes(node));
+        }
+    }
+
+    @Test
+    public void test_reconstructSnapshots_shouldMatchOriginals() {
+        // Setup
+        PlatformType platform = () -> "value";
+        List<String> sources = pollingSources(100, 60);
+        SnapshotHistory history = SnapshotHistory.builder().withKeyframeInterval(16).build();
+        List<CompactSnapshot> snapshots = new ArrayList<>();
+
+        // When
+        for (String source : sources) {
+            CompactSnapshot snapshot = CompactSnapshot.parse(source, platform);
+            snapshots.add(snapshot);
+            assertEquals(history.append(snapshot), snapshots.size() - 1);
+        }
+
+        // Then
+        HPLog.printft("Raw: %d bytes, stored: %d bytes, ratio: %.2f, keyframes: %d",
+            history.rawBytes(), history.storedBytes(),
+            history.compressionRatio(), history.keyframeCount());
+
+        assertEquals(history.size(), sources.size());
+        assertEquals(history.keyframeCount(), 7);
+        assertTrue(history.isKeyframe(0));
+        assertTrue(history.isKeyframe(16));
+        assertFalse(history.isKeyframe(17));
+        assertTrue(history.compressionRatio() > 5);
+
+        /* Sequential reads, then random access in both directions */
+        for (int id = 0; id < snapshots.size(); id++) {
+            assertSameNodes(history.get(id), snapshots.get(id));
+        }
+
+        for (int id : new int[] { 95, 3, 47, 46, 63, 64, 99, 0 }) {
+            CompactSnapshot snapshot = history.get(id);
+            assertSameNodes(snapshot, snapshots.get(id));
+            assertEquals(snapshot.flagMask(4), snapshots.get(id).flagMask(4));
+        }
+    }
+
+    @Test
+    public void test_largeChange_shouldStoreKeyframe() {
+        // Setup
+        PlatformType platform = () -> "value";
+        SnapshotHistory history = SnapshotHistory.builder().build();
+        CompactSnapshot first = CompactSnapshot.parse(SnapshotDiffTest.pageSource(40, -1, -1), platform);
+        CompactSnapshot second = CompactSnapshot.parse(SnapshotDiffTest.pageSource(40, 3, 10), platform);
+        CompactSnapshot third = CompactSnapshot.parse(SpatialIndexTest.gridSource(5, 5), platform);
+
+        // When
+        history.append(first);
+        history.append(second);
+        history.append(third);
+
+        // Then
+        assertFalse(history.isKeyframe(1));
+        assertTrue(history.isKeyframe(2));
+        assertSameNodes(history.get(1), second);
+        assertSameNodes(history.get(2), third);
+    }
+}
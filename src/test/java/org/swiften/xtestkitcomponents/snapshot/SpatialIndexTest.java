@@ -0,0 +1,154 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.swiften.xtestkitcomponents.coordinate.RLPoint;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.util.IntList;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class SpatialIndexTest {
+    /**
+     * Get an Android page source with a grid of cells, each 200 by 100 with
+     * a 10 pixel gap, and each with an inset label.
+     * @param rows {@link Integer} value.
+     * @param columns {@link Integer} value.
+     * @return {@link String} value.
+     */
+    public static String gridSource(int rows, int columns) {
+        StringBuilder builder = new StringBuilder(String.format(
+            "<hierarchy><Frame bounds='[0,0][%d,%d]'>", columns * 210, rows * 110));
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                int left = c * 210;
+                int top = r * 110;
+
+                builder.append(String.format(
+                    "<Cell text='%d:%d' bounds='[%d,%d][%d,%d]'>" +
+                        "<Label bounds='[%d,%d][%d,%d]'/>" +
+                    "</Cell>",
+                    r, c, left, top, left + 200, top + 100,
+                    left + 20, top + 20, left + 180, top + 80));
+            }
+        }
+
+        return builder.append("<Overlay/></Frame></hierarchy>").toString();
+    }
+
+    @Test
+    public void test_spatialQueries_shouldMatchFullScan() {
+        // Setup
+        PlatformType platform = () -> "value";
+        CompactSnapshot snapshot = CompactSnapshot.parse(gridSource(40, 30), platform);
+        SpatialIndex index = snapshot.indexes().spatialIndex();
+        Random random = new Random(42);
+        int size = snapshot.size();
+
+        // When & Then
+        assertEquals(index.size(), size - 2);
+        assertTrue(index.height() >= 3);
+        assertFalse(index.hasBounds(0));
+        assertFalse(index.hasBounds(size - 1));
+
+        for (int i = 0; i < 500; i++) {
+            int x = random.nextInt(30 * 210 + 100) - 50;
+            int y = random.nextInt(40 * 110 + 100) - 50;
+            int width = random.nextInt(600);
+            int height = random.nextInt(600);
+            IntList containing = new IntList();
+            IntList intersecting = new IntList();
+            IntList within = new IntList();
+            int nearest = SnapshotType.NO_NODE;
+            long nearestDistance = Long.MAX_VALUE;
+
+            for (int node = 0; node < size; node++) {
+                if (!index.hasBounds(node)) {
+                    continue;
+                }
+
+                int left = index.left(node), top = index.top(node);
+                int right = index.right(node), bottom = index.bottom(node);
+
+                if (left <= x && x < right && top <= y && y < bottom) {
+                    containing.add(node);
+                }
+
+                if (left < x + width && x < right && top < y + height && y < bottom) {
+                    intersecting.add(node);
+                }
+
+                if (x <= left && y <= top && right <= x + width && bottom <= y + height) {
+                    within.add(node);
+                }
+
+                long dx = Math.max(0, Math.max(left - x, x - (right - 1)));
+                long dy = Math.max(0, Math.max(top - y, y - (bottom - 1)));
+                long distance = dx * dx + dy * dy;
+
+                if (distance <= nearestDistance) {
+                    nearest = node;
+                    nearestDistance = distance;
+                }
+            }
+
+            assertEquals(index.containing(x, y), containing.toArray());
+            assertEquals(index.intersecting(x, y, x + width, y + height), intersecting.toArray());
+            assertEquals(index.within(x, y, x + width, y + height), within.toArray());
+            assertEquals(index.nearest(x, y), nearest);
+        }
+    }
+
+    @Test
+    public void test_elementAtPoint_shouldReturnTopmostNode() {
+        // Setup
+        PlatformType platform = () -> "value";
+        CompactSnapshot snapshot = CompactSnapshot.parse(gridSource(2, 2), platform);
+        SpatialIndex index = snapshot.indexes().spatialIndex();
+        int label = 3;
+
+        // When
+        int x = index.x(label, RLPoint.MID);
+        int y = index.y(label, RLPoint.MID);
+
+        // Then
+        assertEquals(x, 100);
+        assertEquals(y, 50);
+        assertEquals(index.elementAt(x, y), label);
+        assertEquals(index.elementAt(205, 50), 1);
+        assertEquals(index.elementAt(-1, -1), SnapshotType.NO_NODE);
+        assertEquals(index.nearest(205, 50, node -> node != 1), 4);
+    }
+
+    @Test
+    public void test_parseBounds_shouldSupportBothPlatforms() {
+        // Setup
+        String source =
+            "<AppiumAUT>" +
+                "<XCUIElementTypeApplication x='0' y='0' width='375' height='667'>" +
+                    "<XCUIElementTypeButton x='10.4' y='20' width='100' height='44.6'/>" +
+                    "<XCUIElementTypeOther x='0' y='0'/>" +
+                "</XCUIElementTypeApplication>" +
+            "</AppiumAUT>";
+
+        PlatformType platform = () -> "value";
+        CompactSnapshot snapshot = CompactSnapshot.parse(source, platform);
+
+        // When
+        SpatialIndex index = snapshot.indexes().spatialIndex();
+
+        // Then
+        assertEquals(SpatialIndex.bounds(snapshot, 2), new int[] { 10, 20, 110, 65 });
+        assertEquals(SpatialIndex.parseAndroid("[0,63][1080,1794]"), new int[] { 0, 63, 1080, 1794 });
+        assertNull(SpatialIndex.parseAndroid("[0,63][1080]"));
+        assertNull(SpatialIndex.parseAndroid("[10,10][0,0]"));
+        assertEquals(index.size(), 2);
+        assertEquals(index.elementAt(50, 40), 2);
+    }
+}
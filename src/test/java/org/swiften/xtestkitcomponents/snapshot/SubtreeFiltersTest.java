@@ -0,0 +1,78 @@
+package org.swiften.xtestkitcomponents.snapshot;
+
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.query.LocatorEvaluator;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class SubtreeFiltersTest {
+    /**
+     * Get a page source with a number of sections, each with a number of
+     * cells. Only one cell has the text "Target".
+     * @param sections {@link Integer} value.
+     * @param cells {@link Integer} value.
+     * @param target {@link Integer} value, the section with the target.
+     * @return {@link String} value.
+     */
+    static String pageSource(int sections, int cells, int target) {
+        StringBuilder builder = new StringBuilder("<hierarchy><List id='list'>");
+
+        for (int i = 0; i < sections; i++) {
+            builder.append(String.format("<Section index='%d'>", i));
+
+            for (int j = 0; j < cells; j++) {
+                String text = i == target && j == cells / 2 ? "Target" : "Cell " + j;
+                builder.append(String.format("<Cell index='%d'><Text text='%s'/></Cell>", j, text));
+            }
+
+            builder.append("</Section>");
+        }
+
+        return builder.append("</List></hierarchy>").toString();
+    }
+
+    @Test
+    public void test_subtreeFilters_shouldPruneDescendantSearches() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        CompactSnapshot snapshot = CompactSnapshot.parse(pageSource(4, 40, 2), platform);
+        LocatorEvaluator plain = LocatorEvaluator.builder().build();
+        LocatorEvaluator pruning = LocatorEvaluator.builder().withSubtreeFilters(true).build();
+        int firstSection = 2;
+
+        XPath nested = XPath.builder()
+            .addAttribute(CompoundAttribute.forClass("Section"))
+            .addAttribute(Axes.descendant(attrs.hasText("Target")))
+            .build();
+
+        XPath missing = XPath.builder()
+            .addAttribute(CompoundAttribute.forClass("Text"))
+            .addAttribute(attrs.hasText("Missing"))
+            .build();
+
+        // When
+        SubtreeFilters filters = snapshot.indexes().subtreeFilters();
+        long[] target = new long[] { SubtreeFilters.attributeKey("text", "Target") };
+        long[] tagged = new long[] { SubtreeFilters.tagKey("Text") };
+
+        // Then
+        assertEquals(filters.filterCount(), 6);
+        assertTrue(filters.hasFilter(0));
+        assertTrue(filters.hasFilter(firstSection));
+        assertFalse(filters.hasFilter(firstSection + 1));
+        assertTrue(filters.mightContain(0, target));
+        assertTrue(filters.mightContain(firstSection + 2 * (1 + 2 * 40), target));
+        assertFalse(filters.mightContain(firstSection, target));
+        assertTrue(filters.mightContain(firstSection, tagged));
+        assertTrue(filters.estimatedBytes() > 0);
+        assertEquals(pruning.select(snapshot, nested), plain.select(snapshot, nested));
+        assertEquals(pruning.select(snapshot, nested).length, 1);
+        assertEquals(pruning.select(snapshot, missing).length, 0);
+    }
+}
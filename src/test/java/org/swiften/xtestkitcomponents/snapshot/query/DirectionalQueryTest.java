@@ -0,0 +1,61 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.xtestkitcomponents.direction.Direction;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.CompactSnapshot;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+import org.swiften.xtestkitcomponents.snapshot.SpatialIndexTest;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class DirectionalQueryTest {
+    /**
+     * Get the id of a grid cell in {@link SpatialIndexTest#gridSource(int, int)}.
+     * @param row {@link Integer} value.
+     * @param column {@link Integer} value.
+     * @param columns {@link Integer} value.
+     * @return {@link Integer} value.
+     */
+    static int cell(int row, int column, int columns) {
+        return 2 + 2 * (row * columns + column);
+    }
+
+    @Test
+    public void test_nearestInDirection_shouldFollowSwipeDirection() {
+        // Setup
+        PlatformType platform = () -> "value";
+        CompactSnapshot snapshot = CompactSnapshot.parse(SpatialIndexTest.gridSource(3, 3), platform);
+        XPath cells = XPath.builder().addAttribute(CompoundAttribute.forClass("Cell")).build();
+        DirectionalQuery query = DirectionalQuery.builder().build();
+        int anchor = cell(1, 1, 3);
+
+        // When & Then
+        assertEquals(query.nearest(snapshot, anchor, Direction.UP_DOWN, cells), cell(2, 1, 3));
+        assertEquals(query.nearest(snapshot, anchor, Direction.DOWN_UP, cells), cell(0, 1, 3));
+        assertEquals(query.nearest(snapshot, anchor, Direction.LEFT_RIGHT, cells), cell(1, 2, 3));
+        assertEquals(query.nearest(snapshot, anchor, Direction.RIGHT_LEFT, cells), cell(1, 0, 3));
+        assertEquals(query.nearest(snapshot, cell(1, 0, 3), Direction.RIGHT_LEFT, cells), SnapshotType.NO_NODE);
+    }
+
+    @Test
+    public void test_coneAngle_shouldLimitDiagonalMatches() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        CompactSnapshot snapshot = CompactSnapshot.parse(SpatialIndexTest.gridSource(3, 3), platform);
+        XPath diagonal = XPath.builder().addAttribute(attrs.hasText("2:1")).build();
+        DirectionalQuery wide = DirectionalQuery.builder().build();
+        DirectionalQuery narrow = DirectionalQuery.builder().withConeAngle(30).build();
+        DirectionalQuery halfPlane = DirectionalQuery.builder().withConeAngle(90).build();
+        int anchor = cell(0, 0, 3);
+
+        // When & Then
+        assertEquals(wide.nearest(snapshot, anchor, Direction.UP_DOWN, diagonal), cell(2, 1, 3));
+        assertEquals(narrow.nearest(snapshot, anchor, Direction.UP_DOWN, diagonal), SnapshotType.NO_NODE);
+        assertEquals(halfPlane.nearest(snapshot, cell(2, 0, 3), Direction.LEFT_RIGHT, diagonal), cell(2, 1, 3));
+        assertEquals(halfPlane.nearest(snapshot, cell(2, 2, 3), Direction.LEFT_RIGHT, diagonal), SnapshotType.NO_NODE);
+    }
+}
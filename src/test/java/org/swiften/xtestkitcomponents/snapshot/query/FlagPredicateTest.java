@@ -0,0 +1,136 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.CompactSnapshot;
+import org.swiften.xtestkitcomponents.snapshot.DOMSnapshot;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class FlagPredicateTest {
+    /**
+     * Get a page source whose nodes have random boolean attributes, some
+     * of which are absent or not true/false.
+     * @param count {@link Integer} value.
+     * @return {@link String} value.
+     */
+    static String flagSource(int count) {
+        String[] names = { "enabled", "clickable", "focused" };
+        String[] values = { "true", "false", "", "yes" };
+        Random random = new Random(7);
+        StringBuilder builder = new StringBuilder("<hierarchy><Layout>");
+
+        for (int i = 0; i < count; i++) {
+            builder.append("<View index='").append(i).append('\'');
+
+            for (String name : names) {
+                int value = random.nextInt(values.length + 1);
+
+                if (value < values.length) {
+                    builder.append(' ').append(name).append("='").append(values[value]).append('\'');
+                }
+            }
+
+            builder.append("/>");
+        }
+
+        return builder.append("</Layout></hierarchy>").toString();
+    }
+
+    @Test
+    public void test_flagPredicates_shouldMatchStringComparisons() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        String source = flagSource(300);
+        CompactSnapshot compact = CompactSnapshot.parse(source, platform);
+        DOMSnapshot dom = DOMSnapshot.parse(source);
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+        LocatorEvaluator promoted = LocatorEvaluator.builder().withBytecodeThreshold(0).build();
+
+        List<XPath> xpaths = Arrays.asList(
+            XPath.builder().addAttribute(attrs.isEnabled(true)).build(),
+            XPath.builder().addAttribute(attrs.isClickable(false).not()).build(),
+            XPath.builder()
+                .addAttribute(AttributeBlock.builder()
+                    .addAttribute(attrs.isEnabled(true), attrs.isClickable(false))
+                    .withJoiner(Joiner.AND)
+                    .build())
+                .build(),
+            XPath.builder()
+                .addAttribute(AttributeBlock.builder()
+                    .addAttribute(attrs.isFocused(true), attrs.isEnabled(false))
+                    .withJoiner(Joiner.OR)
+                    .build())
+                .build(),
+            XPath.builder()
+                .addAttribute(AttributeBlock.builder()
+                    .addAttribute(attrs.isFocused(true), attrs.isClickable(true).not())
+                    .withJoiner(Joiner.OR)
+                    .build())
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute
+                    .single(AttributeBlock.builder()
+                        .addAttribute(attrs.isEnabled(true), attrs.isFocused(false))
+                        .withJoiner(Joiner.AND)
+                        .build())
+                    .withClass("View"))
+                .build()
+        );
+
+        // When & Then
+        for (XPath xpath : xpaths) {
+            int[] expected = evaluator.select(dom, xpath);
+            assertTrue(expected.length > 0);
+            assertEquals(evaluator.select(compact, xpath), expected);
+
+            for (int i = 0; i < 3; i++) {
+                assertEquals(promoted.select(compact, xpath), expected);
+            }
+        }
+    }
+
+    @Test
+    public void test_joinFlagPredicates_shouldMergeIntoOneMask() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        CompactSnapshot snapshot = CompactSnapshot.parse(flagSource(10), platform);
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+        PredicateCompiler compiler = evaluator.compiler();
+
+        XPath xpath = XPath.builder()
+            .addAttribute(AttributeBlock.builder()
+                .addAttribute(attrs.isEnabled(true), attrs.isClickable(true), attrs.isFocused(false))
+                .withJoiner(Joiner.AND)
+                .build())
+            .build();
+
+        LocatorPlan plan = LocatorPlan.of(xpath);
+
+        // When
+        NodePredicate predicate = compiler.compile(plan, plan.steps().get(0).segments().get(0).predicates());
+
+        // Then
+        assertTrue(predicate instanceof FlagPredicate);
+        assertEquals(((FlagPredicate)predicate).size(), 3);
+
+        for (int node = 0; node < snapshot.size(); node++) {
+            long mask = snapshot.flagMask(node);
+            boolean expected = "true".equals(snapshot.attribute(node, "enabled"))
+                && "true".equals(snapshot.attribute(node, "clickable"))
+                && "false".equals(snapshot.attribute(node, "focused"));
+
+            assertEquals(predicate.test(snapshot, node), expected);
+            assertEquals((mask & 1L) != 0, "true".equals(snapshot.attribute(node, "enabled")));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.javautilities.util.HPLog;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.DOMSnapshot;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class LocatorEvaluatorTest {
+    static final String PAGE_SOURCE =
+        "<hierarchy>" +
+            "<Layout index='0' id='root' enabled='true'>" +
+                "<Button index='0' id='com.app:id/ok' text='OK Button' clickable='true' enabled='true'/>" +
+                "<Button index='1' id='com.app:id/cancel' text='Cancel' clickable='true' enabled='false'/>" +
+                "<Layout index='2' id='list' enabled='true'>" +
+                    "<Text index='0' text='Item One' enabled='true'/>" +
+                    "<Text index='1' text='Item Two' enabled='true'>" +
+                        "<Image index='0' class='android.widget.Image' id='icon' enabled='true'/>" +
+                    "</Text>" +
+                    "<Text index='2' text='item three' enabled='false'/>" +
+                "</Layout>" +
+                "<EditText index='3' class='android.widget.EditText' id='input' text='' editable='true' focused='true'/>" +
+            "</Layout>" +
+        "</hierarchy>";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void test_evaluateLocators_shouldMatchJDKXPath() throws Exception {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        DOMSnapshot snapshot = DOMSnapshot.parse(PAGE_SOURCE);
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+        javax.xml.xpath.XPath jdk = XPathFactory.newInstance().newXPath();
+
+        List<XPath> xpaths = Arrays.asList(
+            XPath.builder().addAttribute(attrs.containsText("item")).build(),
+            XPath.builder().addAttribute(attrs.hasText("Cancel")).build(),
+            XPath.builder()
+                .addAttribute(attrs.isEnabled(true))
+                .addAttribute(attrs.containsID("id/"))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Text").withIndex(2))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute
+                    .single(attrs.containsText("item"))
+                    .withClass("Text")
+                    .withIndex(1))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Layout"))
+                .addAttribute(Axes.descendant(attrs.ofClass("Image")))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Text"))
+                .addAttribute(Axes.descendant(CompoundAttribute
+                    .single(attrs.containsID("icon"))
+                    .not()))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Layout"))
+                .addAttribute(Axes.child(attrs.isEnabled(false)))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Button"))
+                .addAttribute(Axes.followingSibling(attrs.ofClass("EditText")))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Layout"))
+                .addAttribute(Axes.precedingSibling(attrs.hasText("OK Button")))
+                .build(),
+            XPath.builder()
+                .addAttribute(attrs.containsText("Button").not())
+                .addAttribute(attrs.isClickable(true))
+                .build()
+        );
+
+        for (XPath xpath : xpaths) {
+            // When
+            String query = xpath.attribute();
+            NodeList nodes = (NodeList)jdk.evaluate(query, snapshot.document(), XPathConstants.NODESET);
+            int[] expected = new int[nodes.getLength()];
+
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = snapshot.indexOf((Element)nodes.item(i));
+            }
+
+            int[] actual = evaluator.select(snapshot, xpath);
+
+            // Then
+            HPLog.printft("%s -> %s", query, Arrays.toString(actual));
+            assertEquals(actual, expected);
+            assertEquals(evaluator.exists(snapshot, xpath), expected.length > 0);
+            assertEquals(evaluator.count(snapshot, xpath), expected.length);
+        }
+    }
+
+    @Test
+    public void test_evaluateLocator_shouldReturnDescriptors() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        DOMSnapshot snapshot = DOMSnapshot.parse(PAGE_SOURCE);
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+        XPath xpath = XPath.builder().addAttribute(attrs.containsID("cancel")).build();
+
+        // When
+        List<NodeDescriptor> descriptors = evaluator.evaluate(snapshot, xpath);
+
+        // Then
+        assertEquals(descriptors.size(), 1);
+        assertEquals(descriptors.get(0).tagName(), "Button");
+        assertEquals(descriptors.get(0).attribute("text"), "Cancel");
+        assertFalse(Boolean.valueOf(descriptors.get(0).attribute("enabled")));
+        assertTrue(descriptors.get(0).attributes().containsKey("clickable"));
+    }
+
+    @Test
+    public void test_exactMatchPredicates_shouldUseLazyIndexes() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        DOMSnapshot snapshot = DOMSnapshot.parse(PAGE_SOURCE);
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+
+        XPath xpath = XPath.builder()
+            .addAttribute(CompoundAttribute
+                .single(attrs.hasText("Item Two"))
+                .withClass("Text"))
+            .build();
+
+        // When
+        boolean builtBefore = snapshot.indexes().isBuilt("text");
+        int[] result = evaluator.select(snapshot, xpath);
+
+        // Then
+        assertFalse(builtBefore);
+        assertTrue(snapshot.indexes().isBuilt("text"));
+        assertEquals(result, new int[] { 6 });
+        assertEquals(snapshot.indexes().tagged("Text"), new int[] { 5, 6, 8 });
+        assertEquals(snapshot.indexes().withAttribute("enabled", "false"), new int[] { 3, 8 });
+    }
+
+    @Test
+    public void test_substringPredicates_shouldUseTrigramIndex() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        DOMSnapshot snapshot = DOMSnapshot.parse(PAGE_SOURCE);
+        LocatorEvaluator plain = LocatorEvaluator.builder().build();
+
+        LocatorEvaluator indexed = LocatorEvaluator.builder()
+            .withSubstringIndex(true)
+            .build();
+
+        List<XPath> xpaths = Arrays.asList(
+            XPath.builder().addAttribute(attrs.containsText("ITEM t")).build(),
+            XPath.builder().addAttribute(attrs.containsID("app:id")).build(),
+            XPath.builder().addAttribute(attrs.containsID("ic")).build(),
+            XPath.builder().addAttribute(attrs.containsText("missing")).build()
+        );
+
+        for (XPath xpath : xpaths) {
+            // When
+            int[] expected = plain.select(snapshot, xpath);
+            int[] actual = indexed.select(snapshot, xpath);
+
+            // Then
+            assertEquals(actual, expected);
+        }
+
+        assertTrue(snapshot.indexes().isTrigramBuilt("text"));
+        assertEquals(snapshot.indexes().containing("text", "ITEM t", true), new int[] { 6, 8 });
+        assertEquals(snapshot.indexes().containing("id", "ic", false), null);
+    }
+}
@@ -0,0 +1,93 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.javautilities.util.HPLog;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.CompactSnapshot;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class LocatorExplanationTest {
+    @Test
+    public void test_explain_shouldMatchSelectAndProfileSteps() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        CompactSnapshot snapshot = CompactSnapshot.parse(LocatorEvaluatorTest.PAGE_SOURCE, platform);
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+
+        XPath xpath = XPath.builder()
+            .addAttribute(CompoundAttribute.forClass("Layout"))
+            .addAttribute(Axes.descendant(attrs.ofClass("Image")))
+            .build();
+
+        // When
+        LocatorExplanation explanation = evaluator.explain(snapshot, xpath);
+        StepProfile layouts = explanation.steps().get(0);
+        PredicateProfile descendant = layouts.predicates().get(0);
+        StepProfile images = descendant.nestedSteps().get(0);
+
+        // Then
+        HPLog.println(explanation.render());
+        HPLog.println(explanation.toJSON());
+        assertEquals(explanation.nodes(), evaluator.select(snapshot, xpath));
+        assertEquals(explanation.steps().size(), 1);
+        assertEquals(layouts.calls(), 1);
+        assertEquals(layouts.access(), "index");
+        assertEquals(layouts.indexCandidates(), 2);
+        assertEquals(layouts.visited(), 2);
+        assertEquals(layouts.kept(), 2);
+        assertEquals(descendant.tested(), 2);
+        assertEquals(descendant.passed(), 2);
+        assertEquals(images.calls(), 2);
+        assertEquals(images.contextNodes(), 2);
+        assertEquals(images.access(), "scan");
+        assertTrue(explanation.nanos() >= layouts.nanos());
+        assertTrue(explanation.toJSON().contains("\"nestedSteps\""));
+    }
+
+    @Test
+    public void test_explainPositionalSteps_shouldCountSegments() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        CompactSnapshot snapshot = CompactSnapshot.parse(LocatorEvaluatorTest.PAGE_SOURCE, platform);
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+
+        List<XPath> xpaths = Arrays.asList(
+            XPath.builder()
+                .addAttribute(CompoundAttribute
+                    .single(attrs.containsText("item"))
+                    .withClass("Text")
+                    .withIndex(1))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Layout"))
+                .addAttribute(Axes.child(attrs.isEnabled(false)))
+                .build()
+        );
+
+        for (XPath xpath : xpaths) {
+            // When
+            LocatorExplanation explanation = evaluator.explain(snapshot, xpath);
+
+            // Then
+            HPLog.println(explanation);
+            assertEquals(explanation.nodes(), evaluator.select(snapshot, xpath));
+
+            for (StepProfile step : explanation.steps()) {
+                assertTrue(step.visited() >= step.kept());
+
+                for (PredicateProfile predicate : step.predicates()) {
+                    assertTrue(predicate.tested() >= predicate.passed());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.DOMSnapshot;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class LocatorTrieTest {
+    @Test
+    public void test_sharedPrefixes_shouldMatchIndividualEvaluation() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        DOMSnapshot snapshot = DOMSnapshot.parse(LocatorEvaluatorTest.PAGE_SOURCE);
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+        CompoundAttribute container = CompoundAttribute.forClass("Layout");
+
+        List<XPath> xpaths = Arrays.asList(
+            XPath.builder()
+                .addAttribute(container)
+                .addAttribute(Axes.child(attrs.isEnabled(false)))
+                .build(),
+            XPath.builder()
+                .addAttribute(container)
+                .addAttribute(Axes.child(attrs.isEnabled(true)))
+                .build(),
+            XPath.builder()
+                .addAttribute(container)
+                .addAttribute(Axes.child(attrs.isEnabled(true)))
+                .addAttribute(Axes.descendant(attrs.ofClass("Image")))
+                .build(),
+            XPath.builder()
+                .addAttribute(container)
+                .addAttribute(attrs.containsID("list"))
+                .build(),
+            XPath.builder().addAttribute(attrs.hasText("Missing")).build(),
+            XPath.builder()
+                .addAttribute(attrs.hasText("Missing"))
+                .addAttribute(Axes.child(attrs.isEnabled(true)))
+                .build(),
+            XPath.builder().build()
+        );
+
+        LocatorTrie trie = LocatorTrie.builder().addLocator(xpaths).build();
+
+        // When
+        LocatorMatches matches = evaluator.select(snapshot, trie);
+
+        // Then
+        assertEquals(trie.size(), xpaths.size());
+        assertEquals(trie.totalSteps(), 11);
+        assertEquals(trie.stepCount(), 7);
+        assertEquals(matches.size(), xpaths.size());
+
+        for (int i = 0; i < xpaths.size(); i++) {
+            int[] expected = evaluator.select(snapshot, xpaths.get(i));
+            assertEquals(matches.matches(i), expected);
+            assertEquals(matches.isMatched(i), expected.length > 0);
+
+            for (int node : expected) {
+                assertTrue(Arrays.binarySearch(matches.locators(node), i) >= 0);
+            }
+        }
+
+        assertEquals(matches.locators(3), new int[] { 0 });
+        assertEquals(matches.locators(4), new int[] { 1, 2, 3 });
+        assertFalse(matches.isMatched(6));
+    }
+}
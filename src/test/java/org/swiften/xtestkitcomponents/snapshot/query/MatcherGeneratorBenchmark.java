@@ -0,0 +1,56 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.javautilities.util.HPLog;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.DOMSnapshot;
+import org.swiften.xtestkitcomponents.xpath.Attributes;
+import org.swiften.xtestkitcomponents.xpath.CompoundAttribute;
+import org.swiften.xtestkitcomponents.xpath.XPath;
+
+/**
+ * Compare closure predicates against generated matchers. This is a plain
+ * main class rather than a test, so it does not run with the test task.
+ */
+public final class MatcherGeneratorBenchmark {
+    public static void main(String[] args) {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        DOMSnapshot snapshot = DOMSnapshot.parse(LocatorEvaluatorTest.PAGE_SOURCE);
+        LocatorEvaluator closures = LocatorEvaluator.builder().build();
+        LocatorEvaluator bytecode = LocatorEvaluator.builder().withBytecodeThreshold(0).build();
+        int warmup = 5000;
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        XPath xpath = XPath.builder()
+            .addAttribute(CompoundAttribute
+                .single(attrs.containsText("item"))
+                .withClass("Text"))
+            .addAttribute(attrs.isEnabled(true))
+            .build();
+
+        for (int i = 0; i < warmup; i++) {
+            closures.select(snapshot, xpath);
+            bytecode.select(snapshot, xpath);
+        }
+
+        // When
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            closures.select(snapshot, xpath);
+        }
+
+        long closureTime = System.nanoTime() - start;
+        start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            bytecode.select(snapshot, xpath);
+        }
+
+        long bytecodeTime = System.nanoTime() - start;
+
+        // Then
+        HPLog.printft("Closures: %d ns, bytecode: %d ns", closureTime, bytecodeTime);
+    }
+}
@@ -0,0 +1,136 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.DOMSnapshot;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class MatcherGeneratorTest {
+    @Test
+    public void test_generatedMatchers_shouldMatchClosures() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        DOMSnapshot snapshot = DOMSnapshot.parse(LocatorEvaluatorTest.PAGE_SOURCE);
+        LocatorEvaluator closures = LocatorEvaluator.builder().build();
+        LocatorEvaluator bytecode = LocatorEvaluator.builder().withBytecodeThreshold(0).build();
+
+        List<XPath> xpaths = Arrays.asList(
+            XPath.builder().addAttribute(attrs.containsText("item")).build(),
+            XPath.builder().addAttribute(attrs.containsText("")).build(),
+            XPath.builder().addAttribute(attrs.hasText("Cancel").not()).build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute
+                    .single(attrs.isEnabled(true))
+                    .withClass("Text"))
+                .build(),
+            XPath.builder()
+                .addAttribute(AttributeBlock.builder()
+                    .addAttribute(attrs.hasText("OK Button"), attrs.containsID("icon"))
+                    .withJoiner(Joiner.OR)
+                    .build())
+                .build(),
+            XPath.builder()
+                .addAttribute(AttributeBlock.builder()
+                    .addAttribute(attrs.isEnabled(true), attrs.containsID("list"))
+                    .withJoiner(Joiner.AND)
+                    .build())
+                .addAttribute(attrs.containsText("Button").not())
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Layout"))
+                .addAttribute(Axes.descendant(attrs.ofClass("Image")))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Text"))
+                .addAttribute(Axes.descendant(CompoundAttribute
+                    .single(attrs.containsID("icon"))
+                    .not()))
+                .build()
+        );
+
+        for (XPath xpath : xpaths) {
+            // When
+            LocatorPlan plan = LocatorPlan.of(xpath);
+            PredicateCompiler compiler = bytecode.compiler();
+            NodePredicate predicate = compiler.compile(plan, plan.steps().get(0));
+
+            // Then
+            assertTrue(MatcherGenerator.isGenerated(predicate));
+            assertTrue(compiler.isPromoted(plan.steps().get(0)));
+            assertEquals(compiler.failureCount(), 0);
+            assertEquals(bytecode.select(snapshot, xpath), closures.select(snapshot, xpath));
+        }
+    }
+
+    @Test
+    public void test_promotionThreshold_shouldKeepClosuresUntilHot() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        DOMSnapshot snapshot = DOMSnapshot.parse(LocatorEvaluatorTest.PAGE_SOURCE);
+        LocatorEvaluator closures = LocatorEvaluator.builder().build();
+        LocatorEvaluator bytecode = LocatorEvaluator.builder().withBytecodeThreshold(3).build();
+        PredicateCompiler compiler = bytecode.compiler();
+
+        XPath xpath = XPath.builder()
+            .addAttribute(CompoundAttribute
+                .single(attrs.containsText("item"))
+                .withClass("Text"))
+            .addAttribute(attrs.isEnabled(true))
+            .build();
+
+        LocatorPlan.Step step = LocatorPlan.of(xpath).steps().get(0);
+
+        // When
+        bytecode.select(snapshot, xpath);
+        bytecode.select(snapshot, xpath);
+        boolean promotedEarly = compiler.isPromoted(step);
+        bytecode.select(snapshot, xpath);
+
+        // Then
+        assertFalse(promotedEarly);
+        assertTrue(compiler.isPromoted(step));
+        assertEquals(compiler.failureCount(), 0);
+        assertEquals(bytecode.select(snapshot, xpath), closures.select(snapshot, xpath));
+    }
+
+    @Test
+    public void test_oversizedStep_shouldCountFailureAndKeepClosure() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        DOMSnapshot snapshot = DOMSnapshot.parse(LocatorEvaluatorTest.PAGE_SOURCE);
+        LocatorEvaluator closures = LocatorEvaluator.builder().build();
+        LocatorEvaluator bytecode = LocatorEvaluator.builder().withBytecodeThreshold(0).build();
+        PredicateCompiler compiler = bytecode.compiler();
+        AttributeBlock.Builder block = AttributeBlock.builder().withJoiner(Joiner.OR);
+
+        /* Enough predicates to exceed the maximum method length */
+        for (int i = 0; i < 3000; i++) {
+            block.addAttribute(attrs.containsText("item" + i));
+        }
+
+        XPath xpath = XPath.builder().addAttribute(block.build()).build();
+        LocatorPlan plan = LocatorPlan.of(xpath);
+        LocatorPlan.Step step = plan.steps().get(0);
+
+        // When
+        NodePredicate predicate = compiler.compile(plan, step);
+
+        // Then
+        assertFalse(MatcherGenerator.isGenerated(predicate));
+        assertFalse(compiler.isPromoted(step));
+        assertEquals(compiler.failureCount(), 1);
+        assertEquals(bytecode.select(snapshot, xpath), closures.select(snapshot, xpath));
+        assertEquals(compiler.failureCount(), 1);
+    }
+}
@@ -0,0 +1,63 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.DOMSnapshot;
+import org.swiften.xtestkitcomponents.util.IntList;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class PredicateCompilerTest {
+    @Test
+    public void test_compilePredicates_shouldCacheByStructure() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        DOMSnapshot snapshot = DOMSnapshot.parse(LocatorEvaluatorTest.PAGE_SOURCE);
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+        PredicateCompiler compiler = evaluator.compiler();
+
+        XPath first = XPath.builder()
+            .addAttribute(CompoundAttribute
+                .single(attrs.containsText("ITEM"))
+                .withClass("Text"))
+            .build();
+
+        XPath second = XPath.builder()
+            .addAttribute(CompoundAttribute
+                .single(attrs.containsText("ITEM"))
+                .withClass("Text"))
+            .build();
+
+        XPath third = XPath.builder()
+            .addAttribute(attrs.isEnabled(true))
+            .addAttribute(Axes.descendant(attrs.containsID("icon")))
+            .build();
+
+        // When
+        LocatorPlan firstPlan = LocatorPlan.of(first);
+        LocatorPlan secondPlan = LocatorPlan.of(second);
+        LocatorPlan thirdPlan = LocatorPlan.of(third);
+        AttributeType firstPredicate = firstPlan.steps().get(0).segments().get(0).predicates().get(0);
+        AttributeType secondPredicate = secondPlan.steps().get(0).segments().get(0).predicates().get(0);
+        NodePredicate compiled = compiler.compile(firstPlan, firstPredicate);
+        NodePredicate step = compiler.compile(thirdPlan, thirdPlan.steps().get(0));
+        IntList passed = new IntList();
+
+        for (int node = 0; node < snapshot.size(); node++) {
+            if (step.test(snapshot, node)) {
+                passed.add(node);
+            }
+        }
+
+        // Then
+        assertSame(compiler.compile(secondPlan, secondPredicate), compiled);
+        assertEquals(evaluator.select(snapshot, first), new int[] { 5, 6, 8 });
+        assertEquals(evaluator.select(snapshot, first), evaluator.select(snapshot, second));
+        assertEquals(passed.toArray(), new int[] { 1, 4, 6 });
+        assertEquals(evaluator.select(snapshot, third), passed.toArray());
+    }
+}
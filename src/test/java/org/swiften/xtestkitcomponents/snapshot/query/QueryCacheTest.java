@@ -0,0 +1,177 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.CompactSnapshot;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class QueryCacheTest {
+    @Test
+    public void test_repeatedSelect_shouldReturnMemoizedResult() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        String source = RangeScanTaskTest.pageSource(50);
+        CompactSnapshot first = CompactSnapshot.parse(source, platform);
+        CompactSnapshot second = CompactSnapshot.parse(source, platform);
+        QueryCache cache = QueryCache.builder().build();
+        LocatorEvaluator plain = LocatorEvaluator.builder().build();
+
+        LocatorEvaluator evaluator = LocatorEvaluator.builder()
+            .withQueryCache(cache)
+            .build();
+
+        XPath xpath = XPath.builder().addAttribute(attrs.containsText("Detail 1")).build();
+        XPath equal = XPath.builder().addAttribute(attrs.containsText("Detail 1")).build();
+
+        // When
+        int[] result = evaluator.select(first, xpath);
+        int[] repeated = evaluator.select(second, equal);
+
+        // Then
+        assertEquals(result, plain.select(first, xpath));
+        assertEquals(repeated, result);
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.snapshotCount(), 1);
+        assertEquals(cache.hitCount(), 1);
+        assertEquals(cache.missCount(), 1);
+        assertTrue(evaluator.exists(first, xpath));
+        assertEquals(evaluator.count(first, xpath), result.length);
+        assertEquals(cache.hitCount(), 3);
+    }
+
+    @Test
+    public void test_mutatedSelectResult_shouldNotCorruptCache() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        CompactSnapshot snapshot = CompactSnapshot.parse(RangeScanTaskTest.pageSource(20), platform);
+        QueryCache cache = QueryCache.builder().build();
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().withQueryCache(cache).build();
+        XPath xpath = XPath.builder().addAttribute(attrs.containsText("Row")).build();
+        int[] expected = evaluator.select(snapshot, xpath).clone();
+
+        // When
+        int[] result = evaluator.select(snapshot, xpath);
+        result[0] = -1;
+
+        // Then
+        assertEquals(cache.hitCount(), 1);
+        assertEquals(evaluator.select(snapshot, xpath), expected);
+        assertEquals(cache.hitCount(), 2);
+    }
+
+    @Test
+    public void test_workingSet_shouldDropLeastRecentSnapshot() {
+        // Setup
+        PlatformType platform = () -> "value";
+        QueryCache cache = QueryCache.builder().withMaxSnapshots(2).build();
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().withQueryCache(cache).build();
+        XPath rows = XPath.builder().addAttribute(CompoundAttribute.forClass("Row")).build();
+        XPath texts = XPath.builder().addAttribute(CompoundAttribute.forClass("Text")).build();
+        CompactSnapshot[] snapshots = new CompactSnapshot[3];
+
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshots[i] = CompactSnapshot.parse(RangeScanTaskTest.pageSource(i + 1), platform);
+        }
+
+        // When
+        evaluator.select(snapshots[0], rows);
+        evaluator.select(snapshots[0], texts);
+        evaluator.select(snapshots[1], rows);
+        evaluator.select(snapshots[0], rows);
+        evaluator.select(snapshots[2], rows);
+
+        // Then
+        assertEquals(cache.snapshotCount(), 2);
+        assertEquals(cache.size(), 3);
+        assertNotNull(cache.get(snapshots[0], texts));
+        assertNull(cache.get(snapshots[1], rows));
+        assertNotNull(cache.get(snapshots[2], rows));
+        cache.invalidate(snapshots[0]);
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.weight(), QueryCache.weight(cache.get(snapshots[2], rows)));
+    }
+
+    @Test
+    public void test_maxWeight_shouldEvictLeastRecentResults() {
+        // Setup
+        PlatformType platform = () -> "value";
+        CompactSnapshot snapshot = CompactSnapshot.parse(RangeScanTaskTest.pageSource(10), platform);
+        XPath rows = XPath.builder().addAttribute(CompoundAttribute.forClass("Row")).build();
+        XPath texts = XPath.builder().addAttribute(CompoundAttribute.forClass("Text")).build();
+        XPath buttons = XPath.builder().addAttribute(CompoundAttribute.forClass("Button")).build();
+        long weight = QueryCache.weight(new int[10]) + QueryCache.weight(new int[20]);
+        QueryCache cache = QueryCache.builder().withMaxWeight(weight).build();
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().withQueryCache(cache).build();
+
+        // When
+        evaluator.select(snapshot, texts);
+        evaluator.select(snapshot, rows);
+        evaluator.select(snapshot, texts);
+        evaluator.select(snapshot, buttons);
+
+        // Then
+        assertTrue(cache.weight() <= weight);
+        assertNull(cache.get(snapshot, rows));
+        assertNotNull(cache.get(snapshot, texts));
+        assertNotNull(cache.get(snapshot, buttons));
+    }
+
+    @Test
+    public void test_concurrentPutAndInvalidate_shouldKeepWeightConsistent() throws Exception {
+        // Setup
+        PlatformType platform = () -> "value";
+        XPath rows = XPath.builder().addAttribute(CompoundAttribute.forClass("Row")).build();
+        XPath texts = XPath.builder().addAttribute(CompoundAttribute.forClass("Text")).build();
+        CompactSnapshot[] snapshots = new CompactSnapshot[4];
+        QueryCache cache = QueryCache.builder().withMaxWeight(2048).withMaxSnapshots(3).build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshots[i] = CompactSnapshot.parse(RangeScanTaskTest.pageSource(i + 1), platform);
+        }
+
+        // When
+        for (int t = 0; t < 4; t++) {
+            final int THREAD = t;
+
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    CompactSnapshot snapshot = snapshots[(i + THREAD) % snapshots.length];
+
+                    if (THREAD == 0 && i % 3 == 0) {
+                        cache.invalidate(snapshot);
+                    } else {
+                        cache.put(snapshot, i % 2 == 0 ? rows : texts, new int[i % 50]);
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        executor.shutdown();
+
+        for (CompactSnapshot snapshot : snapshots) {
+            cache.invalidate(snapshot);
+        }
+
+        // Then
+        assertEquals(cache.size(), 0);
+        assertEquals(cache.snapshotCount(), 0);
+        assertEquals(cache.weight(), 0);
+    }
+}
@@ -0,0 +1,85 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.javautilities.util.HPLog;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.CompactSnapshot;
+import org.swiften.xtestkitcomponents.xpath.Attributes;
+import org.swiften.xtestkitcomponents.xpath.XPath;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compare sequential scans against parallel scans with 1, 2 and all
+ * available threads. This is a plain main class rather than a test, so it
+ * does not run with the test task. Each locator is warmed up first, and
+ * the median of several runs is reported.
+ */
+public final class RangeScanTaskBenchmark {
+    /**
+     * Get the median time of repeated selects.
+     * @param evaluator {@link LocatorEvaluator} instance.
+     * @param snapshot {@link CompactSnapshot} instance.
+     * @param xpath {@link XPath} instance.
+     * @param runs {@link Integer} value.
+     * @return {@link Long} value, in nanoseconds.
+     */
+    private static long median(LocatorEvaluator evaluator,
+                               CompactSnapshot snapshot,
+                               XPath xpath,
+                               int runs) {
+        long[] times = new long[runs];
+
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            evaluator.select(snapshot, xpath);
+            times[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+
+    public static void main(String[] args) {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 21;
+        int warmup = 20;
+        CompactSnapshot snapshot = CompactSnapshot.parse(RangeScanTaskTest.pageSource(rows), platform);
+        LocatorEvaluator sequential = LocatorEvaluator.builder().build();
+        List<XPath> xpaths = RangeScanTaskTest.xpaths(attrs);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        for (int threads : new int[] { 1, 2, cores }) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+
+            LocatorEvaluator parallel = LocatorEvaluator.builder()
+                .withForkJoinPool(pool)
+                .withParallelThreshold(2048)
+                .build();
+
+            try {
+                for (XPath xpath : xpaths) {
+                    for (int i = 0; i < warmup; i++) {
+                        sequential.select(snapshot, xpath);
+                        parallel.select(snapshot, xpath);
+                    }
+
+                    // When
+                    long sequentialTime = median(sequential, snapshot, xpath, runs);
+                    long parallelTime = median(parallel, snapshot, xpath, runs);
+
+                    // Then
+                    HPLog.printft("%s, sequential: %d ns, %d threads: %d ns (%.2fx)",
+                        xpath.renderAttribute(), sequentialTime, threads, parallelTime,
+                        (double)sequentialTime / parallelTime);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.CompactSnapshot;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class RangeScanTaskTest {
+    /**
+     * Get a page source with a table of rows, each with a few cells.
+     * @param rows {@link Integer} value.
+     * @return {@link String} value.
+     */
+    static String pageSource(int rows) {
+        StringBuilder builder = new StringBuilder("<hierarchy><Table id='table'>");
+
+        for (int i = 0; i < rows; i++) {
+            builder.append(String.format(
+                "<Row index='%1$d'>" +
+                    "<Text index='0' text='Row %1$d' enabled='true'/>" +
+                    "<Text index='1' text='Detail %2$d' enabled='%3$b'/>" +
+                    "<Button index='2' text='Open' clickable='true'/>" +
+                "</Row>",
+                i, i % 97, i % 3 != 0));
+        }
+
+        return builder.append("</Table></hierarchy>").toString();
+    }
+
+    /**
+     * Get locators that exercise scans, predicates, descendants and
+     * positions on {@link #pageSource(int)}.
+     * @param attrs {@link Attributes} instance.
+     * @return {@link List} of {@link XPath}.
+     */
+    static List<XPath> xpaths(Attributes attrs) {
+        return Arrays.asList(
+            XPath.builder().addAttribute(attrs.containsText("42")).build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute
+                    .single(attrs.isEnabled(false))
+                    .withClass("Text"))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Row"))
+                .addAttribute(Axes.descendant(attrs.containsText("Detail 9")))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Text").withIndex(2))
+                .build()
+        );
+    }
+
+    @Test
+    public void test_parallelScan_shouldMatchSequentialOrder() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        CompactSnapshot snapshot = CompactSnapshot.parse(pageSource(15000), platform);
+        LocatorEvaluator sequential = LocatorEvaluator.builder().build();
+        List<XPath> xpaths = xpaths(attrs);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        for (int threads : new int[] { 1, 2, cores }) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+
+            LocatorEvaluator parallel = LocatorEvaluator.builder()
+                .withForkJoinPool(pool)
+                .withParallelThreshold(2048)
+                .build();
+
+            try {
+                for (XPath xpath : xpaths) {
+                    // When
+                    int[] expected = sequential.select(snapshot, xpath);
+                    int[] actual = parallel.select(snapshot, xpath);
+
+                    // Then
+                    assertTrue(expected.length > 0);
+                    assertEquals(actual, expected);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.direction.Direction;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.CompactSnapshot;
+import org.swiften.xtestkitcomponents.snapshot.SnapshotType;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class ScrollSearchTest {
+    /**
+     * This class shows a window of rows of a list, and a status bar whose
+     * clock changes with every capture.
+     */
+    static final class ListDriver implements ScrollDriverType {
+        @NotNull private final PlatformType PLATFORM = () -> "value";
+        private final int ROWS;
+        private final int VISIBLE;
+        private final int STEP;
+        int offset;
+        int captures;
+
+        ListDriver(int rows, int visible, int step) {
+            ROWS = rows;
+            VISIBLE = visible;
+            STEP = step;
+        }
+
+        @NotNull
+        @Override
+        public SnapshotType snapshot() {
+            StringBuilder builder = new StringBuilder(String.format(
+                "<hierarchy><StatusBar time='%d'/><List>", captures++));
+
+            for (int row = offset; row < offset + VISIBLE; row++) {
+                builder.append(String.format("<Cell text='Row %d'/>", row));
+            }
+
+            return CompactSnapshot.parse(builder.append("</List></hierarchy>").toString(), PLATFORM);
+        }
+
+        @Override
+        public void swipe(@NotNull Direction direction) {
+            int delta = direction == Direction.DOWN_UP ? STEP : -STEP;
+            offset = Math.max(0, Math.min(ROWS - VISIBLE, offset + delta));
+        }
+    }
+
+    @Test
+    public void test_scrollSearch_shouldStopAtEndsAndRememberDirection() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        ListDriver driver = new ListDriver(50, 8, 5);
+
+        ScrollSearch search = ScrollSearch.builder()
+            .withContainer(XPath.builder().addAttribute(CompoundAttribute.forClass("List")).build())
+            .build();
+
+        XPath row2 = XPath.builder().addAttribute(attrs.hasText("Row 2")).build();
+        XPath row30 = XPath.builder().addAttribute(attrs.hasText("Row 30")).build();
+        XPath row49 = XPath.builder().addAttribute(attrs.hasText("Row 49")).build();
+        XPath missing = XPath.builder().addAttribute(attrs.hasText("Row 50")).build();
+
+        // When & Then
+        ScrollSearch.Result result = search.search(driver, row30);
+        assertTrue(result.isFound());
+        assertEquals(result.direction(), Direction.DOWN_UP);
+        assertEquals(result.swipes(), 5);
+        assertFalse(result.reachedEnd());
+
+        /* The first direction runs into the end, and one wasted swipe
+         * detects it */
+        result = search.search(driver, row2);
+        assertTrue(result.isFound());
+        assertEquals(result.direction(), Direction.UP_DOWN);
+        assertEquals(result.swipes(), 13);
+        assertTrue(result.reachedEnd());
+        assertEquals(search.firstDirection(row2), Direction.UP_DOWN);
+
+        result = search.search(driver, row49);
+        assertEquals(result.swipes(), 8);
+
+        /* Now the remembered direction is swiped first */
+        result = search.search(driver, row2);
+        assertEquals(result.swipes(), 8);
+        assertFalse(result.reachedEnd());
+
+        result = search.search(driver, missing);
+        assertFalse(result.isFound());
+        assertTrue(result.reachedEnd());
+        assertEquals(result.direction(), Direction.NONE);
+        assertTrue(result.swipes() < ScrollSearch.DEFAULT_MAX_SWIPES);
+    }
+
+    @Test
+    public void test_changingRoot_shouldNeedContainer() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        XPath missing = XPath.builder().addAttribute(attrs.hasText("Row 50")).build();
+        ScrollSearch search = ScrollSearch.builder().withMaxSwipes(12).build();
+
+        // When
+        ScrollSearch.Result result = search.search(new ListDriver(20, 8, 5), missing);
+
+        // Then
+        assertFalse(result.isFound());
+        assertFalse(result.reachedEnd());
+        assertEquals(result.swipes(), 12);
+    }
+}
@@ -0,0 +1,120 @@
+package org.swiften.xtestkitcomponents.snapshot.query;
+
+import org.swiften.javautilities.util.HPLog;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.DOMSnapshot;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class StreamingEvaluatorTest {
+    @Test
+    public void test_streamLocators_shouldMatchSnapshotEvaluation() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        String pageSource = LocatorEvaluatorTest.PAGE_SOURCE;
+        DOMSnapshot snapshot = DOMSnapshot.parse(pageSource);
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+        StreamingEvaluator streaming = new StreamingEvaluator();
+
+        List<XPath> xpaths = Arrays.asList(
+            XPath.builder().addAttribute(attrs.containsText("item")).build(),
+            XPath.builder()
+                .addAttribute(attrs.isEnabled(true))
+                .addAttribute(attrs.containsID("id/"))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Text").withIndex(2))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.builder()
+                    .withPath(Path.DIRECT)
+                    .withClass("hierarchy")
+                    .build())
+                .addAttribute(CompoundAttribute.builder()
+                    .withPath(Path.DIRECT)
+                    .withIndex(1)
+                    .build())
+                .addAttribute(CompoundAttribute.builder()
+                    .withPath(Path.DIRECT)
+                    .withClass("Button")
+                    .withIndex(2)
+                    .build())
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Layout"))
+                .addAttribute(Axes.child(attrs.isEnabled(false)))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Button"))
+                .addAttribute(Axes.followingSibling(attrs.ofClass("EditText")))
+                .build(),
+            XPath.builder()
+                .addAttribute(CompoundAttribute.forClass("Layout"))
+                .addAttribute(Axes.descendant(attrs.ofClass("Image")))
+                .build()
+        );
+
+        for (XPath xpath : xpaths) {
+            // When
+            LocatorPlan plan = LocatorPlan.of(xpath);
+            int[] expected = evaluator.select(snapshot, plan);
+            int[] actual = streaming.select(pageSource, xpath);
+
+            // Then
+            HPLog.printft("%s (streamable: %b) -> %s",
+                xpath.attribute(),
+                StreamingEvaluator.isStreamable(plan),
+                Arrays.toString(actual));
+
+            assertEquals(actual, expected);
+        }
+    }
+
+    @Test
+    public void test_streamWithLimit_shouldStopAtFirstMatch() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        StreamingEvaluator streaming = new StreamingEvaluator();
+
+        /* The page source is truncated after the match, so reading any
+         * further would fail */
+        String truncated = "<hierarchy><Layout><Button text='OK'/><Button text='OK'/><Text";
+
+        XPath xpath = XPath.builder().addAttribute(attrs.hasText("OK")).build();
+        XPath indexed = XPath.builder()
+            .addAttribute(CompoundAttribute.builder()
+                .withPath(Path.DIRECT)
+                .withClass("hierarchy")
+                .withIndex(1)
+                .build())
+            .addAttribute(CompoundAttribute.builder()
+                .withPath(Path.DIRECT)
+                .withIndex(1)
+                .build())
+            .addAttribute(CompoundAttribute.builder()
+                .withPath(Path.DIRECT)
+                .withClass("Button")
+                .withIndex(2)
+                .build())
+            .build();
+
+        // When & Then
+        assertTrue(streaming.exists(truncated, xpath));
+        assertEquals(streaming.select(new StringReader(truncated), xpath, 2), new int[] { 2, 3 });
+        assertEquals(streaming.select(truncated, indexed), new int[] { 3 });
+        assertFalse(StreamingEvaluator.isStreamable(LocatorPlan.of(XPath.builder()
+            .addAttribute(Axes.precedingSibling(attrs.hasText("OK")))
+            .build())));
+    }
+}
@@ -0,0 +1,117 @@
+package org.swiften.xtestkitcomponents.view;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.CompactSnapshot;
+import org.swiften.xtestkitcomponents.snapshot.ViewKinds;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class ViewTypeTableTest {
+    enum AndroidView implements ViewType {
+        BUTTON("Button", true, true, false),
+        EDIT_TEXT("EditText", true, true, true),
+        IMAGE_VIEW("android.widget.ImageView", false, false, false),
+        IMAGE_BUTTON("ImageButton", false, true, false),
+        TEXT_VIEW("TextView", true, false, false);
+
+        @NotNull private final String CLASS_NAME;
+        private final boolean HAS_TEXT;
+        private final boolean CLICKABLE;
+        private final boolean EDITABLE;
+
+        AndroidView(@NotNull String className,
+                    boolean hasText,
+                    boolean clickable,
+                    boolean editable) {
+            CLASS_NAME = className;
+            HAS_TEXT = hasText;
+            CLICKABLE = clickable;
+            EDITABLE = editable;
+        }
+
+        @NotNull
+        @Override
+        public String className() {
+            return CLASS_NAME;
+        }
+
+        @Override
+        public boolean hasText() {
+            return HAS_TEXT;
+        }
+
+        @Override
+        public boolean isClickable() {
+            return CLICKABLE;
+        }
+
+        @Override
+        public boolean isEditable() {
+            return EDITABLE;
+        }
+    }
+
+    @Test
+    public void test_classNameLookup_shouldMatchExactOrSuffix() {
+        // Setup
+        ViewTypeTable table = ViewTypeTable.builder()
+            .addViewType(AndroidView.values())
+            .build();
+
+        // When & Then
+        assertEquals(table.size(), AndroidView.values().length);
+        assertEquals(table.viewType("Button"), AndroidView.BUTTON);
+        assertEquals(table.viewType("android.widget.Button"), AndroidView.BUTTON);
+        assertEquals(table.viewType("android.widget.ImageView"), AndroidView.IMAGE_VIEW);
+        assertEquals(table.viewType("com.app.Outer$EditText"), AndroidView.EDIT_TEXT);
+        assertNull(table.viewType("ImageView"));
+        assertNull(table.viewType("android.widget.MyButton"));
+        assertEquals(table.kind("android.view.View"), ViewTypeTable.UNKNOWN);
+        assertEquals(table.capabilities(ViewTypeTable.UNKNOWN), 0);
+
+        assertEquals(
+            table.capabilities("android.widget.EditText"),
+            ViewTypeTable.HAS_TEXT | ViewTypeTable.CLICKABLE | ViewTypeTable.EDITABLE);
+
+        assertEquals(table.cachedCount(), 8);
+    }
+
+    @Test
+    public void test_snapshotViewKinds_shouldTagEveryNode() {
+        // Setup
+        String source =
+            "<hierarchy>" +
+                "<android.widget.FrameLayout>" +
+                    "<android.widget.TextView text='Name'/>" +
+                    "<android.widget.EditText text=''/>" +
+                    "<node class='android.widget.Button' text='OK'/>" +
+                    "<android.widget.ImageButton/>" +
+                "</android.widget.FrameLayout>" +
+            "</hierarchy>";
+
+        PlatformType platform = () -> "value";
+        CompactSnapshot snapshot = CompactSnapshot.parse(source, platform);
+        ViewTypeTable table = ViewTypeTable.builder().addViewType(AndroidView.values()).build();
+
+        // When
+        ViewKinds kinds = snapshot.indexes().viewKinds(table);
+
+        // Then
+        assertSame(snapshot.indexes().viewKinds(table), kinds);
+        assertNull(kinds.viewType(1));
+        assertEquals(kinds.viewType(2), AndroidView.TEXT_VIEW);
+        assertEquals(kinds.viewType(4), AndroidView.BUTTON);
+        assertTrue(kinds.isEditable(3));
+        assertFalse(kinds.isEditable(2));
+        assertTrue(kinds.hasText(2));
+        assertEquals(kinds.nodes(ViewTypeTable.CLICKABLE), new int[] { 3, 4, 5 });
+        assertEquals(kinds.nodes(ViewTypeTable.HAS_TEXT | ViewTypeTable.CLICKABLE), new int[] { 3, 4 });
+    }
+}
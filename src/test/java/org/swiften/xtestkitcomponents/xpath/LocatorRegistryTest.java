@@ -0,0 +1,167 @@
+package org.swiften.xtestkitcomponents.xpath;
+
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.util.JSONWriter;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class LocatorRegistryTest {
+    @BeforeMethod
+    public void beforeMethod() {
+        resetShared();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        resetShared();
+    }
+
+    private void resetShared() {
+        LocatorRegistry registry = LocatorRegistry.shared();
+        registry.setEnabled(false);
+        registry.setCapturingCaller(false);
+        registry.clear();
+    }
+
+    @Test
+    public void test_disabledRegistry_shouldRecordNothing() {
+        // Setup
+        Attributes attrs = Attributes.of((PlatformType) () -> "value");
+        XPath xpath = XPath.builder().addAttribute(attrs.containsText("text")).build();
+        LocatorRegistry registry = LocatorRegistry.shared();
+
+        // When
+        xpath.attribute();
+        registry.recordLookup(xpath, 100);
+
+        // Then
+        assertFalse(registry.isEnabled());
+        assertTrue(registry.snapshot().isEmpty());
+    }
+
+    @Test
+    public void test_nonDriverRenders_shouldNotRecord() {
+        // Setup
+        Attributes attrs = Attributes.of((PlatformType) () -> "value");
+        XPath xpath = XPath.builder().addAttribute(attrs.containsText("text")).build();
+        LocatorRegistry registry = LocatorRegistry.shared();
+        registry.setEnabled(true);
+
+        // When
+        String logged = xpath.toString();
+        String rendered = xpath.renderAttribute();
+
+        // Then
+        assertEquals(logged, rendered);
+        assertTrue(registry.snapshot().isEmpty());
+
+        // When
+        String attribute = xpath.attribute();
+
+        // Then
+        List<LocatorStats> stats = registry.snapshot();
+        assertEquals(attribute, rendered);
+        assertEquals(stats.size(), 1);
+        assertEquals(stats.get(0).renderCount(), 1);
+        assertEquals(stats.get(0).query(), rendered);
+    }
+
+    @Test
+    public void test_recordedRenders_shouldAggregateByStructure() {
+        // Setup
+        Attributes attrs = Attributes.of((PlatformType) () -> "value");
+        XPath xpath = XPath.builder().addAttribute(attrs.containsText("text")).build();
+        XPath equal = XPath.builder().addAttribute(attrs.containsText("text")).build();
+        XPath other = XPath.builder().addAttribute(attrs.containsID("id")).build();
+        String query = xpath.renderAttribute();
+        LocatorRegistry registry = new LocatorRegistry();
+        registry.setEnabled(true);
+
+        // When
+        registry.recordRender(xpath, query, 10);
+        registry.recordRender(equal, query, 20);
+        registry.recordRender(other, other.renderAttribute(), 7);
+        registry.recordLookup(equal, 5);
+        registry.recordLookup(xpath, 6);
+
+        // Then
+        List<LocatorStats> stats = registry.snapshot();
+        assertEquals(stats.size(), 2);
+        assertEquals(stats.get(0).hash(), StructuralHashes.of(xpath));
+        assertEquals(stats.get(0).query(), query);
+        assertEquals(stats.get(0).length(), query.length());
+        assertEquals(stats.get(0).renderCount(), 2);
+        assertEquals(stats.get(0).renderNanos(), 30);
+        assertEquals(stats.get(0).lookupCount(), 2);
+        assertEquals(stats.get(0).lookupNanos(), 11);
+        assertTrue(stats.get(0).callers().isEmpty());
+        assertEquals(stats.get(1).hash(), StructuralHashes.of(other));
+        assertEquals(stats.get(1).renderCount(), 1);
+        assertEquals(stats.get(1).renderNanos(), 7);
+        assertEquals(stats.get(1).lookupCount(), 0);
+
+        // When
+        registry.clear();
+
+        // Then
+        assertTrue(registry.snapshot().isEmpty());
+    }
+
+    @Test
+    public void test_captureCaller_shouldRecordRequestingClass() {
+        // Setup
+        Attributes attrs = Attributes.of((PlatformType) () -> "value");
+        XPath xpath = XPath.builder().addAttribute(attrs.containsText("text")).build();
+        LocatorRegistry registry = LocatorRegistry.shared();
+        registry.setEnabled(true);
+        registry.setCapturingCaller(true);
+
+        // When
+        xpath.attribute();
+        xpath.attribute();
+
+        // Then
+        List<LocatorStats> stats = registry.snapshot();
+        assertEquals(stats.size(), 1);
+        assertEquals(stats.get(0).renderCount(), 2);
+
+        assertEquals(stats.get(0).callers(),
+            Collections.singletonMap(LocatorRegistryTest.class.getName(), 2L));
+    }
+
+    @Test
+    public void test_export_shouldWriteCSVAndJSON() {
+        // Setup
+        Attributes attrs = Attributes.of((PlatformType) () -> "value");
+        XPath xpath = XPath.builder().addAttribute(attrs.containsText("text")).build();
+        String query = xpath.renderAttribute();
+        String hash = String.format("%016x", StructuralHashes.of(xpath));
+        LocatorRegistry registry = new LocatorRegistry();
+        registry.setEnabled(true);
+
+        // When
+        registry.recordRender(xpath, query, 10);
+        registry.recordLookup(xpath, 4);
+
+        // Then
+        assertTrue(query.contains(","));
+
+        assertEquals(registry.toCSV(),
+            "hash,query,length,renderCount,renderNanos,lookupCount,lookupNanos,callers\n"
+                + hash + ",\"" + query.replace("\"", "\"\"") + "\","
+                + query.length() + ",1,10,1,4,\n");
+
+        assertEquals(registry.toJSON(),
+            "[{\"hash\":\"" + hash + "\",\"query\":" + JSONWriter.quote(query)
+                + ",\"length\":" + query.length()
+                + ",\"renderCount\":1,\"renderNanos\":10"
+                + ",\"lookupCount\":1,\"lookupNanos\":4,\"callers\":{}}]");
+    }
+}
@@ -0,0 +1,68 @@
+package org.swiften.xtestkitcomponents.xpath;
+
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class StructuralHashesTest {
+    @Test
+    public void test_equalStructures_shouldHaveEqualHashes() {
+        // Setup
+        Attributes attrs = Attributes.of((PlatformType) () -> "value");
+
+        XPath xpath = XPath.builder()
+            .addAttribute(CompoundAttribute.builder()
+                .addAttribute(attrs.containsText("text"))
+                .addAttribute(attrs.isClickable(true))
+                .withClass("Button")
+                .withIndex(1)
+                .build())
+            .build();
+
+        XPath equal = XPath.builder()
+            .addAttribute(CompoundAttribute.builder()
+                .addAttribute(attrs.containsText("text"))
+                .addAttribute(attrs.isClickable(true))
+                .withClass("Button")
+                .withIndex(1)
+                .build())
+            .build();
+
+        // When & Then
+        assertEquals(StructuralHashes.of(xpath), StructuralHashes.of(equal));
+        assertEquals(StructuralHashes.of(attrs.ofClass("A")), StructuralHashes.of(attrs.ofClass("A")));
+    }
+
+    @Test
+    public void test_differentStructures_shouldHaveDifferentHashes() {
+        // Setup
+        Attributes attrs = Attributes.of((PlatformType) () -> "value");
+        Attribute<?> text = attrs.containsText("text");
+
+        // When & Then
+        /* Wrapper */
+        assertNotEquals(StructuralHashes.of(text), StructuralHashes.of(text.not()));
+
+        /* Comparison */
+        assertNotEquals(StructuralHashes.of(text), StructuralHashes.of(attrs.hasText("text")));
+
+        /* Value */
+        assertNotEquals(StructuralHashes.of(text), StructuralHashes.of(attrs.containsText("other")));
+
+        /* Index */
+        assertNotEquals(
+            StructuralHashes.of(XPath.builder().addAttribute(CompoundAttribute.single(text).withIndex(1)).build()),
+            StructuralHashes.of(XPath.builder().addAttribute(CompoundAttribute.single(text).withIndex(2)).build()));
+
+        assertNotEquals(
+            StructuralHashes.of(XPath.builder().addAttribute(CompoundAttribute.single(text)).build()),
+            StructuralHashes.of(XPath.builder().addAttribute(CompoundAttribute.single(text).withIndex(1)).build()));
+
+        /* Wrapper of a compound attribute */
+        assertNotEquals(
+            StructuralHashes.of(CompoundAttribute.single(text)),
+            StructuralHashes.of(CompoundAttribute.single(text).not()));
+    }
+}
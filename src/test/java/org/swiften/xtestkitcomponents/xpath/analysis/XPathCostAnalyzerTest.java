@@ -0,0 +1,73 @@
+package org.swiften.xtestkitcomponents.xpath.analysis;
+
+import org.swiften.javautilities.util.HPLog;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class XPathCostAnalyzerTest {
+    @Test
+    public void test_analyzeLocator_shouldFlagExpensiveConstructs() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        XPathCostAnalyzer analyzer = XPathCostAnalyzer.builder().build();
+
+        XPath xpath = XPath.builder()
+            .addAttribute(attrs.containsText("text1"))
+            .addAttribute(Axes.descendant(CompoundAttribute
+                .single(attrs.containsID("id1"))
+                .not()))
+            .build();
+
+        // When
+        LocatorCost cost = analyzer.analyze("xpath", xpath);
+        Map<CostIssue, Integer> counts = cost.issueCounts();
+
+        // Then
+        HPLog.println(cost.toJSON());
+        assertEquals(counts.get(CostIssue.LEADING_ANY_PATH), Integer.valueOf(1));
+        assertEquals(counts.get(CostIssue.TRANSLATE), Integer.valueOf(2));
+        assertEquals(counts.get(CostIssue.NOT_WRAPPER), Integer.valueOf(1));
+        assertEquals(counts.get(CostIssue.UNANCHORED_DESCENDANT), Integer.valueOf(1));
+        assertTrue(cost.score() > 0);
+    }
+
+    @Test
+    public void test_analyzeCatalog_shouldSortByScore() {
+        // Setup
+        PlatformType platform = () -> "value";
+        Attributes attrs = Attributes.of(platform);
+        XPathCostAnalyzer analyzer = XPathCostAnalyzer.builder()
+            .withLengthThreshold(20)
+            .build();
+
+        Map<String, XPath> catalog = new HashMap<>();
+        catalog.put("cheap", XPath.builder()
+            .addAttribute(CompoundAttribute.builder()
+                .withPath(Path.DIRECT)
+                .withClass("TC")
+                .build())
+            .build());
+
+        catalog.put("expensive", XPath.builder()
+            .addAttribute(attrs.containsText("text1"))
+            .addAttribute(attrs.ofClass("class1").not())
+            .build());
+
+        // When
+        CostReport report = analyzer.analyze(catalog);
+
+        // Then
+        HPLog.println(report.toJSON());
+        assertEquals(report.costs().get(0).name(), "expensive");
+        assertEquals(report.costs().get(1).score(), 0d, 0d);
+    }
+}
@@ -0,0 +1,263 @@
+package org.swiften.xtestkitcomponents.xpath.split;
+
+import org.jetbrains.annotations.NotNull;
+import org.swiften.xtestkitcomponents.platform.PlatformType;
+import org.swiften.xtestkitcomponents.snapshot.CompactSnapshot;
+import org.swiften.xtestkitcomponents.snapshot.query.LocatorEvaluator;
+import org.swiften.xtestkitcomponents.xpath.*;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.testng.Assert.*;
+
+@SuppressWarnings("MessageMissingOnTestNGAssertion")
+public final class XPathSplitterTest {
+    @NotNull
+    private static PlatformType platform() {
+        return new PlatformType() {
+            @NotNull
+            @Override
+            public String value() {
+                return "value";
+            }
+
+            @NotNull
+            @Override
+            public Collection<String> textAttribute() {
+                return Arrays.asList("text", "value", "label");
+            }
+        };
+    }
+
+    @NotNull
+    private static String pageSource() {
+        StringBuilder builder = new StringBuilder("<hierarchy><List>");
+
+        for (int i = 0; i < 20; i++) {
+            builder.append(String.format(
+                "<Cell index='%1$d'>" +
+                    "<Text index='0' text='Item %1$d' enabled='%2$b'/>" +
+                    "<Text index='1' value='Item %1$d' label='Label %1$d'/>" +
+                    "<Button index='2' text='Open %1$d' clickable='%3$b'/>" +
+                "</Cell>",
+                i, i % 2 == 0, i % 3 == 0));
+        }
+
+        return builder.append("</List></hierarchy>").toString();
+    }
+
+    /**
+     * Run the split and unsplit query against the same snapshot, and check
+     * that the merged result is the same, in document order.
+     * @param splitter {@link XPathSplitter} instance.
+     * @param xpath {@link XPath} instance.
+     * @return {@link SplitPlan} instance.
+     */
+    @NotNull
+    private static SplitPlan assertSameResult(@NotNull XPathSplitter splitter,
+                                              @NotNull XPath xpath) {
+        CompactSnapshot snapshot = CompactSnapshot.parse(pageSource(), platform());
+        LocatorEvaluator evaluator = LocatorEvaluator.builder().build();
+
+        Function<XPath, List<Integer>> lookup = a -> {
+            List<Integer> nodes = new ArrayList<>();
+
+            for (int node : evaluator.select(snapshot, a)) {
+                nodes.add(node);
+            }
+
+            return nodes;
+        };
+
+        SplitPlan plan = splitter.split(xpath);
+        List<Integer> expected = lookup.apply(xpath);
+        List<Integer> merged = splitter.execute(plan, lookup, Integer::compare);
+
+        assertFalse(expected.isEmpty());
+        assertEquals(merged, expected);
+        return plan;
+    }
+
+    @Test
+    public void test_orBlock_shouldSplitIntoUnion() {
+        // Setup
+        Attributes attrs = Attributes.of(platform());
+
+        /* The sub-queries find Item 9 before Item 1, so the union must be
+         * sorted back into document order */
+        XPath xpath = XPath.builder()
+            .addAttribute(CompoundAttribute.builder()
+                .addAttribute(AttributeBlock.builder()
+                    .addAttribute(attrs.hasText("Item 9"))
+                    .addAttribute(attrs.hasText("Item 1"))
+                    .addAttribute(attrs.hasText("Open 4"))
+                    .addAttribute(attrs.hasText("Item 15"))
+                    .withJoiner(Joiner.OR)
+                    .build())
+                .build())
+            .build();
+
+        XPathSplitter splitter = XPathSplitter.builder()
+            .withMaxLength(xpath.renderAttribute().length() / 2)
+            .withExecutor(Runnable::run)
+            .build();
+
+        // When
+        SplitPlan plan = assertSameResult(splitter, xpath);
+
+        // Then
+        assertEquals(plan.kind(), SplitPlan.Kind.UNION);
+        assertTrue(plan.queries().size() > 1);
+
+        for (XPath query : plan.queries()) {
+            assertTrue(query.renderAttribute().length() < xpath.renderAttribute().length());
+        }
+    }
+
+    @Test
+    public void test_multiNameAttribute_shouldSplitIntoUnion() {
+        // Setup
+        Attributes attrs = Attributes.of(platform());
+
+        XPath xpath = XPath.builder()
+            .addAttribute(CompoundAttribute.single(attrs.containsText("Item 1")).withClass("Text"))
+            .build();
+
+        XPathSplitter splitter = XPathSplitter.builder()
+            .withMaxLength(xpath.renderAttribute().length() / 2)
+            .build();
+
+        // When
+        SplitPlan plan = assertSameResult(splitter, xpath);
+
+        // Then
+        assertEquals(plan.kind(), SplitPlan.Kind.UNION);
+        assertEquals(plan.queries().size(), 3);
+    }
+
+    @Test
+    public void test_lastStepPredicates_shouldSplitIntoIntersection() {
+        // Setup
+        Attributes attrs = Attributes.of(platform());
+
+        XPath xpath = XPath.builder()
+            .addAttribute(CompoundAttribute.forClass("Cell"))
+            .addAttribute(CompoundAttribute.builder()
+                .addAttribute(AttributeBlock.builder()
+                    .addAttribute(attrs.atIndex(0))
+                    .addAttribute(attrs.isEnabled(true))
+                    .withJoiner(Joiner.AND)
+                    .build())
+                .build())
+            .build();
+
+        XPath blocks = XPath.builder()
+            .addAttribute(CompoundAttribute.forClass("Cell"))
+            .addAttribute(CompoundAttribute.builder()
+                .addAttribute(attrs.atIndex(0))
+                .addAttribute(attrs.isEnabled(true))
+                .build())
+            .build();
+
+        XPathSplitter splitter = XPathSplitter.builder().withMaxLength(1).build();
+
+        // When
+        SplitPlan plan = assertSameResult(splitter, xpath);
+        SplitPlan blockPlan = assertSameResult(splitter, blocks);
+
+        // Then
+        assertEquals(plan.kind(), SplitPlan.Kind.INTERSECTION);
+        assertEquals(plan.queries().size(), 2);
+        assertEquals(blockPlan.kind(), SplitPlan.Kind.INTERSECTION);
+        assertEquals(blockPlan.queries().size(), 2);
+    }
+
+    @Test
+    public void test_indexAfterOrBlock_shouldNotSplit() {
+        // Setup
+        Attributes attrs = Attributes.of(platform());
+
+        XPath xpath = XPath.builder()
+            .addAttribute(CompoundAttribute.builder()
+                .addAttribute(AttributeBlock.builder()
+                    .addAttribute(attrs.hasText("Item 9"))
+                    .addAttribute(attrs.hasText("Item 1"))
+                    .withJoiner(Joiner.OR)
+                    .build())
+                .withIndex(1)
+                .build())
+            .build();
+
+        XPath earlierIndex = XPath.builder()
+            .addAttribute(CompoundAttribute.forClass("Cell").withIndex(2))
+            .addAttribute(CompoundAttribute.builder()
+                .addAttribute(AttributeBlock.builder()
+                    .addAttribute(attrs.hasText("Item 1"))
+                    .addAttribute(attrs.hasText("Open 1"))
+                    .withJoiner(Joiner.OR)
+                    .build())
+                .build())
+            .build();
+
+        XPathSplitter splitter = XPathSplitter.builder().withMaxLength(1).build();
+
+        // When
+        SplitPlan plan = assertSameResult(splitter, xpath);
+        SplitPlan earlierPlan = assertSameResult(splitter, earlierIndex);
+
+        // Then
+        assertEquals(plan.kind(), SplitPlan.Kind.QUERY);
+        assertEquals(plan.xpath(), xpath);
+        assertEquals(earlierPlan.kind(), SplitPlan.Kind.UNION);
+    }
+
+    @Test
+    public void test_budget_shouldLimitSplitting() {
+        // Setup
+        Attributes attrs = Attributes.of(platform());
+        AttributeBlock.Builder block = AttributeBlock.builder().withJoiner(Joiner.OR);
+
+        for (int i = 0; i < 8; i++) {
+            block.addAttribute(attrs.hasText("Item " + (i * 2)));
+        }
+
+        XPath xpath = XPath.builder()
+            .addAttribute(CompoundAttribute.builder().addAttribute(block.build()).build())
+            .build();
+
+        int length = xpath.renderAttribute().length();
+        XPathSplitter roomy = XPathSplitter.builder().withMaxLength(length).build();
+        XPathSplitter cheap = XPathSplitter.builder().withMaxCost(0).build();
+        XPathSplitter capped = XPathSplitter.builder().withMaxLength(1).withMaxQueries(3).build();
+        XPathSplitter single = XPathSplitter.builder().withMaxLength(1).withMaxQueries(0).build();
+        XPathSplitter unlimited = XPathSplitter.builder().withMaxLength(1).withMaxQueries(64).build();
+        XPathSplitter defaults = XPathSplitter.builder().withMaxLength(1).build();
+
+        // When
+        SplitPlan roomyPlan = assertSameResult(roomy, xpath);
+        SplitPlan cheapPlan = assertSameResult(cheap, xpath);
+        SplitPlan cappedPlan = assertSameResult(capped, xpath);
+        SplitPlan singlePlan = assertSameResult(single, xpath);
+        SplitPlan unlimitedPlan = assertSameResult(unlimited, xpath);
+        SplitPlan defaultPlan = assertSameResult(defaults, xpath);
+
+        // Then
+        assertTrue(roomy.isWithinBudget(xpath));
+        assertFalse(XPathSplitter.builder().withMaxLength(length - 1).build().isWithinBudget(xpath));
+        assertEquals(roomyPlan.kind(), SplitPlan.Kind.QUERY);
+        assertEquals(cheapPlan.kind(), SplitPlan.Kind.UNION);
+        assertEquals(cappedPlan.queries().size(), 3);
+        assertEquals(single.maxQueries(), 1);
+        assertEquals(singlePlan.kind(), SplitPlan.Kind.QUERY);
+        assertEquals(unlimitedPlan.kind(), SplitPlan.Kind.UNION);
+        assertEquals(defaultPlan.queries().size(), defaults.maxQueries());
+
+        /* Each of the 8 texts is split into its 3 attribute names */
+        assertEquals(unlimitedPlan.queries().size(), 24);
+    }
+}